@@ -0,0 +1,121 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.app.user;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.io.BaseEncoding;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
+import org.isisaddons.module.security.dom.feature.SyntheticMetamodel;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionRule;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValue;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSet;
+
+/**
+ * Cost of encoding and parsing the mementos of {@link UserPermissionViewModel}s (one per member of a
+ * {@link SyntheticMetamodel synthetic metamodel}, as when rendering a user's permissions), each viewable because of
+ * a permission on the member's package and not changeable because of one on its class; <tt>parseLegacy</tt> parses
+ * the same view models from mementos in the original, colon-separated, format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserPermissionViewModelMementoBenchmark {
+
+    @Param({"1", "3", "6"})
+    public int packageDepth;
+
+    private ApplicationFeatureId[] memberIds;
+    private ApplicationPermissionValueSet.Evaluation[] viewingEvaluations;
+    private ApplicationPermissionValueSet.Evaluation[] changingEvaluations;
+    private String[] mementos;
+    private String[] legacyMementos;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final List<ApplicationFeatureId> memberIdList = new SyntheticMetamodel(packageDepth, 100, 20).getMemberIds();
+        final int size = memberIdList.size();
+        memberIds = new ApplicationFeatureId[size];
+        viewingEvaluations = new ApplicationPermissionValueSet.Evaluation[size];
+        changingEvaluations = new ApplicationPermissionValueSet.Evaluation[size];
+        mementos = new String[size];
+        legacyMementos = new String[size];
+        for (int i = 0; i < size; i++) {
+            final ApplicationFeatureId memberId = memberIdList.get(i);
+            final ApplicationFeatureId classId = memberId.getParentClassId();
+            final ApplicationFeatureId packageId = classId.getParentPackageId();
+            memberIds[i] = memberId;
+            viewingEvaluations[i] = new ApplicationPermissionValueSet.Evaluation(
+                    new ApplicationPermissionValue(packageId, ApplicationPermissionRule.ALLOW, ApplicationPermissionMode.CHANGING), true);
+            changingEvaluations[i] = new ApplicationPermissionValueSet.Evaluation(
+                    new ApplicationPermissionValue(classId, ApplicationPermissionRule.VETO, ApplicationPermissionMode.CHANGING), false);
+            mementos[i] = UserPermissionViewModel.asEncodedString(memberId, "sven", viewingEvaluations[i], changingEvaluations[i]);
+            legacyMementos[i] = BaseEncoding.base64Url().encode((
+                    "sven:" +
+                    "true:PACKAGE:" + packageId.getFullyQualifiedName() + ":ALLOW:CHANGING:" +
+                    "false:CLASS:" + classId.getFullyQualifiedName() + ":VETO:CHANGING:" +
+                    "MEMBER:" + memberId.getFullyQualifiedName()).getBytes(Charset.forName("UTF-8")));
+        }
+    }
+
+    private int nextIndex() {
+        final int index = next;
+        next = (next + 1) % memberIds.length;
+        return index;
+    }
+
+    @Benchmark
+    public String encode() {
+        final int index = nextIndex();
+        return UserPermissionViewModel.asEncodedString(memberIds[index], "sven", viewingEvaluations[index], changingEvaluations[index]);
+    }
+
+    @Benchmark
+    public UserPermissionViewModel parse() {
+        final UserPermissionViewModel viewModel = new UserPermissionViewModel();
+        viewModel.viewModelInit(mementos[nextIndex()]);
+        return viewModel;
+    }
+
+    @Benchmark
+    public UserPermissionViewModel parseLegacy() {
+        final UserPermissionViewModel viewModel = new UserPermissionViewModel();
+        viewModel.viewModelInit(legacyMementos[nextIndex()]);
+        return viewModel;
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.feature;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of parsing {@link ApplicationFeatureId}s (for example, from the memento of a view model) and of walking up
+ * their package hierarchy using {@link ApplicationFeatureId#getPathIds()}, both for a freshly parsed id and for an
+ * {@link ApplicationFeatureId#intern() interned} one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApplicationFeatureIdBenchmark {
+
+    @Param({"1", "3", "6"})
+    public int packageDepth;
+
+    @Param({"20"})
+    public int membersPerClass;
+
+    private String[] asStrings;
+    private String[] asEncodedStrings;
+    private String[] memberFqns;
+    private ApplicationFeatureId[] internedIds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final SyntheticMetamodel metamodel = new SyntheticMetamodel(packageDepth, 500, membersPerClass);
+        final List<ApplicationFeatureId> memberIds = metamodel.getMemberIds();
+        final int size = memberIds.size();
+        asStrings = new String[size];
+        asEncodedStrings = new String[size];
+        memberFqns = new String[size];
+        internedIds = new ApplicationFeatureId[size];
+        for (int i = 0; i < size; i++) {
+            final ApplicationFeatureId memberId = memberIds.get(i);
+            asStrings[i] = memberId.asString();
+            asEncodedStrings[i] = memberId.asEncodedString();
+            memberFqns[i] = memberId.getFullyQualifiedName();
+            internedIds[i] = memberId.intern();
+        }
+    }
+
+    private int nextIndex() {
+        final int index = next;
+        next = (next + 1) % asStrings.length;
+        return index;
+    }
+
+    @Benchmark
+    public ApplicationFeatureId parse() {
+        return ApplicationFeatureId.parse(asStrings[nextIndex()]);
+    }
+
+    @Benchmark
+    public ApplicationFeatureId parseEncoded() {
+        return ApplicationFeatureId.parseEncoded(asEncodedStrings[nextIndex()]);
+    }
+
+    @Benchmark
+    public ApplicationFeatureId newMember() {
+        return ApplicationFeatureId.newMember(memberFqns[nextIndex()]);
+    }
+
+    @Benchmark
+    public List<ApplicationFeatureId> getPathIds() {
+        return ApplicationFeatureId.parse(asStrings[nextIndex()]).getPathIds();
+    }
+
+    @Benchmark
+    public List<ApplicationFeatureId> getPathIdsInterned() {
+        return internedIds[nextIndex()].getPathIds();
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.feature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.isis.applib.util.ObjectContracts;
+
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValue;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSet;
+import org.isisaddons.module.security.dom.permission.PermissionsEvaluationService;
+
+/**
+ * Cost of building the feature catalog and permission sets for a {@link SyntheticMetamodel synthetic metamodel} of
+ * (by default) 20,000 members, both of which are dominated by insertions into sorted collections.
+ *
+ * <p>
+ *     {@link #sortFeatureIdsReflective()} and {@link #sortPermissionValuesReflective()} use the original
+ *     <tt>ObjectContracts</tt>-based (reflective) comparison as the baseline for {@link #sortFeatureIds()} and
+ *     {@link #sortPermissionValues()}.
+ * </p>
+ *
+ * <p>
+ *     {@link #buildCatalogInParallel()} scans the metamodel using <tt>parallelism</tt> threads, for comparison with
+ *     {@link #buildCatalog()}.  {@link #buildCatalogLazily()} is the cost at startup if the catalog is
+ *     {@link ApplicationFeatures#LAZY_KEY lazy}, and {@link #buildCatalogLazilyThenFindPackage()} the additional cost
+ *     of then creating just one top-level package.  {@link #buildCatalogFromSnapshot()} loads the catalog from a
+ *     {@link ApplicationFeatures#SNAPSHOT_FILE_KEY snapshot} (written during setup).
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeatureCatalogBenchmark {
+
+    private static final Comparator<ApplicationFeatureId> REFLECTIVE_FEATURE_ID_COMPARATOR = new Comparator<ApplicationFeatureId>() {
+        @Override
+        public int compare(final ApplicationFeatureId o1, final ApplicationFeatureId o2) {
+            return ObjectContracts.compare(o1, o2, "type, packageName, className, memberName");
+        }
+    };
+
+    private static final Comparator<ApplicationPermissionValue> REFLECTIVE_PERMISSION_VALUE_COMPARATOR = new Comparator<ApplicationPermissionValue>() {
+        @Override
+        public int compare(final ApplicationPermissionValue o1, final ApplicationPermissionValue o2) {
+            return ObjectContracts.compare(o1, o2, "rule, mode, featureId");
+        }
+    };
+
+    @Param({"3"})
+    public int packageDepth;
+
+    @Param({"1000"})
+    public int numClasses;
+
+    @Param({"20"})
+    public int membersPerClass;
+
+    @Param({"1000"})
+    public int numPermissions;
+
+    @Param({"4"})
+    public int parallelism;
+
+    private SyntheticMetamodel metamodel;
+    private List<ApplicationFeatureId> featureIds;
+    private List<ApplicationPermissionValue> permissionValues;
+    private Path snapshotFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        metamodel = new SyntheticMetamodel(packageDepth, numClasses, membersPerClass);
+        featureIds = metamodel.getFeatureIds();
+        permissionValues = metamodel.newPermissionValues(numPermissions, 20141118L);
+
+        snapshotFile = Files.createTempFile("features", ".snapshot");
+        Files.delete(snapshotFile);
+        metamodel.newApplicationFeatures(snapshotProperties());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshotFile);
+    }
+
+    private Map<String, String> snapshotProperties() {
+        return ImmutableMap.of(ApplicationFeatures.SNAPSHOT_FILE_KEY, snapshotFile.toString());
+    }
+
+    @Benchmark
+    public Object buildCatalog() {
+        return metamodel.newApplicationFeatures();
+    }
+
+    @Benchmark
+    public Object buildCatalogInParallel() {
+        return metamodel.newApplicationFeatures(
+                ImmutableMap.of(ApplicationFeatures.PARALLELISM_KEY, Integer.toString(parallelism)));
+    }
+
+    @Benchmark
+    public Object buildCatalogLazily() {
+        return metamodel.newApplicationFeatures(ImmutableMap.of(ApplicationFeatures.LAZY_KEY, "true"));
+    }
+
+    @Benchmark
+    public Object buildCatalogLazilyThenFindPackage() {
+        final ApplicationFeatureRepository applicationFeatures =
+                metamodel.newApplicationFeatures(ImmutableMap.of(ApplicationFeatures.LAZY_KEY, "true"));
+        return applicationFeatures.findPackage(ApplicationFeatureId.newPackage("com.mycompany.pkg0"));
+    }
+
+    @Benchmark
+    public Object buildCatalogFromSnapshot() {
+        return metamodel.newApplicationFeatures(snapshotProperties());
+    }
+
+    @Benchmark
+    public Object buildPermissionSet() {
+        return new ApplicationPermissionValueSet(permissionValues, PermissionsEvaluationService.DEFAULT);
+    }
+
+    @Benchmark
+    public Object sortFeatureIds() {
+        return new TreeSet<>(featureIds);
+    }
+
+    @Benchmark
+    public Object sortFeatureIdsReflective() {
+        final TreeSet<ApplicationFeatureId> sorted = new TreeSet<>(REFLECTIVE_FEATURE_ID_COMPARATOR);
+        sorted.addAll(featureIds);
+        return sorted;
+    }
+
+    @Benchmark
+    public Object sortPermissionValues() {
+        return new TreeSet<>(permissionValues);
+    }
+
+    @Benchmark
+    public Object sortPermissionValuesReflective() {
+        final TreeSet<ApplicationPermissionValue> sorted = new TreeSet<>(REFLECTIVE_PERMISSION_VALUE_COMPARATOR);
+        sorted.addAll(permissionValues);
+        return sorted;
+    }
+
+}
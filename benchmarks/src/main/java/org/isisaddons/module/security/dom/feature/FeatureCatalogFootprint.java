@@ -0,0 +1,71 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.feature;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Heap retained by the feature catalog of a {@link SyntheticMetamodel synthetic metamodel} (JMH measures time, not
+ * footprint).  Run using:
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar org.isisaddons.module.security.dom.feature.FeatureCatalogFootprint [numClasses] [membersPerClass]
+ * </pre>
+ *
+ * <p>
+ *     The metamodel (and the feature ids that it interns) is created first, so that only the catalog itself is
+ *     measured; several catalogs are retained at once, to average out the noise in the heap used.
+ * </p>
+ */
+public class FeatureCatalogFootprint {
+
+    private static final int PACKAGE_DEPTH = 3;
+    private static final int NUM_CATALOGS = 5;
+
+    public static void main(final String[] args) {
+        final int numClasses = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        final int membersPerClass = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        final SyntheticMetamodel metamodel = new SyntheticMetamodel(PACKAGE_DEPTH, numClasses, membersPerClass);
+        // warm up, and intern all of the feature ids
+        metamodel.newApplicationFeatures();
+
+        final long before = usedHeap();
+        final List<ApplicationFeatureRepository> catalogs = Lists.newArrayList();
+        for (int i = 0; i < NUM_CATALOGS; i++) {
+            catalogs.add(metamodel.newApplicationFeatures());
+        }
+        final long retained = (usedHeap() - before) / catalogs.size();
+
+        final int numFeatures = metamodel.getFeatureIds().size();
+        System.out.printf("%d features (%d classes, %d members each): %,d bytes per catalog, %d bytes per feature%n",
+                numFeatures, numClasses, membersPerClass, retained, retained / numFeatures);
+    }
+
+    private static long usedHeap() {
+        final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return memoryMXBean.getHeapMemoryUsage().getUsed();
+    }
+
+}
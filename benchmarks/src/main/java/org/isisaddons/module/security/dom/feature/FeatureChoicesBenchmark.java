@@ -0,0 +1,118 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.feature;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the choices offered when adding a permission to a role (by <tt>ApplicationRole#addAction</tt> etc) and
+ * when viewing a user's permissions, for the catalog of a {@link SyntheticMetamodel synthetic metamodel} of (by
+ * default) 20,000 members.
+ *
+ * <p>
+ *     The <tt>...Filtered</tt> benchmarks filter every package or class using the {@link ApplicationFeature.Predicates}
+ *     and {@link ApplicationFeatureId.Predicates}, as the baseline for the range queries of {@link ApplicationFeatures}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeatureChoicesBenchmark {
+
+    private static final String PACKAGE_NAME = "com.mycompany.pkg1";
+    private static final String SUBPACKAGE_NAME = "com.mycompany.pkg1.pkg2.pkg3";
+
+    @Param({"3"})
+    public int packageDepth;
+
+    @Param({"1000"})
+    public int numClasses;
+
+    @Param({"20"})
+    public int membersPerClass;
+
+    private ApplicationFeatureRepository applicationFeatures;
+
+    @Setup
+    public void setUp() {
+        applicationFeatures = new SyntheticMetamodel(packageDepth, numClasses, membersPerClass).newApplicationFeatures();
+    }
+
+    @Benchmark
+    public List<String> packageNamesContainingClasses() {
+        return applicationFeatures.packageNamesContainingClasses(ApplicationMemberType.ACTION);
+    }
+
+    @Benchmark
+    public List<String> packageNamesContainingClassesFiltered() {
+        return Lists.newArrayList(Iterables.transform(
+                Iterables.filter(
+                        applicationFeatures.allPackages(),
+                        ApplicationFeature.Predicates.packageContainingClasses(ApplicationMemberType.ACTION, applicationFeatures)),
+                ApplicationFeature.Functions.GET_FQN));
+    }
+
+    @Benchmark
+    public List<String> classNamesContainedIn() {
+        return applicationFeatures.classNamesContainedIn(SUBPACKAGE_NAME, ApplicationMemberType.ACTION);
+    }
+
+    @Benchmark
+    public List<String> classNamesContainedInFiltered() {
+        final ApplicationFeature pkg = applicationFeatures.findPackage(ApplicationFeatureId.newPackage(SUBPACKAGE_NAME));
+        return Lists.newArrayList(Iterables.transform(
+                Iterables.filter(
+                        pkg.getContents(),
+                        ApplicationFeatureId.Predicates.isClassContaining(ApplicationMemberType.ACTION, applicationFeatures)),
+                ApplicationFeatureId.Functions.GET_CLASS_NAME));
+    }
+
+    @Benchmark
+    public List<String> classNamesRecursivelyContainedIn() {
+        return applicationFeatures.classNamesRecursivelyContainedIn(PACKAGE_NAME);
+    }
+
+    @Benchmark
+    public List<String> classNamesRecursivelyContainedInFiltered() {
+        final ApplicationFeatureId packageId = ApplicationFeatureId.newPackage(PACKAGE_NAME);
+        return Lists.newArrayList(Iterables.transform(
+                Iterables.filter(
+                        applicationFeatures.classFeatures.keySet(),
+                        ApplicationFeatureId.Predicates.isClassRecursivelyWithin(packageId)),
+                ApplicationFeatureId.Functions.GET_CLASS_NAME));
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.feature;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost, at startup, of excluding the (strict) superclasses of services from the feature catalog: checking every
+ * specification against every registered service (as previously) versus building an
+ * {@link ApplicationFeatures.ServiceClassHierarchy index} of the services' class hierarchy and then looking up each
+ * specification.
+ *
+ * <p>
+ *     The registered services are instances of collection classes (which, like services, have deep hierarchies of
+ *     superclasses and interfaces); the specifications are the classes of those services, their supertypes, and other
+ *     unrelated classes.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceClassHierarchyBenchmark {
+
+    private static final Class<?>[] SERVICE_CLASSES = {
+            ArrayList.class, LinkedList.class, CopyOnWriteArrayList.class, ArrayDeque.class, PriorityQueue.class,
+            ConcurrentLinkedQueue.class, LinkedBlockingQueue.class, HashSet.class, LinkedHashSet.class,
+            TreeSet.class, ConcurrentSkipListSet.class, HashMap.class, LinkedHashMap.class, TreeMap.class,
+            ConcurrentHashMap.class, ConcurrentSkipListMap.class, BitSet.class, StringBuilder.class, Random.class
+    };
+
+    @Param({"100", "1000"})
+    public int numServices;
+
+    @Param({"1000", "5000"})
+    public int numSpecifications;
+
+    private List<Object> services;
+    private Class<?>[] specificationClasses;
+
+    @Setup
+    public void setUp() throws Exception {
+        services = Lists.newArrayList();
+        for (int i = 0; i < numServices; i++) {
+            services.add(SERVICE_CLASSES[i % SERVICE_CLASSES.length].newInstance());
+        }
+
+        final Set<Class<?>> candidates = Sets.newLinkedHashSet();
+        for (final Class<?> serviceClass : SERVICE_CLASSES) {
+            for (Class<?> cls = serviceClass; cls != null; cls = cls.getSuperclass()) {
+                candidates.add(cls);
+                candidates.add(cls.getInterfaces().length > 0 ? cls.getInterfaces()[0] : cls);
+            }
+        }
+        candidates.add(String.class);
+        candidates.add(Integer.class);
+        candidates.add(Serializable.class);
+        candidates.add(AbstractList.class);
+        candidates.add(AbstractMap.class);
+        candidates.add(Collection.class);
+        candidates.add(Map.class);
+        candidates.add(ApplicationFeature.class);
+        candidates.add(ApplicationFeatureId.class);
+        candidates.add(ApplicationFeatures.class);
+
+        final List<Class<?>> candidateList = Lists.newArrayList(candidates);
+        specificationClasses = new Class<?>[numSpecifications];
+        for (int i = 0; i < numSpecifications; i++) {
+            specificationClasses[i] = candidateList.get(i % candidateList.size());
+        }
+    }
+
+    @Benchmark
+    public int checkEachService() {
+        int excluded = 0;
+        for (final Class<?> specClass : specificationClasses) {
+            if(isSuperClassOfService(specClass, services)) {
+                excluded++;
+            }
+        }
+        return excluded;
+    }
+
+    @Benchmark
+    public int checkServiceClassHierarchy() {
+        final ApplicationFeatures.ServiceClassHierarchy hierarchy = new ApplicationFeatures.ServiceClassHierarchy(services);
+        int excluded = 0;
+        for (final Class<?> specClass : specificationClasses) {
+            if(hierarchy.isSuperClassOfService(specClass)) {
+                excluded++;
+            }
+        }
+        return excluded;
+    }
+
+    /**
+     * The previous implementation of {@link ApplicationFeatures#isSuperClassOfService}, as a baseline.
+     */
+    private static boolean isSuperClassOfService(final Class<?> specClass, final List<Object> registeredServices) {
+        boolean serviceCls = false;
+        for (final Object registeredService : registeredServices) {
+            final Class<?> serviceClass = registeredService.getClass();
+            if (specClass.isAssignableFrom(serviceClass)) {
+                serviceCls = true;
+            }
+        }
+        if (!serviceCls) {
+            return false;
+        }
+        for (final Object registeredService : registeredServices) {
+            final Class<?> serviceClass = registeredService.getClass();
+            if (serviceClass.isAssignableFrom(specClass)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,257 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.feature;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+
+import org.apache.isis.applib.annotation.ActionSemantics;
+import org.apache.isis.core.metamodel.runtimecontext.ServicesInjector;
+import org.apache.isis.core.metamodel.spec.ObjectSpecification;
+import org.apache.isis.core.metamodel.spec.SpecificationLoaderSpi;
+import org.apache.isis.core.metamodel.spec.feature.ObjectAction;
+import org.apache.isis.core.metamodel.spec.feature.ObjectAssociation;
+
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionRule;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValue;
+
+/**
+ * A synthetic Isis metamodel, for benchmarking the construction of the {@link ApplicationFeatures feature catalog}
+ * without bootstrapping Isis.
+ *
+ * <p>
+ *     Classes are spread over a tree of packages <tt>packageDepth</tt> levels deep (below <tt>com.mycompany</tt>),
+ *     each with <tt>membersPerClass</tt> members split evenly between properties, collections and actions.  The
+ *     metamodel interfaces are implemented as dynamic proxies that answer only those methods that
+ *     {@link ApplicationFeatures} calls.
+ * </p>
+ */
+public class SyntheticMetamodel {
+
+    private static final int PACKAGES_PER_LEVEL = 4;
+
+    private final List<ObjectSpecification> specifications = Lists.newArrayList();
+    private final List<ApplicationFeatureId> featureIds = Lists.newArrayList();
+    private final List<ApplicationFeatureId> memberIds = Lists.newArrayList();
+
+    public SyntheticMetamodel(final int packageDepth, final int numClasses, final int membersPerClass) {
+        final List<String> packageNames = Lists.newArrayList();
+        for (int i = 0; i < numClasses; i++) {
+            final StringBuilder buf = new StringBuilder("com.mycompany");
+            int remainder = i;
+            for (int level = 0; level < packageDepth; level++) {
+                buf.append(".pkg").append(remainder % PACKAGES_PER_LEVEL);
+                remainder /= PACKAGES_PER_LEVEL;
+                final String packageName = buf.toString();
+                if(!packageNames.contains(packageName)) {
+                    packageNames.add(packageName);
+                }
+            }
+            final String className = buf.append(".Entity").append(i).toString();
+
+            final List<ObjectAssociation> properties = Lists.newArrayList();
+            final List<ObjectAssociation> collections = Lists.newArrayList();
+            final List<ObjectAction> actions = Lists.newArrayList();
+            for (int j = 0; j < membersPerClass; j++) {
+                final String memberName = memberName(j);
+                switch (j % 3) {
+                    case 0:
+                        properties.add(newMember(ObjectAssociation.class, memberName));
+                        break;
+                    case 1:
+                        collections.add(newMember(ObjectAssociation.class, memberName));
+                        break;
+                    default:
+                        actions.add(newMember(ObjectAction.class, memberName));
+                        break;
+                }
+                memberIds.add(ApplicationFeatureId.newMember(className, memberName));
+            }
+            specifications.add(newSpecification(className, properties, collections, actions));
+            featureIds.add(ApplicationFeatureId.newClass(className));
+        }
+        for (final String packageName : packageNames) {
+            featureIds.add(ApplicationFeatureId.newPackage(packageName));
+        }
+        featureIds.addAll(memberIds);
+    }
+
+    private static String memberName(final int j) {
+        switch (j % 3) {
+            case 0:
+                return "property" + j;
+            case 1:
+                return "collection" + j;
+            default:
+                return "action" + j;
+        }
+    }
+
+    //region > accessors
+
+    public List<ObjectSpecification> getSpecifications() {
+        return Collections.unmodifiableList(specifications);
+    }
+
+    /**
+     * All packages, classes and members of the metamodel (not interned).
+     */
+    public List<ApplicationFeatureId> getFeatureIds() {
+        return Collections.unmodifiableList(featureIds);
+    }
+
+    public List<ApplicationFeatureId> getMemberIds() {
+        return Collections.unmodifiableList(memberIds);
+    }
+
+    //endregion
+
+    //region > newApplicationFeatures, newPermissionValues
+
+    /**
+     * A new (initialized) catalog of the features of this metamodel.
+     */
+    public ApplicationFeatureRepository newApplicationFeatures() {
+        return newApplicationFeatures(Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * A new catalog of the features of this metamodel, initialized using the specified configuration properties.
+     */
+    public ApplicationFeatureRepository newApplicationFeatures(final Map<String, String> properties) {
+        final ApplicationFeatureRepository applicationFeatures = new ApplicationFeatureRepository();
+        applicationFeatures.setSpecificationLoaderSpi(newProxy(SpecificationLoaderSpi.class, "specificationLoader", new Answers() {
+            @Override
+            Object answer(final String methodName, final Object[] args) {
+                return methodName.equals("allSpecifications") ? specifications : null;
+            }
+        }));
+        applicationFeatures.setServicesInjector(newProxy(ServicesInjector.class, "servicesInjector", new Answers() {
+            @Override
+            Object answer(final String methodName, final Object[] args) {
+                return methodName.equals("getRegisteredServices") ? Collections.emptyList() : null;
+            }
+        }));
+        applicationFeatures.applicationFeatureFactory = new ApplicationFeatureFactory() {
+            @Override
+            public ApplicationFeature newApplicationFeature() {
+                return new ApplicationFeature();
+            }
+        };
+        applicationFeatures.init(properties);
+        return applicationFeatures;
+    }
+
+    /**
+     * Random permissions on the features of this metamodel, as might be granted to a user through their roles.
+     */
+    public List<ApplicationPermissionValue> newPermissionValues(final int numPermissions, final long seed) {
+        final Random random = new Random(seed);
+        final List<ApplicationPermissionValue> values = Lists.newArrayList();
+        for (int i = 0; i < numPermissions; i++) {
+            values.add(new ApplicationPermissionValue(
+                    featureIds.get(random.nextInt(featureIds.size())),
+                    ApplicationPermissionRule.values()[random.nextInt(2)],
+                    ApplicationPermissionMode.values()[random.nextInt(2)]));
+        }
+        return values;
+    }
+
+    //endregion
+
+    //region > proxies
+
+    private static ObjectSpecification newSpecification(
+            final String className,
+            final List<ObjectAssociation> properties,
+            final List<ObjectAssociation> collections,
+            final List<ObjectAction> actions) {
+        return newProxy(ObjectSpecification.class, className, new Answers() {
+            @Override
+            Object answer(final String methodName, final Object[] args) {
+                switch (methodName) {
+                    case "getFullIdentifier":
+                        return className;
+                    case "getCorrespondingClass":
+                        return SyntheticMetamodel.class;
+                    case "isAbstract":
+                        return false;
+                    case "getAssociations":
+                        return args[1] == ObjectAssociation.Filters.PROPERTIES ? properties : collections;
+                    case "getObjectActions":
+                        return actions;
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    private static <T> T newMember(final Class<T> type, final String memberId) {
+        return newProxy(type, memberId, new Answers() {
+            @Override
+            Object answer(final String methodName, final Object[] args) {
+                switch (methodName) {
+                    case "getId":
+                        return memberId;
+                    case "isAlwaysHidden":
+                    case "containsDoOpFacet":
+                        return false;
+                    case "getSemantics":
+                        return ActionSemantics.Of.SAFE;
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    private abstract static class Answers {
+        abstract Object answer(String methodName, Object[] args);
+    }
+
+    private static <T> T newProxy(final Class<T> type, final String name, final Answers answers) {
+        final Object proxy = Proxy.newProxyInstance(
+                SyntheticMetamodel.class.getClassLoader(), new Class<?>[]{type}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        switch (method.getName()) {
+                            case "toString":
+                                return name;
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            default:
+                                return answers.answer(method.getName(), args);
+                        }
+                    }
+                });
+        return type.cast(proxy);
+    }
+
+    //endregion
+
+}
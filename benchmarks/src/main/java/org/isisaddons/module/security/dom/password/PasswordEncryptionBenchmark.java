@@ -0,0 +1,65 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.password;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@link PasswordEncryptionService#matches(String, String) verifying} a password, as performed on every login
+ * to a local account, for a range of BCrypt work factors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasswordEncryptionBenchmark {
+
+    private static final String PASSWORD = "abcdef12345ghijk^&*()";
+
+    @Param({"4", "8", "10", "12"})
+    public int logRounds;
+
+    private PasswordEncryptionServiceUsingJBcrypt jbcrypt;
+    private String encrypted;
+
+    @Setup
+    public void setUp() {
+        jbcrypt = new PasswordEncryptionServiceUsingJBcrypt();
+        jbcrypt.setLogRounds(logRounds);
+        encrypted = jbcrypt.encrypt(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return jbcrypt.matches(PASSWORD, encrypted);
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.permission;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
+import org.isisaddons.module.security.dom.feature.ApplicationMemberOrdinals;
+import org.isisaddons.module.security.dom.feature.SyntheticMetamodel;
+
+/**
+ * Cost of evaluating a user's permissions for a member of a {@link SyntheticMetamodel synthetic metamodel}, as
+ * performed (on a cache miss) for every authorization check.
+ *
+ * <p>
+ *     The user's permission set is the union of <tt>numRoles</tt> roles each with <tt>permissionsPerRole</tt> random
+ *     permissions; each invocation evaluates the next member of the metamodel in turn.
+ * </p>
+ *
+ * <p>
+ *     The <tt>...Compiled</tt> benchmarks use the same permission set compiled over the ordinals of the metamodel's
+ *     members, as done by the <tt>ApplicationPermissionValueSetCache</tt>; <tt>compile</tt> is the cost of doing so.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermissionEvaluationBenchmark {
+
+    @Param({"1", "3", "6"})
+    public int packageDepth;
+
+    @Param({"20"})
+    public int membersPerClass;
+
+    @Param({"10", "100"})
+    public int permissionsPerRole;
+
+    @Param({"3"})
+    public int numRoles;
+
+    private ApplicationFeatureId[] memberIds;
+    private ApplicationPermissionValueSet permissionSet;
+    private List<ApplicationPermissionValue> permissionValues;
+    private ApplicationMemberOrdinals memberOrdinals;
+    private ApplicationPermissionValueSet compiledPermissionSet;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final SyntheticMetamodel metamodel = new SyntheticMetamodel(packageDepth, 500, membersPerClass);
+        final List<ApplicationFeatureId> memberIds = metamodel.getMemberIds();
+        this.memberIds = memberIds.toArray(new ApplicationFeatureId[memberIds.size()]);
+        for (int i = 0; i < this.memberIds.length; i++) {
+            this.memberIds[i] = this.memberIds[i].intern();
+        }
+        permissionValues = metamodel.newPermissionValues(numRoles * permissionsPerRole, 20141118L);
+        permissionSet = new ApplicationPermissionValueSet(permissionValues, PermissionsEvaluationService.DEFAULT);
+        memberOrdinals = new ApplicationMemberOrdinals(memberIds);
+        compiledPermissionSet = compile();
+    }
+
+    private ApplicationFeatureId nextMemberId() {
+        final ApplicationFeatureId memberId = memberIds[next];
+        next = (next + 1) % memberIds.length;
+        return memberId;
+    }
+
+    @Benchmark
+    public Object evaluate() {
+        return permissionSet.evaluate(nextMemberId(), ApplicationPermissionMode.CHANGING);
+    }
+
+    @Benchmark
+    public boolean grantsViewing() {
+        return permissionSet.grants(nextMemberId(), ApplicationPermissionMode.VIEWING);
+    }
+
+    @Benchmark
+    public boolean grantsChanging() {
+        return permissionSet.grants(nextMemberId(), ApplicationPermissionMode.CHANGING);
+    }
+
+    @Benchmark
+    public boolean grantsViewingCompiled() {
+        return compiledPermissionSet.grants(nextMemberId(), ApplicationPermissionMode.VIEWING);
+    }
+
+    @Benchmark
+    public boolean grantsChangingCompiled() {
+        return compiledPermissionSet.grants(nextMemberId(), ApplicationPermissionMode.CHANGING);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ApplicationPermissionValueSet compile() {
+        return new ApplicationPermissionValueSet(permissionValues, PermissionsEvaluationService.DEFAULT, memberOrdinals);
+    }
+
+}
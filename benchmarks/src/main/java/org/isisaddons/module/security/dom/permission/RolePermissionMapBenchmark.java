@@ -0,0 +1,113 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.permission;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.isisaddons.module.security.dom.feature.ApplicationMemberOrdinals;
+import org.isisaddons.module.security.dom.feature.SyntheticMetamodel;
+
+/**
+ * Cost of building the permission set of a user holding <tt>numRoles</tt> roles (each with
+ * <tt>permissionsPerRole</tt> random permissions) over a {@link SyntheticMetamodel synthetic metamodel} of 20,000
+ * members, and of editing one of those roles.
+ *
+ * <ul>
+ *     <li><tt>compileUnion</tt> evaluates the union of the roles' permissions for every member (as when the
+ *     permission sets are not composed);</li>
+ *     <li><tt>compose</tt> combines the roles' {@link ApplicationRolePermissionMap materialised} permissions;</li>
+ *     <li><tt>mapRole</tt> materialises the permissions of a role from scratch, and <tt>updateRole</tt> after adding
+ *     a single permission to it.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RolePermissionMapBenchmark {
+
+    @Param({"3"})
+    public int packageDepth;
+
+    @Param({"100"})
+    public int permissionsPerRole;
+
+    @Param({"3", "10"})
+    public int numRoles;
+
+    private ApplicationMemberOrdinals memberOrdinals;
+    private List<List<ApplicationPermissionValue>> permissionValuesByRole;
+    private List<ApplicationPermissionValue> union;
+    private List<ApplicationPermissionValue> editedPermissionValues;
+    private List<ApplicationRolePermissionMap> roleMaps;
+
+    @Setup
+    public void setUp() {
+        final SyntheticMetamodel metamodel = new SyntheticMetamodel(packageDepth, 1000, 20);
+        memberOrdinals = metamodel.newApplicationFeatures().getMemberOrdinals();
+
+        permissionValuesByRole = Lists.newArrayList();
+        union = Lists.newArrayList();
+        roleMaps = Lists.newArrayList();
+        for (int i = 0; i < numRoles; i++) {
+            final List<ApplicationPermissionValue> permissionValues = metamodel.newPermissionValues(permissionsPerRole, 20141118L + i);
+            permissionValuesByRole.add(permissionValues);
+            union.addAll(permissionValues);
+            roleMaps.add(ApplicationRolePermissionMap.empty(memberOrdinals).update(permissionValues));
+        }
+        editedPermissionValues = Lists.newArrayList(permissionValuesByRole.get(0));
+        editedPermissionValues.addAll(metamodel.newPermissionValues(1, 1L));
+    }
+
+    @Benchmark
+    public ApplicationPermissionValueSet compileUnion() {
+        return new ApplicationPermissionValueSet(union, PermissionsEvaluationService.DEFAULT, memberOrdinals);
+    }
+
+    @Benchmark
+    public ApplicationPermissionPolicy compose() {
+        return ApplicationRolePermissionMap.compose(roleMaps, memberOrdinals, ApplicationRolePermissionMap.Precedence.ALLOW_BEATS_VETO);
+    }
+
+    @Benchmark
+    public ApplicationRolePermissionMap mapRole() {
+        return ApplicationRolePermissionMap.empty(memberOrdinals).update(permissionValuesByRole.get(0));
+    }
+
+    @Benchmark
+    public ApplicationRolePermissionMap updateRole() {
+        return roleMaps.get(0).update(editedPermissionValues);
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.facets;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.isis.applib.DomainObjectContainer;
+import org.apache.isis.applib.Identifier;
+import org.apache.isis.applib.annotation.Where;
+import org.apache.isis.applib.security.UserMemento;
+import org.apache.isis.applib.services.queryresultscache.QueryResultsCache;
+import org.apache.isis.core.metamodel.adapter.ObjectAdapter;
+import org.apache.isis.core.metamodel.consent.InteractionInitiatedBy;
+import org.apache.isis.core.metamodel.facetapi.FacetHolderImpl;
+import org.apache.isis.core.metamodel.interactions.PropertyUsabilityContext;
+import org.apache.isis.core.metamodel.interactions.PropertyVisibilityContext;
+
+import org.isisaddons.module.security.dom.tenancy.ApplicationTenancy;
+import org.isisaddons.module.security.dom.tenancy.ApplicationTenancyPathEvaluator;
+import org.isisaddons.module.security.dom.user.ApplicationUser;
+import org.isisaddons.module.security.dom.user.ApplicationUserRepository;
+
+/**
+ * Cost of the tenancy checks made by {@link TenantedAuthorizationFacetDefault} for every member of every tenanted
+ * object rendered.
+ *
+ * <p>
+ *     The objects' tenancy paths are <tt>tenancyDepth</tt> levels deep, half of them within the user's tenancy and
+ *     half not.  {@link #hides()} and {@link #disables()} share a single {@link QueryResultsCache} (as for the members
+ *     of objects rendered within one request), while {@link #hidesNewRequest()} uses a new one for every check.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TenantedAuthorizationFacetBenchmark {
+
+    public static class TenantedObject {
+        private final String path;
+
+        TenantedObject(final String path) {
+            this.path = path;
+        }
+    }
+
+    @Param({"1", "3", "6"})
+    public int tenancyDepth;
+
+    @Param({"1000"})
+    public int numObjects;
+
+    private ApplicationUserRepository applicationUserRepository;
+    private ApplicationTenancyPathEvaluator evaluator;
+    private DomainObjectContainer container;
+
+    private TenantedAuthorizationFacetDefault facet;
+    private PropertyVisibilityContext[] visibilityContexts;
+    private PropertyUsabilityContext[] usabilityContexts;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final ApplicationTenancy userTenancy = new ApplicationTenancy();
+        userTenancy.setPath("/t0");
+        final ApplicationUser user = new ApplicationUser();
+        user.setUsername("fred");
+        user.setTenancy(userTenancy);
+
+        applicationUserRepository = new ApplicationUserRepository() {
+            @Override
+            public ApplicationUser findByUsername(final String username) {
+                return user;
+            }
+        };
+        evaluator = new ApplicationTenancyPathEvaluator() {
+            @Override
+            public boolean handles(final Class<?> cls) {
+                return cls == TenantedObject.class;
+            }
+
+            @Override
+            public String applicationTenancyPathFor(final Object domainObject) {
+                return ((TenantedObject) domainObject).path;
+            }
+        };
+        container = newProxy(DomainObjectContainer.class, new InvocationHandler() {
+            private final UserMemento userMemento = new UserMemento("fred");
+
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                return method.getName().equals("getUser") ? userMemento : null;
+            }
+        });
+
+        facet = newFacet(new QueryResultsCache());
+
+        final Identifier identifier = Identifier.propertyOrCollectionIdentifier(TenantedObject.class, "name");
+        visibilityContexts = new PropertyVisibilityContext[numObjects];
+        usabilityContexts = new PropertyUsabilityContext[numObjects];
+        for (int i = 0; i < numObjects; i++) {
+            final StringBuilder path = new StringBuilder();
+            for (int level = 0; level < tenancyDepth; level++) {
+                path.append("/t").append(level == 0 ? i % 2 : i % (level + 3));
+            }
+            final ObjectAdapter adapter = newAdapter(new TenantedObject(path.toString()));
+            visibilityContexts[i] = new PropertyVisibilityContext(adapter, identifier, InteractionInitiatedBy.USER, Where.OBJECT_FORMS);
+            usabilityContexts[i] = new PropertyUsabilityContext(adapter, identifier, InteractionInitiatedBy.USER, Where.OBJECT_FORMS);
+        }
+    }
+
+    private TenantedAuthorizationFacetDefault newFacet(final QueryResultsCache queryResultsCache) {
+        return new TenantedAuthorizationFacetDefault(
+                applicationUserRepository, queryResultsCache, evaluator, container, new FacetHolderImpl());
+    }
+
+    private static ObjectAdapter newAdapter(final Object domainObject) {
+        return newProxy(ObjectAdapter.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                switch (method.getName()) {
+                    case "getObject":
+                        return domainObject;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    private static <T> T newProxy(final Class<T> type, final InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(
+                TenantedAuthorizationFacetBenchmark.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private int nextIndex() {
+        final int index = next;
+        next = (next + 1) % numObjects;
+        return index;
+    }
+
+    @Benchmark
+    public String hides() {
+        return facet.hides(visibilityContexts[nextIndex()]);
+    }
+
+    @Benchmark
+    public String disables() {
+        return facet.disables(usabilityContexts[nextIndex()]);
+    }
+
+    @Benchmark
+    public String hidesNewRequest() {
+        return newFacet(new QueryResultsCache()).hides(visibilityContexts[nextIndex()]);
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+
+import org.apache.shiro.authz.Permission;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+
+/**
+ * Cost of resolving the permission strings that Isis' Shiro authorizor passes for every authorization check.
+ *
+ * <p>
+ *     {@link #legacySplit()} reproduces the original regex-split implementation as the baseline; {@link #parse()} is
+ *     the hand-written parser (used on a cache miss), and {@link #resolveCached()} is the steady state.
+ *     {@link #construct()} is the cost of constructing a permission from an already-parsed feature id (as when
+ *     prepopulating the cache).
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermissionResolverBenchmark {
+
+    @Param({"1000"})
+    public int numPermissions;
+
+    private String[] permissionStrings;
+    private ApplicationFeatureId[] featureIds;
+    private PermissionResolverForIsisShiroAuthorizor resolver;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final List<String> strings = Lists.newArrayList();
+        for (int i = 0; strings.size() < numPermissions; i++) {
+            final String packageName = "com.mycompany.module" + (i % 20) + ".dom";
+            strings.add(packageName + ":Entity" + (i % 50) + ":member" + i + ":" + (i % 2 == 0 ? "r" : "w"));
+        }
+        permissionStrings = strings.toArray(new String[strings.size()]);
+        featureIds = new ApplicationFeatureId[permissionStrings.length];
+        for (int i = 0; i < permissionStrings.length; i++) {
+            featureIds[i] = new PermissionForMember(permissionStrings[i]).getFeatureId();
+        }
+
+        resolver = new PermissionResolverForIsisShiroAuthorizor();
+        for (final String permissionString : permissionStrings) {
+            resolver.resolvePermission(permissionString);
+        }
+    }
+
+    private String nextPermissionString() {
+        final String permissionString = permissionStrings[next];
+        next = (next + 1) % permissionStrings.length;
+        return permissionString;
+    }
+
+    @Benchmark
+    public Object legacySplit() {
+        final String[] split = nextPermissionString().split("\\:");
+        final ApplicationFeatureId featureId = ApplicationFeatureId.newMember(split[0] + "." + split[1], split[2]);
+        final ApplicationPermissionMode mode = "r".equals(split[3]) ? ApplicationPermissionMode.VIEWING : ApplicationPermissionMode.CHANGING;
+        return new PermissionForMember(featureId, mode);
+    }
+
+    @Benchmark
+    public Object parse() {
+        return new PermissionForMember(nextPermissionString());
+    }
+
+    @Benchmark
+    public Object construct() {
+        final ApplicationFeatureId featureId = featureIds[next];
+        next = (next + 1) % featureIds.length;
+        return new PermissionForMember(featureId, ApplicationPermissionMode.CHANGING);
+    }
+
+    @Benchmark
+    public Permission resolveCached() {
+        return resolver.resolvePermission(nextPermissionString());
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Sets;
+
+import org.apache.shiro.authz.Permission;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
+import org.isisaddons.module.security.dom.feature.SyntheticMetamodel;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSet;
+import org.isisaddons.module.security.dom.permission.PermissionsEvaluationService;
+import org.isisaddons.module.security.dom.user.AccountType;
+import org.isisaddons.module.security.dom.user.ApplicationUserStatus;
+
+/**
+ * Cost of Shiro checking a {@link PermissionForMember} against the object permissions of a logged-in
+ * {@link PrincipalForApplicationUser}, being the steady state of every authorization check.
+ *
+ * <p>
+ *     {@link #implies()} uses a single long-lived principal (so, after warm-up, its memoized decisions);
+ *     {@link #impliesNewPrincipal()} uses a new principal for every check, so always evaluates the permission set.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrincipalImpliesBenchmark {
+
+    @Param({"3"})
+    public int packageDepth;
+
+    @Param({"20"})
+    public int membersPerClass;
+
+    @Param({"10", "100"})
+    public int permissionsPerRole;
+
+    @Param({"3"})
+    public int numRoles;
+
+    private PermissionForMember[] permissions;
+    private ApplicationPermissionValueSet permissionSet;
+    private PrincipalForApplicationUser principal;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final SyntheticMetamodel metamodel = new SyntheticMetamodel(packageDepth, 500, membersPerClass);
+        final List<ApplicationFeatureId> memberIds = metamodel.getMemberIds();
+        permissions = new PermissionForMember[memberIds.size()];
+        for (int i = 0; i < permissions.length; i++) {
+            final ApplicationPermissionMode mode = i % 2 == 0 ? ApplicationPermissionMode.VIEWING : ApplicationPermissionMode.CHANGING;
+            permissions[i] = new PermissionForMember(memberIds.get(i).intern(), mode);
+        }
+        permissionSet = new ApplicationPermissionValueSet(
+                metamodel.newPermissionValues(numRoles * permissionsPerRole, 20141118L), PermissionsEvaluationService.DEFAULT);
+        principal = newPrincipal();
+    }
+
+    private PrincipalForApplicationUser newPrincipal() {
+        return new PrincipalForApplicationUser(
+                "fred", null, AccountType.LOCAL, ApplicationUserStatus.ENABLED,
+                Sets.newTreeSet(Sets.newHashSet("role1", "role2", "role3")), permissionSet);
+    }
+
+    private PermissionForMember nextPermission() {
+        final PermissionForMember permission = permissions[next];
+        next = (next + 1) % permissions.length;
+        return permission;
+    }
+
+    private static boolean implies(final PrincipalForApplicationUser principal, final Permission permission) {
+        for (final Permission objectPermission : principal.getObjectPermissions()) {
+            if(objectPermission.implies(permission)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean implies() {
+        return implies(principal, nextPermission());
+    }
+
+    @Benchmark
+    public boolean impliesNewPrincipal() {
+        return implies(newPrincipal(), nextPermission());
+    }
+
+}
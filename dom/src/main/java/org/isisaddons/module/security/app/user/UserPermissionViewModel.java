@@ -16,11 +16,14 @@
  */
 package org.isisaddons.module.security.app.user;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Iterator;
 
 import com.google.common.base.Function;
-import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 import com.google.common.io.BaseEncoding;
 
@@ -112,50 +115,293 @@ public void viewModelInit(final String encodedMemento) {
         parseEncoded(encodedMemento);
     }
 
-    private static String asEncodedString(
+    /**
+     * Leading byte of the (binary) memento; the original, colon-separated, format always starts with a printable
+     * character (of the username, or the separator).
+     */
+    static final byte VERSION_1 = 1;
+
+    /*
+     * Each evaluation is encoded as a byte of flags, followed (if it has a cause) by the type of the cause's feature
+     * and either the length of its fully qualified name, being a prefix of that of the target feature, or else the
+     * name itself.
+     */
+    private static final int GRANTED = 0x01;
+    private static final int CAUSED = 0x02;
+    private static final int CAUSE_NAMED = 0x04;
+    private static final int RULE_SHIFT = 3;
+    private static final int MODE_SHIFT = 5;
+    private static final int MAX_PREFIX_LENGTH = 0xFF;
+    private static final int ENUM_MASK = 0x03;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final ApplicationFeatureType[] FEATURE_TYPES = ApplicationFeatureType.values();
+    private static final ApplicationPermissionRule[] RULES = ApplicationPermissionRule.values();
+    private static final ApplicationPermissionMode[] MODES = ApplicationPermissionMode.values();
+
+    /**
+     * Encodes the view model in a compact binary form, being version {@link #VERSION_1}.
+     *
+     * <p>
+     *     The features that cause the evaluations are (in practice) always the target feature or one of its parents,
+     *     so are referenced just by the length of their (shared) name; enums are encoded by ordinal, and names packed
+     *     into 6 bits per character wherever possible.  Features are not referenced by their position within the
+     *     catalog, because mementos are bookmarkable and so must outlive changes to the metamodel.
+     * </p>
+     */
+    static String asEncodedString(
             final ApplicationFeatureId featureId,
             final String username,
             final ApplicationPermissionValueSet.Evaluation viewingEvaluation,
             final ApplicationPermissionValueSet.Evaluation changingEvaluation) {
-        return base64UrlEncode(asString(featureId, username, viewingEvaluation, changingEvaluation));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION_1);
+            writeName(out, username);
+            writeFeatureId(out, featureId);
+            writeEvaluation(out, viewingEvaluation, featureId);
+            writeEvaluation(out, changingEvaluation, featureId);
+        } catch (final IOException ex) {
+            // not expected, writing to memory
+            throw new IllegalStateException(ex);
+        }
+        return BaseEncoding.base64Url().omitPadding().encode(bytes.toByteArray());
     }
 
-    private static String asString(
-            final ApplicationFeatureId featureId,
-            final String username,
-            final ApplicationPermissionValueSet.Evaluation viewingEvaluation,
-            final ApplicationPermissionValueSet.Evaluation changingEvaluation) {
+    private static void writeEvaluation(
+            final DataOutputStream out,
+            final ApplicationPermissionValueSet.Evaluation evaluation,
+            final ApplicationFeatureId targetFeatureId) throws IOException {
+        final ApplicationPermissionValue cause = evaluation.getCause();
+        int flags = evaluation.isGranted() ? GRANTED : 0;
+        if(cause == null) {
+            out.writeByte(flags);
+            return;
+        }
+        flags |= CAUSED | cause.getRule().ordinal() << RULE_SHIFT | cause.getMode().ordinal() << MODE_SHIFT;
+        final String causeFqn = cause.getFeatureId().getFullyQualifiedName();
+        if(causeFqn.length() <= MAX_PREFIX_LENGTH && targetFeatureId.getFullyQualifiedName().startsWith(causeFqn)) {
+            out.writeByte(flags);
+            out.writeByte(cause.getFeatureId().getType().ordinal());
+            out.writeByte(causeFqn.length());
+        } else {
+            out.writeByte(flags | CAUSE_NAMED);
+            writeFeatureId(out, cause.getFeatureId());
+        }
+    }
 
-        final boolean viewingEvaluationGranted = viewingEvaluation.isGranted();
-        final ApplicationPermissionValue viewingEvaluationCause = viewingEvaluation.getCause();
-        final ApplicationFeatureId viewingEvaluationCauseFeatureId = viewingEvaluationCause != null? viewingEvaluationCause.getFeatureId(): null;
+    private static void writeFeatureId(final DataOutputStream out, final ApplicationFeatureId featureId) throws IOException {
+        out.writeByte(featureId.getType().ordinal());
+        writeName(out, featureId.getFullyQualifiedName());
+    }
 
-        final boolean changingEvaluationGranted = changingEvaluation.isGranted();
-        final ApplicationPermissionValue changingEvaluationCause = changingEvaluation.getCause();
-        final ApplicationFeatureId changingEvaluationCauseFeatureId = changingEvaluationCause != null? changingEvaluationCause.getFeatureId(): null;
-        return Joiner.on(":").join(
-                username,
+    private void parseEncoded(final String encodedString) {
+        final byte[] bytes = decodeBase64Url(encodedString);
+        if(bytes.length > 0 && bytes[0] == VERSION_1) {
+            parse(new Cursor(bytes, 1));
+        } else {
+            parseLegacy(new String(bytes, UTF_8));
+        }
+    }
 
-                viewingEvaluationGranted,
-                viewingEvaluationCauseFeatureId != null? viewingEvaluationCauseFeatureId.getType(): "",
-                viewingEvaluationCauseFeatureId != null? viewingEvaluationCauseFeatureId.getFullyQualifiedName(): "",
-                viewingEvaluationCause != null? viewingEvaluationCause.getRule(): "",
-                viewingEvaluationCause != null? viewingEvaluationCause.getMode(): "",
+    private void parse(final Cursor in) {
+        this.username = readName(in);
+        final ApplicationFeatureType type = valueOf(FEATURE_TYPES, in.readUnsignedByte());
+        final String fullyQualifiedName = readName(in);
+        this.featureId = new ApplicationFeatureId(type, fullyQualifiedName);
+
+        int flags = in.readUnsignedByte();
+        this.viewingGranted = (flags & GRANTED) != 0;
+        if((flags & CAUSED) != 0) {
+            this.viewingFeatureId = readCauseFeatureId(in, flags, fullyQualifiedName);
+            this.viewingRule = valueOf(RULES, flags >> RULE_SHIFT & ENUM_MASK);
+            this.viewingMode = valueOf(MODES, flags >> MODE_SHIFT & ENUM_MASK);
+        }
 
-                changingEvaluationGranted,
-                changingEvaluationCauseFeatureId != null? changingEvaluationCauseFeatureId.getType(): "",
-                changingEvaluationCauseFeatureId != null? changingEvaluationCauseFeatureId.getFullyQualifiedName(): "",
-                changingEvaluationCause != null? changingEvaluationCause.getRule(): "",
-                changingEvaluationCause != null? changingEvaluationCause.getMode(): "",
+        flags = in.readUnsignedByte();
+        this.changingGranted = (flags & GRANTED) != 0;
+        if((flags & CAUSED) != 0) {
+            this.changingFeatureId = readCauseFeatureId(in, flags, fullyQualifiedName);
+            this.changingRule = valueOf(RULES, flags >> RULE_SHIFT & ENUM_MASK);
+            this.changingMode = valueOf(MODES, flags >> MODE_SHIFT & ENUM_MASK);
+        }
+    }
 
-                featureId.getType(), featureId.getFullyQualifiedName());
+    private static ApplicationFeatureId readCauseFeatureId(final Cursor in, final int flags, final String fullyQualifiedName) {
+        if((flags & CAUSE_NAMED) != 0) {
+            return readFeatureId(in);
+        }
+        final ApplicationFeatureType type = valueOf(FEATURE_TYPES, in.readUnsignedByte());
+        final int prefixLength = in.readUnsignedByte();
+        if(prefixLength > fullyQualifiedName.length()) {
+            throw new IllegalArgumentException("Invalid memento");
+        }
+        return new ApplicationFeatureId(type, fullyQualifiedName.substring(0, prefixLength));
     }
 
-    private void parseEncoded(final String encodedString) {
-        parse(base64UrlDecode(encodedString));
+    private static ApplicationFeatureId readFeatureId(final Cursor in) {
+        final ApplicationFeatureType type = valueOf(FEATURE_TYPES, in.readUnsignedByte());
+        return new ApplicationFeatureId(type, readName(in));
+    }
+
+    private static <E extends Enum<E>> E valueOf(final E[] values, final int ordinal) {
+        if(ordinal >= values.length) {
+            throw new IllegalArgumentException("Invalid memento");
+        }
+        return values[ordinal];
+    }
+
+    /**
+     * Reads the bytes of a {@link #VERSION_1} memento, rejecting any that is truncated.
+     */
+    private static class Cursor {
+        private final byte[] bytes;
+        private int position;
+
+        Cursor(final byte[] bytes, final int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        int readUnsignedByte() {
+            if(position >= bytes.length) {
+                throw new IllegalArgumentException("Invalid memento");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        int readUnsignedShort() {
+            return readUnsignedByte() << 8 | readUnsignedByte();
+        }
+
+        String readString(final int length) {
+            if(length > bytes.length - position) {
+                throw new IllegalArgumentException("Invalid memento");
+            }
+            final String string = new String(bytes, position, length, UTF_8);
+            position += length;
+            return string;
+        }
+    }
+
+    /*
+     * Mementos are decoded by hand, rather than by Guava's BaseEncoding, which (at a few hundred nanoseconds) would
+     * otherwise account for around a third of the time taken to parse.  Padding, as used by the legacy format, is
+     * accepted but not required.
+     */
+    private static final String BASE64_URL_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+    private static final byte[] BASE64_URL_DECODING = new byte[128];
+    static {
+        Arrays.fill(BASE64_URL_DECODING, (byte) -1);
+        for (int i = 0; i < BASE64_URL_ALPHABET.length(); i++) {
+            BASE64_URL_DECODING[BASE64_URL_ALPHABET.charAt(i)] = (byte) i;
+        }
+    }
+
+    private static byte[] decodeBase64Url(final String encoded) {
+        int length = encoded.length();
+        while(length > 0 && encoded.charAt(length - 1) == '=') {
+            length--;
+        }
+        if(length % 4 == 1) {
+            throw new IllegalArgumentException("Invalid memento");
+        }
+        final byte[] bytes = new byte[length * 6 / 8];
+        int buffer = 0;
+        int bufferedBits = 0;
+        int position = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = encoded.charAt(i);
+            final int value = c < BASE64_URL_DECODING.length ? BASE64_URL_DECODING[c] : -1;
+            if(value == -1) {
+                throw new IllegalArgumentException("Invalid memento");
+            }
+            buffer = buffer << 6 | value;
+            bufferedBits += 6;
+            if(bufferedBits >= 8) {
+                bufferedBits -= 8;
+                bytes[position++] = (byte) (buffer >> bufferedBits);
+                buffer &= (1 << bufferedBits) - 1;
+            }
+        }
+        return bytes;
+    }
+
+    /*
+     * Names (usernames and fully qualified names) are ordinarily made up of just the characters of this alphabet, so
+     * are packed at 6 bits per character (that is, a single character once base64 encoded), the top bit of their
+     * length marking them as such; any other name is written as UTF-8.
+     */
+    private static final String NAME_ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz.#";
+    private static final int PACKED = 0x8000;
+    private static final int MAX_NAME_LENGTH = 0x7FFF;
+
+    private static void writeName(final DataOutputStream out, final String name) throws IOException {
+        if(isPackable(name)) {
+            out.writeShort(PACKED | name.length());
+            int buffer = 0;
+            int bufferedBits = 0;
+            for (int i = 0; i < name.length(); i++) {
+                buffer = buffer << 6 | NAME_ALPHABET.indexOf(name.charAt(i));
+                bufferedBits += 6;
+                if(bufferedBits >= 8) {
+                    bufferedBits -= 8;
+                    out.writeByte(buffer >> bufferedBits);
+                    buffer &= (1 << bufferedBits) - 1;
+                }
+            }
+            if(bufferedBits > 0) {
+                out.writeByte(buffer << 8 - bufferedBits);
+            }
+        } else {
+            final byte[] bytes = name.getBytes(UTF_8);
+            if(bytes.length > MAX_NAME_LENGTH) {
+                throw new IllegalArgumentException("Name too long: " + name);
+            }
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
     }
 
-    private void parse(final String asString) {
+    private static boolean isPackable(final String name) {
+        if(name.length() > MAX_NAME_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if(NAME_ALPHABET.indexOf(name.charAt(i)) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String readName(final Cursor in) {
+        final int header = in.readUnsignedShort();
+        final int length = header & MAX_NAME_LENGTH;
+        if((header & PACKED) == 0) {
+            return in.readString(length);
+        }
+        final char[] chars = new char[length];
+        int buffer = 0;
+        int bufferedBits = 0;
+        for (int i = 0; i < length; i++) {
+            if(bufferedBits < 6) {
+                buffer = buffer << 8 | in.readUnsignedByte();
+                bufferedBits += 8;
+            }
+            bufferedBits -= 6;
+            chars[i] = NAME_ALPHABET.charAt(buffer >> bufferedBits);
+            buffer &= (1 << bufferedBits) - 1;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * The original format of memento, still accepted (eg from bookmarks).
+     */
+    private void parseLegacy(final String asString) {
         final Iterator<String> iterator = Splitter.on(":").split(asString).iterator();
 
         this.username = iterator.next();
@@ -206,16 +452,6 @@ private static ApplicationPermissionValue newPermissionValue(final ApplicationFe
         }
     }
 
-    private static String base64UrlDecode(final String str) {
-        final byte[] bytes = BaseEncoding.base64Url().decode(str);
-        return new String(bytes, Charset.forName("UTF-8"));
-    }
-
-    private static String base64UrlEncode(final String str) {
-        final byte[] bytes = str.getBytes(Charset.forName("UTF-8"));
-        return BaseEncoding.base64Url().encode(bytes);
-    }
-
     //endregion
 
     // //////////////////////////////////////
@@ -386,10 +622,18 @@ public static Function<ApplicationFeature, UserPermissionViewModel> asViewModel(
             return new Function<ApplicationFeature, UserPermissionViewModel>(){
                 @Override
                 public UserPermissionViewModel apply(final ApplicationFeature input) {
+                    return asViewModelOf(user, container).apply(input.getFeatureId());
+                }
+            };
+        }
+        public static Function<ApplicationFeatureId, UserPermissionViewModel> asViewModelOf(final ApplicationUser user, final DomainObjectContainer container) {
+            return new Function<ApplicationFeatureId, UserPermissionViewModel>(){
+                @Override
+                public UserPermissionViewModel apply(final ApplicationFeatureId input) {
                     final ApplicationPermissionValueSet permissionSet = user.getPermissionSet();
-                    final ApplicationPermissionValueSet.Evaluation changingEvaluation = permissionSet.evaluate(input.getFeatureId(), ApplicationPermissionMode.CHANGING);
-                    final ApplicationPermissionValueSet.Evaluation viewingEvaluation = permissionSet.evaluate(input.getFeatureId(), ApplicationPermissionMode.VIEWING);
-                    return UserPermissionViewModel.newViewModel(input.getFeatureId(), user, viewingEvaluation, changingEvaluation, container);
+                    final ApplicationPermissionValueSet.Evaluation changingEvaluation = permissionSet.evaluate(input, ApplicationPermissionMode.CHANGING);
+                    final ApplicationPermissionValueSet.Evaluation viewingEvaluation = permissionSet.evaluate(input, ApplicationPermissionMode.VIEWING);
+                    return UserPermissionViewModel.newViewModel(input, user, viewingEvaluation, changingEvaluation, container);
                 }
             };
         }
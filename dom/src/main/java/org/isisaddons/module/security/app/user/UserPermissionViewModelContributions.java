@@ -16,10 +16,12 @@
  */
 package org.isisaddons.module.security.app.user;
 
+import java.util.AbstractList;
+import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
 
-import com.google.common.base.Objects;
-import com.google.common.base.Predicate;
+import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 
@@ -61,6 +63,15 @@ public static abstract class ActionDomainEvent extends SecurityModule.ActionDoma
 
     public static class PermissionsDomainEvent extends CollectionDomainEvent<UserPermissionViewModel> {}
 
+    /**
+     * Every member of the metamodel, each {@link #asViewModelsOf(ApplicationUser, List) evaluated} when first accessed.
+     *
+     * <p>
+     *     Note that rendering {@link RenderType#LAZILY lazily} only defers this cost until the collection is expanded;
+     *     the viewer then adapts every element (not just those on the page shown), so every member is evaluated.  For
+     *     large metamodels, prefer {@link #pagePermissions(ApplicationUser, String, String, Integer, Integer)}.
+     * </p>
+     */
     @Action(
         semantics = SemanticsOf.SAFE
     )
@@ -72,7 +83,7 @@ public static class PermissionsDomainEvent extends CollectionDomainEvent<UserPer
     )
     @CollectionLayout(
             paged=50,
-            render = RenderType.EAGERLY
+            render = RenderType.LAZILY
     ) // when contributed
     @MemberOrder(sequence = "30")
     public List<UserPermissionViewModel> permissions(final ApplicationUser user) {
@@ -88,6 +99,10 @@ public List<UserPermissionViewModel> permissions(final ApplicationUser user) {
 
     public static class FilterPermissionsEvent extends ActionDomainEvent {}
 
+    /**
+     * The first {@link #MAX_PAGE_SIZE} of the user's permissions within the package (and, optionally, class); to see
+     * any beyond these, use {@link #pagePermissions(ApplicationUser, String, String, Integer, Integer)}.
+     */
     @Action(
             domainEvent = FilterPermissionsEvent.class,
             semantics = SemanticsOf.SAFE
@@ -100,28 +115,7 @@ public List<UserPermissionViewModel> filterPermissions(
             @Parameter(optionality = Optionality.OPTIONAL)
             @ParameterLayout(named="Class",  typicalLength=ApplicationFeature.TYPICAL_LENGTH_CLS_NAME)
             final String className) {
-        final java.util.Collection<ApplicationFeature> allMembers = applicationFeatureRepository.allMembers();
-        final Iterable<ApplicationFeature> filtered = Iterables.filter(allMembers, within(packageFqn, className));
-        return asViewModels(user, filtered);
-    }
-
-    Predicate<ApplicationFeature> within(final String packageFqn, final String className) {
-        return new Predicate<ApplicationFeature>() {
-            @Override
-            public boolean apply(final ApplicationFeature input) {
-                final ApplicationFeatureId inputFeatureId = input.getFeatureId();
-
-                // recursive match on package
-                final ApplicationFeatureId packageId = ApplicationFeatureId.newPackage(packageFqn);
-                final List<ApplicationFeatureId> pathIds = inputFeatureId.getPathIds();
-                if(!pathIds.contains(packageId)) {
-                    return false;
-                }
-
-                // match on class (if specified)
-                return className == null || Objects.equal(inputFeatureId.getClassName(), className);
-            }
-        };
+        return pagePermissions(user, packageFqn, className, 0, MAX_PAGE_SIZE);
     }
 
     /**
@@ -145,15 +139,132 @@ public List<String> choices2FilterPermissions(
 
     // //////////////////////////////////////
 
+    //region > pagePermissions (action)
+
+    public static class PagePermissionsEvent extends ActionDomainEvent {}
+
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * A single page of the user's permissions, optionally filtered (as per
+     * {@link #filterPermissions(ApplicationUser, String, String) filterPermissions}); only the members up to the end
+     * of the page are listed, and only those on the page are evaluated.
+     */
+    @Action(
+            domainEvent = PagePermissionsEvent.class,
+            semantics = SemanticsOf.SAFE
+    )
+    @MemberOrder(sequence = "2", name="permissions")
+    public List<UserPermissionViewModel> pagePermissions(
+            final ApplicationUser user,
+            @Parameter(optionality = Optionality.OPTIONAL)
+            @ParameterLayout(named="Package", typicalLength=ApplicationFeature.TYPICAL_LENGTH_PKG_FQN)
+            final String packageFqn,
+            @Parameter(optionality = Optionality.OPTIONAL)
+            @ParameterLayout(named="Class",  typicalLength=ApplicationFeature.TYPICAL_LENGTH_CLS_NAME)
+            final String className,
+            @ParameterLayout(named="Offset")
+            final Integer offset,
+            @ParameterLayout(named="Page size")
+            final Integer pageSize) {
+        final List<ApplicationFeatureId> memberIds =
+                applicationFeatureRepository.memberIdsWithin(packageFqn, className, offset, pageSize);
+        if(memberIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return asViewModelsOf(user, memberIds);
+    }
+
+    public List<String> choices1PagePermissions() {
+        return choices1FilterPermissions();
+    }
+
+    public List<String> choices2PagePermissions(
+            final ApplicationUser user,
+            final String packageFqn) {
+        return packageFqn != null
+                ? choices2FilterPermissions(user, packageFqn)
+                : Collections.<String>emptyList();
+    }
+
+    public Integer default3PagePermissions() {
+        return 0;
+    }
+
+    public Integer default4PagePermissions() {
+        return DEFAULT_PAGE_SIZE;
+    }
+
+    public String validatePagePermissions(
+            final ApplicationUser user,
+            final String packageFqn,
+            final String className,
+            final Integer offset,
+            final Integer pageSize) {
+        if(offset < 0) {
+            return "Offset cannot be negative";
+        }
+        if(pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            return "Page size must be between 1 and " + MAX_PAGE_SIZE;
+        }
+        return null;
+    }
+
+    //endregion
+
+    // //////////////////////////////////////
+
     //region > helpers
+    /**
+     * As {@link #asViewModelsOf(ApplicationUser, List)}.
+     */
     List<UserPermissionViewModel> asViewModels(
             final ApplicationUser user,
             final Iterable<ApplicationFeature> features) {
-        return Lists.newArrayList(
-                Iterables.transform(
-                        features,
-                        UserPermissionViewModel.Functions.asViewModel(user, container))
-        );
+        return asViewModelsOf(user, Lists.newArrayList(Iterables.transform(features, ApplicationFeature.Functions.GET_ID)));
+    }
+
+    /**
+     * Evaluated lazily, as each element is first accessed (and so only for those accessed), and then remembered.
+     */
+    List<UserPermissionViewModel> asViewModelsOf(
+            final ApplicationUser user,
+            final List<ApplicationFeatureId> featureIds) {
+        return new LazyList<>(featureIds, UserPermissionViewModel.Functions.asViewModelOf(user, container));
+    }
+
+    /**
+     * As {@link Lists#transform(List, Function)}, but applying the function at most once per element, rather than on
+     * every access.
+     */
+    static class LazyList<F, T> extends AbstractList<T> implements RandomAccess {
+
+        private final List<F> fromList;
+        private final Function<? super F, ? extends T> function;
+        private final Object[] elements;
+
+        LazyList(final List<F> fromList, final Function<? super F, ? extends T> function) {
+            this.fromList = fromList;
+            this.function = function;
+            this.elements = new Object[fromList.size()];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(final int index) {
+            Object element = elements[index];
+            if(element == null) {
+                element = function.apply(fromList.get(index));
+                elements[index] = element;
+            }
+            return (T) element;
+        }
+
+        @Override
+        public int size() {
+            return elements.length;
+        }
     }
     //endregion
 
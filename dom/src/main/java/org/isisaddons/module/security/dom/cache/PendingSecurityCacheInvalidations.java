@@ -0,0 +1,82 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.cache;
+
+import java.util.Set;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+
+import com.google.common.collect.Sets;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+
+/**
+ * Collects the roles and users affected by the current interaction on behalf of the
+ * {@link SecurityCacheInvalidationService}.
+ *
+ * <p>
+ *     Isis ends the request (calling {@link #onRequestEnd()}) once the transaction has ended, so the caches cannot
+ *     be repopulated with uncommitted state by some other (concurrent) interaction.  Note though that the request is
+ *     ended whether the transaction committed or not: a change that is rolled back (or fails to commit) still
+ *     invalidates the caches, which is harmless, merely causing the affected entries to be rebuilt.
+ * </p>
+ */
+@DomainService(
+        nature = NatureOfService.DOMAIN
+)
+@RequestScoped
+public class PendingSecurityCacheInvalidations {
+
+    private final Set<String> roleNames = Sets.newTreeSet();
+    private final Set<String> usernames = Sets.newTreeSet();
+
+    @Programmatic
+    public void addRoleName(final String roleName) {
+        if(roleName != null) {
+            roleNames.add(roleName);
+        }
+    }
+
+    @Programmatic
+    public void addUsername(final String username) {
+        if(username != null) {
+            usernames.add(username);
+        }
+    }
+
+    @Programmatic
+    @PreDestroy
+    public void onRequestEnd() {
+        if(roleNames.isEmpty() && usernames.isEmpty()) {
+            return;
+        }
+        securityCacheInvalidationService.invalidate(
+                new SecurityCacheInvalidationService.Invalidation(roleNames, usernames));
+        roleNames.clear();
+        usernames.clear();
+    }
+
+    //region  > (injected)
+    @Inject
+    SecurityCacheInvalidationService securityCacheInvalidationService;
+    //endregion
+
+}
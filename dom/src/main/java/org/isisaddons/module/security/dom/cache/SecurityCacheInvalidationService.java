@@ -0,0 +1,271 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.cache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.eventbus.Subscribe;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.eventbus.AbstractDomainEvent;
+import org.apache.isis.applib.services.eventbus.EventBusService;
+
+import org.isisaddons.module.security.dom.permission.ApplicationPermission;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSetCache;
+import org.isisaddons.module.security.dom.role.ApplicationRole;
+import org.isisaddons.module.security.dom.tenancy.ApplicationTenancy;
+import org.isisaddons.module.security.dom.user.ApplicationUser;
+
+/**
+ * Subscribes to the domain events of {@link ApplicationRole}, {@link ApplicationPermission}, {@link ApplicationUser}
+ * and {@link ApplicationTenancy} that can change authorization decisions, and - once the transaction has ended -
+ * evicts the affected entries from the module's long-lived caches.
+ *
+ * <p>
+ *     The roles and users affected by an interaction are noted (while the action is
+ *     {@link AbstractDomainEvent.Phase#EXECUTING executing}, so that the values from before the change are captured)
+ *     by the request-scoped {@link PendingSecurityCacheInvalidations}, which calls {@link #invalidate(Invalidation)}
+ *     when the transaction ends.  This is so whether or not it commits, so the caches may be invalidated needlessly
+ *     (but harmlessly) for a change that is rolled back.
+ * </p>
+ *
+ * <p>
+ *     Invalidation evicts the {@link ApplicationPermissionValueSetCache permission sets} of every combination of roles
+ *     that includes an affected role, and is then passed on to each registered {@link Listener}.  The Shiro realm
+ *     registers a listener so that it can refresh the permissions (and discard the memoized decisions) of the
+ *     principals of affected users.
+ * </p>
+ */
+@DomainService(
+        nature = NatureOfService.DOMAIN
+)
+public class SecurityCacheInvalidationService {
+
+    //region > init, shutdown
+    @Programmatic
+    @PostConstruct
+    public void init() {
+        eventBusService.register(this);
+    }
+
+    @Programmatic
+    @PreDestroy
+    public void shutdown() {
+        eventBusService.unregister(this);
+    }
+    //endregion
+
+    //region > on (event subscribers)
+
+    @Programmatic
+    @Subscribe
+    public void on(final ApplicationRole.ActionDomainEvent ev) {
+        if(ev.getEventPhase() != AbstractDomainEvent.Phase.EXECUTING ||
+           ev instanceof ApplicationRole.UpdateDescriptionDomainEvent) {
+            return;
+        }
+        if(ev instanceof ApplicationRole.AddUserDomainEvent || ev instanceof ApplicationRole.RemoveUserDomainEvent) {
+            // the role's permissions are unchanged, but the user's roles are not
+            addUsername(argumentOf(ev, 0, ApplicationUser.class));
+            return;
+        }
+        // the role's permissions (or its name, by which permission sets are cached) are changing,
+        // or it is being deleted
+        addRoleName(ev.getSource());
+    }
+
+    @Programmatic
+    @Subscribe
+    public void on(final ApplicationPermission.ActionDomainEvent ev) {
+        if(ev.getEventPhase() != AbstractDomainEvent.Phase.EXECUTING) {
+            return;
+        }
+        // rule, mode or role are changing, or the permission is being deleted
+        addRoleName(ev.getSource().getRole());
+        if(ev instanceof ApplicationPermission.UpdateRoleDomainEvent) {
+            addRoleName(argumentOf(ev, 0, ApplicationRole.class));
+        }
+    }
+
+    @Programmatic
+    @Subscribe
+    public void on(final ApplicationUser.ActionDomainEvent ev) {
+        if(ev.getEventPhase() != AbstractDomainEvent.Phase.EXECUTING ||
+           ev instanceof ApplicationUser.UpdateNameDomainEvent ||
+           ev instanceof ApplicationUser.UpdateEmailAddressDomainEvent ||
+           ev instanceof ApplicationUser.UpdatePhoneNumberDomainEvent ||
+           ev instanceof ApplicationUser.UpdateFaxNumberDomainEvent) {
+            return;
+        }
+        // roles, tenancy, status, account type, password or username are changing, or the user is being deleted
+        addUsername(ev.getSource());
+    }
+
+    @Programmatic
+    @Subscribe
+    public void on(final ApplicationTenancy.ActionDomainEvent ev) {
+        if(ev.getEventPhase() != AbstractDomainEvent.Phase.EXECUTING) {
+            return;
+        }
+        // no cache is keyed by tenancy; only a change to a user's tenancy is of interest
+        if(ev instanceof ApplicationTenancy.AddUserDomainEvent || ev instanceof ApplicationTenancy.RemoveUserDomainEvent) {
+            addUsername(argumentOf(ev, 0, ApplicationUser.class));
+        }
+    }
+
+    private void addRoleName(final ApplicationRole role) {
+        if(role != null) {
+            pendingSecurityCacheInvalidations.addRoleName(role.getName());
+        }
+    }
+
+    private void addUsername(final ApplicationUser user) {
+        if(user != null) {
+            pendingSecurityCacheInvalidations.addUsername(user.getUsername());
+        }
+    }
+
+    private static <T> T argumentOf(
+            final org.apache.isis.applib.services.eventbus.ActionDomainEvent<?> ev,
+            final int index,
+            final Class<T> type) {
+        final List<Object> arguments = ev.getArguments();
+        if(arguments == null || arguments.size() <= index) {
+            return null;
+        }
+        final Object argument = arguments.get(index);
+        return type.isInstance(argument) ? type.cast(argument) : null;
+    }
+
+    //endregion
+
+    //region > invalidate
+
+    /**
+     * Evicts the entries affected by a change (once its transaction has ended), and notifies the registered
+     * {@link Listener}s.
+     */
+    @Programmatic
+    public void invalidate(final Invalidation invalidation) {
+        if(invalidation.isEmpty()) {
+            return;
+        }
+        if(applicationPermissionValueSetCache != null) {
+            for (final String roleName : invalidation.getRoleNames()) {
+                applicationPermissionValueSetCache.invalidate(roleName);
+            }
+        }
+        for (final Listener listener : listeners) {
+            listener.invalidated(invalidation);
+        }
+    }
+
+    //endregion
+
+    //region > Invalidation
+
+    /**
+     * The roles and users affected by a change.
+     */
+    public static class Invalidation {
+
+        private final Set<String> roleNames;
+        private final Set<String> usernames;
+
+        public Invalidation(
+                final Set<String> roleNames,
+                final Set<String> usernames) {
+            this.roleNames = ImmutableSortedSet.copyOf(roleNames);
+            this.usernames = ImmutableSortedSet.copyOf(usernames);
+        }
+
+        /**
+         * Roles whose permissions (or name) have changed, or which have been deleted.
+         */
+        public Set<String> getRoleNames() {
+            return roleNames;
+        }
+
+        /**
+         * Users whose roles, tenancy, status, account type, password or username have changed, or which have been
+         * deleted.
+         */
+        public Set<String> getUsernames() {
+            return usernames;
+        }
+
+        public boolean isEmpty() {
+            return roleNames.isEmpty() && usernames.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "Invalidation{roleNames=" + roleNames + ", usernames=" + usernames + "}";
+        }
+    }
+
+    //endregion
+
+    //region > Listener
+
+    /**
+     * Implemented by caches that are not themselves domain services (for example, held by the Shiro realm) in order
+     * to be told which of their entries to evict.
+     */
+    public interface Listener {
+        void invalidated(Invalidation invalidation);
+    }
+
+    private final Set<Listener> listeners = new CopyOnWriteArraySet<>();
+
+    @Programmatic
+    public void addListener(final Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Programmatic
+    public void removeListener(final Listener listener) {
+        listeners.remove(listener);
+    }
+
+    @Programmatic
+    public Set<Listener> getListeners() {
+        return Collections.unmodifiableSet(listeners);
+    }
+
+    //endregion
+
+    //region  > (injected)
+    @Inject
+    EventBusService eventBusService;
+    @Inject
+    PendingSecurityCacheInvalidations pendingSecurityCacheInvalidations;
+    @Inject
+    ApplicationPermissionValueSetCache applicationPermissionValueSetCache;
+    //endregion
+
+}
@@ -20,6 +20,7 @@
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 
@@ -32,6 +33,11 @@
 /**
  * Canonical application feature, identified by {@link org.isisaddons.module.security.dom.feature.ApplicationFeatureId},
  * and wired together with other application features and cached by {@link org.isisaddons.module.security.dom.feature.ApplicationFeatures}.
+ *
+ * <p>
+ *     Once all of its contents (or members) have been added, the feature is {@link #freeze() frozen} into a compact
+ *     form, because the catalog holds a feature for every package, class and member of the metamodel.
+ * </p>
  */
 public class ApplicationFeature implements Comparable<ApplicationFeature> {
 
@@ -149,36 +155,54 @@ public void setDerived(final Boolean derived) {
     // //////////////////////////////////////
 
     //region > propertyMaxLength (properties only)
-    private Integer propertyMaxLength;
+
+    // held unboxed, with a flag for whether specified (rather than as a possibly null Integer)
+    private static final byte MAX_LENGTH_SPECIFIED = 1;
+    private static final byte TYPICAL_LENGTH_SPECIFIED = 1 << 1;
+
+    private byte lengthsSpecified;
+    private int propertyMaxLength;
 
     /**
      * Only for {@link org.isisaddons.module.security.dom.feature.ApplicationMemberType#ACTION action}s.
      */
     @Programmatic
     public Integer getPropertyMaxLength() {
-        return propertyMaxLength;
+        return (lengthsSpecified & MAX_LENGTH_SPECIFIED) != 0 ? Integer.valueOf(propertyMaxLength) : null;
     }
 
     public void setPropertyMaxLength(final Integer propertyMaxLength) {
-        this.propertyMaxLength = propertyMaxLength;
+        if(propertyMaxLength != null) {
+            this.propertyMaxLength = propertyMaxLength;
+            this.lengthsSpecified |= MAX_LENGTH_SPECIFIED;
+        } else {
+            this.propertyMaxLength = 0;
+            this.lengthsSpecified &= ~MAX_LENGTH_SPECIFIED;
+        }
     }
     //endregion
 
     // //////////////////////////////////////
 
     //region > propertyTypicalLength (properties only)
-    private Integer propertyTypicalLength;
+    private int propertyTypicalLength;
 
     /**
      * Only for {@link org.isisaddons.module.security.dom.feature.ApplicationMemberType#ACTION action}s.
      */
     @Programmatic
     public Integer getPropertyTypicalLength() {
-        return propertyTypicalLength;
+        return (lengthsSpecified & TYPICAL_LENGTH_SPECIFIED) != 0 ? Integer.valueOf(propertyTypicalLength) : null;
     }
 
     public void setPropertyTypicalLength(final Integer propertyTypicalLength) {
-        this.propertyTypicalLength = propertyTypicalLength;
+        if(propertyTypicalLength != null) {
+            this.propertyTypicalLength = propertyTypicalLength;
+            this.lengthsSpecified |= TYPICAL_LENGTH_SPECIFIED;
+        } else {
+            this.propertyTypicalLength = 0;
+            this.lengthsSpecified &= ~TYPICAL_LENGTH_SPECIFIED;
+        }
     }
     //endregion
 
@@ -203,7 +227,7 @@ public void setActionSemantics(final ActionSemantics.Of actionSemantics) {
     // //////////////////////////////////////
 
     //region > packages: Contents
-    private final SortedSet<ApplicationFeatureId> contents = Sets.newTreeSet();
+    private volatile SortedSet<ApplicationFeatureId> contents = ImmutableSortedSet.of();
 
     @Programmatic
     public SortedSet<ApplicationFeatureId> getContents() {
@@ -215,14 +239,14 @@ public SortedSet<ApplicationFeatureId> getContents() {
     public void addToContents(final ApplicationFeatureId contentId) {
         ApplicationFeatureType.ensurePackage(this.getFeatureId());
         ApplicationFeatureType.ensurePackageOrClass(contentId);
-        this.contents.add(contentId);
+        this.contents = addTo(this.contents, contentId);
     }
     //endregion
 
     // //////////////////////////////////////
 
     //region > classes: Properties, Collections, Actions
-    private final SortedSet<ApplicationFeatureId> properties = Sets.newTreeSet();
+    private volatile SortedSet<ApplicationFeatureId> properties = ImmutableSortedSet.of();
 
     @Programmatic
     public SortedSet<ApplicationFeatureId> getProperties() {
@@ -231,7 +255,7 @@ public SortedSet<ApplicationFeatureId> getProperties() {
     }
 
 
-    private final SortedSet<ApplicationFeatureId> collections = Sets.newTreeSet();
+    private volatile SortedSet<ApplicationFeatureId> collections = ImmutableSortedSet.of();
     @Programmatic
     public SortedSet<ApplicationFeatureId> getCollections() {
         ApplicationFeatureType.ensureClass(this.getFeatureId());
@@ -239,7 +263,7 @@ public SortedSet<ApplicationFeatureId> getCollections() {
     }
 
 
-    private final SortedSet<ApplicationFeatureId> actions = Sets.newTreeSet();
+    private volatile SortedSet<ApplicationFeatureId> actions = ImmutableSortedSet.of();
 
     @Programmatic
     public SortedSet<ApplicationFeatureId> getActions() {
@@ -252,7 +276,17 @@ public void addToMembers(final ApplicationFeatureId memberId, final ApplicationM
         ApplicationFeatureType.ensureClass(this.getFeatureId());
         ApplicationFeatureType.ensureMember(memberId);
 
-        membersOf(memberType).add(memberId);
+        switch (memberType) {
+            case PROPERTY:
+                properties = addTo(properties, memberId);
+                break;
+            case COLLECTION:
+                collections = addTo(collections, memberId);
+                break;
+            default: // case ACTION:
+                actions = addTo(actions, memberId);
+                break;
+        }
     }
 
     @Programmatic
@@ -271,6 +305,56 @@ public SortedSet<ApplicationFeatureId> membersOf(final ApplicationMemberType mem
 
     // //////////////////////////////////////
 
+    //region > freeze
+
+    /**
+     * Replaces the {@link #getContents() contents} (of a package) or the {@link #membersOf(ApplicationMemberType) members}
+     * (of a class) with immutable sorted sets, backed by an array; those that are empty are replaced by a single shared
+     * instance.
+     *
+     * <p>
+     *     Once frozen, the feature may be read concurrently (as it is when the catalog is
+     *     {@link ApplicationFeatures#isLazy() lazy}, and so adds to the features of packages already returned).  Each
+     *     subsequent add therefore replaces the affected set with a new immutable set, leaving unchanged any set
+     *     previously returned.
+     * </p>
+     */
+    @Programmatic
+    public void freeze() {
+        contents = frozen(contents);
+        properties = frozen(properties);
+        collections = frozen(collections);
+        actions = frozen(actions);
+        frozen = true;
+    }
+
+    /**
+     * Until {@link #freeze() frozen}, the feature is being built (by a single thread) and so its sets are added to in
+     * place.
+     */
+    private volatile boolean frozen;
+
+    private static SortedSet<ApplicationFeatureId> frozen(final SortedSet<ApplicationFeatureId> featureIds) {
+        return featureIds instanceof ImmutableSortedSet ? featureIds : ImmutableSortedSet.copyOfSorted(featureIds);
+    }
+
+    private SortedSet<ApplicationFeatureId> addTo(
+            final SortedSet<ApplicationFeatureId> featureIds, final ApplicationFeatureId featureId) {
+        if(featureIds.contains(featureId)) {
+            return featureIds;
+        }
+        if(frozen) {
+            return ImmutableSortedSet.<ApplicationFeatureId>naturalOrder().addAll(featureIds).add(featureId).build();
+        }
+        final SortedSet<ApplicationFeatureId> mutableFeatureIds =
+                featureIds instanceof ImmutableSortedSet ? Sets.newTreeSet(featureIds) : featureIds;
+        mutableFeatureIds.add(featureId);
+        return mutableFeatureIds;
+    }
+    //endregion
+
+    // //////////////////////////////////////
+
     //region > Functions
 
     public static class Functions {
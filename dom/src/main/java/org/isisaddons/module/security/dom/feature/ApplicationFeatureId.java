@@ -26,6 +26,9 @@
 import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
 import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Lists;
 import com.google.common.io.BaseEncoding;
 import org.apache.isis.applib.annotation.Programmatic;
@@ -39,6 +42,12 @@
  *     This value is {@link java.lang.Comparable}, the implementation of which considers {@link #getType() (feature) type},
  *     {@link #getPackageName() package name}, {@link #getClassName() class name} and {@link #getMemberName() member name}.
  * </p>
+ *
+ * <p>
+ *     Ids can be {@link #intern() interned}, returning a canonical instance that is shared by all equal ids and that
+ *     has its {@link #getFullyQualifiedName() fully qualified name}, {@link #hashCode() hash code} and
+ *     {@link #getPathIds() path} (of canonical parents) precomputed.
+ * </p>
  */
 public class ApplicationFeatureId implements Comparable<ApplicationFeatureId>, Serializable {
 
@@ -153,8 +162,18 @@ public String title() {
 
     //region > fullyQualifiedName (property)
 
+    private transient String fullyQualifiedName;
+
     @Programmatic
     public String getFullyQualifiedName() {
+        String fullyQualifiedName = this.fullyQualifiedName;
+        if(fullyQualifiedName == null) {
+            this.fullyQualifiedName = fullyQualifiedName = fullyQualifiedNameOf();
+        }
+        return fullyQualifiedName;
+    }
+
+    private String fullyQualifiedNameOf() {
         final StringBuilder buf = new StringBuilder();
         buf.append(getPackageName());
         if(getClassName() != null) {
@@ -189,7 +208,9 @@ public String getPackageName() {
     }
 
     void setPackageName(final String packageName) {
+        ensureNotInterned();
         this.packageName = packageName;
+        resetDerived();
     }
     //endregion
 
@@ -205,7 +226,9 @@ public String getClassName() {
     }
 
     void setClassName(final String className) {
+        ensureNotInterned();
         this.className = className;
+        resetDerived();
     }
     //endregion
 
@@ -220,7 +243,9 @@ public String getMemberName() {
     }
 
     void setMemberName(final String memberName) {
+        ensureNotInterned();
         this.memberName = memberName;
+        resetDerived();
     }
     //endregion
 
@@ -236,6 +261,10 @@ void setMemberName(final String memberName) {
     public ApplicationFeatureId getParentPackageId() {
         ApplicationFeatureType.ensurePackageOrClass(this);
 
+        if(interned) {
+            return parentId;
+        }
+
         if(type == ApplicationFeatureType.CLASS) {
             return ApplicationFeatureId.newPackage(getPackageName());
         } else {
@@ -266,6 +295,9 @@ public ApplicationFeatureId getParentPackageId() {
      */
     public ApplicationFeatureId getParentClassId() {
         ApplicationFeatureType.ensureMember(this);
+        if(interned) {
+            return parentId;
+        }
         final String classFqn = this.getPackageName() + "." + getClassName();
         return newClass(classFqn);
     }
@@ -384,11 +416,17 @@ public int compare(final ApplicationFeatureId o1, final ApplicationFeatureId o2)
 
     @Programmatic
     public List<ApplicationFeatureId> getPathIds() {
+        if(interned) {
+            return pathIds;
+        }
         return pathIds(this);
     }
 
     @Programmatic
     public List<ApplicationFeatureId> getParentIds() {
+        if(interned) {
+            return pathIds.subList(1, pathIds.size());
+        }
         return pathIds(getParentId());
     }
 
@@ -412,13 +450,131 @@ private static List<ApplicationFeatureId> appendParents(final ApplicationFeature
 
     // //////////////////////////////////////
 
+    //region > intern
+
+    private static final Interner<ApplicationFeatureId> INTERNER = Interners.newWeakInterner();
+
+    /**
+     * Whether this id has its {@link #parentId} and {@link #pathIds} precomputed (by {@link #intern()}).
+     */
+    private transient volatile boolean interned;
+    private transient ApplicationFeatureId parentId;
+    private transient ImmutableList<ApplicationFeatureId> pathIds;
+
+    /**
+     * Returns the canonical instance equal to this id, with its derived state precomputed.
+     *
+     * <p>
+     *     The canonical instances are weakly held, so remain shared for as long as something (eg the
+     *     {@link ApplicationFeatures} catalog, or a cached permission) still refers to them.
+     * </p>
+     */
+    @Programmatic
+    public ApplicationFeatureId intern() {
+        if(interned) {
+            return this;
+        }
+        final ApplicationFeatureId canonical = INTERNER.intern(this);
+        if(!canonical.interned) {
+            final ApplicationFeatureId parentId = canonical.getParentId();
+            canonical.populateInterned(parentId != null ? parentId.intern() : null);
+        }
+        return canonical;
+    }
+
+    /**
+     * The canonical id of a member of the specified (canonical) class; as {@link #intern() interning}
+     * {@link #newMember(String, String)}, but without first creating (and interning) the class' id again.
+     */
+    static ApplicationFeatureId newMemberInterned(final ApplicationFeatureId internedClassId, final String memberName) {
+        final ApplicationFeatureId featureId = new ApplicationFeatureId(ApplicationFeatureType.MEMBER);
+        featureId.setPackageName(internedClassId.getPackageName());
+        featureId.setClassName(internedClassId.getClassName());
+        featureId.setMemberName(memberName);
+        final ApplicationFeatureId canonical = INTERNER.intern(featureId);
+        if(!canonical.interned) {
+            canonical.populateInterned(internedClassId);
+        }
+        return canonical;
+    }
+
+    /**
+     * Precomputes the derived state of the canonical instance (only); idempotent, should several threads obtain the
+     * instance from the interner before its state has been published.
+     */
+    private synchronized void populateInterned(final ApplicationFeatureId internedParentId) {
+        if(interned) {
+            return;
+        }
+        final ImmutableList.Builder<ApplicationFeatureId> pathIds = ImmutableList.builder();
+        pathIds.add(this);
+        if(internedParentId != null) {
+            pathIds.addAll(internedParentId.pathIds);
+        }
+        this.parentId = internedParentId;
+        this.pathIds = pathIds.build();
+        getFullyQualifiedName();
+        hashCode();
+        this.interned = true;
+    }
+
+    /**
+     * Ids are only modified while being initialized; an interned id is shared, so must never change.
+     */
+    private void ensureNotInterned() {
+        if(interned) {
+            throw new IllegalStateException("Cannot modify an interned id: " + this);
+        }
+    }
+
+    private void resetDerived() {
+        this.fullyQualifiedName = null;
+        this.hashCode = 0;
+    }
+
+    //endregion
+
+    // //////////////////////////////////////
+
     //region > equals, hashCode, compareTo, toString
 
     private final static String propertyNames = "type, packageName, className, memberName";
 
+    /**
+     * Hand-written equivalent of <tt>ObjectContracts.compare(this, other, propertyNames)</tt>, avoiding reflection
+     * because this is called for every insertion into and lookup from the many sorted collections of feature ids.
+     */
     @Override
     public int compareTo(final ApplicationFeatureId other) {
-        return ObjectContracts.compare(this, other, propertyNames);
+        if(this == other) {
+            return 0;
+        }
+        int result = compareNullsFirst(type, other.type);
+        if(result != 0) {
+            return result;
+        }
+        result = compareNullsFirst(packageName, other.packageName);
+        if(result != 0) {
+            return result;
+        }
+        result = compareNullsFirst(className, other.className);
+        if(result != 0) {
+            return result;
+        }
+        return compareNullsFirst(memberName, other.memberName);
+    }
+
+    private static <T extends Comparable<T>> int compareNullsFirst(final T left, final T right) {
+        if(left == right) {
+            return 0;
+        }
+        if(left == null) {
+            return -1;
+        }
+        if(right == null) {
+            return 1;
+        }
+        return left.compareTo(right);
     }
 
     @Override
@@ -432,6 +588,7 @@ public boolean equals(final Object o) {
 
         final ApplicationFeatureId that = (ApplicationFeatureId) o;
 
+        if (hashCode() != that.hashCode()) return false;
         if (className != null ? !className.equals(that.className) : that.className != null) return false;
         if (memberName != null ? !memberName.equals(that.memberName) : that.memberName != null) return false;
         if (packageName != null ? !packageName.equals(that.packageName) : that.packageName != null) return false;
@@ -439,8 +596,18 @@ public boolean equals(final Object o) {
 
     }
 
+    private transient int hashCode;
+
     @Override
     public int hashCode() {
+        int hashCode = this.hashCode;
+        if(hashCode == 0) {
+            this.hashCode = hashCode = hashCodeOf();
+        }
+        return hashCode;
+    }
+
+    private int hashCodeOf() {
         // not using because trying to be efficient.  Premature optimization?
         // return ObjectContracts.hashCode(this, propertyNames);
         int result = type != null ? type.hashCode() : 0;
@@ -0,0 +1,403 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.feature;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+import org.apache.isis.applib.annotation.ActionSemantics;
+import org.apache.isis.core.metamodel.spec.ObjectSpecification;
+
+import org.isisaddons.module.security.dom.feature.ApplicationFeatures.ScannedClass;
+import org.isisaddons.module.security.dom.feature.ApplicationFeatures.ScannedMember;
+
+/**
+ * A snapshot of the {@link ApplicationFeatures feature catalog}, persisted in a compact binary file so that it can be
+ * loaded on startup instead of scanning the metamodel.
+ *
+ * <p>
+ *     The snapshot is keyed by a {@link #keyOf(List, List, Map) hash} of the registered services, of the
+ *     specifications (including the definitions and layouts of their classes) and of the configuration; a snapshot written
+ *     for any other key (or in any other version of the format) is ignored, as is one that cannot be read.  The file
+ *     is written to a temporary file that is then moved into place, so concurrently starting nodes never see a
+ *     partially written snapshot.
+ * </p>
+ *
+ * <p>
+ *     The format is: a header (magic number, format version and key), a table of the distinct strings (UTF-8), and
+ *     then each class with its members, with every name held as an index into the string table.
+ * </p>
+ */
+class ApplicationFeatureSnapshot {
+
+    private static final int MAGIC = 0x49534643; // "ISFC"
+    static final short VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int NONE = -1;
+
+    private static final int CONTRIBUTED = 1;
+    private static final int DERIVED_SPECIFIED = 1 << 1;
+    private static final int DERIVED = 1 << 2;
+    private static final int MAX_LENGTH_SPECIFIED = 1 << 3;
+    private static final int TYPICAL_LENGTH_SPECIFIED = 1 << 4;
+
+    private final Path file;
+    private final byte[] key;
+
+    ApplicationFeatureSnapshot(final Path file, final byte[] key) {
+        this.file = file;
+        this.key = key;
+    }
+
+    //region > keyOf
+
+    /**
+     * A hash of the registered services and of the specifications, along with the definitions of their classes (and
+     * superclasses) and any <tt>.layout.xml</tt> or <tt>.layout.json</tt> files alongside them, and of the
+     * <tt>isis.</tt>-prefixed configuration properties (other than those of the catalog itself); each of these can change which members are in the metamodel,
+     * or whether they are contributed.
+     *
+     * <p>
+     *     A class (or layout) is identified by the CRC of its file if loaded from a jar, else by the contents of its
+     *     file, or (for classes with no class file, eg generated at runtime) by the signatures of its methods; rather
+     *     than reflecting over every member, which would cost about as much as scanning the metamodel.
+     * </p>
+     *
+     * <p>
+     *     Anything else that changes the metamodel (for example, a programmatic facet factory whose behaviour depends on
+     *     some other resource) is not detected; the snapshot file should then be deleted whenever that changes.
+     * </p>
+     */
+    static byte[] keyOf(
+            final List<Object> services,
+            final List<ObjectSpecification> specifications,
+            final Map<String, String> configuration) {
+        final Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putShort(VERSION);
+
+        final Map<String, String> isisConfiguration = Maps.newTreeMap();
+        for (final Map.Entry<String, String> entry : configuration.entrySet()) {
+            if(entry.getKey().startsWith(CONFIGURATION_PREFIX) &&
+               !entry.getKey().startsWith(REPOSITORY_CONFIGURATION_PREFIX) &&
+               entry.getValue() != null) {
+                isisConfiguration.put(entry.getKey(), entry.getValue());
+            }
+        }
+        hasher.putInt(isisConfiguration.size());
+        for (final Map.Entry<String, String> entry : isisConfiguration.entrySet()) {
+            putString(hasher, entry.getKey());
+            putString(hasher, entry.getValue());
+        }
+
+        final Map<String, Class<?>> serviceClassByName = Maps.newTreeMap();
+        for (final Object service : services) {
+            serviceClassByName.put(service.getClass().getName(), service.getClass());
+        }
+        final Map<String, Class<?>> classByIdentifier = Maps.newTreeMap();
+        for (final ObjectSpecification specification : specifications) {
+            classByIdentifier.put(specification.getFullIdentifier(), specification.getCorrespondingClass());
+        }
+
+        final Set<Class<?>> hashed = Sets.newHashSet();
+        putClasses(hasher, serviceClassByName, hashed);
+        putClasses(hasher, classByIdentifier, hashed);
+        return hasher.hash().asBytes();
+    }
+
+    private static void putClasses(final Hasher hasher, final Map<String, Class<?>> classByName, final Set<Class<?>> hashed) {
+        hasher.putInt(classByName.size());
+        for (final Map.Entry<String, Class<?>> entry : classByName.entrySet()) {
+            putString(hasher, entry.getKey());
+            for (Class<?> cls = entry.getValue(); cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+                if(hashed.add(cls)) {
+                    putClass(hasher, cls);
+                }
+            }
+        }
+    }
+
+    private static final String CONFIGURATION_PREFIX = "isis.";
+    /**
+     * The settings of the catalog itself (such as the location of the snapshot) do not change the metamodel.
+     */
+    private static final String REPOSITORY_CONFIGURATION_PREFIX = "isis.ext.security.ApplicationFeatureRepository.";
+    private static final String[] LAYOUT_SUFFIXES = { ".layout.xml", ".layout.json" };
+
+    private static void putClass(final Hasher hasher, final Class<?> cls) {
+        putString(hasher, cls.getName());
+        for (final String layoutSuffix : LAYOUT_SUFFIXES) {
+            final URL layoutFile = cls.getResource(cls.getSimpleName() + layoutSuffix);
+            hasher.putBoolean(layoutFile != null && putFile(hasher, layoutFile));
+        }
+        final URL classFile = cls.getResource("/" + cls.getName().replace('.', '/') + ".class");
+        if(classFile != null && putFile(hasher, classFile)) {
+            return;
+        }
+        final List<String> methods = Lists.newArrayList();
+        for (final Method method : cls.getDeclaredMethods()) {
+            methods.add(method.toGenericString() + Arrays.toString(method.getDeclaredAnnotations()));
+        }
+        Collections.sort(methods);
+        for (final String method : methods) {
+            putString(hasher, method);
+        }
+    }
+
+    /**
+     * @return whether the file could be read.
+     */
+    private static boolean putFile(final Hasher hasher, final URL file) {
+        try {
+            final URLConnection connection = file.openConnection();
+            if(connection instanceof JarURLConnection) {
+                final JarEntry jarEntry = ((JarURLConnection) connection).getJarEntry();
+                hasher.putLong(jarEntry.getCrc()).putLong(jarEntry.getSize());
+            } else {
+                try (final InputStream in = connection.getInputStream()) {
+                    ByteStreams.copy(in, Funnels.asOutputStream(hasher));
+                }
+            }
+            return true;
+        } catch (IOException ignored) {
+            return false;
+        }
+    }
+
+    private static void putString(final Hasher hasher, final String str) {
+        hasher.putInt(str.length()).putUnencodedChars(str);
+    }
+
+    //endregion
+
+    //region > read
+
+    /**
+     * The classes of the snapshot, in the order written, or <tt>null</tt> if there is no (usable) snapshot for this
+     * key.
+     */
+    List<ScannedClass> read() {
+        if(!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer);
+        } catch (IOException | RuntimeException ex) {
+            // eg a truncated or otherwise corrupt snapshot
+            return null;
+        }
+    }
+
+    private List<ScannedClass> read(final ByteBuffer buffer) {
+        if(buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+            return null;
+        }
+        final byte[] key = new byte[buffer.get() & 0xFF];
+        buffer.get(key);
+        if(!Arrays.equals(key, this.key)) {
+            return null;
+        }
+
+        final String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            final byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, UTF_8);
+        }
+
+        final int numClasses = buffer.getInt();
+        final List<ScannedClass> scannedClasses = Lists.newArrayListWithCapacity(numClasses);
+        for (int i = 0; i < numClasses; i++) {
+            final String classFqn = strings[buffer.getInt()];
+            final ApplicationFeatureId classFeatureId = ApplicationFeatureId.newClass(classFqn).intern();
+            final int numMembers = buffer.getInt();
+            final List<ScannedMember> members = Lists.newArrayListWithCapacity(numMembers);
+            for (int j = 0; j < numMembers; j++) {
+                final ApplicationFeatureId featureId =
+                        ApplicationFeatureId.newMemberInterned(classFeatureId, strings[buffer.getInt()]);
+                final ApplicationMemberType memberType = ApplicationMemberType.valueOf(strings[buffer.getInt()]);
+                final String returnTypeName = stringOrNull(strings, buffer.getInt());
+                final String actionSemantics = stringOrNull(strings, buffer.getInt());
+                final byte flags = buffer.get();
+                final Integer maxLength = (flags & MAX_LENGTH_SPECIFIED) != 0 ? buffer.getInt() : null;
+                final Integer typicalLength = (flags & TYPICAL_LENGTH_SPECIFIED) != 0 ? buffer.getInt() : null;
+                members.add(new ScannedMember(
+                        featureId, memberType, returnTypeName,
+                        (flags & CONTRIBUTED) != 0,
+                        (flags & DERIVED_SPECIFIED) != 0 ? Boolean.valueOf((flags & DERIVED) != 0) : null,
+                        maxLength, typicalLength,
+                        actionSemantics != null ? ActionSemantics.Of.valueOf(actionSemantics) : null));
+            }
+            scannedClasses.add(new ScannedClass(classFeatureId, members));
+        }
+        return scannedClasses;
+    }
+
+    private static String stringOrNull(final String[] strings, final int index) {
+        return index != NONE ? strings[index] : null;
+    }
+
+    //endregion
+
+    //region > write
+
+    /**
+     * Writes the classes as the snapshot for this key, replacing any existing snapshot.
+     *
+     * @return whether the snapshot could be written; if not, the catalog is simply scanned again on the next startup.
+     */
+    boolean write(final List<ScannedClass> scannedClasses) {
+        final Map<String, Integer> strings = Maps.newLinkedHashMap();
+        for (final ScannedClass scannedClass : scannedClasses) {
+            indexOf(strings, scannedClass.classFeatureId.getFullyQualifiedName());
+            for (final ScannedMember member : scannedClass.members) {
+                indexOf(strings, member.featureId.getMemberName());
+                indexOf(strings, member.memberType.name());
+                indexOf(strings, member.returnTypeName);
+                indexOf(strings, member.actionSemantics != null ? member.actionSemantics.name() : null);
+            }
+        }
+
+        Path tempFile = null;
+        try {
+            final Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            tempFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (final DataOutputStream out =
+                         new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                write(out, strings, scannedClasses);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | UnsupportedOperationException ex) {
+            deleteQuietly(tempFile);
+            return false;
+        }
+    }
+
+    private void write(
+            final DataOutputStream out,
+            final Map<String, Integer> strings,
+            final List<ScannedClass> scannedClasses) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeByte(key.length);
+        out.write(key);
+
+        out.writeInt(strings.size());
+        for (final String str : strings.keySet()) {
+            final byte[] bytes = str.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        out.writeInt(scannedClasses.size());
+        for (final ScannedClass scannedClass : scannedClasses) {
+            out.writeInt(strings.get(scannedClass.classFeatureId.getFullyQualifiedName()));
+            out.writeInt(scannedClass.members.size());
+            for (final ScannedMember member : scannedClass.members) {
+                out.writeInt(strings.get(member.featureId.getMemberName()));
+                out.writeInt(strings.get(member.memberType.name()));
+                out.writeInt(indexOf(strings, member.returnTypeName));
+                out.writeInt(indexOf(strings, member.actionSemantics != null ? member.actionSemantics.name() : null));
+                out.writeByte(flagsOf(member));
+                if(member.maxLength != null) {
+                    out.writeInt(member.maxLength);
+                }
+                if(member.typicalLength != null) {
+                    out.writeInt(member.typicalLength);
+                }
+            }
+        }
+    }
+
+    private static int indexOf(final Map<String, Integer> strings, final String str) {
+        if(str == null) {
+            return NONE;
+        }
+        Integer index = strings.get(str);
+        if(index == null) {
+            index = strings.size();
+            strings.put(str, index);
+        }
+        return index;
+    }
+
+    private static int flagsOf(final ScannedMember member) {
+        int flags = 0;
+        if(member.contributed) {
+            flags |= CONTRIBUTED;
+        }
+        if(member.derived != null) {
+            flags |= DERIVED_SPECIFIED;
+            if(member.derived) {
+                flags |= DERIVED;
+            }
+        }
+        if(member.maxLength != null) {
+            flags |= MAX_LENGTH_SPECIFIED;
+        }
+        if(member.typicalLength != null) {
+            flags |= TYPICAL_LENGTH_SPECIFIED;
+        }
+        return flags;
+    }
+
+    private static void deleteQuietly(final Path tempFile) {
+        if(tempFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException ignored) {
+            // nothing more can be done
+        }
+    }
+
+    //endregion
+
+}
@@ -16,12 +16,20 @@
  */
 package org.isisaddons.module.security.dom.feature;
 
+import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
@@ -29,6 +37,7 @@
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import org.apache.isis.applib.DomainObjectContainer;
 import org.apache.isis.applib.annotation.ActionSemantics;
@@ -89,19 +98,155 @@ public static abstract class ActionDomainEvent extends SecurityModule.ActionDoma
 
     //region > caches
     SortedMap<ApplicationFeatureId, ApplicationFeature> packageFeatures = Maps.newTreeMap();
-    private final SortedMap<ApplicationFeatureId, ApplicationFeature> classFeatures = Maps.newTreeMap();
-    private final SortedMap<ApplicationFeatureId, ApplicationFeature> memberFeatures = Maps.newTreeMap();
-    private final SortedMap<ApplicationFeatureId, ApplicationFeature> propertyFeatures = Maps.newTreeMap();
-    private final SortedMap<ApplicationFeatureId, ApplicationFeature> collectionFeatures = Maps.newTreeMap();
-    private final SortedMap<ApplicationFeatureId, ApplicationFeature> actionFeatures = Maps.newTreeMap();
+    NavigableMap<ApplicationFeatureId, ApplicationFeature> classFeatures = Maps.newTreeMap();
+    SortedMap<ApplicationFeatureId, ApplicationFeature> memberFeatures = Maps.newTreeMap();
+    private SortedMap<ApplicationFeatureId, ApplicationFeature> propertyFeatures = Maps.newTreeMap();
+    private SortedMap<ApplicationFeatureId, ApplicationFeature> collectionFeatures = Maps.newTreeMap();
+    private SortedMap<ApplicationFeatureId, ApplicationFeature> actionFeatures = Maps.newTreeMap();
+
+    /**
+     * For each package that (directly) contains classes, the types of the members of those classes.
+     */
+    private SortedMap<ApplicationFeatureId, Set<ApplicationMemberType>> memberTypesByPackage = Maps.newTreeMap();
+
+    /**
+     * If {@link #isLazy() lazy}, then the specifications not yet scanned, keyed by package name; <tt>null</tt> once
+     * all have been scanned (or if not lazy).
+     */
+    private volatile SortedMap<String, List<ObjectSpecification>> unscannedSpecifications;
+
+    private volatile ServiceClassHierarchy serviceClassHierarchy;
+
+    /**
+     * Computed from {@link #memberFeatures} on first use, once all have been created; discarded if more are created.
+     */
+    private volatile ApplicationMemberOrdinals memberOrdinals;
     //endregion
 
     //region > init
+
+    /**
+     * The number of threads with which to scan the metamodel on {@link #init(Map) startup}; if not specified (or 1)
+     * then the metamodel is scanned by the calling thread alone.
+     */
+    public static final String PARALLELISM_KEY = "isis.ext.security.ApplicationFeatureRepository.parallelism";
+
+    /**
+     * Whether to defer scanning the metamodel until the catalog is first queried; if not specified then the
+     * metamodel is scanned on {@link #init(Map) startup}.
+     */
+    public static final String LAZY_KEY = "isis.ext.security.ApplicationFeatureRepository.lazy";
+
+    /**
+     * The file in which to persist a {@link ApplicationFeatureSnapshot snapshot} of the catalog, to be loaded on
+     * subsequent {@link #init(Map) startups} rather than scanning the metamodel; if not specified then no snapshot
+     * is used.
+     */
+    public static final String SNAPSHOT_FILE_KEY = "isis.ext.security.ApplicationFeatureRepository.snapshotFile";
+
+    /**
+     * The number of specifications scanned by each fork/join task (below which work is no longer split).
+     */
+    static final int SCAN_THRESHOLD = 16;
+
+    private int parallelism = 1;
+    private boolean lazy;
+    private String snapshotFile;
+    private Map<String, String> configuration = Collections.emptyMap();
+
     @Programmatic
     @PostConstruct
+    public void init(final Map<String, String> properties) {
+        configuration = properties;
+        final String parallelism = properties.get(PARALLELISM_KEY);
+        if(parallelism != null) {
+            setParallelism(Integer.parseInt(parallelism.trim()));
+        }
+        final String lazy = properties.get(LAZY_KEY);
+        if(lazy != null) {
+            setLazy(Boolean.parseBoolean(lazy.trim()));
+        }
+        final String snapshotFile = properties.get(SNAPSHOT_FILE_KEY);
+        if(snapshotFile != null) {
+            setSnapshotFile(snapshotFile.trim());
+        }
+        init();
+    }
+
+    @Programmatic
     public void init() {
         final Collection<ObjectSpecification> specifications = primeMetaModel();
-        createApplicationFeaturesFor(specifications);
+        if(lazy) {
+            deferApplicationFeaturesFor(specifications);
+        } else if(snapshotFile != null) {
+            createApplicationFeaturesUsingSnapshot(specifications);
+        } else {
+            createApplicationFeaturesFor(specifications);
+        }
+    }
+
+    @Programmatic
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * The number of threads to scan the metamodel with; 1 to scan on the calling thread.
+     *
+     * <p>
+     *     Scanning in parallel reads the (already primed) specifications from several threads at once, so is opt-in.
+     *     Either way the resultant catalog is the same, because the features of each specification are added to it
+     *     (by the calling thread) in the order that the specifications are returned by the metamodel.
+     * </p>
+     */
+    @Programmatic
+    public void setParallelism(final int parallelism) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    @Programmatic
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Whether to defer scanning the metamodel until the catalog is queried; must be set before {@link #init()}.
+     *
+     * <p>
+     *     If lazy, then the features of a package (and all of its subpackages) are created the first time that the
+     *     package, or any class or member within it, is looked up; the {@link #allFeatures(ApplicationFeatureType)}
+     *     methods create every feature.  Authorization checks do not query the catalog (and the realm's
+     *     <tt>prepopulatePermissionResolver</tt> is ignored), so nodes that only serve end-users need never create it
+     *     at all.
+     * </p>
+     */
+    @Programmatic
+    public void setLazy(final boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    @Programmatic
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * The file in which to persist a {@link ApplicationFeatureSnapshot snapshot} of the catalog; must be set before
+     * {@link #init()}.
+     *
+     * <p>
+     *     On startup the snapshot is loaded in place of scanning the metamodel, so long as it was written for the same
+     *     registered services, specifications (and their layouts) and configuration (otherwise the metamodel is
+     *     scanned, and the snapshot rewritten).  Any other change to the metamodel is not detected, so the snapshot
+     *     should then be deleted.  Ignored if {@link #isLazy() lazy}.
+     * </p>
+     */
+    @Programmatic
+    public void setSnapshotFile(final String snapshotFile) {
+        this.snapshotFile = snapshotFile;
     }
 
     private Collection<ObjectSpecification> primeMetaModel() {
@@ -109,20 +254,232 @@ private Collection<ObjectSpecification> primeMetaModel() {
         for (final Object service : services) {
             specificationLoader.loadSpecification(service.getClass());
         }
+        serviceClassHierarchy = new ServiceClassHierarchy(services);
         return specificationLoader.allSpecifications();
     }
 
     private void createApplicationFeaturesFor(final Collection<ObjectSpecification> specifications) {
         // take copy to avoid ConcurrentModificationException
         final List<ObjectSpecification> objectSpecifications = Lists.newArrayList(specifications);
-        for (final ObjectSpecification spec : objectSpecifications) {
-            createApplicationFeaturesFor(spec);
+        createApplicationFeaturesFor(scan(objectSpecifications));
+    }
+
+    private void createApplicationFeaturesUsingSnapshot(final Collection<ObjectSpecification> specifications) {
+        // take copy to avoid ConcurrentModificationException
+        final List<ObjectSpecification> objectSpecifications = Lists.newArrayList(specifications);
+        final ApplicationFeatureSnapshot snapshot = new ApplicationFeatureSnapshot(
+                Paths.get(snapshotFile),
+                ApplicationFeatureSnapshot.keyOf(servicesInjector.getRegisteredServices(), objectSpecifications, configuration));
+        List<ScannedClass> scannedClasses = snapshot.read();
+        if(scannedClasses == null) {
+            scannedClasses = scan(objectSpecifications);
+            snapshot.write(scannedClasses);
+        }
+        createApplicationFeaturesFor(scannedClasses);
+    }
+
+    private void createApplicationFeaturesFor(final List<ScannedClass> scannedClasses) {
+        for (final ScannedClass scannedClass : scannedClasses) {
+            createApplicationFeaturesFor(scannedClass);
         }
+        freeze(scannedClasses);
+    }
+
+    /**
+     * {@link ApplicationFeature#freeze() Freezes} the features of the classes and of all of their packages, now that
+     * their contents have been added.
+     */
+    private void freeze(final List<ScannedClass> scannedClasses) {
+        for (final ScannedClass scannedClass : scannedClasses) {
+            final ApplicationFeatureId classFeatureId = scannedClass.classFeatureId;
+            classFeatures.get(classFeatureId).freeze();
+            for (ApplicationFeatureId packageId = classFeatureId.getParentPackageId(); packageId != null; packageId = packageId.getParentPackageId()) {
+                packageFeatures.get(packageId).freeze();
+            }
+        }
+    }
+
+    /**
+     * Indexes the specifications by package, to be scanned as each package is first queried.
+     *
+     * <p>
+     *     Because features are then added while the catalog is being queried (by other threads), its maps are
+     *     replaced by concurrent equivalents; the features are added while holding the lock on this object.
+     * </p>
+     */
+    private void deferApplicationFeaturesFor(final Collection<ObjectSpecification> specifications) {
+        packageFeatures = new ConcurrentSkipListMap<>();
+        classFeatures = new ConcurrentSkipListMap<>();
+        memberFeatures = new ConcurrentSkipListMap<>();
+        propertyFeatures = new ConcurrentSkipListMap<>();
+        collectionFeatures = new ConcurrentSkipListMap<>();
+        actionFeatures = new ConcurrentSkipListMap<>();
+        memberTypesByPackage = new ConcurrentSkipListMap<>();
+
+        final SortedMap<String, List<ObjectSpecification>> unscannedSpecifications = Maps.newTreeMap();
+        for (final ObjectSpecification spec : Lists.newArrayList(specifications)) {
+            final String packageName = packageNameOf(spec.getFullIdentifier());
+            List<ObjectSpecification> packageSpecifications = unscannedSpecifications.get(packageName);
+            if(packageSpecifications == null) {
+                packageSpecifications = Lists.newArrayList();
+                unscannedSpecifications.put(packageName, packageSpecifications);
+            }
+            packageSpecifications.add(spec);
+        }
+        this.unscannedSpecifications = unscannedSpecifications.isEmpty() ? null : unscannedSpecifications;
+    }
+
+    private static String packageNameOf(final String fullIdentifier) {
+        final int lastDot = fullIdentifier.lastIndexOf('.');
+        return lastDot != -1 ? fullIdentifier.substring(0, lastDot) : "";
+    }
+
+    /**
+     * If {@link #isLazy() lazy}, creates the features of any specifications in the package (or its subpackages) not
+     * yet scanned; the empty string represents all packages.
+     */
+    private void createApplicationFeaturesWithin(final String packageName) {
+        if(unscannedSpecifications == null) {
+            return;
+        }
+        synchronized (this) {
+            final SortedMap<String, List<ObjectSpecification>> unscannedSpecifications = this.unscannedSpecifications;
+            if(unscannedSpecifications == null) {
+                return;
+            }
+            // the package itself, followed by its subpackages (since '/' sorts immediately after '.')
+            final SortedMap<String, List<ObjectSpecification>> candidates = packageName.isEmpty()
+                    ? unscannedSpecifications
+                    : unscannedSpecifications.subMap(packageName, packageName + "/");
+            final List<ObjectSpecification> specifications = Lists.newArrayList();
+            for (final Iterator<Map.Entry<String, List<ObjectSpecification>>> iterator = candidates.entrySet().iterator(); iterator.hasNext(); ) {
+                final Map.Entry<String, List<ObjectSpecification>> entry = iterator.next();
+                if(isWithin(entry.getKey(), packageName)) {
+                    specifications.addAll(entry.getValue());
+                    iterator.remove();
+                }
+            }
+            createApplicationFeaturesFor(specifications);
+            if(unscannedSpecifications.isEmpty()) {
+                this.unscannedSpecifications = null;
+            }
+        }
+    }
+
+    private static boolean isWithin(final String packageName, final String parentPackageName) {
+        return parentPackageName.isEmpty() ||
+                packageName.equals(parentPackageName) ||
+                packageName.startsWith(parentPackageName) && packageName.charAt(parentPackageName.length()) == '.';
     }
 
     void createApplicationFeaturesFor(final ObjectSpecification spec) {
+        final ScannedClass scannedClass = scan(spec);
+        if (scannedClass != null) {
+            createApplicationFeaturesFor(scannedClass);
+        }
+    }
+
+    private void createApplicationFeaturesFor(final ScannedClass scannedClass) {
+        memberOrdinals = null;
+
+        final ApplicationFeatureId classFeatureId = scannedClass.classFeatureId;
+
+        final ApplicationFeature classFeature = newFeature(classFeatureId);
+        classFeatures.put(classFeatureId, classFeature);
+
+        // add members
+        for (final ScannedMember member : scannedClass.members) {
+            newMember(classFeature, member);
+        }
+
+        // and all of the class' parent packages
+        final ApplicationFeatureId classParentPackageId = addClassParent(classFeatureId);
+        addParents(classParentPackageId);
+
+        addMemberTypes(classParentPackageId, scannedClass);
+    }
+
+    private void addMemberTypes(final ApplicationFeatureId packageId, final ScannedClass scannedClass) {
+        final Set<ApplicationMemberType> memberTypes = EnumSet.noneOf(ApplicationMemberType.class);
+        final Set<ApplicationMemberType> existingMemberTypes = memberTypesByPackage.get(packageId);
+        if(existingMemberTypes != null) {
+            memberTypes.addAll(existingMemberTypes);
+        }
+        for (final ScannedMember member : scannedClass.members) {
+            memberTypes.add(member.memberType);
+        }
+        // replaced rather than updated, because (if lazy) read concurrently
+        memberTypesByPackage.put(packageId, Sets.immutableEnumSet(memberTypes));
+    }
+
+    //endregion
+
+    //region > scan (helpers)
+
+    private List<ScannedClass> scan(final List<ObjectSpecification> specifications) {
+        return parallelism > 1 && specifications.size() > SCAN_THRESHOLD
+                ? scanInParallel(specifications)
+                : scan(specifications, 0, specifications.size());
+    }
+
+    private List<ScannedClass> scanInParallel(final List<ObjectSpecification> specifications) {
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new ScanTask(specifications, 0, specifications.size()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Scans a range of the specifications; the classes are returned in the same order as their specifications.
+     */
+    private class ScanTask extends RecursiveTask<List<ScannedClass>> {
+
+        private final List<ObjectSpecification> specifications;
+        private final int from;
+        private final int to;
+
+        ScanTask(final List<ObjectSpecification> specifications, final int from, final int to) {
+            this.specifications = specifications;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<ScannedClass> compute() {
+            if (to - from <= SCAN_THRESHOLD) {
+                return scan(specifications, from, to);
+            }
+            final int mid = (from + to) >>> 1;
+            final ScanTask right = new ScanTask(specifications, mid, to);
+            right.fork();
+            final List<ScannedClass> scannedClasses = new ScanTask(specifications, from, mid).compute();
+            scannedClasses.addAll(right.join());
+            return scannedClasses;
+        }
+    }
+
+    private List<ScannedClass> scan(final List<ObjectSpecification> specifications, final int from, final int to) {
+        final List<ScannedClass> scannedClasses = Lists.newArrayList();
+        for (int i = from; i < to; i++) {
+            final ScannedClass scannedClass = scan(specifications.get(i));
+            if (scannedClass != null) {
+                scannedClasses.add(scannedClass);
+            }
+        }
+        return scannedClasses;
+    }
+
+    /**
+     * Reads the (visible) members of the specification from the metamodel, but without adding anything to the
+     * catalog; so can be called concurrently.
+     *
+     * @return <tt>null</tt> if the specification is excluded or (as is the case for value types etc) has no members.
+     */
+    private ScannedClass scan(final ObjectSpecification spec) {
         if (exclude(spec)) {
-            return;
+            return null;
         }
 
         final List<ObjectAssociation> properties = spec.getAssociations(Contributed.INCLUDED, ObjectAssociation.Filters.PROPERTIES);
@@ -130,51 +487,55 @@ void createApplicationFeaturesFor(final ObjectSpecification spec) {
         final List<ObjectAction> actions = spec.getObjectActions(Contributed.INCLUDED);
 
         if (properties.isEmpty() && collections.isEmpty() && actions.isEmpty()) {
-            return;
+            return null;
         }
 
         final String fullIdentifier = spec.getFullIdentifier();
-        final ApplicationFeatureId classFeatureId = ApplicationFeatureId.newClass(fullIdentifier);
+        final ApplicationFeatureId classFeatureId = ApplicationFeatureId.newClass(fullIdentifier).intern();
 
-        // add class to our map
-        // (later on it may get removed if the class turns out to have no features,
-        // but we require it in the map for the next bit).
-        final ApplicationFeature classFeature = newFeature(classFeatureId);
-        classFeatures.put(classFeatureId, classFeature);
-
-        // add members
-        boolean addedMembers = false;
+        final List<ScannedMember> members = Lists.newArrayList();
         for (final ObjectAssociation property : properties) {
             final Class<?> returnType = correspondingClassFor(property.getSpecification());
             final Integer maxLength = returnType == String.class ? valueOf(property, MaxLengthFacet.class) : null;
             final Integer typicalLength = returnType == String.class ? valueOf(property, TypicalLengthFacet.class) : null;
             final boolean derived = !property.containsDoOpFacet(PropertySetterFacet.class);
             final boolean contributed = property instanceof ContributeeMember;
-            addedMembers = newProperty(classFeatureId, property, returnType, contributed, maxLength, typicalLength, derived) || addedMembers;
+            addMember(members, classFeatureId, property, ApplicationMemberType.PROPERTY, returnType, contributed, derived, maxLength, typicalLength, null);
         }
         for (final ObjectAssociation collection : collections) {
             final boolean derived = !(collection.containsDoOpFacet(CollectionAddToFacet.class) || collection.containsDoOpFacet(CollectionRemoveFromFacet.class));
             final Class<?> elementType = correspondingClassFor(collection.getSpecification());
             final boolean contributed = collection instanceof ContributeeMember;
-            addedMembers = newCollection(classFeatureId, collection, elementType, contributed, derived) || addedMembers;
+            addMember(members, classFeatureId, collection, ApplicationMemberType.COLLECTION, elementType, contributed, derived, null, null, null);
         }
         for (final ObjectAction action : actions) {
             final Class<?> returnType = correspondingClassFor(action.getReturnType());
             final ActionSemantics.Of actionSemantics = action.getSemantics();
             final boolean contributed = action instanceof ContributeeMember;
-            addedMembers = newAction(classFeatureId, action, returnType, contributed, actionSemantics) || addedMembers;
+            addMember(members, classFeatureId, action, ApplicationMemberType.ACTION, returnType, contributed, null, null, null, actionSemantics);
         }
 
-        if (!addedMembers) {
-            // remove this class feature, since it turned out to have no members
-            classFeatures.remove(classFeatureId);
+        // ignore the class if it turns out to have no (visible) members
+        return members.isEmpty() ? null : new ScannedClass(classFeatureId, members);
+    }
+
+    private static void addMember(
+            final List<ScannedMember> members,
+            final ApplicationFeatureId classFeatureId,
+            final ObjectMember objectMember,
+            final ApplicationMemberType memberType,
+            final Class<?> returnType,
+            final boolean contributed,
+            final Boolean derived,
+            final Integer maxLength, final Integer typicalLength,
+            final ActionSemantics.Of actionSemantics) {
+        if (objectMember.isAlwaysHidden()) {
             return;
         }
-
-        // leave the class as is and (as there were indeed members for this class)
-        // and add all of its parent packages
-        final ApplicationFeatureId classParentPackageId = addClassParent(classFeatureId);
-        addParents(classParentPackageId);
+        final ApplicationFeatureId featureId = ApplicationFeatureId.newMemberInterned(classFeatureId, objectMember.getId());
+        final String returnTypeName = returnType != null ? returnType.getSimpleName() : null;
+        members.add(new ScannedMember(
+                featureId, memberType, returnTypeName, contributed, derived, maxLength, typicalLength, actionSemantics));
     }
 
     private static Class<?> correspondingClassFor(final ObjectSpecification objectSpec) {
@@ -188,6 +549,51 @@ private static Integer valueOf(
         return facet != null ? facet.value() : null;
     }
 
+    /**
+     * A class with at least one visible member, as read from the metamodel.
+     */
+    static class ScannedClass {
+        final ApplicationFeatureId classFeatureId;
+        final List<ScannedMember> members;
+
+        ScannedClass(final ApplicationFeatureId classFeatureId, final List<ScannedMember> members) {
+            this.classFeatureId = classFeatureId;
+            this.members = members;
+        }
+    }
+
+    static class ScannedMember {
+        final ApplicationFeatureId featureId;
+        final ApplicationMemberType memberType;
+        final String returnTypeName;
+        final boolean contributed;
+        final Boolean derived;
+        final Integer maxLength;
+        final Integer typicalLength;
+        final ActionSemantics.Of actionSemantics;
+
+        ScannedMember(
+                final ApplicationFeatureId featureId,
+                final ApplicationMemberType memberType,
+                final String returnTypeName,
+                final boolean contributed,
+                final Boolean derived,
+                final Integer maxLength, final Integer typicalLength,
+                final ActionSemantics.Of actionSemantics) {
+            this.featureId = featureId;
+            this.memberType = memberType;
+            this.returnTypeName = returnTypeName;
+            this.contributed = contributed;
+            this.derived = derived;
+            this.maxLength = maxLength;
+            this.typicalLength = typicalLength;
+            this.actionSemantics = actionSemantics;
+        }
+    }
+
+    //endregion
+
+    //region > create features (helpers)
 
     ApplicationFeatureId addClassParent(final ApplicationFeatureId classFeatureId) {
         final ApplicationFeatureId parentPackageId = classFeatureId.getParentPackageId();
@@ -214,7 +620,7 @@ void addParents(final ApplicationFeatureId classOrPackageId) {
     }
 
     private ApplicationFeature findPackageElseCreate(final ApplicationFeatureId parentPackageId) {
-        ApplicationFeature parentPackage = findPackage(parentPackageId);
+        ApplicationFeature parentPackage = packageFeatures.get(parentPackageId);
         if (parentPackage == null) {
             parentPackage = newPackage(parentPackageId);
         }
@@ -227,78 +633,25 @@ private ApplicationFeature newPackage(final ApplicationFeatureId packageId) {
         return parentPackage;
     }
 
-    private boolean newProperty(
-            final ApplicationFeatureId classFeatureId,
-            final ObjectMember objectMember,
-            final Class<?> returnType,
-            final boolean contributed,
-            final Integer maxLength, final Integer typicalLength,
-            final boolean derived) {
-        return newMember(classFeatureId, objectMember, ApplicationMemberType.PROPERTY, returnType, contributed, derived, maxLength, typicalLength, null);
-    }
-
-    private boolean newCollection(
-            final ApplicationFeatureId classFeatureId,
-            final ObjectMember objectMember,
-            final Class<?> returnType,
-            final boolean contributed,
-            final boolean derived) {
-        return newMember(classFeatureId, objectMember, ApplicationMemberType.COLLECTION, returnType, contributed, derived, null, null, null);
-    }
-
-    private boolean newAction(
-            final ApplicationFeatureId classFeatureId,
-            final ObjectMember objectMember,
-            final Class<?> returnType,
-            final boolean contributed,
-            final ActionSemantics.Of actionSemantics) {
-        return newMember(classFeatureId, objectMember, ApplicationMemberType.ACTION, returnType, contributed, null, null, null, actionSemantics);
-    }
-
-    private boolean newMember(
-            final ApplicationFeatureId classFeatureId,
-            final ObjectMember objectMember,
-            final ApplicationMemberType memberType,
-            final Class<?> returnType,
-            final boolean contributed,
-            final Boolean derived,
-            final Integer maxLength, final Integer typicalLength,
-            final ActionSemantics.Of actionSemantics) {
-        if (objectMember.isAlwaysHidden()) {
-            return false;
-        }
-        newMember(classFeatureId, objectMember.getId(), memberType, returnType, contributed, derived, maxLength, typicalLength, actionSemantics);
-        return true;
-    }
-
-    private void newMember(
-            final ApplicationFeatureId classFeatureId,
-            final String memberId,
-            final ApplicationMemberType memberType,
-            final Class<?> returnType,
-            final boolean contributed,
-            final Boolean derived,
-            final Integer maxLength, final Integer typicalLength,
-            final ActionSemantics.Of actionSemantics) {
-        final ApplicationFeatureId featureId = ApplicationFeatureId.newMember(classFeatureId.getFullyQualifiedName(), memberId);
+    private void newMember(final ApplicationFeature classFeature, final ScannedMember member) {
+        final ApplicationFeatureId featureId = member.featureId;
 
         final ApplicationFeature memberFeature = newFeature(featureId);
-        memberFeature.setMemberType(memberType);
+        memberFeature.setMemberType(member.memberType);
 
-        memberFeature.setReturnTypeName(returnType != null ? returnType.getSimpleName() : null);
-        memberFeature.setContributed(contributed);
-        memberFeature.setDerived(derived);
-        memberFeature.setPropertyMaxLength(maxLength);
-        memberFeature.setPropertyTypicalLength(typicalLength);
-        memberFeature.setActionSemantics(actionSemantics);
+        memberFeature.setReturnTypeName(member.returnTypeName);
+        memberFeature.setContributed(member.contributed);
+        memberFeature.setDerived(member.derived);
+        memberFeature.setPropertyMaxLength(member.maxLength);
+        memberFeature.setPropertyTypicalLength(member.typicalLength);
+        memberFeature.setActionSemantics(member.actionSemantics);
 
         memberFeatures.put(featureId, memberFeature);
 
         // also cache per memberType
-        featuresMapFor(memberType).put(featureId, memberFeature);
+        featuresMapFor(member.memberType).put(featureId, memberFeature);
 
-        final ApplicationFeature classFeature = findClass(classFeatureId);
-        classFeature.addToMembers(featureId, memberType);
+        classFeature.addToMembers(featureId, member.memberType);
     }
 
     private SortedMap<ApplicationFeatureId, ApplicationFeature> featuresMapFor(final ApplicationMemberType memberType) {
@@ -339,32 +692,70 @@ private boolean isFixtureScript(final ObjectSpecification spec) {
      * of that type (only of subtypes of that).
      * </p>
      */
-    private boolean isSuperClassOfService(final ObjectSpecification spec) {
-        final List<Object> registeredServices = servicesInjector.getRegisteredServices();
+    boolean isSuperClassOfService(final ObjectSpecification spec) {
+        return getServiceClassHierarchy().isSuperClassOfService(spec.getCorrespondingClass());
+    }
+
+    /**
+     * The {@link ServiceClassHierarchy} of the registered services, computed on first use (so before the metamodel
+     * is scanned in parallel, by {@link #init()}).
+     */
+    private ServiceClassHierarchy getServiceClassHierarchy() {
+        ServiceClassHierarchy serviceClassHierarchy = this.serviceClassHierarchy;
+        if(serviceClassHierarchy == null) {
+            serviceClassHierarchy = new ServiceClassHierarchy(servicesInjector.getRegisteredServices());
+            this.serviceClassHierarchy = serviceClassHierarchy;
+        }
+        return serviceClassHierarchy;
+    }
+
+    /**
+     * The classes of the registered services, and all of their supertypes (classes and interfaces); so that checking
+     * whether a specification is a (strict) supertype of a service is a couple of hash lookups, rather than testing
+     * every service with {@link Class#isAssignableFrom(Class)}.
+     */
+    static class ServiceClassHierarchy {
 
-        final Class<?> specClass = spec.getCorrespondingClass();
+        private final Set<Class<?>> serviceClasses = Sets.newHashSet();
+        private final Set<Class<?>> serviceSupertypes = Sets.newHashSet();
 
-        // is this class a supertype or the actual type of one of the services?
-        boolean serviceCls = false;
-        for (final Object registeredService : registeredServices) {
-            final Class<?> serviceClass = registeredService.getClass();
-            if (specClass.isAssignableFrom(serviceClass)) {
-                serviceCls = true;
+        ServiceClassHierarchy(final List<Object> registeredServices) {
+            for (final Object registeredService : registeredServices) {
+                final Class<?> serviceClass = registeredService.getClass();
+                serviceClasses.add(serviceClass);
+                addSelfAndSupertypes(serviceClass, serviceSupertypes);
             }
         }
-        if (!serviceCls) {
-            return false;
-        }
 
-        // yes it is.  In which case, is it the actual concrete class of one of those services?
-        for (final Object registeredService : registeredServices) {
-            final Class<?> serviceClass = registeredService.getClass();
-            if (serviceClass.isAssignableFrom(specClass)) {
+        boolean isSuperClassOfService(final Class<?> specClass) {
+            // is this class a supertype or the actual type of one of the services?
+            if(!serviceSupertypes.contains(specClass)) {
                 return false;
             }
+
+            // yes it is.  In which case, is it the actual concrete class of one of those services?
+            if(serviceClasses.contains(specClass)) {
+                return false;
+            }
+
+            // or (less commonly) a subtype of one of them?
+            final Set<Class<?>> specSupertypes = Sets.newHashSet();
+            addSelfAndSupertypes(specClass, specSupertypes);
+            specSupertypes.retainAll(serviceClasses);
+
+            // if couldn't find a service of this type, then ignore the spec.
+            return specSupertypes.isEmpty();
+        }
+
+        private static void addSelfAndSupertypes(final Class<?> cls, final Set<Class<?>> types) {
+            if(cls == null || !types.add(cls)) {
+                return;
+            }
+            addSelfAndSupertypes(cls.getSuperclass(), types);
+            for (final Class<?> interfaceType : cls.getInterfaces()) {
+                addSelfAndSupertypes(interfaceType, types);
+            }
         }
-        // couldn't find a service of exactly this type, so ignore the spec.
-        return true;
     }
 
     protected boolean isHidden(final ObjectSpecification spec) {
@@ -397,21 +788,55 @@ public ApplicationFeature findFeature(final ApplicationFeatureId featureId) {
 
     @Programmatic
     public ApplicationFeature findPackage(final ApplicationFeatureId featureId) {
+        createApplicationFeaturesWithin(featureId.getPackageName());
         return packageFeatures.get(featureId);
     }
 
     @Programmatic
     public ApplicationFeature findClass(final ApplicationFeatureId featureId) {
+        createApplicationFeaturesWithin(featureId.getPackageName());
         return classFeatures.get(featureId);
     }
 
     @Programmatic
     public ApplicationFeature findMember(final ApplicationFeatureId featureId) {
+        createApplicationFeaturesWithin(featureId.getPackageName());
         return memberFeatures.get(featureId);
     }
 
     //endregion
 
+    //region > memberOrdinals
+
+    /**
+     * A numbering of every member in the catalog, so that (for example) the members granted by a set of permissions
+     * can be {@link org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSet compiled} into a
+     * bitset.
+     *
+     * <p>
+     *     If the catalog is {@link #isLazy() lazy} then returns <tt>null</tt> until every member has been created
+     *     (rather than creating them all).
+     * </p>
+     */
+    @Programmatic
+    public ApplicationMemberOrdinals getMemberOrdinals() {
+        ApplicationMemberOrdinals memberOrdinals = this.memberOrdinals;
+        if(memberOrdinals != null) {
+            return memberOrdinals;
+        }
+        synchronized (this) {
+            if(unscannedSpecifications != null) {
+                return null;
+            }
+            if(this.memberOrdinals == null) {
+                this.memberOrdinals = new ApplicationMemberOrdinals(memberFeatures.keySet());
+            }
+            return this.memberOrdinals;
+        }
+    }
+
+    //endregion
+
     //region > allFeatures, allPackages, allClasses, allMembers
     @Programmatic
     public Collection<ApplicationFeature> allFeatures(final ApplicationFeatureType featureType) {
@@ -431,31 +856,37 @@ public Collection<ApplicationFeature> allFeatures(final ApplicationFeatureType f
 
     @Programmatic
     public Collection<ApplicationFeature> allPackages() {
+        createApplicationFeaturesWithin("");
         return packageFeatures.values();
     }
 
     @Programmatic
     public Collection<ApplicationFeature> allClasses() {
+        createApplicationFeaturesWithin("");
         return classFeatures.values();
     }
 
     @Programmatic
     public Collection<ApplicationFeature> allMembers() {
+        createApplicationFeaturesWithin("");
         return memberFeatures.values();
     }
 
     @Programmatic
     public Collection<ApplicationFeature> allProperties() {
+        createApplicationFeaturesWithin("");
         return propertyFeatures.values();
     }
 
     @Programmatic
     public Collection<ApplicationFeature> allCollections() {
+        createApplicationFeaturesWithin("");
         return collectionFeatures.values();
     }
 
     @Programmatic
     public Collection<ApplicationFeature> allActions() {
+        createApplicationFeaturesWithin("");
         return actionFeatures.values();
     }
     //endregion
@@ -469,16 +900,20 @@ public List<String> packageNames() {
     }
 
 
+    /**
+     * The packages that directly contain classes with members of the specified type (or with any members, if
+     * <tt>null</tt>).
+     */
     @Programmatic
     public List<String> packageNamesContainingClasses(final ApplicationMemberType memberType) {
-        final Collection<ApplicationFeature> packages = allFeatures(ApplicationFeatureType.PACKAGE);
-        return Lists.newArrayList(
-                Iterables.transform(
-                        Iterables.filter(
-                                packages,
-                                ApplicationFeature.Predicates.packageContainingClasses(memberType, this)
-                        ),
-                        ApplicationFeature.Functions.GET_FQN));
+        createApplicationFeaturesWithin("");
+        final List<String> packageNames = Lists.newArrayList();
+        for (final Map.Entry<ApplicationFeatureId, Set<ApplicationMemberType>> entry : memberTypesByPackage.entrySet()) {
+            if(memberType == null || entry.getValue().contains(memberType)) {
+                packageNames.add(entry.getKey().getFullyQualifiedName());
+            }
+        }
+        return packageNames;
     }
 
     @Programmatic
@@ -488,13 +923,13 @@ public List<String> classNamesContainedIn(final String packageFqn, final Applica
         if (pkg == null) {
             return Collections.emptyList();
         }
-        final SortedSet<ApplicationFeatureId> contents = pkg.getContents();
-        return Lists.newArrayList(
-                Iterables.transform(
-                        Iterables.filter(
-                                contents,
-                                ApplicationFeatureId.Predicates.isClassContaining(memberType, this)),
-                        ApplicationFeatureId.Functions.GET_CLASS_NAME));
+        final List<String> classNames = Lists.newArrayList();
+        for (final ApplicationFeature cls : classFeaturesWithin(packageFqn, false)) {
+            if(memberType == null || !cls.membersOf(memberType).isEmpty()) {
+                classNames.add(cls.getFeatureId().getClassName());
+            }
+        }
+        return classNames;
     }
 
     @Programmatic
@@ -504,13 +939,99 @@ public List<String> classNamesRecursivelyContainedIn(final String packageFqn) {
         if (pkg == null) {
             return Collections.emptyList();
         }
-        final Set<ApplicationFeatureId> classIds = this.classFeatures.keySet();
-        return Lists.newArrayList(
-                Iterables.transform(
-                        Iterables.filter(
-                                classIds,
-                                ApplicationFeatureId.Predicates.isClassRecursivelyWithin(packageId)),
-                        ApplicationFeatureId.Functions.GET_CLASS_NAME));
+        final List<String> classNames = Lists.newArrayList();
+        for (final ApplicationFeature cls : classFeaturesWithin(packageFqn, true)) {
+            classNames.add(cls.getFeatureId().getClassName());
+        }
+        return classNames;
+    }
+
+    /**
+     * The classes in the package (and, if <tt>recursive</tt>, in its subpackages), in order.
+     *
+     * <p>
+     *     Class ids are ordered by their package name first, so these are a range of the class features: those of the
+     *     package itself (up to the next possible package name), or else those of the package followed by (since '/'
+     *     sorts immediately after '.') those of its subpackages; along with those of any sibling packages whose names
+     *     extend this one's with a character sorting before '.' (eg '$'), which are filtered out.
+     * </p>
+     */
+    private Collection<ApplicationFeature> classFeaturesWithin(final String packageName, final boolean recursive) {
+        final Collection<ApplicationFeature> range = classFeatures.subMap(
+                classIdsFrom(packageName), true,
+                classIdsFrom(packageName + (recursive ? "/" : "\0")), false).values();
+        if(!recursive) {
+            return range;
+        }
+        final List<ApplicationFeature> within = Lists.newArrayList();
+        for (final ApplicationFeature cls : range) {
+            if(isWithin(cls.getFeatureId().getPackageName(), packageName)) {
+                within.add(cls);
+            }
+        }
+        return within;
+    }
+
+    /**
+     * A (class) id that sorts before every class in the package (and after every class in any preceding package).
+     */
+    private static ApplicationFeatureId classIdsFrom(final String packageName) {
+        final ApplicationFeatureId classId = new ApplicationFeatureId(ApplicationFeatureType.CLASS);
+        classId.setPackageName(packageName);
+        return classId;
+    }
+
+    /**
+     * The ids of the members within the package (or its subpackages, or any package if <tt>null</tt>) and, if a
+     * <tt>className</tt> is specified, of the classes with that (simple) name, in order.
+     *
+     * <p>
+     *     As for the classes of a package, these are a range of the member features (filtered to exclude any sibling
+     *     packages); only the ids are returned, so that callers can (eg) page through them before doing any work per
+     *     member.
+     * </p>
+     */
+    @Programmatic
+    public List<ApplicationFeatureId> memberIdsWithin(final String packageFqn, final String className) {
+        return memberIdsWithin(packageFqn, className, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * As {@link #memberIdsWithin(String, String)}, but only the page of (at most) <tt>limit</tt> ids starting at
+     * <tt>offset</tt>; the members following that page are not visited.
+     */
+    @Programmatic
+    public List<ApplicationFeatureId> memberIdsWithin(
+            final String packageFqn, final String className, final int offset, final int limit) {
+        createApplicationFeaturesWithin(packageFqn != null ? packageFqn : "");
+        final SortedMap<ApplicationFeatureId, ApplicationFeature> range = packageFqn != null
+                ? memberFeatures.subMap(memberIdsFrom(packageFqn), memberIdsFrom(packageFqn + "/"))
+                : memberFeatures;
+        final List<ApplicationFeatureId> memberIds = Lists.newArrayList();
+        int skipped = 0;
+        for (final ApplicationFeatureId memberId : range.keySet()) {
+            if(memberIds.size() >= limit) {
+                break;
+            }
+            if((packageFqn == null || isWithin(memberId.getPackageName(), packageFqn)) &&
+               (className == null || className.equals(memberId.getClassName()))) {
+                if(skipped < offset) {
+                    skipped++;
+                } else {
+                    memberIds.add(memberId);
+                }
+            }
+        }
+        return memberIds;
+    }
+
+    /**
+     * A (member) id that sorts before every member in the package (and after every member in any preceding package).
+     */
+    private static ApplicationFeatureId memberIdsFrom(final String packageName) {
+        final ApplicationFeatureId memberId = new ApplicationFeatureId(ApplicationFeatureType.MEMBER);
+        memberId.setPackageName(packageName);
+        return memberId;
     }
 
     @Programmatic
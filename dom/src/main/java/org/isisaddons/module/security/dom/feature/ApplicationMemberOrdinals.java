@@ -0,0 +1,134 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.feature;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Maps;
+
+import org.apache.isis.applib.annotation.Programmatic;
+
+/**
+ * An immutable numbering of the members of the metamodel, from zero upwards (in the natural order of their ids), so
+ * that sets of members can be represented compactly as bitsets.
+ *
+ * <p>
+ *     Obtained from {@link ApplicationFeatures#getMemberOrdinals()} once every member has been added to the catalog.
+ * </p>
+ */
+public class ApplicationMemberOrdinals {
+
+    private final ApplicationFeatureId[] memberIds;
+    private final Map<ApplicationFeatureId, Integer> ordinalByMemberId;
+
+    public ApplicationMemberOrdinals(final Collection<ApplicationFeatureId> memberIds) {
+        for (final ApplicationFeatureId memberId : memberIds) {
+            ApplicationFeatureType.ensureMember(memberId);
+        }
+        final ImmutableSortedSet<ApplicationFeatureId> sortedMemberIds = ImmutableSortedSet.copyOf(memberIds);
+        this.memberIds = new ApplicationFeatureId[sortedMemberIds.size()];
+        this.ordinalByMemberId = Maps.newHashMapWithExpectedSize(sortedMemberIds.size());
+        int ordinal = 0;
+        for (final ApplicationFeatureId memberId : sortedMemberIds) {
+            this.memberIds[ordinal] = memberId;
+            this.ordinalByMemberId.put(memberId, ordinal);
+            ordinal++;
+        }
+    }
+
+    /**
+     * The number of members; their ordinals range from zero up to (but excluding) this.
+     */
+    @Programmatic
+    public int size() {
+        return memberIds.length;
+    }
+
+    /**
+     * The ordinal of the member, or <tt>-1</tt> if the feature is not a member of the metamodel.
+     */
+    @Programmatic
+    public int ordinalOf(final ApplicationFeatureId featureId) {
+        final Integer ordinal = ordinalByMemberId.get(featureId);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    @Programmatic
+    public ApplicationFeatureId memberIdOf(final int ordinal) {
+        return memberIds[ordinal];
+    }
+
+    /**
+     * The ordinals of the members beneath the feature (ie having it on their {@link ApplicationFeatureId#getPathIds() path}):
+     * the member itself, or the members of a class, or of a package and its subpackages.
+     *
+     * <p>
+     *     Being in order, the members of a class are a range of ordinals, as are those of a package and its
+     *     subpackages (together with any sibling packages whose names extend this one's with a character sorting
+     *     before '.', which are filtered out).
+     * </p>
+     */
+    @Programmatic
+    public BitSet ordinalsBeneath(final ApplicationFeatureId featureId) {
+        final BitSet ordinals = new BitSet(memberIds.length);
+        final int from;
+        final int to;
+        switch (featureId.getType()) {
+            case PACKAGE:
+                from = insertionPointOf(memberIdsFrom(featureId.getPackageName(), null));
+                to = insertionPointOf(memberIdsFrom(featureId.getPackageName() + "/", null));
+                break;
+            case CLASS:
+                from = insertionPointOf(memberIdsFrom(featureId.getPackageName(), featureId.getClassName()));
+                to = insertionPointOf(memberIdsFrom(featureId.getPackageName(), featureId.getClassName() + "\0"));
+                break;
+            default:
+                final int ordinal = ordinalOf(featureId);
+                if(ordinal != -1) {
+                    ordinals.set(ordinal);
+                }
+                return ordinals;
+        }
+        for (int ordinal = from; ordinal < to; ordinal++) {
+            if(memberIds[ordinal].getPathIds().contains(featureId)) {
+                ordinals.set(ordinal);
+            }
+        }
+        return ordinals;
+    }
+
+    /**
+     * A (member) id that sorts before every member of the class (or, if <tt>null</tt>, of the package), and after
+     * every member of any preceding class or package.
+     */
+    private static ApplicationFeatureId memberIdsFrom(final String packageName, final String className) {
+        final ApplicationFeatureId memberId = new ApplicationFeatureId(ApplicationFeatureType.MEMBER);
+        memberId.setPackageName(packageName);
+        memberId.setClassName(className);
+        return memberId;
+    }
+
+    private int insertionPointOf(final ApplicationFeatureId memberId) {
+        final int index = Arrays.binarySearch(memberIds, memberId);
+        return index >= 0 ? index : -(index + 1);
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.metrics;
+
+/**
+ * The hits and misses of a cache, counted using (striped) {@link Counter}s.
+ */
+public class CacheStatistics {
+
+    private final Counter hits = new Counter();
+    private final Counter misses = new Counter();
+
+    //region > hit, miss
+
+    public void hit() {
+        hits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    //endregion
+
+    //region > hits, misses, hitRatio
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * The proportion (between 0 and 1) of lookups that were hits, or zero if there have been none.
+     */
+    public double getHitRatio() {
+        final long hits = getHits();
+        final long lookups = hits + getMisses();
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    //endregion
+
+    //region > reset
+
+    public void reset() {
+        hits.reset();
+        misses.reset();
+    }
+
+    //endregion
+
+    @Override
+    public String toString() {
+        return "{hits=" + getHits() + ", misses=" + getMisses() + "}";
+    }
+}
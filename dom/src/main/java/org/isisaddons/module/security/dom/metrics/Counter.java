@@ -0,0 +1,73 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe count, for use on hot paths.
+ *
+ * <p>
+ *     Rather than a single (contended) <tt>AtomicLong</tt>, each thread adds to one of a number of
+ *     {@link Stripes stripes}, each on a cache line of its own; these are only summed when the count is read.  A read
+ *     concurrent with updates is therefore not a snapshot, but is accurate enough for monitoring.
+ * </p>
+ */
+public class Counter {
+
+    /**
+     * The number of <tt>long</tt>s to a (64 byte) cache line.
+     */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray cells = new AtomicLongArray(Stripes.COUNT * PADDING);
+
+    //region > increment, add
+
+    public void increment() {
+        add(1L);
+    }
+
+    public void add(final long delta) {
+        cells.getAndAdd(Stripes.current() * PADDING, delta);
+    }
+
+    //endregion
+
+    //region > get, reset
+
+    public long get() {
+        long sum = 0;
+        for (int stripe = 0; stripe < Stripes.COUNT; stripe++) {
+            sum += cells.get(stripe * PADDING);
+        }
+        return sum;
+    }
+
+    public void reset() {
+        for (int stripe = 0; stripe < Stripes.COUNT; stripe++) {
+            cells.set(stripe * PADDING, 0L);
+        }
+    }
+
+    //endregion
+
+    @Override
+    public String toString() {
+        return Long.toString(get());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe histogram of durations (in nanoseconds), for use on hot paths, from which percentiles can be estimated.
+ *
+ * <p>
+ *     Each power of two from 1&micro;s up to about half an hour is divided into {@link #SUB_BUCKETS four} buckets, so
+ *     that a percentile is reported to within about 12%; shorter and longer durations are counted in the first and
+ *     last bucket respectively.  As for {@link Counter}, each thread records into one of a number of
+ *     {@link Stripes stripes}, which are only summed when the histogram is read.
+ * </p>
+ */
+public class Histogram {
+
+    private static final int MIN_EXPONENT = 10;  // 2^10ns, about 1us
+    private static final int MAX_EXPONENT = 40;  // 2^41ns, about 37 minutes
+    private static final int SUB_BUCKETS = 4;
+    private static final int SUB_BUCKET_BITS = 2;
+
+    static final int BUCKETS = 2 + (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS;
+
+    /**
+     * The buckets of each stripe are contiguous.
+     */
+    private final AtomicLongArray cells = new AtomicLongArray(Stripes.COUNT * BUCKETS);
+
+    //region > record
+
+    public void record(final long nanos) {
+        cells.getAndIncrement(Stripes.current() * BUCKETS + bucketFor(nanos));
+    }
+
+    static int bucketFor(final long nanos) {
+        if(nanos < (1L << MIN_EXPONENT)) {
+            return 0;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if(exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        final int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return 1 + (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * The smallest duration counted in the specified bucket.
+     */
+    static long lowerBoundOf(final int bucket) {
+        if(bucket == 0) {
+            return 0L;
+        }
+        final int exponent = MIN_EXPONENT + (bucket - 1) / SUB_BUCKETS;
+        final int subBucket = (bucket - 1) % SUB_BUCKETS;
+        return (1L << exponent) + ((long) subBucket << (exponent - SUB_BUCKET_BITS));
+    }
+
+    //endregion
+
+    //region > getCounts, getPercentileNanos
+
+    /**
+     * The number of durations recorded in each bucket.
+     */
+    public long[] getCounts() {
+        final long[] counts = new long[BUCKETS];
+        for (int stripe = 0; stripe < Stripes.COUNT; stripe++) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                counts[bucket] += cells.get(stripe * BUCKETS + bucket);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * An estimate (the midpoint of the bucket in which it falls) of the specified percentile, or zero if nothing has
+     * been recorded.
+     *
+     * @param percentile - between 0 and 100.
+     */
+    public long getPercentileNanos(final double percentile) {
+        final long[] counts = getCounts();
+        long total = 0;
+        for (final long count : counts) {
+            total += count;
+        }
+        if(total == 0) {
+            return 0L;
+        }
+        final long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * total));
+        long cumulative = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            cumulative += counts[bucket];
+            if(cumulative >= rank) {
+                return bucket == BUCKETS - 1
+                        ? lowerBoundOf(bucket)
+                        : (lowerBoundOf(bucket) + lowerBoundOf(bucket + 1)) / 2;
+            }
+        }
+        return lowerBoundOf(BUCKETS - 1);
+    }
+
+    //endregion
+
+    //region > reset
+
+    public void reset() {
+        for (int i = 0; i < cells.length(); i++) {
+            cells.set(i, 0L);
+        }
+    }
+
+    //endregion
+
+}
@@ -0,0 +1,338 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.metrics;
+
+import org.isisaddons.module.security.dom.password.PasswordVerificationExecutor;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+
+/**
+ * The counters and timers of the module's authentication, authorization and tenancy checks, shared by all of them
+ * (the Shiro realm, being instantiated by Shiro rather than by Isis, cannot have a service injected) and published over
+ * JMX by the {@link SecurityMetricsService}.
+ *
+ * <p>
+ *     Every counter, timer and cache statistic is {@link Stripes striped}, so recording them does not introduce
+ *     contention on the hot paths being measured.
+ * </p>
+ */
+public class SecurityMetrics implements SecurityMetricsMXBean {
+
+    private static final SecurityMetrics INSTANCE = new SecurityMetrics();
+
+    public static SecurityMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    SecurityMetrics() {
+    }
+
+    //region > authentication
+
+    public enum AuthenticationOutcome {
+        OK,
+        DELEGATED,
+        UNKNOWN_USER,
+        BAD_PASSWORD,
+        DISABLED,
+        /**
+         * The password could not be verified due to load, or no password encryption service is configured.
+         */
+        REJECTED
+    }
+
+    private final Counter[] authentications = newCounters(AuthenticationOutcome.values().length);
+    private final Timer authentication = new Timer("authentication");
+    private final Timer sessionOpen = new Timer("sessionOpen");
+    private final Timer userLookup = new Timer("lookup");
+    private final Timer passwordVerification = new Timer("passwordVerification");
+    private final CacheStatistics verifiedCredentialsCache = new CacheStatistics();
+    private final Counter passwordRehashFailures = new Counter();
+
+    public void authenticated(final AuthenticationOutcome outcome) {
+        authentications[outcome.ordinal()].increment();
+    }
+
+    public long getAuthentications(final AuthenticationOutcome outcome) {
+        return authentications[outcome.ordinal()].get();
+    }
+
+    @Override
+    public long getAuthenticationsOk() {
+        return getAuthentications(AuthenticationOutcome.OK);
+    }
+
+    @Override
+    public long getAuthenticationsDelegated() {
+        return getAuthentications(AuthenticationOutcome.DELEGATED);
+    }
+
+    @Override
+    public long getAuthenticationsUnknownUser() {
+        return getAuthentications(AuthenticationOutcome.UNKNOWN_USER);
+    }
+
+    @Override
+    public long getAuthenticationsBadPassword() {
+        return getAuthentications(AuthenticationOutcome.BAD_PASSWORD);
+    }
+
+    @Override
+    public long getAuthenticationsDisabled() {
+        return getAuthentications(AuthenticationOutcome.DISABLED);
+    }
+
+    @Override
+    public long getAuthenticationsRejected() {
+        return getAuthentications(AuthenticationOutcome.REJECTED);
+    }
+
+    @Override
+    public Timer getAuthentication() {
+        return authentication;
+    }
+
+    @Override
+    public Timer getSessionOpen() {
+        return sessionOpen;
+    }
+
+    @Override
+    public Timer getUserLookup() {
+        return userLookup;
+    }
+
+    @Override
+    public Timer getPasswordVerification() {
+        return passwordVerification;
+    }
+
+    @Override
+    public CacheStatistics getVerifiedCredentialsCache() {
+        return verifiedCredentialsCache;
+    }
+
+    /**
+     * The executor (if any) verifying passwords, whose queue depth, active count, rejections and wait time are
+     * published; while none is registered these all read as zero.
+     */
+    private volatile PasswordVerificationExecutor passwordVerificationExecutor;
+    private final Timer noPasswordVerificationWait = new Timer("passwordVerificationWait");
+
+    /**
+     * Registers the executor verifying passwords, replacing any previously registered.
+     */
+    public synchronized void setPasswordVerificationExecutor(final PasswordVerificationExecutor executor) {
+        this.passwordVerificationExecutor = executor;
+    }
+
+    /**
+     * Unregisters the executor, if (and only if) it is the one currently registered.
+     */
+    public synchronized void removePasswordVerificationExecutor(final PasswordVerificationExecutor executor) {
+        if(this.passwordVerificationExecutor == executor) {
+            this.passwordVerificationExecutor = null;
+        }
+    }
+
+    @Override
+    public int getPasswordVerificationQueueDepth() {
+        final PasswordVerificationExecutor executor = passwordVerificationExecutor;
+        return executor != null ? executor.getQueueDepth() : 0;
+    }
+
+    @Override
+    public int getPasswordVerificationActiveCount() {
+        final PasswordVerificationExecutor executor = passwordVerificationExecutor;
+        return executor != null ? executor.getActiveCount() : 0;
+    }
+
+    @Override
+    public long getPasswordVerificationRejections() {
+        final PasswordVerificationExecutor executor = passwordVerificationExecutor;
+        return executor != null ? executor.getRejections() : 0L;
+    }
+
+    @Override
+    public Timer getPasswordVerificationWait() {
+        final PasswordVerificationExecutor executor = passwordVerificationExecutor;
+        return executor != null ? executor.getWaitTimer() : noPasswordVerificationWait;
+    }
+
+    public void passwordRehashFailed() {
+        passwordRehashFailures.increment();
+    }
+
+    @Override
+    public long getPasswordRehashFailures() {
+        return passwordRehashFailures.get();
+    }
+
+    //endregion
+
+    //region > authorization
+
+    private final Counter[] permissionChecks = newCounters(ApplicationPermissionMode.values().length);
+    private final Timer permissionEvaluation = new Timer("permissionEvaluation");
+    private final CacheStatistics permissionDecisionCache = new CacheStatistics();
+    private final CacheStatistics permissionResolverCache = new CacheStatistics();
+    private final CacheStatistics permissionSetCache = new CacheStatistics();
+    private final CacheStatistics permissionOidIndex = new CacheStatistics();
+
+    public void permissionChecked(final ApplicationPermissionMode mode) {
+        permissionChecks[mode.ordinal()].increment();
+    }
+
+    public long getPermissionChecks(final ApplicationPermissionMode mode) {
+        return permissionChecks[mode.ordinal()].get();
+    }
+
+    @Override
+    public long getPermissionChecksViewing() {
+        return getPermissionChecks(ApplicationPermissionMode.VIEWING);
+    }
+
+    @Override
+    public long getPermissionChecksChanging() {
+        return getPermissionChecks(ApplicationPermissionMode.CHANGING);
+    }
+
+    @Override
+    public Timer getPermissionEvaluation() {
+        return permissionEvaluation;
+    }
+
+    @Override
+    public CacheStatistics getPermissionDecisionCache() {
+        return permissionDecisionCache;
+    }
+
+    @Override
+    public CacheStatistics getPermissionResolverCache() {
+        return permissionResolverCache;
+    }
+
+    @Override
+    public CacheStatistics getPermissionSetCache() {
+        return permissionSetCache;
+    }
+
+    @Override
+    public CacheStatistics getPermissionOidIndex() {
+        return permissionOidIndex;
+    }
+
+    //endregion
+
+    //region > tenancy
+
+    private final Counter tenancyHidden = new Counter();
+    private final Counter tenancyVisible = new Counter();
+    private final Counter tenancyDisabled = new Counter();
+    private final Counter tenancyEnabled = new Counter();
+    private final Timer tenancyHides = new Timer("tenancyHides");
+    private final Timer tenancyDisables = new Timer("tenancyDisables");
+
+    /**
+     * Records a decision whether to hide an object, made in the time since the specified {@link System#nanoTime() start}.
+     */
+    public void tenancyHides(final boolean hidden, final long startNanos) {
+        tenancyHides.recordSince(startNanos);
+        (hidden ? tenancyHidden : tenancyVisible).increment();
+    }
+
+    /**
+     * Records a decision whether to disable an object, made in the time since the specified
+     * {@link System#nanoTime() start}.
+     */
+    public void tenancyDisables(final boolean disabled, final long startNanos) {
+        tenancyDisables.recordSince(startNanos);
+        (disabled ? tenancyDisabled : tenancyEnabled).increment();
+    }
+
+    @Override
+    public long getTenancyHidden() {
+        return tenancyHidden.get();
+    }
+
+    @Override
+    public long getTenancyVisible() {
+        return tenancyVisible.get();
+    }
+
+    @Override
+    public long getTenancyDisabled() {
+        return tenancyDisabled.get();
+    }
+
+    @Override
+    public long getTenancyEnabled() {
+        return tenancyEnabled.get();
+    }
+
+    @Override
+    public Timer getTenancyHides() {
+        return tenancyHides;
+    }
+
+    @Override
+    public Timer getTenancyDisables() {
+        return tenancyDisables;
+    }
+
+    //endregion
+
+    //region > reset
+
+    @Override
+    public void reset() {
+        for (final Counter counter : authentications) {
+            counter.reset();
+        }
+        for (final Counter counter : permissionChecks) {
+            counter.reset();
+        }
+        for (final Timer timer : new Timer[] {
+                authentication, sessionOpen, userLookup, passwordVerification, permissionEvaluation,
+                tenancyHides, tenancyDisables }) {
+            timer.reset();
+        }
+        for (final CacheStatistics cacheStatistics : new CacheStatistics[] {
+                verifiedCredentialsCache, permissionDecisionCache, permissionResolverCache, permissionSetCache,
+                permissionOidIndex }) {
+            cacheStatistics.reset();
+        }
+        final PasswordVerificationExecutor executor = passwordVerificationExecutor;
+        if(executor != null) {
+            executor.resetMetrics();
+        }
+        for (final Counter counter : new Counter[] {
+                passwordRehashFailures, tenancyHidden, tenancyVisible, tenancyDisabled, tenancyEnabled }) {
+            counter.reset();
+        }
+    }
+
+    //endregion
+
+    private static Counter[] newCounters(final int number) {
+        final Counter[] counters = new Counter[number];
+        for (int i = 0; i < number; i++) {
+            counters[i] = new Counter();
+        }
+        return counters;
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.metrics;
+
+/**
+ * The management interface of {@link SecurityMetrics}, as published over JMX by the {@link SecurityMetricsService}.
+ *
+ * <p>
+ *     Each {@link Timer} is published as a composite of its count, total, mean, maximum, estimated percentiles and
+ *     {@link Histogram histogram} buckets; each {@link CacheStatistics} as its hits, misses and hit ratio.
+ * </p>
+ */
+public interface SecurityMetricsMXBean {
+
+    //region > authentication
+
+    long getAuthenticationsOk();
+
+    long getAuthenticationsDelegated();
+
+    long getAuthenticationsUnknownUser();
+
+    long getAuthenticationsBadPassword();
+
+    long getAuthenticationsDisabled();
+
+    /**
+     * Authentications that could not be attempted: the password could not be verified due to load, or no password
+     * encryption service is configured.
+     */
+    long getAuthenticationsRejected();
+
+    Timer getAuthentication();
+
+    Timer getSessionOpen();
+
+    Timer getUserLookup();
+
+    Timer getPasswordVerification();
+
+    CacheStatistics getVerifiedCredentialsCache();
+
+    /**
+     * Logins waiting for their password to be verified by the realm's dedicated threads (if configured).
+     */
+    int getPasswordVerificationQueueDepth();
+
+    /**
+     * Passwords currently being verified by the realm's dedicated threads (if configured).
+     */
+    int getPasswordVerificationActiveCount();
+
+    /**
+     * Logins rejected because the queue of password verifications was full, or the verification timed out.
+     */
+    long getPasswordVerificationRejections();
+
+    /**
+     * Time spent by logins waiting in the queue for their password verification to start.
+     */
+    Timer getPasswordVerificationWait();
+
+    /**
+     * Passwords that could not be rehashed (in the background) following a successful login.
+     */
+    long getPasswordRehashFailures();
+
+    //endregion
+
+    //region > authorization
+
+    long getPermissionChecksViewing();
+
+    long getPermissionChecksChanging();
+
+    /**
+     * Evaluations of permissions not already decided (and memoized) for the user.
+     */
+    Timer getPermissionEvaluation();
+
+    CacheStatistics getPermissionDecisionCache();
+
+    CacheStatistics getPermissionResolverCache();
+
+    CacheStatistics getPermissionSetCache();
+
+    /**
+     * Lookups of the roles' permissions when finding the permission that explains a user's access.
+     */
+    CacheStatistics getPermissionOidIndex();
+
+    //endregion
+
+    //region > tenancy
+
+    long getTenancyHidden();
+
+    long getTenancyVisible();
+
+    long getTenancyDisabled();
+
+    long getTenancyEnabled();
+
+    Timer getTenancyHides();
+
+    Timer getTenancyDisables();
+
+    //endregion
+
+    void reset();
+}
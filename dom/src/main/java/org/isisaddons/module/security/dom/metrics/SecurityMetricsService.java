@@ -0,0 +1,114 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+
+/**
+ * Publishes the module's {@link SecurityMetrics} as an MXBean (named {@link #OBJECT_NAME}) on the platform MBean
+ * server, for the lifetime of the application; view using (say) <tt>jconsole</tt> or <tt>jvisualvm</tt>.
+ *
+ * <p>
+ *     If some other application in the same JVM has already published its metrics under that name, then this one's
+ *     are not published.
+ * </p>
+ */
+@DomainService(
+        nature = NatureOfService.DOMAIN
+)
+public class SecurityMetricsService {
+
+    public static final String OBJECT_NAME = "org.isisaddons.module.security:type=SecurityMetrics";
+
+    private ObjectName registeredName;
+
+    //region > init, shutdown
+    @Programmatic
+    @PostConstruct
+    public void init() {
+        final ObjectName objectName = objectName();
+        try {
+            getMBeanServer().registerMBean(getMetrics(), objectName);
+            registeredName = objectName;
+        } catch (final InstanceAlreadyExistsException ex) {
+            // published by another application in this JVM
+        } catch (final JMException ex) {
+            throw new IllegalStateException("Unable to register " + objectName, ex);
+        }
+    }
+
+    @Programmatic
+    @PreDestroy
+    public void shutdown() {
+        if(registeredName == null) {
+            return;
+        }
+        try {
+            getMBeanServer().unregisterMBean(registeredName);
+        } catch (final JMException ex) {
+            // already unregistered
+        } finally {
+            registeredName = null;
+        }
+    }
+    //endregion
+
+    //region > getMetrics, isRegistered
+
+    @Programmatic
+    public SecurityMetrics getMetrics() {
+        return SecurityMetrics.getInstance();
+    }
+
+    /**
+     * Whether this service published the metrics (and has not since been shut down).
+     */
+    @Programmatic
+    public boolean isRegistered() {
+        return registeredName != null;
+    }
+
+    //endregion
+
+    //region > helpers
+
+    MBeanServer getMBeanServer() {
+        return ManagementFactory.getPlatformMBeanServer();
+    }
+
+    private static ObjectName objectName() {
+        try {
+            return new ObjectName(OBJECT_NAME);
+        } catch (final JMException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    //endregion
+
+}
@@ -0,0 +1,43 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.metrics;
+
+/**
+ * Spreads the updates of {@link Counter}s and {@link Histogram}s over a number of cells (in proportion to the number of
+ * processors), chosen by thread, so that threads recording concurrently rarely contend for the same one.
+ */
+final class Stripes {
+
+    private Stripes(){}
+
+    /**
+     * A power of two.
+     */
+    static final int COUNT = count(Runtime.getRuntime().availableProcessors());
+
+    static int count(final int processors) {
+        final int stripes = Integer.highestOneBit(Math.max(1, 2 * processors - 1)) << 1;
+        return Math.min(stripes, 64);
+    }
+
+    /**
+     * The stripe of the current thread.
+     */
+    static int current() {
+        return (int) Thread.currentThread().getId() & (COUNT - 1);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe accumulator of elapsed times: the number of timings recorded, together with their total, maximum and a
+ * {@link Histogram} from which percentiles are estimated.
+ *
+ * <p>
+ *     The count, total and histogram are {@link Stripes striped}, so timing a hot path does not make it a point of
+ *     contention; the maximum is only written when exceeded.
+ * </p>
+ */
+public class Timer {
+
+    private final String name;
+
+    private final Counter count = new Counter();
+    private final Counter totalNanos = new Counter();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final Histogram histogram = new Histogram();
+
+    public Timer(final String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    //region > record, recordSince
+
+    public void record(final long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        histogram.record(nanos);
+        long max;
+        while(nanos > (max = maxNanos.get())) {
+            if(maxNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Records the time elapsed since the specified {@link System#nanoTime() start}.
+     */
+    public void recordSince(final long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    //endregion
+
+    //region > count, totalNanos, maxNanos, mean, percentiles
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public long getMeanNanos() {
+        final long count = getCount();
+        return count == 0 ? 0 : getTotalNanos() / count;
+    }
+
+    public double getMeanMillis() {
+        return toMillis(getMeanNanos());
+    }
+
+    public double getMaxMillis() {
+        return toMillis(getMaxNanos());
+    }
+
+    /**
+     * An estimate of the specified percentile; see {@link Histogram#getPercentileNanos(double)}.
+     *
+     * @param percentile - between 0 and 100.
+     */
+    public double getPercentileMillis(final double percentile) {
+        return toMillis(histogram.getPercentileNanos(percentile));
+    }
+
+    public double getP50Millis() {
+        return getPercentileMillis(50);
+    }
+
+    public double getP99Millis() {
+        return getPercentileMillis(99);
+    }
+
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    private static double toMillis(final long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    //endregion
+
+    //region > reset
+
+    public void reset() {
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+        histogram.reset();
+    }
+
+    //endregion
+
+    @Override
+    public String toString() {
+        return name + "{count=" + getCount() + ", meanMillis=" + getMeanMillis() + ", p99Millis=" + getP99Millis() + ", maxMillis=" + getMaxMillis() + "}";
+    }
+}
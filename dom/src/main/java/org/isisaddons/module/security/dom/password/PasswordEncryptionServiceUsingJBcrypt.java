@@ -16,25 +16,68 @@
  */
 package org.isisaddons.module.security.dom.password;
 
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
 import org.mindrot.jbcrypt.BCrypt;
 
 import org.apache.isis.applib.annotation.Programmatic;
 
-public class PasswordEncryptionServiceUsingJBcrypt implements PasswordEncryptionService {
+/**
+ * Encrypts passwords using BCrypt, with a fresh salt for every password.
+ *
+ * <p>
+ *     The work factor (the log2 of the number of hashing rounds) defaults to {@value #DEFAULT_LOG_ROUNDS}, and can be
+ *     changed using the {@value #LOG_ROUNDS_KEY} configuration property.  Passwords that were encrypted using some
+ *     other work factor continue to match, and are reported as {@link #isRehashRequired(String) requiring a rehash}.
+ * </p>
+ */
+public class PasswordEncryptionServiceUsingJBcrypt implements PasswordEncryptionService, PasswordRehashing {
+
+    public static final String LOG_ROUNDS_KEY = "isis.ext.security.PasswordEncryptionServiceUsingJBcrypt.logRounds";
+
+    /**
+     * As per {@link BCrypt#gensalt()}.
+     */
+    public static final int DEFAULT_LOG_ROUNDS = 10;
+
+    static final int MIN_LOG_ROUNDS = 4;
+    static final int MAX_LOG_ROUNDS = 30;
+
+    //region > init, logRounds
 
-    String salt;
+    private int logRounds = DEFAULT_LOG_ROUNDS;
+
+    @Programmatic
+    @PostConstruct
+    public void init(final Map<String, String> properties) {
+        final String logRounds = properties.get(LOG_ROUNDS_KEY);
+        if(logRounds != null) {
+            setLogRounds(Integer.parseInt(logRounds.trim()));
+        }
+    }
+
+    @Programmatic
+    public int getLogRounds() {
+        return logRounds;
+    }
 
-    private String getSalt() {
-        if (salt == null) {
-            salt = BCrypt.gensalt();
+    @Programmatic
+    public void setLogRounds(final int logRounds) {
+        if(logRounds < MIN_LOG_ROUNDS || logRounds > MAX_LOG_ROUNDS) {
+            throw new IllegalArgumentException(
+                    String.format("logRounds must be between %d and %d", MIN_LOG_ROUNDS, MAX_LOG_ROUNDS));
         }
-        return salt;
+        this.logRounds = logRounds;
     }
 
+    //endregion
+
     @Programmatic
     @Override
     public String encrypt(String password) {
-        return password == null ? null : BCrypt.hashpw(password, getSalt());
+        return password == null ? null : BCrypt.hashpw(password, BCrypt.gensalt(logRounds));
     }
 
     @Programmatic
@@ -48,4 +91,40 @@ public boolean matches(String candidate, String encrypted) {
         }
         return BCrypt.checkpw(candidate, encrypted);
     }
+
+    //region > isRehashRequired
+
+    /**
+     * Whether the encrypted password was hashed using a work factor other than that {@link #getLogRounds() currently
+     * configured} (or is not a recognisable BCrypt hash at all).
+     */
+    @Programmatic
+    @Override
+    public boolean isRehashRequired(final String encrypted) {
+        if(encrypted == null) {
+            return false;
+        }
+        return logRoundsOf(encrypted) != logRounds;
+    }
+
+    /**
+     * The work factor of a hash in the form <tt>$2a$NN$...</tt>, or -1 if not in that form.
+     */
+    static int logRoundsOf(final String encrypted) {
+        if(encrypted.length() < 7 || encrypted.charAt(0) != '$' || encrypted.charAt(1) != '2') {
+            return -1;
+        }
+        final int roundsStart = encrypted.charAt(2) == '$' ? 3 : 4;
+        if(encrypted.length() < roundsStart + 3 || encrypted.charAt(roundsStart + 2) != '$') {
+            return -1;
+        }
+        final char tens = encrypted.charAt(roundsStart);
+        final char units = encrypted.charAt(roundsStart + 1);
+        if(tens < '0' || tens > '9' || units < '0' || units > '9') {
+            return -1;
+        }
+        return (tens - '0') * 10 + (units - '0');
+    }
+
+    //endregion
 }
@@ -0,0 +1,34 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.password;
+
+import org.apache.isis.applib.annotation.Programmatic;
+
+/**
+ * Optionally implemented by a {@link PasswordEncryptionService} whose configuration (such as its work factor) can
+ * change over time, so that passwords encrypted under an earlier configuration can be re-encrypted - the next time
+ * that the user successfully logs in - using the current one.
+ */
+public interface PasswordRehashing {
+
+    /**
+     * Whether the password should be {@link PasswordEncryptionService#encrypt(String) encrypted} afresh, because it
+     * was encrypted using some other configuration to that now in use.
+     */
+    @Programmatic
+    public boolean isRehashRequired(final String encrypted);
+}
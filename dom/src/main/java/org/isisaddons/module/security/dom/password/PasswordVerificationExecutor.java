@@ -0,0 +1,193 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.password;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.isisaddons.module.security.dom.metrics.SecurityMetrics;
+import org.isisaddons.module.security.dom.metrics.Timer;
+
+/**
+ * Verifies passwords (using a {@link PasswordEncryptionService}) on a fixed number of dedicated threads, so that a
+ * burst of logins - or a brute-force attack - cannot tie up every request-serving thread on the (deliberately
+ * expensive) hashing of passwords.
+ *
+ * <p>
+ *     Verifications that cannot start immediately wait in a bounded queue.  If that queue is full, or (optionally) if
+ *     the verification has not completed within a timeout, then it is rejected with a
+ *     {@link PasswordVerificationRejectedException}; the caller should ask the user to try again later.
+ * </p>
+ *
+ * <p>
+ *     The queue depth, active count, rejections and wait time are published over JMX once the executor is
+ *     {@link SecurityMetrics#setPasswordVerificationExecutor(PasswordVerificationExecutor) registered} with the
+ *     {@link SecurityMetrics}.
+ * </p>
+ */
+public class PasswordVerificationExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    private final Timer waitTimer = new Timer("passwordVerificationWait");
+    private final AtomicLong rejections = new AtomicLong();
+
+    /**
+     * @param parallelism - the maximum number of passwords to verify concurrently.
+     * @param queueCapacity - the maximum number of verifications waiting to start.
+     * @param timeoutMillis - how long to wait for a verification to complete before rejecting it, or zero to wait
+     *                      indefinitely.
+     */
+    public PasswordVerificationExecutor(final int parallelism, final int queueCapacity, final long timeoutMillis) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        if(queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be at least 1");
+        }
+        this.timeoutMillis = timeoutMillis;
+        this.executor = new ThreadPoolExecutor(
+                parallelism, parallelism,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity),
+                new DaemonThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    //region > matches
+
+    /**
+     * As {@link PasswordEncryptionService#matches(String, String)}, but performed on one of this executor's threads.
+     *
+     * @throws PasswordVerificationRejectedException - if the verification was rejected due to load.
+     */
+    public boolean matches(
+            final PasswordEncryptionService passwordEncryptionService,
+            final String candidate,
+            final String encrypted) throws PasswordVerificationRejectedException {
+
+        final long submitted = System.nanoTime();
+        final Future<Boolean> future;
+        try {
+            future = executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    waitTimer.recordSince(submitted);
+                    return passwordEncryptionService.matches(candidate, encrypted);
+                }
+            });
+        } catch (final RejectedExecutionException ex) {
+            rejections.incrementAndGet();
+            throw new PasswordVerificationRejectedException("Queue of password verifications is full", ex);
+        }
+
+        try {
+            return timeoutMillis > 0
+                    ? future.get(timeoutMillis, TimeUnit.MILLISECONDS)
+                    : future.get();
+        } catch (final TimeoutException ex) {
+            future.cancel(true);
+            rejections.incrementAndGet();
+            throw new PasswordVerificationRejectedException("Password verification timed out", ex);
+        } catch (final InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            rejections.incrementAndGet();
+            throw new PasswordVerificationRejectedException("Interrupted while verifying password", ex);
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    //endregion
+
+    //region > metrics
+
+    /**
+     * The number of verifications waiting to start.
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * The number of verifications currently in progress.
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * The number of verifications rejected, because the queue was full or they timed out.
+     */
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    /**
+     * The time verifications have spent waiting in the queue before starting.
+     */
+    public Timer getWaitTimer() {
+        return waitTimer;
+    }
+
+    /**
+     * Zeroes the {@link #getRejections() rejections} and {@link #getWaitTimer() wait timer}.
+     */
+    public void resetMetrics() {
+        rejections.set(0);
+        waitTimer.reset();
+    }
+
+    //endregion
+
+    //region > shutdown
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    //endregion
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "password-verification-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
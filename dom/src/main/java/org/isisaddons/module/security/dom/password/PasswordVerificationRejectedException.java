@@ -0,0 +1,30 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.password;
+
+/**
+ * Thrown by {@link PasswordVerificationExecutor} if a password could not be verified because too many other
+ * verifications are in progress; the user should try again later.
+ */
+public class PasswordVerificationRejectedException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public PasswordVerificationRejectedException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
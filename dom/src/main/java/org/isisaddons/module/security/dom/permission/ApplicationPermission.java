@@ -45,6 +45,7 @@
 import org.apache.isis.applib.util.ObjectContracts;
 
 import org.isisaddons.module.security.SecurityModule;
+import org.isisaddons.module.security.dom.cache.PendingSecurityCacheInvalidations;
 import org.isisaddons.module.security.dom.feature.ApplicationFeature;
 import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
 import org.isisaddons.module.security.dom.feature.ApplicationFeatureRepository;
@@ -224,7 +225,9 @@ public static class UpdateRoleDomainEvent extends ActionDomainEvent {}
     )
     @MemberOrder(name="Role", sequence = "1")
     public ApplicationPermission updateRole(final ApplicationRole applicationRole) {
+        invalidateCachedPermissionSets();
         setRole(applicationRole);
+        invalidateCachedPermissionSets();
         return this;
     }
 
@@ -265,6 +268,7 @@ public static class AllowDomainEvent extends ActionDomainEvent {}
     @MemberOrder(name = "Rule", sequence = "1")
     public ApplicationPermission allow() {
         setRule(ApplicationPermissionRule.ALLOW);
+        invalidateCachedPermissionSets();
         return this;
     }
     public String disableAllow() {
@@ -283,6 +287,7 @@ public static class VetoDomainEvent extends ActionDomainEvent {}
     @MemberOrder(name = "Rule", sequence = "1")
     public ApplicationPermission veto() {
         setRule(ApplicationPermissionRule.VETO);
+        invalidateCachedPermissionSets();
         return this;
     }
     public String disableVeto() {
@@ -323,6 +328,7 @@ public static class ViewingDomainEvent extends ActionDomainEvent {}
     @MemberOrder(name = "Mode", sequence = "1")
     public ApplicationPermission viewing() {
         setMode(ApplicationPermissionMode.VIEWING);
+        invalidateCachedPermissionSets();
         return this;
     }
     public String disableViewing() {
@@ -342,6 +348,7 @@ public static class ChangingDomainEvent extends ActionDomainEvent {}
     @MemberOrder(name = "Mode", sequence = "2")
     public ApplicationPermission changing() {
         setMode(ApplicationPermissionMode.CHANGING);
+        invalidateCachedPermissionSets();
         return this;
     }
     public String disableChanging() {
@@ -351,11 +358,24 @@ public String disableChanging() {
 
     //region > featureId (derived property)
 
+    /**
+     * The interned id, derived from the {@link #getFeatureType() feature type} and {@link #getFeatureFqn() fqn} it
+     * was created from; checked against them on each use because JDO may replace them without calling the setters.
+     */
+    @javax.jdo.annotations.NotPersistent
+    private transient ApplicationFeatureId featureId;
+
     private ApplicationFeatureId getFeatureId() {
-        if(getFeatureType() == null) {
+        final ApplicationFeatureType featureType = getFeatureType();
+        if(featureType == null) {
             return null;
         }
-        return ApplicationFeatureId.newFeature(getFeatureType(), getFeatureFqn());
+        final String featureFqn = getFeatureFqn();
+        final ApplicationFeatureId featureId = this.featureId;
+        if(featureId != null && featureId.getType() == featureType && featureId.getFullyQualifiedName().equals(featureFqn)) {
+            return featureId;
+        }
+        return this.featureId = ApplicationFeatureId.newFeature(featureType, featureFqn).intern();
     }
     ApplicationFeature getFeature() {
         if(getFeatureId() == null) {
@@ -414,6 +434,7 @@ public ApplicationFeatureType getFeatureType() {
 
     public void setFeatureType(final ApplicationFeatureType featureType) {
         this.featureType = featureType;
+        this.featureId = null;
     }
     //endregion
 
@@ -440,6 +461,7 @@ public String getFeatureFqn() {
 
     public void setFeatureFqn(final String featureFqn) {
         this.featureFqn = featureFqn;
+        this.featureId = null;
     }
 
     //endregion
@@ -457,6 +479,7 @@ public ApplicationRole delete(
             final Boolean areYouSure) {
         final ApplicationRole owningRole = getRole();
         container.removeIfNotAlready(this);
+        invalidateCachedPermissionSets(owningRole);
         return owningRole;
     }
     public String validateDelete(final Boolean areYouSure) {
@@ -523,10 +546,36 @@ public String apply(final ApplicationPermission input) {
     }
     //endregion
 
+    //region > helpers
+    private void invalidateCachedPermissionSets() {
+        invalidateCachedPermissionSets(getRole());
+    }
+
+    /**
+     * Evicts the role's permission sets now, so that the rest of this transaction sees the change, and again once the
+     * transaction has ended, so that none rebuilt meanwhile (by a concurrent interaction, from the state before
+     * this change was committed) survive.
+     */
+    private void invalidateCachedPermissionSets(final ApplicationRole role) {
+        if(applicationPermissionValueSetCache != null) {
+            applicationPermissionValueSetCache.invalidate(role);
+        }
+        if(pendingSecurityCacheInvalidations != null && role != null) {
+            pendingSecurityCacheInvalidations.addRoleName(role.getName());
+        }
+    }
+    //endregion
+
     //region  > services (injected)
     @javax.inject.Inject
     DomainObjectContainer container;
 
+    @javax.inject.Inject
+    ApplicationPermissionValueSetCache applicationPermissionValueSetCache;
+
+    @javax.inject.Inject
+    PendingSecurityCacheInvalidations pendingSecurityCacheInvalidations;
+
     @javax.inject.Inject
     ApplicationFeatureRepository applicationFeatureRepository;
 
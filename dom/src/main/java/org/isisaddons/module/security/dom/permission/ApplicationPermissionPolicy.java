@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.permission;
+
+import java.util.BitSet;
+
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
+import org.isisaddons.module.security.dom.feature.ApplicationMemberOrdinals;
+
+/**
+ * An immutable, compiled form of an {@link ApplicationPermissionValueSet} for every member of the metamodel: a bitset
+ * per {@link ApplicationPermissionMode mode} (ie of the members that are viewable, and of those that are changeable),
+ * indexed by the members' {@link ApplicationMemberOrdinals ordinals}.
+ *
+ * <p>
+ *     Checking a member is then a lookup of its ordinal and a single bit test.  Features that are not members of the
+ *     metamodel (packages and classes, or members since removed) have no ordinal, and must be evaluated by the
+ *     caller.
+ * </p>
+ *
+ * <p>
+ *     Each bit is computed by the permission set itself, so the policy follows the semantics of whichever
+ *     {@link PermissionsEvaluationService} the set was configured with.
+ * </p>
+ */
+class ApplicationPermissionPolicy {
+
+    private final ApplicationMemberOrdinals memberOrdinals;
+    private final BitSet[] grantedByMode;
+
+    ApplicationPermissionPolicy(
+            final ApplicationPermissionValueSet permissionSet,
+            final ApplicationMemberOrdinals memberOrdinals) {
+        this.memberOrdinals = memberOrdinals;
+        final ApplicationPermissionMode[] modes = ApplicationPermissionMode.values();
+        this.grantedByMode = new BitSet[modes.length];
+        final int size = memberOrdinals.size();
+        for (final ApplicationPermissionMode mode : modes) {
+            final BitSet granted = new BitSet(size);
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                if(permissionSet.grantsUncompiled(memberOrdinals.memberIdOf(ordinal), mode)) {
+                    granted.set(ordinal);
+                }
+            }
+            grantedByMode[mode.ordinal()] = granted;
+        }
+    }
+
+    /**
+     * @param grantedByMode - indexed by {@link ApplicationPermissionMode#ordinal() mode}; see
+     *                      {@link ApplicationRolePermissionMap#compose(java.util.List, ApplicationMemberOrdinals, ApplicationRolePermissionMap.Precedence)}.
+     */
+    ApplicationPermissionPolicy(
+            final ApplicationMemberOrdinals memberOrdinals,
+            final BitSet[] grantedByMode) {
+        this.memberOrdinals = memberOrdinals;
+        this.grantedByMode = grantedByMode;
+    }
+
+    /**
+     * The ordinal of the member, to pass to {@link #grants(int, ApplicationPermissionMode)}, or <tt>-1</tt> if not a
+     * member of the metamodel.
+     */
+    int ordinalOf(final ApplicationFeatureId featureId) {
+        return memberOrdinals.ordinalOf(featureId);
+    }
+
+    boolean grants(final int ordinal, final ApplicationPermissionMode mode) {
+        return grantedByMode[mode.ordinal()].get(ordinal);
+    }
+
+}
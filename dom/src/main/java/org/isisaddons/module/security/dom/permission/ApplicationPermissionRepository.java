@@ -30,14 +30,18 @@
 import org.apache.isis.applib.annotation.NatureOfService;
 import org.apache.isis.applib.annotation.Programmatic;
 import org.apache.isis.applib.query.QueryDefault;
+import org.apache.isis.applib.services.bookmark.Bookmark;
+import org.apache.isis.applib.services.bookmark.BookmarkService;
 import org.apache.isis.applib.services.queryresultscache.QueryResultsCache;
 
+import org.isisaddons.module.security.dom.cache.PendingSecurityCacheInvalidations;
 import org.isisaddons.module.security.dom.feature.ApplicationFeature;
 import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
 import org.isisaddons.module.security.dom.feature.ApplicationFeatureRepository;
 import org.isisaddons.module.security.dom.feature.ApplicationFeatureType;
 import org.isisaddons.module.security.dom.role.ApplicationRole;
 import org.isisaddons.module.security.dom.user.ApplicationUser;
+import org.isisaddons.module.security.dom.user.ApplicationUserRepository;
 
 @DomainService(
         nature = NatureOfService.DOMAIN,
@@ -92,13 +96,33 @@ private List<ApplicationPermission> findByUser(final String username) {
 
     //region > findByUserAndPermissionValue (programmatic)
     /**
-     * Uses the {@link QueryResultsCache} in order to support
-     * multiple lookups from <code>org.isisaddons.module.security.app.user.UserPermissionViewModel</code>.
+     * Looks up the permission using the application-scoped index (by role) of the
+     * {@link ApplicationPermissionValueSetCache}, so that it can be called in a tight loop (eg from
+     * <code>org.isisaddons.module.security.app.user.UserPermissionViewModel</code>) without querying the user's
+     * permissions on every request.
+     *
+     * <p>
+     *     Otherwise uses the {@link QueryResultsCache} in order to support multiple lookups within the one request.
+     * </p>
      */
     @Programmatic
     public ApplicationPermission findByUserAndPermissionValue(final String username, final ApplicationPermissionValue permissionValue) {
 
-
+        if(applicationPermissionValueSetCache != null && bookmarkService != null) {
+            final ApplicationUser user = applicationUserRepository.findByUsernameCached(username);
+            if(user == null) {
+                return null;
+            }
+            final Bookmark oid = applicationPermissionValueSetCache.findPermissionOid(user.getRoles(), permissionValue);
+            if(oid == null) {
+                return null;
+            }
+            final ApplicationPermission permission = bookmarkService.lookup(oid, ApplicationPermission.class);
+            if(permission != null) {
+                return permission;
+            }
+            // deleted since being indexed (within this, as yet uncommitted, transaction); query instead
+        }
 
         // obtain all permissions for this user, map by its value, and
         // put into query cache (so that this method can be safely called in a tight loop)
@@ -234,6 +258,7 @@ public ApplicationPermission newPermissionNoCheck(
         permission.setFeatureType(featureType);
         permission.setFeatureFqn(featureFqn);
         container.persistIfNotAlready(permission);
+        invalidateCachedPermissionSets(role);
         return permission;
     }
 
@@ -262,11 +287,28 @@ public ApplicationPermission newPermission(
         permission.setFeatureType(featureType);
         permission.setFeatureFqn(featureFqn);
         container.persistIfNotAlready(permission);
+        invalidateCachedPermissionSets(role);
 
         return permission;
     }
     //endregion
 
+    //region > helpers
+    /**
+     * Evicts the role's permission sets now, so that the rest of this transaction sees the change, and again once the
+     * transaction has ended, so that none rebuilt meanwhile (by a concurrent interaction, from the state before
+     * this change was committed) survive.
+     */
+    private void invalidateCachedPermissionSets(final ApplicationRole role) {
+        if(applicationPermissionValueSetCache != null) {
+            applicationPermissionValueSetCache.invalidate(role);
+        }
+        if(pendingSecurityCacheInvalidations != null && role != null) {
+            pendingSecurityCacheInvalidations.addRoleName(role.getName());
+        }
+    }
+    //endregion
+
     //region > allPermission (action)
     @Programmatic
     public List<ApplicationPermission> allPermissions() {
@@ -287,6 +329,12 @@ public List<ApplicationPermission> allPermissions() {
     @Inject
     ApplicationPermissionFactory applicationPermissionFactory;
 
+    @Inject
+    ApplicationPermissionValueSetCache applicationPermissionValueSetCache;
+
+    @Inject
+    PendingSecurityCacheInvalidations pendingSecurityCacheInvalidations;
+
     private ApplicationPermissionFactory getApplicationPermissionFactory() {
         return applicationPermissionFactory != null
                 ? applicationPermissionFactory
@@ -295,6 +343,12 @@ private ApplicationPermissionFactory getApplicationPermissionFactory() {
 
     @Inject
     QueryResultsCache queryResultsCache;
+
+    @Inject
+    ApplicationUserRepository applicationUserRepository;
+
+    @Inject
+    BookmarkService bookmarkService;
     //endregion
 
 }
@@ -133,9 +133,37 @@ public int compare(final ApplicationPermissionValue o1, final ApplicationPermiss
 
     private final static String propertyNames = "rule, mode, featureId";
 
+    /**
+     * Hand-written equivalent of <tt>ObjectContracts.compare(this, o, propertyNames)</tt>, avoiding reflection
+     * because this is called for every insertion into an {@link ApplicationPermissionValueSet}.
+     */
     @Override
     public int compareTo(final ApplicationPermissionValue o) {
-        return ObjectContracts.compare(this, o, propertyNames);
+        if(this == o) {
+            return 0;
+        }
+        int result = compareNullsFirst(rule, o.rule);
+        if(result != 0) {
+            return result;
+        }
+        result = compareNullsFirst(mode, o.mode);
+        if(result != 0) {
+            return result;
+        }
+        return compareNullsFirst(featureId, o.featureId);
+    }
+
+    private static <T extends Comparable<T>> int compareNullsFirst(final T left, final T right) {
+        if(left == right) {
+            return 0;
+        }
+        if(left == null) {
+            return -1;
+        }
+        if(right == null) {
+            return 1;
+        }
+        return left.compareTo(right);
     }
 
     @Override
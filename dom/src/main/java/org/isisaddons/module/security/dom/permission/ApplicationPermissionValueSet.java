@@ -30,6 +30,7 @@
 
 import org.isisaddons.module.security.SecurityModule;
 import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
+import org.isisaddons.module.security.dom.feature.ApplicationMemberOrdinals;
 
 /**
  * A serializable value object representing a set of (anonymized) {@link org.isisaddons.module.security.dom.permission.ApplicationPermissionValue permission}s.
@@ -91,6 +92,26 @@ public static abstract class ActionDomainEvent extends SecurityModule.ActionDoma
      */
     private final PermissionsEvaluationService permissionsEvaluationService;
 
+    /**
+     * Compiled form of {@link #permissionsByFeature}, used by {@link #grants(ApplicationFeatureId, ApplicationPermissionMode)}.
+     *
+     * <p>
+     *     Not serialized; recompiled on first use after deserialization.  Remains <tt>null</tt> if the
+     *     {@link #permissionsEvaluationService} is not a {@link PermissionsEvaluationServiceAbstract}, in which case
+     *     every check is {@link #evaluate(ApplicationFeatureId, ApplicationPermissionMode) evaluated} in full.
+     * </p>
+     */
+    private transient volatile ApplicationPermissionValueTrie trie;
+
+    /**
+     * Compiled form of this set for every member of the metamodel, if {@link ApplicationMemberOrdinals ordinals} were
+     * provided when created; used in preference to the {@link #trie}.
+     *
+     * <p>
+     *     Not serialized (and not recompiled after deserialization, for want of the ordinals).
+     * </p>
+     */
+    private final transient ApplicationPermissionPolicy policy;
 
     //endregion
 
@@ -102,6 +123,35 @@ public ApplicationPermissionValueSet(final Iterable<ApplicationPermissionValue>
         this(permissionValues, null);
     }
     public ApplicationPermissionValueSet(final Iterable<ApplicationPermissionValue> permissionValues, final PermissionsEvaluationService permissionsEvaluationService) {
+        this(permissionValues, permissionsEvaluationService, null);
+    }
+
+    /**
+     * @param memberOrdinals - if not <tt>null</tt>, then the set is {@link #isCompiled() compiled} (up-front) for
+     *                       every member of the metamodel.
+     */
+    public ApplicationPermissionValueSet(
+            final Iterable<ApplicationPermissionValue> permissionValues,
+            final PermissionsEvaluationService permissionsEvaluationService,
+            final ApplicationMemberOrdinals memberOrdinals) {
+        this(permissionValues, permissionsEvaluationService, memberOrdinals, null);
+    }
+
+    /**
+     * A set already compiled into the specified policy (rather than evaluating its permissions for every member).
+     */
+    static ApplicationPermissionValueSet compiled(
+            final Iterable<ApplicationPermissionValue> permissionValues,
+            final PermissionsEvaluationService permissionsEvaluationService,
+            final ApplicationPermissionPolicy policy) {
+        return new ApplicationPermissionValueSet(permissionValues, permissionsEvaluationService, null, policy);
+    }
+
+    private ApplicationPermissionValueSet(
+            final Iterable<ApplicationPermissionValue> permissionValues,
+            final PermissionsEvaluationService permissionsEvaluationService,
+            final ApplicationMemberOrdinals memberOrdinals,
+            final ApplicationPermissionPolicy policy) {
         this.values = Collections.unmodifiableList(Lists.newArrayList(permissionValues));
         for (final ApplicationPermissionValue permissionValue : permissionValues) {
             final ApplicationFeatureId featureId = permissionValue.getFeatureId();
@@ -111,6 +161,27 @@ public ApplicationPermissionValueSet(final Iterable<ApplicationPermissionValue>
                 permissionsEvaluationService != null
                         ? permissionsEvaluationService
                         : PermissionsEvaluationService.DEFAULT;
+        this.trie = compile();
+        this.policy = policy != null
+                        ? policy
+                        : memberOrdinals != null ? new ApplicationPermissionPolicy(this, memberOrdinals) : null;
+    }
+    //endregion
+
+    //region > trie
+    private ApplicationPermissionValueTrie getTrie() {
+        ApplicationPermissionValueTrie trie = this.trie;
+        if(trie == null) {
+            this.trie = trie = compile();
+        }
+        return trie;
+    }
+
+    private ApplicationPermissionValueTrie compile() {
+        if(!(permissionsEvaluationService instanceof PermissionsEvaluationServiceAbstract)) {
+            return null;
+        }
+        return new ApplicationPermissionValueTrie(permissionsByFeature, permissionsEvaluationService);
     }
     //endregion
 
@@ -134,8 +205,32 @@ public boolean isGranted() {
         }
     }
 
+    /**
+     * Whether {@link #grants(ApplicationFeatureId, ApplicationPermissionMode) checking} any member of the metamodel
+     * is just a bit test (so not worth memoizing).
+     */
+    @Programmatic
+    public boolean isCompiled() {
+        return policy != null;
+    }
+
     @Programmatic
     public boolean grants(final ApplicationFeatureId featureId, final ApplicationPermissionMode mode) {
+        final ApplicationPermissionPolicy policy = this.policy;
+        if(policy != null) {
+            final int ordinal = policy.ordinalOf(featureId);
+            if(ordinal != -1) {
+                return policy.grants(ordinal, mode);
+            }
+        }
+        return grantsUncompiled(featureId, mode);
+    }
+
+    boolean grantsUncompiled(final ApplicationFeatureId featureId, final ApplicationPermissionMode mode) {
+        final ApplicationPermissionValueTrie trie = getTrie();
+        if(trie != null) {
+            return trie.grants(featureId, mode);
+        }
         return evaluate(featureId, mode).isGranted();
     }
 
@@ -0,0 +1,343 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.permission;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.bookmark.Bookmark;
+import org.apache.isis.applib.services.bookmark.BookmarkService;
+
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureRepository;
+import org.isisaddons.module.security.dom.feature.ApplicationMemberOrdinals;
+import org.isisaddons.module.security.dom.metrics.SecurityMetrics;
+import org.isisaddons.module.security.dom.role.ApplicationRole;
+import org.isisaddons.module.security.dom.user.ApplicationUser;
+
+/**
+ * Application-scoped cache of {@link ApplicationPermissionValueSet permission set}s, keyed by the (sorted) names of
+ * the {@link ApplicationRole role}s that they were built from.
+ *
+ * <p>
+ *     Every {@link ApplicationUser user} holding the same combination of roles shares the one (immutable) permission
+ *     set, so memory scales with the number of distinct role combinations rather than the number of users.  A user
+ *     whose roles change simply maps onto a different key.
+ * </p>
+ *
+ * <p>
+ *     Where the permissions of every member can be compiled, each permission set is composed from the
+ *     {@link ApplicationRolePermissionMap effective permissions} of its roles, which are themselves cached by role
+ *     name.  Changing the permissions of one role therefore re-evaluates only that role's permissions (and only for
+ *     the members beneath the features changed), while each combination including it is recomposed on next use.
+ * </p>
+ *
+ * <p>
+ *     The cache also {@link #findPermissionOid(Iterable, ApplicationPermissionValue) indexes} the OIDs of each role's
+ *     permissions by value, so that the permission explaining a user's access can be found without querying all of
+ *     the user's permissions again.
+ * </p>
+ *
+ * <p>
+ *     The permissions of a role are not tracked, so the cache must be told (using {@link #invalidate(ApplicationRole)}
+ *     or {@link #invalidateAll()}) whenever they change, or when a role is renamed or deleted.
+ * </p>
+ */
+@DomainService(
+        nature = NatureOfService.DOMAIN
+)
+public class ApplicationPermissionValueSetCache {
+
+    private final ConcurrentMap<Set<String>, ApplicationPermissionValueSet> permissionSetByRoleNames = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, ApplicationRolePermissionMap> permissionMapByRoleName = new ConcurrentHashMap<>();
+
+    /**
+     * Maps of roles since invalidated, from which their replacements are derived.
+     */
+    private final ConcurrentMap<String, ApplicationRolePermissionMap> stalePermissionMapByRoleName = new ConcurrentHashMap<>();
+
+    /**
+     * The maximum number of roles whose permissions' OIDs are indexed at any one time.
+     */
+    static final int PERMISSION_OID_INDEX_MAXIMUM_SIZE = 1000;
+
+    private final Cache<String, Map<ApplicationPermissionValue, Bookmark>> permissionOidsByRoleName =
+            CacheBuilder.newBuilder().maximumSize(PERMISSION_OID_INDEX_MAXIMUM_SIZE).build();
+
+    /**
+     * Incremented on every invalidation, so that a permission set (or role's map or index) built concurrently with an
+     * invalidation is not left in the cache.  Each is put into the cache before the generation is re-checked, so that
+     * an invalidation either sees and evicts it, or else is itself seen.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    //region > getPermissionSet
+
+    /**
+     * The permission set for the roles of the specified user, building it from those roles'
+     * {@link ApplicationPermissionRepository#findByRole(ApplicationRole) permissions} if not already cached.
+     */
+    @Programmatic
+    public ApplicationPermissionValueSet getPermissionSet(final ApplicationUser user) {
+        final Collection<ApplicationRole> roles = user.getRoles();
+        final Set<String> roleNames = ImmutableSortedSet.copyOf(Iterables.transform(roles, ApplicationRole.Functions.GET_NAME));
+
+        final ApplicationPermissionValueSet cached = permissionSetByRoleNames.get(roleNames);
+        if(cached != null) {
+            SecurityMetrics.getInstance().getPermissionSetCache().hit();
+            return cached;
+        }
+        SecurityMetrics.getInstance().getPermissionSetCache().miss();
+
+        final long generationBefore = generation.get();
+        final ApplicationPermissionValueSet permissionSet = newPermissionSet(roles);
+        final ApplicationPermissionValueSet existing = permissionSetByRoleNames.putIfAbsent(roleNames, permissionSet);
+        if(existing != null) {
+            return existing;
+        }
+        if(generation.get() != generationBefore) {
+            // invalidated while we were building; the set may be stale, so don't keep it.
+            permissionSetByRoleNames.remove(roleNames, permissionSet);
+        }
+        return permissionSet;
+    }
+
+    private ApplicationPermissionValueSet newPermissionSet(final Collection<ApplicationRole> roles) {
+        final ApplicationMemberOrdinals memberOrdinals =
+                applicationFeatureRepository != null ? applicationFeatureRepository.getMemberOrdinals() : null;
+        final ApplicationRolePermissionMap.Precedence precedence =
+                ApplicationRolePermissionMap.Precedence.of(permissionsEvaluationService);
+        if(memberOrdinals != null && precedence != null) {
+            final List<ApplicationRolePermissionMap> roleMaps = Lists.newArrayList();
+            for (final ApplicationRole role : roles) {
+                final ApplicationRolePermissionMap roleMap = getPermissionMap(role, memberOrdinals);
+                if(roleMap == null) {
+                    break;
+                }
+                roleMaps.add(roleMap);
+            }
+            if(roleMaps.size() == roles.size()) {
+                final List<ApplicationPermissionValue> permissionValues = Lists.newArrayList();
+                for (final ApplicationRolePermissionMap roleMap : roleMaps) {
+                    permissionValues.addAll(roleMap.getPermissionValues());
+                }
+                return ApplicationPermissionValueSet.compiled(
+                        permissionValues, permissionsEvaluationService,
+                        ApplicationRolePermissionMap.compose(roleMaps, memberOrdinals, precedence));
+            }
+        }
+
+        final List<ApplicationPermissionValue> permissionValues = Lists.newArrayList();
+        for (final ApplicationRole role : roles) {
+            permissionValues.addAll(permissionValuesOf(role));
+        }
+        return new ApplicationPermissionValueSet(permissionValues, permissionsEvaluationService, memberOrdinals);
+    }
+
+    /**
+     * The effective permissions of the role, derived from those of its {@link #stalePermissionMapByRoleName stale}
+     * map (if any) so that only the members affected by the changes since are re-evaluated.
+     *
+     * @return <tt>null</tt> if the role's permissions cannot be mapped.
+     */
+    private ApplicationRolePermissionMap getPermissionMap(
+            final ApplicationRole role,
+            final ApplicationMemberOrdinals memberOrdinals) {
+        final String roleName = role.getName();
+        final ApplicationRolePermissionMap cached = permissionMapByRoleName.get(roleName);
+        if(cached != null && cached.getMemberOrdinals() == memberOrdinals) {
+            return cached;
+        }
+
+        final long generationBefore = generation.get();
+        final List<ApplicationPermissionValue> permissionValues = permissionValuesOf(role);
+        final ApplicationRolePermissionMap stale = stalePermissionMapByRoleName.remove(roleName);
+        final ApplicationRolePermissionMap previous =
+                stale != null && stale.getMemberOrdinals() == memberOrdinals
+                        ? stale
+                        : ApplicationRolePermissionMap.empty(memberOrdinals);
+        final ApplicationRolePermissionMap roleMap = previous.update(permissionValues);
+        if(roleMap == null) {
+            return null;
+        }
+        permissionMapByRoleName.put(roleName, roleMap);
+        if(generation.get() != generationBefore && permissionMapByRoleName.remove(roleName, roleMap)) {
+            // invalidated while we were building; may be stale, but remains a valid basis for the next update.
+            stalePermissionMapByRoleName.put(roleName, roleMap);
+        }
+        return roleMap;
+    }
+
+    private List<ApplicationPermissionValue> permissionValuesOf(final ApplicationRole role) {
+        final List<ApplicationPermission> permissions = applicationPermissionRepository.findByRole(role);
+        return Lists.newArrayList(Iterables.transform(permissions, ApplicationPermission.Functions.AS_VALUE));
+    }
+
+    //endregion
+
+    //region > findPermissionOid
+
+    /**
+     * The OID of a permission with the specified value held by any of the specified roles (those of a user), or
+     * <tt>null</tt> if there is none.
+     *
+     * <p>
+     *     The permissions of each role are indexed by value on first use, and the index kept (for a bounded number of
+     *     roles) until the role is {@link #invalidate(String) invalidated}.
+     * </p>
+     */
+    @Programmatic
+    public Bookmark findPermissionOid(
+            final Iterable<ApplicationRole> roles,
+            final ApplicationPermissionValue permissionValue) {
+        for (final ApplicationRole role : roles) {
+            final Bookmark oid = getPermissionOids(role).get(permissionValue);
+            if(oid != null) {
+                return oid;
+            }
+        }
+        return null;
+    }
+
+    private Map<ApplicationPermissionValue, Bookmark> getPermissionOids(final ApplicationRole role) {
+        final String roleName = role.getName();
+        final Map<ApplicationPermissionValue, Bookmark> cached = permissionOidsByRoleName.getIfPresent(roleName);
+        if(cached != null) {
+            SecurityMetrics.getInstance().getPermissionOidIndex().hit();
+            return cached;
+        }
+        SecurityMetrics.getInstance().getPermissionOidIndex().miss();
+
+        final long generationBefore = generation.get();
+        final Map<ApplicationPermissionValue, Bookmark> permissionOids = Maps.newHashMap();
+        for (final ApplicationPermission permission : applicationPermissionRepository.findByRole(role)) {
+            final ApplicationPermissionValue permissionValue = ApplicationPermission.Functions.AS_VALUE.apply(permission);
+            if(!permissionOids.containsKey(permissionValue)) {
+                permissionOids.put(permissionValue, bookmarkService.bookmarkFor(permission));
+            }
+        }
+        final Map<ApplicationPermissionValue, Bookmark> index = ImmutableMap.copyOf(permissionOids);
+        permissionOidsByRoleName.put(roleName, index);
+        if(generation.get() != generationBefore) {
+            // invalidated while we were indexing; the index may be stale, so don't keep it.
+            permissionOidsByRoleName.asMap().remove(roleName, index);
+        }
+        return index;
+    }
+
+    //endregion
+
+    //region > invalidate, invalidateAll
+
+    /**
+     * Evicts the permission set of every combination of roles that includes the specified role.
+     */
+    @Programmatic
+    public void invalidate(final ApplicationRole role) {
+        if(role == null) {
+            return;
+        }
+        invalidate(role.getName());
+    }
+
+    /**
+     * Evicts the permission set of every combination of roles that includes the role with the specified name, and
+     * the index of the role's permissions, and marks the role's effective permissions as stale (to be updated on
+     * next use).
+     */
+    @Programmatic
+    public void invalidate(final String roleName) {
+        generation.incrementAndGet();
+        permissionOidsByRoleName.invalidate(roleName);
+        final ApplicationRolePermissionMap roleMap = permissionMapByRoleName.remove(roleName);
+        if(roleMap != null) {
+            stalePermissionMapByRoleName.put(roleName, roleMap);
+        }
+        for (final Set<String> roleNames : permissionSetByRoleNames.keySet()) {
+            if(roleNames.contains(roleName)) {
+                permissionSetByRoleNames.remove(roleNames);
+            }
+        }
+    }
+
+    @Programmatic
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        permissionSetByRoleNames.clear();
+        // roles may have been renamed or deleted, so the maps are discarded rather than kept as stale.
+        permissionMapByRoleName.clear();
+        stalePermissionMapByRoleName.clear();
+        permissionOidsByRoleName.invalidateAll();
+    }
+
+    //endregion
+
+    //region > size
+
+    /**
+     * The number of distinct combinations of roles currently cached.
+     */
+    @Programmatic
+    public int size() {
+        return permissionSetByRoleNames.size();
+    }
+
+    //endregion
+
+    //region  > (injected)
+    @Inject
+    ApplicationPermissionRepository applicationPermissionRepository;
+
+    /**
+     * Optional service, if configured then is used to evaluate permissions within the cached permission sets, else
+     * will fallback to a {@link PermissionsEvaluationService#DEFAULT default} implementation.
+     */
+    @Inject
+    PermissionsEvaluationService permissionsEvaluationService;
+
+    /**
+     * Provides the {@link ApplicationMemberOrdinals ordinals} over which each permission set is compiled.
+     */
+    @Inject
+    ApplicationFeatureRepository applicationFeatureRepository;
+
+    /**
+     * Provides the OIDs of the {@link #findPermissionOid(Iterable, ApplicationPermissionValue) indexed} permissions.
+     */
+    @Inject
+    BookmarkService bookmarkService;
+    //endregion
+
+}
@@ -0,0 +1,263 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.permission;
+
+import java.util.Collection;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureType;
+
+/**
+ * An immutable, compiled form of the permissions held by an {@link ApplicationPermissionValueSet}, organised as a
+ * trie keyed by package segment, then class name, then member name.
+ *
+ * <p>
+ *     Each node holds the {@link ApplicationPermissionValueSet.Evaluation evaluation} (if any) that the
+ *     {@link PermissionsEvaluationService} arrives at for the permissions attached to that feature, precomputed for
+ *     each {@link ApplicationPermissionMode mode}.  Evaluating a feature is then a single walk from the root down to
+ *     that feature, remembering the most specific evaluation seen on the way; this is equivalent to
+ *     {@link ApplicationPermissionValueSet#evaluate(ApplicationFeatureId, ApplicationPermissionMode)}, which walks
+ *     the {@link ApplicationFeatureId#getPathIds() path} upwards and stops at the first evaluation.
+ * </p>
+ *
+ * <p>
+ *     The walk does not allocate: segments of the package name are looked up in place rather than being split out.
+ * </p>
+ *
+ * <p>
+ *     Precomputing the evaluation per feature relies on the evaluation service's outcome depending only on the
+ *     permissions for a feature and the mode, which is the case for all subclasses of
+ *     {@link PermissionsEvaluationServiceAbstract}.
+ * </p>
+ */
+class ApplicationPermissionValueTrie {
+
+    private static final int MODES = ApplicationPermissionMode.values().length;
+
+    private final Node root;
+
+    ApplicationPermissionValueTrie(
+            final Multimap<ApplicationFeatureId, ApplicationPermissionValue> permissionsByFeature,
+            final PermissionsEvaluationService permissionsEvaluationService) {
+        final Node root = new Node();
+        for (final Map.Entry<ApplicationFeatureId, Collection<ApplicationPermissionValue>> entry : permissionsByFeature.asMap().entrySet()) {
+            final ApplicationFeatureId featureId = entry.getKey();
+            final Node node = root.nodeFor(featureId);
+            for (final ApplicationPermissionMode mode : ApplicationPermissionMode.values()) {
+                node.evaluations[mode.ordinal()] = permissionsEvaluationService.evaluate(featureId, mode, entry.getValue());
+            }
+        }
+        root.freeze();
+        this.root = root;
+    }
+
+    //region > grants, evaluate
+
+    boolean grants(final ApplicationFeatureId featureId, final ApplicationPermissionMode mode) {
+        final ApplicationPermissionValueSet.Evaluation evaluation = evaluate(featureId, mode);
+        return evaluation != null && evaluation.isGranted();
+    }
+
+    /**
+     * @return the most specific evaluation on the path of the feature, or <tt>null</tt> if there is none.
+     */
+    ApplicationPermissionValueSet.Evaluation evaluate(final ApplicationFeatureId featureId, final ApplicationPermissionMode mode) {
+        final int modeOrdinal = mode.ordinal();
+        ApplicationPermissionValueSet.Evaluation found = null;
+
+        final String packageName = featureId.getPackageName();
+        final int length = packageName.length();
+        Node node = root;
+        int start = 0;
+        while (true) {
+            int end = packageName.indexOf('.', start);
+            if(end == -1) {
+                end = length;
+            }
+            node = node.packages.get(packageName, start, end);
+            if(node == null) {
+                return found;
+            }
+            if(node.evaluations[modeOrdinal] != null) {
+                found = node.evaluations[modeOrdinal];
+            }
+            if(end == length) {
+                break;
+            }
+            start = end + 1;
+        }
+        if(featureId.getType() == ApplicationFeatureType.PACKAGE) {
+            return found;
+        }
+
+        final String className = featureId.getClassName();
+        node = node.classes.get(className, 0, className.length());
+        if(node == null) {
+            return found;
+        }
+        if(node.evaluations[modeOrdinal] != null) {
+            found = node.evaluations[modeOrdinal];
+        }
+        if(featureId.getType() == ApplicationFeatureType.CLASS) {
+            return found;
+        }
+
+        final String memberName = featureId.getMemberName();
+        node = node.members.get(memberName, 0, memberName.length());
+        if(node != null && node.evaluations[modeOrdinal] != null) {
+            found = node.evaluations[modeOrdinal];
+        }
+        return found;
+    }
+
+    //endregion
+
+    //region > Node
+
+    private static class Node {
+
+        final ApplicationPermissionValueSet.Evaluation[] evaluations = new ApplicationPermissionValueSet.Evaluation[MODES];
+
+        private Map<String, Node> packageBuilder = Maps.newHashMap();
+        private Map<String, Node> classBuilder = Maps.newHashMap();
+        private Map<String, Node> memberBuilder = Maps.newHashMap();
+
+        Children packages;
+        Children classes;
+        Children members;
+
+        Node nodeFor(final ApplicationFeatureId featureId) {
+            Node node = this;
+            final String packageName = featureId.getPackageName();
+            int start = 0;
+            while (true) {
+                int end = packageName.indexOf('.', start);
+                if(end == -1) {
+                    end = packageName.length();
+                }
+                node = node.child(node.packageBuilder, packageName.substring(start, end));
+                if(end == packageName.length()) {
+                    break;
+                }
+                start = end + 1;
+            }
+            if(featureId.getType() == ApplicationFeatureType.PACKAGE) {
+                return node;
+            }
+            node = node.child(node.classBuilder, featureId.getClassName());
+            if(featureId.getType() == ApplicationFeatureType.CLASS) {
+                return node;
+            }
+            return node.child(node.memberBuilder, featureId.getMemberName());
+        }
+
+        private static Node child(final Map<String, Node> builder, final String key) {
+            Node child = builder.get(key);
+            if(child == null) {
+                child = new Node();
+                builder.put(key, child);
+            }
+            return child;
+        }
+
+        void freeze() {
+            packages = Children.of(packageBuilder);
+            classes = Children.of(classBuilder);
+            members = Children.of(memberBuilder);
+            packageBuilder = classBuilder = memberBuilder = null;
+        }
+    }
+
+    //endregion
+
+    //region > Children
+
+    /**
+     * Open-addressed table of child nodes that can be probed with a region of a string, so that the caller does not
+     * need to create a substring.
+     */
+    private static class Children {
+
+        private static final Children EMPTY = new Children(new String[1], new Node[1]);
+
+        static Children of(final Map<String, Node> builder) {
+            if(builder.isEmpty()) {
+                return EMPTY;
+            }
+            int capacity = 2;
+            while (capacity < builder.size() * 2) {
+                capacity <<= 1;
+            }
+            final String[] keys = new String[capacity];
+            final Node[] nodes = new Node[capacity];
+            final int mask = capacity - 1;
+            for (final Map.Entry<String, Node> entry : builder.entrySet()) {
+                final String key = entry.getKey();
+                int i = spread(key.hashCode()) & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                nodes[i] = entry.getValue();
+                entry.getValue().freeze();
+            }
+            return new Children(keys, nodes);
+        }
+
+        private final String[] keys;
+        private final Node[] nodes;
+        private final int mask;
+
+        private Children(final String[] keys, final Node[] nodes) {
+            this.keys = keys;
+            this.nodes = nodes;
+            this.mask = keys.length - 1;
+        }
+
+        /**
+         * Looks up the child keyed by <tt>str.substring(start, end)</tt>.
+         */
+        Node get(final String str, final int start, final int end) {
+            // same as String#hashCode() of the substring
+            int hash = 0;
+            for (int j = start; j < end; j++) {
+                hash = 31 * hash + str.charAt(j);
+            }
+            final int length = end - start;
+            int i = spread(hash) & mask;
+            String key;
+            while ((key = keys[i]) != null) {
+                if(key.length() == length && key.regionMatches(0, str, start, length)) {
+                    return nodes[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        private static int spread(final int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    //endregion
+
+}
@@ -0,0 +1,247 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.permission;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Sets;
+
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
+import org.isisaddons.module.security.dom.feature.ApplicationMemberOrdinals;
+import org.isisaddons.module.security.dom.role.ApplicationRole;
+
+/**
+ * The effective permissions of a single {@link ApplicationRole role}, materialised for every member of the metamodel
+ * (as numbered by its {@link ApplicationMemberOrdinals ordinals}), from which the
+ * {@link ApplicationPermissionPolicy policy} of any combination of roles can be
+ * {@link #compose(List, ApplicationMemberOrdinals, Precedence) composed} without evaluating their permissions again.
+ *
+ * <p>
+ *     For each member and mode is recorded the nearest feature on the member's path (the member itself, then its
+ *     class, then its packages) at which the role has permissions deciding that mode, and whether those permissions
+ *     allow, veto, or both.  This is exactly what {@link ApplicationPermissionValueSet#evaluate(ApplicationFeatureId, ApplicationPermissionMode) evaluation}
+ *     of the union of several roles' permissions depends upon: the nearest such feature of any of the roles wins,
+ *     and a tie between allow and veto there is resolved by the {@link Precedence precedence}.
+ * </p>
+ *
+ * <p>
+ *     Immutable; when the role's permissions change a new map is {@link #update(Iterable) derived}, re-evaluating
+ *     only the members that lie beneath the features whose permissions were added or removed.
+ * </p>
+ */
+class ApplicationRolePermissionMap {
+
+    /**
+     * How the {@link PermissionsEvaluationService} resolves an allow and a veto for the same feature; <tt>null</tt>
+     * for any other implementation, whose decisions therefore cannot be composed.
+     */
+    enum Precedence {
+        ALLOW_BEATS_VETO,
+        VETO_BEATS_ALLOW;
+
+        static Precedence of(final PermissionsEvaluationService permissionsEvaluationService) {
+            final Class<?> serviceClass = permissionsEvaluationService != null
+                    ? permissionsEvaluationService.getClass()
+                    : PermissionsEvaluationService.DEFAULT.getClass();
+            if(serviceClass == PermissionsEvaluationServiceAllowBeatsVeto.class) {
+                return ALLOW_BEATS_VETO;
+            }
+            if(serviceClass == PermissionsEvaluationServiceVetoBeatsAllow.class) {
+                return VETO_BEATS_ALLOW;
+            }
+            return null;
+        }
+
+        boolean grants(final int flags) {
+            return this == ALLOW_BEATS_VETO
+                    ? (flags & ALLOW) != 0
+                    : flags == ALLOW;
+        }
+    }
+
+    //region > codes
+
+    /*
+     * Each (member, mode) is encoded in a byte as the depth along the member's path of the deciding feature (0 for
+     * the member itself), above two flag bits.
+     */
+    private static final int ALLOW = 1;
+    private static final int VETO = 2;
+    private static final int FLAGS = ALLOW | VETO;
+    private static final int MAX_DEPTH = 62;
+    private static final int UNDECIDED = 0xFF;
+
+    private static int depthOf(final int code) {
+        return code >> 2;
+    }
+
+    //endregion
+
+    private final ApplicationMemberOrdinals memberOrdinals;
+    private final ImmutableSetMultimap<ApplicationFeatureId, ApplicationPermissionValue> permissionsByFeature;
+    private final byte[][] codesByMode;
+
+    /**
+     * A map of a role without any permissions, from which that of a role with permissions is
+     * {@link #update(Iterable) derived}.
+     */
+    static ApplicationRolePermissionMap empty(final ApplicationMemberOrdinals memberOrdinals) {
+        final byte[][] codesByMode = new byte[ApplicationPermissionMode.values().length][memberOrdinals.size()];
+        for (final byte[] codes : codesByMode) {
+            Arrays.fill(codes, (byte) UNDECIDED);
+        }
+        return new ApplicationRolePermissionMap(memberOrdinals, ImmutableSetMultimap.<ApplicationFeatureId, ApplicationPermissionValue>of(), codesByMode);
+    }
+
+    private ApplicationRolePermissionMap(
+            final ApplicationMemberOrdinals memberOrdinals,
+            final ImmutableSetMultimap<ApplicationFeatureId, ApplicationPermissionValue> permissionsByFeature,
+            final byte[][] codesByMode) {
+        this.memberOrdinals = memberOrdinals;
+        this.permissionsByFeature = permissionsByFeature;
+        this.codesByMode = codesByMode;
+    }
+
+    ApplicationMemberOrdinals getMemberOrdinals() {
+        return memberOrdinals;
+    }
+
+    /**
+     * The permissions of the role, from which this map was derived.
+     */
+    Collection<ApplicationPermissionValue> getPermissionValues() {
+        return permissionsByFeature.values();
+    }
+
+    //region > update
+
+    /**
+     * A map for the role with the specified permissions, sharing the decisions of this map for every member not
+     * beneath a feature whose permissions have changed.
+     *
+     * @return <tt>null</tt> if some member is decided by a permission too far up its path to be encoded.
+     */
+    ApplicationRolePermissionMap update(final Iterable<ApplicationPermissionValue> permissionValues) {
+        final ImmutableSetMultimap.Builder<ApplicationFeatureId, ApplicationPermissionValue> builder = ImmutableSetMultimap.builder();
+        for (final ApplicationPermissionValue permissionValue : permissionValues) {
+            builder.put(permissionValue.getFeatureId(), permissionValue);
+        }
+        final ImmutableSetMultimap<ApplicationFeatureId, ApplicationPermissionValue> permissionsByFeature = builder.build();
+
+        final BitSet affectedOrdinals = new BitSet(memberOrdinals.size());
+        for (final ApplicationFeatureId featureId : Sets.union(this.permissionsByFeature.keySet(), permissionsByFeature.keySet())) {
+            if(!this.permissionsByFeature.get(featureId).equals(permissionsByFeature.get(featureId))) {
+                affectedOrdinals.or(memberOrdinals.ordinalsBeneath(featureId));
+            }
+        }
+        if(affectedOrdinals.isEmpty()) {
+            return new ApplicationRolePermissionMap(memberOrdinals, permissionsByFeature, codesByMode);
+        }
+
+        final ApplicationPermissionMode[] modes = ApplicationPermissionMode.values();
+        final byte[][] codesByMode = new byte[modes.length][];
+        for (int i = 0; i < modes.length; i++) {
+            codesByMode[i] = this.codesByMode[i].clone();
+        }
+        for (int ordinal = affectedOrdinals.nextSetBit(0); ordinal >= 0; ordinal = affectedOrdinals.nextSetBit(ordinal + 1)) {
+            final ApplicationFeatureId memberId = memberOrdinals.memberIdOf(ordinal);
+            for (final ApplicationPermissionMode mode : modes) {
+                final int code = codeOf(memberId, mode, permissionsByFeature);
+                if(code == -1) {
+                    return null;
+                }
+                codesByMode[mode.ordinal()][ordinal] = (byte) code;
+            }
+        }
+        return new ApplicationRolePermissionMap(memberOrdinals, permissionsByFeature, codesByMode);
+    }
+
+    /**
+     * As per {@link ApplicationPermissionValueSet#evaluate(ApplicationFeatureId, ApplicationPermissionMode)}, but
+     * noting every permission deciding the mode at the nearest feature rather than resolving between them.
+     *
+     * @return <tt>-1</tt> if the deciding feature is too far up the path to be encoded.
+     */
+    private static int codeOf(
+            final ApplicationFeatureId memberId,
+            final ApplicationPermissionMode mode,
+            final ImmutableSetMultimap<ApplicationFeatureId, ApplicationPermissionValue> permissionsByFeature) {
+        final List<ApplicationFeatureId> pathIds = memberId.getPathIds();
+        for (int depth = 0; depth < pathIds.size(); depth++) {
+            int flags = 0;
+            for (final ApplicationPermissionValue permissionValue : permissionsByFeature.get(pathIds.get(depth))) {
+                if(permissionValue.implies(memberId, mode)) {
+                    flags |= ALLOW;
+                } else if(permissionValue.refutes(memberId, mode)) {
+                    flags |= VETO;
+                }
+            }
+            if(flags != 0) {
+                return depth <= MAX_DEPTH ? depth << 2 | flags : -1;
+            }
+        }
+        return UNDECIDED;
+    }
+
+    //endregion
+
+    //region > compose
+
+    /**
+     * The policy of a user holding all of the specified roles (each mapped over the same ordinals), equivalent to
+     * {@link ApplicationPermissionPolicy compiling} the union of their permissions.
+     */
+    static ApplicationPermissionPolicy compose(
+            final List<ApplicationRolePermissionMap> roleMaps,
+            final ApplicationMemberOrdinals memberOrdinals,
+            final Precedence precedence) {
+        for (final ApplicationRolePermissionMap roleMap : roleMaps) {
+            if(roleMap.memberOrdinals != memberOrdinals) {
+                throw new IllegalArgumentException("Role permissions mapped over different member ordinals");
+            }
+        }
+        final ApplicationPermissionMode[] modes = ApplicationPermissionMode.values();
+        final BitSet[] grantedByMode = new BitSet[modes.length];
+        final int size = memberOrdinals.size();
+        for (final ApplicationPermissionMode mode : modes) {
+            final BitSet granted = new BitSet(size);
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                int nearest = UNDECIDED;
+                for (final ApplicationRolePermissionMap roleMap : roleMaps) {
+                    final int code = roleMap.codesByMode[mode.ordinal()][ordinal] & 0xFF;
+                    if(depthOf(code) < depthOf(nearest)) {
+                        nearest = code;
+                    } else if(depthOf(code) == depthOf(nearest)) {
+                        nearest |= code & FLAGS;
+                    }
+                }
+                if(nearest != UNDECIDED && precedence.grants(nearest & FLAGS)) {
+                    granted.set(ordinal);
+                }
+            }
+            grantedByMode[mode.ordinal()] = granted;
+        }
+        return new ApplicationPermissionPolicy(memberOrdinals, grantedByMode);
+    }
+
+    //endregion
+
+}
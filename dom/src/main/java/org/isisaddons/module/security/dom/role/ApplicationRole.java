@@ -50,6 +50,7 @@
 import org.apache.isis.objectstore.jdo.applib.service.JdoColumnLength;
 
 import org.isisaddons.module.security.SecurityModule;
+import org.isisaddons.module.security.dom.cache.PendingSecurityCacheInvalidations;
 import org.isisaddons.module.security.dom.feature.ApplicationFeature;
 import org.isisaddons.module.security.dom.feature.ApplicationFeatureRepository;
 import org.isisaddons.module.security.dom.feature.ApplicationFeatureType;
@@ -58,6 +59,7 @@
 import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
 import org.isisaddons.module.security.dom.permission.ApplicationPermissionRepository;
 import org.isisaddons.module.security.dom.permission.ApplicationPermissionRule;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSetCache;
 import org.isisaddons.module.security.dom.user.ApplicationUser;
 import org.isisaddons.module.security.dom.user.ApplicationUserRepository;
 import org.isisaddons.module.security.seed.scripts.IsisModuleSecurityAdminRoleAndPermissions;
@@ -158,6 +160,8 @@ public static class UpdateNameDomainEvent extends ActionDomainEvent {}
     public ApplicationRole updateName(
             @Parameter(maxLength = MAX_LENGTH_NAME) @ParameterLayout(named="Name", typicalLength = TYPICAL_LENGTH_NAME)
             final String name) {
+        // permission sets are cached by role name
+        invalidateCachedPermissionSets();
         setName(name);
         return this;
     }
@@ -527,6 +531,7 @@ public ApplicationRole removePermission(
                 rule, type, featureFqn);
         if(permission != null) {
             container.removeIfNotAlready(permission);
+            invalidateCachedPermissionSets();
         }
         return this;
     }
@@ -669,6 +674,7 @@ public List<ApplicationRole> delete(
             permission.delete(areYouSure);
         }
         container.flush();
+        invalidateCachedPermissionSets();
         container.removeIfNotAlready(this);
         container.flush();
         return applicationRoleRepository.allRoles();
@@ -687,6 +693,22 @@ static boolean not(final Boolean areYouSure) {
     }
     //endregion
 
+    //region > helpers
+    /**
+     * Evicts the role's permission sets now, so that the rest of this transaction sees the change, and again once the
+     * transaction has ended, so that none rebuilt meanwhile (by a concurrent interaction, from the state before
+     * this change was committed) survive.
+     */
+    private void invalidateCachedPermissionSets() {
+        if(applicationPermissionValueSetCache != null) {
+            applicationPermissionValueSetCache.invalidate(this);
+        }
+        if(pendingSecurityCacheInvalidations != null) {
+            pendingSecurityCacheInvalidations.addRoleName(getName());
+        }
+    }
+    //endregion
+
     //region > isAdminRole (programmatic)
     @Programmatic
     public boolean isAdminRole() {
@@ -743,6 +765,10 @@ public String toString() {
     @javax.inject.Inject
     ApplicationPermissionRepository applicationPermissionRepository;
     @javax.inject.Inject
+    ApplicationPermissionValueSetCache applicationPermissionValueSetCache;
+    @javax.inject.Inject
+    PendingSecurityCacheInvalidations pendingSecurityCacheInvalidations;
+    @javax.inject.Inject
     ApplicationUserRepository applicationUserRepository;
     @javax.inject.Inject
     ApplicationRoleRepository applicationRoleRepository;
@@ -61,6 +61,7 @@
 import org.isisaddons.module.security.dom.permission.ApplicationPermission;
 import org.isisaddons.module.security.dom.permission.ApplicationPermissionRepository;
 import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSet;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSetCache;
 import org.isisaddons.module.security.dom.permission.PermissionsEvaluationService;
 import org.isisaddons.module.security.dom.role.ApplicationRole;
 import org.isisaddons.module.security.dom.role.ApplicationRoleRepository;
@@ -973,11 +974,19 @@ static boolean not(final Boolean areYouSure) {
 
     // short-term caching
     private transient ApplicationPermissionValueSet cachedPermissionSet;
+
+    /**
+     * Obtained from the {@link ApplicationPermissionValueSetCache} (shared by all users with the same roles) if
+     * available, otherwise built from this user's permissions.
+     */
     @Programmatic
     public ApplicationPermissionValueSet getPermissionSet() {
         if(cachedPermissionSet != null) {
             return cachedPermissionSet;
         }
+        if(applicationPermissionValueSetCache != null) {
+            return cachedPermissionSet = applicationPermissionValueSetCache.getPermissionSet(this);
+        }
         final List<ApplicationPermission> permissions = applicationPermissionRepository.findByUser(this);
         return cachedPermissionSet =
                 new ApplicationPermissionValueSet(
@@ -1052,6 +1061,8 @@ public String toString() {
     @javax.inject.Inject
     ApplicationPermissionRepository applicationPermissionRepository;
     @javax.inject.Inject
+    ApplicationPermissionValueSetCache applicationPermissionValueSetCache;
+    @javax.inject.Inject
     PasswordEncryptionService passwordEncryptionService;
     @javax.inject.Inject
     DomainObjectContainer container;
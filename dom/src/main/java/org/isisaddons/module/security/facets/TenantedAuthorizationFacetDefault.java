@@ -32,6 +32,7 @@
 import org.apache.isis.core.metamodel.interactions.UsabilityContext;
 import org.apache.isis.core.metamodel.interactions.VisibilityContext;
 
+import org.isisaddons.module.security.dom.metrics.SecurityMetrics;
 import org.isisaddons.module.security.dom.tenancy.ApplicationTenancy;
 import org.isisaddons.module.security.dom.tenancy.ApplicationTenancyPathEvaluator;
 import org.isisaddons.module.security.dom.user.ApplicationUser;
@@ -67,8 +68,18 @@ static class Paths {
         String reason;
     }
 
+    /**
+     * The decision, and the time taken to make it, is recorded in the {@link SecurityMetrics}.
+     */
     @Override
     public String hides(final VisibilityContext<? extends VisibilityEvent> ic) {
+        final long start = System.nanoTime();
+        final String reason = hidesReason(ic);
+        SecurityMetrics.getInstance().tenancyHides(reason != null, start);
+        return reason;
+    }
+
+    private String hidesReason(final VisibilityContext<? extends VisibilityEvent> ic) {
         final Paths paths = pathsFor(ic);
 
         if (paths == null) {
@@ -91,8 +102,18 @@ public String hides(final VisibilityContext<? extends VisibilityEvent> ic) {
                 paths.objectTenancyPath);
     }
 
+    /**
+     * The decision, and the time taken to make it, is recorded in the {@link SecurityMetrics}.
+     */
     @Override
     public String disables(final UsabilityContext<? extends UsabilityEvent> ic) {
+        final long start = System.nanoTime();
+        final String reason = disablesReason(ic);
+        SecurityMetrics.getInstance().tenancyDisables(reason != null, start);
+        return reason;
+    }
+
+    private String disablesReason(final UsabilityContext<? extends UsabilityEvent> ic) {
         Paths paths = pathsFor(ic);
 
         if (paths == null) {
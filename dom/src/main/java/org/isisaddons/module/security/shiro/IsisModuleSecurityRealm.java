@@ -16,8 +16,16 @@
  */
 package org.isisaddons.module.security.shiro;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
 import javax.inject.Inject;
 
+import com.google.common.base.Objects;
+import com.google.common.collect.MapMaker;
+
 import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
@@ -28,6 +36,7 @@
 import org.apache.shiro.realm.AuthenticatingRealm;
 import org.apache.shiro.realm.AuthorizingRealm;
 import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.util.Destroyable;
 
 import org.apache.isis.core.runtime.system.context.IsisContext;
 import org.apache.isis.core.runtime.system.internal.InitialisationSession;
@@ -36,12 +45,20 @@
 import org.apache.isis.core.runtime.system.transaction.TransactionalClosureWithReturn;
 import org.apache.isis.core.runtime.system.transaction.TransactionalClosureWithReturnAbstract;
 
+import org.isisaddons.module.security.dom.cache.SecurityCacheInvalidationService;
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureRepository;
+import org.isisaddons.module.security.dom.metrics.SecurityMetrics;
+import org.isisaddons.module.security.dom.metrics.SecurityMetrics.AuthenticationOutcome;
+import org.isisaddons.module.security.dom.metrics.Timer;
 import org.isisaddons.module.security.dom.password.PasswordEncryptionService;
+import org.isisaddons.module.security.dom.password.PasswordRehashing;
+import org.isisaddons.module.security.dom.password.PasswordVerificationExecutor;
+import org.isisaddons.module.security.dom.password.PasswordVerificationRejectedException;
 import org.isisaddons.module.security.dom.user.AccountType;
 import org.isisaddons.module.security.dom.user.ApplicationUser;
 import org.isisaddons.module.security.dom.user.ApplicationUserRepository;
 
-public class IsisModuleSecurityRealm extends AuthorizingRealm {
+public class IsisModuleSecurityRealm extends AuthorizingRealm implements Destroyable {
 
 
     //region > constructor
@@ -52,10 +69,52 @@ public class IsisModuleSecurityRealm extends AuthorizingRealm {
      * {@link org.apache.isis.core.runtime.authorization.standard.Authorizor} for Shiro.
      */
     public IsisModuleSecurityRealm() {
-        setPermissionResolver(new PermissionResolverForIsisShiroAuthorizor());
+        setPermissionResolver(permissionResolver);
     }
     //endregion
 
+    //region > permissionResolver, prepopulatePermissionResolver
+
+    private final PermissionResolverForIsisShiroAuthorizor permissionResolver = new PermissionResolverForIsisShiroAuthorizor();
+
+    private boolean prepopulatePermissionResolver;
+    private volatile boolean permissionResolverPrepopulated;
+
+    public boolean isPrepopulatePermissionResolver() {
+        return prepopulatePermissionResolver;
+    }
+
+    /**
+     * Whether the cache of resolved permissions should be prepopulated with every member of the metamodel, rather than
+     * filled in as each permission is first checked.
+     *
+     * <p>
+     *     Prepopulation happens once, when the first user logs in (this being the first time that the realm has access
+     *     to the Isis runtime).  It is skipped if the catalog of features is
+     *     {@link ApplicationFeatureRepository#isLazy() lazy}, as it would otherwise force the entire catalog to be
+     *     created within that first login.  Enable in <tt>shiro.ini</tt> using:
+     * </p>
+     * <pre>
+     *     isisModuleSecurityRealm.prepopulatePermissionResolver = true
+     * </pre>
+     */
+    public void setPrepopulatePermissionResolver(final boolean prepopulatePermissionResolver) {
+        this.prepopulatePermissionResolver = prepopulatePermissionResolver;
+    }
+
+    void prepopulatePermissionResolverIfRequired(final ApplicationFeatureRepository applicationFeatureRepository) {
+        if(!prepopulatePermissionResolver || permissionResolverPrepopulated) {
+            return;
+        }
+        permissionResolverPrepopulated = true;
+        if(applicationFeatureRepository.isLazy()) {
+            return;
+        }
+        permissionResolver.prepopulate(applicationFeatureRepository.allMembers());
+    }
+
+    //endregion
+
 
     //region > doGetAuthenticationInfo, doGetAuthorizationInfo (Shiro API)
 
@@ -65,9 +124,29 @@ public IsisModuleSecurityRealm() {
      * few (or no) details in their exception message.  Similarly, the generic
      * {@link org.apache.shiro.authc.CredentialsException} is thrown for both a non-existent user and also an
      * invalid password.
+     *
+     * <p>
+     *     The lookup of the user and the check of its status are performed within a single Isis session and
+     *     transaction.  The verification of a local account's password, as for authentication by a delegate realm,
+     *     happens only once that session has been closed, so that no database connection is held while waiting for
+     *     the (deliberately expensive) hash to be computed.
+     * </p>
+     *
+     * <p>
+     *     The outcome and duration of every authentication are recorded in the {@link SecurityMetrics}.
+     * </p>
      */
     @Override
     protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) throws AuthenticationException {
+        final long authenticationStart = System.nanoTime();
+        try {
+            return authenticate(token);
+        } finally {
+            metrics.getAuthentication().recordSince(authenticationStart);
+        }
+    }
+
+    private AuthenticationInfo authenticate(final AuthenticationToken token) throws AuthenticationException {
 
         if (!(token instanceof UsernamePasswordToken)) {
             throw new AuthenticationException();
@@ -79,43 +158,47 @@ protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token)
 
         // lookup from database, for roles/perms, but also
         // determine how to authenticate (delegate or local), whether disabled
-        final PrincipalForApplicationUser principal = lookupPrincipal(username, hasDelegateAuthenticationRealm());
-        if(principal == null) {
-            // if no delegate authentication
-            throw new CredentialsException("Unknown user/password combination");
-        }
-
-        if (principal.isDisabled()) {
-            // this is the default if delegated account and automatically created
-            throw new DisabledAccountException();
-        }
-
-        if(principal.getAccountType() == AccountType.DELEGATED) {
-            AuthenticationInfo delegateAccount = null;
-            if (hasDelegateAuthenticationRealm()) {
+        final Login login = login(username, password, hasDelegateAuthenticationRealm());
+        switch (login.getResult()) {
+            case OK:
+                metrics.authenticated(AuthenticationOutcome.OK);
+                break;
+            case DELEGATED:
+                AuthenticationInfo delegateAccount = null;
                 try {
                     delegateAccount = delegateAuthenticationRealm.getAuthenticationInfo(token);
                 } catch (AuthenticationException ex) {
                     // fall through
                 }
-            }
-            if(delegateAccount == null) {
-                throw new CredentialsException("Unknown user/password combination");
-            }
-        } else {
-            final CheckPasswordResult result = checkPassword(password, principal.getEncryptedPassword());
-            switch (result) {
-                case OK:
-                    break;
-                case BAD_PASSWORD:
+                if(delegateAccount == null) {
+                    metrics.authenticated(AuthenticationOutcome.BAD_PASSWORD);
                     throw new CredentialsException("Unknown user/password combination");
-                case NO_PASSWORD_ENCRYPTION_SERVICE_CONFIGURED:
-                    throw new AuthenticationException("No password encryption service is installed");
-                default:
-                    throw new AuthenticationException();
-            }
+                }
+                metrics.authenticated(AuthenticationOutcome.DELEGATED);
+                break;
+            case UNKNOWN_USER:
+                metrics.authenticated(AuthenticationOutcome.UNKNOWN_USER);
+                throw new CredentialsException("Unknown user/password combination");
+            case BAD_PASSWORD:
+                metrics.authenticated(AuthenticationOutcome.BAD_PASSWORD);
+                throw new CredentialsException("Unknown user/password combination");
+            case DISABLED:
+                // this is the default if delegated account and automatically created
+                metrics.authenticated(AuthenticationOutcome.DISABLED);
+                throw new DisabledAccountException();
+            case NO_PASSWORD_ENCRYPTION_SERVICE_CONFIGURED:
+                metrics.authenticated(AuthenticationOutcome.REJECTED);
+                throw new AuthenticationException("No password encryption service is installed");
+            case TRY_AGAIN_LATER:
+                metrics.authenticated(AuthenticationOutcome.REJECTED);
+                throw new AuthenticationException("Unable to verify password at this time; please try again later");
+            default:
+                throw new AuthenticationException();
         }
 
+        final PrincipalForApplicationUser principal = login.getPrincipal();
+        loggedInPrincipals.add(principal);
+
         final Object credentials = token.getCredentials();
         final String realmName = getName();
         return new AuthInfoForApplicationUser(principal, realmName, credentials);
@@ -127,24 +210,229 @@ protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principal
         if (urp == null) {
             return null;
         }
+        if (urp.isStale()) {
+            refresh(urp);
+        }
         return urp;
     }
 
     //endregion
 
-    //region > lookupPrincipal
+    //region > verifiedCredentialsCache
+
+    private long verifiedCredentialsCacheTimeToLiveSeconds;
+    private long verifiedCredentialsCacheMaximumSize = 10000;
+    private VerifiedCredentialsCache verifiedCredentialsCache;
+
+    public long getVerifiedCredentialsCacheTimeToLiveSeconds() {
+        return verifiedCredentialsCacheTimeToLiveSeconds;
+    }
+
+    /**
+     * For how long a successfully verified password is remembered, such that subsequent logins by the same user with
+     * the same password need not verify it again using the (deliberately expensive)
+     * {@link PasswordEncryptionService}.  Useful for stateless clients, such as the Restful Objects viewer, that send
+     * their credentials with every request.
+     *
+     * <p>
+     *     Defaults to zero, meaning that passwords are always verified.  Enable in <tt>shiro.ini</tt> using (say):
+     * </p>
+     * <pre>
+     *     isisModuleSecurityRealm.verifiedCredentialsCacheTimeToLiveSeconds = 300
+     * </pre>
+     *
+     * <p>
+     *     A user's status is still checked on every login, and a remembered password no longer applies once the
+     *     user's password has been changed.
+     * </p>
+     */
+    public void setVerifiedCredentialsCacheTimeToLiveSeconds(final long verifiedCredentialsCacheTimeToLiveSeconds) {
+        this.verifiedCredentialsCacheTimeToLiveSeconds = verifiedCredentialsCacheTimeToLiveSeconds;
+    }
+
+    public long getVerifiedCredentialsCacheMaximumSize() {
+        return verifiedCredentialsCacheMaximumSize;
+    }
 
+    /**
+     * The maximum number of verified passwords to remember; defaults to 10000.
+     */
+    public void setVerifiedCredentialsCacheMaximumSize(final long verifiedCredentialsCacheMaximumSize) {
+        this.verifiedCredentialsCacheMaximumSize = verifiedCredentialsCacheMaximumSize;
+    }
+
+    /**
+     * Created when first required, once configured; <tt>null</tt> if not enabled.
+     */
+    synchronized VerifiedCredentialsCache getVerifiedCredentialsCache() {
+        if(verifiedCredentialsCache == null && verifiedCredentialsCacheTimeToLiveSeconds > 0) {
+            verifiedCredentialsCache = new VerifiedCredentialsCache(
+                    verifiedCredentialsCacheTimeToLiveSeconds, TimeUnit.SECONDS, verifiedCredentialsCacheMaximumSize);
+        }
+        return verifiedCredentialsCache;
+    }
+
+    //endregion
+
+    //region > principals, invalidationListener, refresh
+
+    /**
+     * The principals of all logged-in users (held weakly; they are retained by the Shiro sessions).
+     */
+    private final Set<PrincipalForApplicationUser> loggedInPrincipals =
+            Collections.newSetFromMap(new MapMaker().weakKeys().<PrincipalForApplicationUser, Boolean>makeMap());
+
+    /**
+     * Marks as stale the principals of users, or holding roles, affected by a change; these are
+     * then {@link #refresh(PrincipalForApplicationUser) refreshed} when next used for authorization.  Any verified
+     * credentials of the affected users are also forgotten.
+     */
+    private final SecurityCacheInvalidationService.Listener invalidationListener = new SecurityCacheInvalidationService.Listener() {
+        @Override
+        public void invalidated(final SecurityCacheInvalidationService.Invalidation invalidation) {
+            final VerifiedCredentialsCache verifiedCredentialsCache = getVerifiedCredentialsCache();
+            if(verifiedCredentialsCache != null) {
+                for (final String username : invalidation.getUsernames()) {
+                    verifiedCredentialsCache.invalidate(username);
+                }
+            }
+            for (final PrincipalForApplicationUser principal : loggedInPrincipals) {
+                if(invalidation.getUsernames().contains(principal.getUsername()) ||
+                   !Collections.disjoint(invalidation.getRoleNames(), principal.getRoles())) {
+                    principal.invalidate();
+                }
+            }
+        }
+    };
+
+    private void registerInvalidationListenerIfRequired(final SecurityCacheInvalidationService securityCacheInvalidationService) {
+        if(securityCacheInvalidationService != null) {
+            securityCacheInvalidationService.addListener(invalidationListener);
+        }
+    }
+
+    private void refresh(final PrincipalForApplicationUser principal) {
+        final int invalidations = principal.getInvalidations();
+        final PrincipalForApplicationUser latest = executeInSession(new TransactionalClosureWithReturnAbstract<PrincipalForApplicationUser>() {
+            @Override
+            public PrincipalForApplicationUser execute() {
+                return PrincipalForApplicationUser.from(applicationUserRepository.findByUsername(principal.getUsername()));
+            }
+
+            @Inject
+            private ApplicationUserRepository applicationUserRepository;
+        });
+        principal.refresh(latest, invalidations);
+    }
+
+    //endregion
+
+    //region > login
+
+    private static enum LoginResult {
+        OK,
+        /**
+         * The user exists and is enabled, but is to be authenticated by the delegate realm.
+         */
+        DELEGATED,
+        /**
+         * The user exists and is enabled, and has a local account whose password is still to be verified.
+         */
+        LOCAL,
+        UNKNOWN_USER,
+        DISABLED,
+        BAD_PASSWORD,
+        NO_PASSWORD_ENCRYPTION_SERVICE_CONFIGURED,
+        /**
+         * The password could not be verified, because too many other logins are being verified concurrently.
+         */
+        TRY_AGAIN_LATER
+    }
+
+    private static class Login {
+        private final LoginResult result;
+        private final PrincipalForApplicationUser principal;
+        private final PasswordEncryptionService passwordEncryptionService;
+
+        Login(final LoginResult result, final PrincipalForApplicationUser principal) {
+            this(result, principal, null);
+        }
+
+        Login(
+                final LoginResult result,
+                final PrincipalForApplicationUser principal,
+                final PasswordEncryptionService passwordEncryptionService) {
+            this.result = result;
+            this.principal = principal;
+            this.passwordEncryptionService = passwordEncryptionService;
+        }
+
+        LoginResult getResult() {
+            return result;
+        }
+
+        PrincipalForApplicationUser getPrincipal() {
+            return principal;
+        }
+
+        PasswordEncryptionService getPasswordEncryptionService() {
+            return passwordEncryptionService;
+        }
+    }
 
     /**
      * @param username
+     * @param password
      * @param autoCreateUser
      */
-    private PrincipalForApplicationUser lookupPrincipal(final String username, final boolean autoCreateUser) {
-        return execute(new TransactionalClosureWithReturnAbstract<PrincipalForApplicationUser>() {
+    private Login login(final String username, final char[] password, final boolean autoCreateUser) {
+        final Login login = lookup(username, password, autoCreateUser);
+        if(login.getResult() != LoginResult.LOCAL) {
+            return login;
+        }
+        return verifyPassword(username, password, login.getPrincipal(), login.getPasswordEncryptionService());
+    }
+
+    /**
+     * Looks up the user (within an Isis session and transaction), returning a {@link LoginResult#LOCAL} login if its
+     * password is yet to be verified.
+     */
+    private Login lookup(final String username, final char[] password, final boolean autoCreateUser) {
+        return execute(new TransactionalClosureWithReturnAbstract<Login>() {
             @Override
-            public PrincipalForApplicationUser execute() {
-                final ApplicationUser applicationUser = lookupUser();
-                return PrincipalForApplicationUser.from(applicationUser);
+            public Login execute() {
+                prepopulatePermissionResolverIfRequired(applicationFeatureRepository);
+                registerInvalidationListenerIfRequired(securityCacheInvalidationService);
+
+                final long lookupStart = System.nanoTime();
+                final PrincipalForApplicationUser principal = PrincipalForApplicationUser.from(lookupUser());
+                lookupTimer.recordSince(lookupStart);
+
+                if(principal == null) {
+                    // if no delegate authentication
+                    return new Login(LoginResult.UNKNOWN_USER, null);
+                }
+                if (principal.isDisabled()) {
+                    return new Login(LoginResult.DISABLED, principal);
+                }
+                if(principal.getAccountType() == AccountType.DELEGATED) {
+                    return new Login(
+                            hasDelegateAuthenticationRealm() ? LoginResult.DELEGATED : LoginResult.UNKNOWN_USER,
+                            principal);
+                }
+                if (passwordEncryptionService == null) {
+                    return new Login(LoginResult.NO_PASSWORD_ENCRYPTION_SERVICE_CONFIGURED, principal);
+                }
+
+                final VerifiedCredentialsCache verifiedCredentialsCache = getVerifiedCredentialsCache();
+                if(verifiedCredentialsCache != null) {
+                    if(verifiedCredentialsCache.isVerified(username, password, principal.getEncryptedPassword())) {
+                        metrics.getVerifiedCredentialsCache().hit();
+                        return new Login(LoginResult.OK, principal);
+                    }
+                    metrics.getVerifiedCredentialsCache().miss();
+                }
+                return new Login(LoginResult.LOCAL, principal, passwordEncryptionService);
             }
 
             private ApplicationUser lookupUser() {
@@ -158,31 +446,228 @@ private ApplicationUser lookupUser() {
 
             @Inject
             private ApplicationUserRepository applicationUserRepository;
+            @Inject
+            private ApplicationFeatureRepository applicationFeatureRepository;
+            @Inject
+            private SecurityCacheInvalidationService securityCacheInvalidationService;
+            @Inject
+            private PasswordEncryptionService passwordEncryptionService;
         });
     }
 
+    /**
+     * Called outside of any Isis session, once the user has been {@link #lookup(String, char[], boolean) looked up}.
+     */
+    private Login verifyPassword(
+            final String username,
+            final char[] password,
+            final PrincipalForApplicationUser principal,
+            final PasswordEncryptionService passwordEncryptionService) {
+        final long verifyStart = System.nanoTime();
+        final boolean matches;
+        try {
+            matches = matches(passwordEncryptionService, password, principal.getEncryptedPassword());
+        } catch (final PasswordVerificationRejectedException ex) {
+            return new Login(LoginResult.TRY_AGAIN_LATER, principal);
+        }
+        passwordVerificationTimer.recordSince(verifyStart);
+
+        if(!matches) {
+            return new Login(LoginResult.BAD_PASSWORD, principal);
+        }
+        final VerifiedCredentialsCache verifiedCredentialsCache = getVerifiedCredentialsCache();
+        if(verifiedCredentialsCache != null) {
+            verifiedCredentialsCache.verified(username, password, principal.getEncryptedPassword());
+        }
+        rehashPasswordIfRequired(passwordEncryptionService, username, password, principal.getEncryptedPassword());
+        return new Login(LoginResult.OK, principal);
+    }
+
     //endregion
 
-    //region > checkPassword
+    //region > passwordVerificationExecutor
 
-    private static enum CheckPasswordResult {
-        OK,
-        BAD_PASSWORD,
-        NO_PASSWORD_ENCRYPTION_SERVICE_CONFIGURED
+    private int passwordVerificationParallelism;
+    private int passwordVerificationQueueCapacity = 100;
+    private long passwordVerificationTimeoutMillis = 10000;
+    private PasswordVerificationExecutor passwordVerificationExecutor;
+
+    public int getPasswordVerificationParallelism() {
+        return passwordVerificationParallelism;
+    }
+
+    /**
+     * The maximum number of passwords to verify concurrently, using a dedicated pool of threads; any further logins
+     * wait (in a queue of bounded {@link #setPasswordVerificationQueueCapacity(int) capacity}) for a thread to
+     * become free, so that hashing passwords cannot starve the servlet container of request-serving threads.
+     *
+     * <p>
+     *     Defaults to zero, meaning that passwords are verified by the thread handling the login.  Enable in
+     *     <tt>shiro.ini</tt> using (say):
+     * </p>
+     * <pre>
+     *     isisModuleSecurityRealm.passwordVerificationParallelism = 4
+     *     isisModuleSecurityRealm.passwordVerificationQueueCapacity = 50
+     *     isisModuleSecurityRealm.passwordVerificationTimeoutMillis = 5000
+     * </pre>
+     *
+     * <p>
+     *     A login that cannot be queued, or whose password is not verified within the timeout (if any), fails with an
+     *     {@link AuthenticationException} asking the user to try again later.
+     * </p>
+     */
+    public void setPasswordVerificationParallelism(final int passwordVerificationParallelism) {
+        this.passwordVerificationParallelism = passwordVerificationParallelism;
+    }
+
+    public int getPasswordVerificationQueueCapacity() {
+        return passwordVerificationQueueCapacity;
+    }
+
+    /**
+     * The maximum number of logins waiting for their password to be verified; defaults to 100.
+     */
+    public void setPasswordVerificationQueueCapacity(final int passwordVerificationQueueCapacity) {
+        this.passwordVerificationQueueCapacity = passwordVerificationQueueCapacity;
+    }
+
+    public long getPasswordVerificationTimeoutMillis() {
+        return passwordVerificationTimeoutMillis;
+    }
+
+    /**
+     * How long to wait for a password to be verified; defaults to 10000 (ten seconds).  Zero means indefinitely, which
+     * is not recommended: a login would then wait for as long as every verification queued ahead of it.
+     */
+    public void setPasswordVerificationTimeoutMillis(final long passwordVerificationTimeoutMillis) {
+        this.passwordVerificationTimeoutMillis = passwordVerificationTimeoutMillis;
+    }
+
+    /**
+     * Created when first required, once configured; <tt>null</tt> if not enabled.  Exposes the queue depth and wait
+     * time of password verifications, also published over JMX by way of the {@link SecurityMetrics}.
+     */
+    public synchronized PasswordVerificationExecutor getPasswordVerificationExecutor() {
+        if(passwordVerificationExecutor == null && passwordVerificationParallelism > 0) {
+            passwordVerificationExecutor = new PasswordVerificationExecutor(
+                    passwordVerificationParallelism, passwordVerificationQueueCapacity, passwordVerificationTimeoutMillis);
+            SecurityMetrics.getInstance().setPasswordVerificationExecutor(passwordVerificationExecutor);
+        }
+        return passwordVerificationExecutor;
+    }
+
+    private boolean matches(
+            final PasswordEncryptionService passwordEncryptionService,
+            final char[] candidate,
+            final String encryptedPassword) throws PasswordVerificationRejectedException {
+        final PasswordVerificationExecutor executor = getPasswordVerificationExecutor();
+        return executor != null
+                ? executor.matches(passwordEncryptionService, new String(candidate), encryptedPassword)
+                : passwordEncryptionService.matches(new String(candidate), encryptedPassword);
+    }
+
+    //endregion
+
+    //region > destroy (Shiro API)
+
+    /**
+     * Stops the threads used to {@link #getPasswordVerificationExecutor() verify} and to
+     * {@link #setRehashPasswordOnLogin(boolean) rehash} passwords; called by Shiro when the security manager is
+     * destroyed (for example, when the web application is undeployed).
+     */
+    @Override
+    public synchronized void destroy() {
+        if(passwordVerificationExecutor != null) {
+            SecurityMetrics.getInstance().removePasswordVerificationExecutor(passwordVerificationExecutor);
+            passwordVerificationExecutor.shutdown();
+            passwordVerificationExecutor = null;
+        }
+        if(passwordRehasher != null) {
+            passwordRehasher.shutdown();
+            passwordRehasher = null;
+        }
+    }
+
+    //endregion
+
+    //region > rehashPasswordOnLogin
+
+    private boolean rehashPasswordOnLogin = true;
+    private PasswordRehasher passwordRehasher;
+
+    public boolean isRehashPasswordOnLogin() {
+        return rehashPasswordOnLogin;
+    }
+
+    /**
+     * Whether, following a successful login to a local account, the user's password should be re-encrypted (in the
+     * background) if the {@link PasswordEncryptionService} reports that it was encrypted using a different
+     * configuration - for example, a different BCrypt work factor - to that now in use.  This allows the whole user
+     * base to be migrated to a new work factor without forcing anyone to reset their password.
+     *
+     * <p>
+     *     Defaults to <tt>true</tt>.  Disable in <tt>shiro.ini</tt> using:
+     * </p>
+     * <pre>
+     *     isisModuleSecurityRealm.rehashPasswordOnLogin = false
+     * </pre>
+     */
+    public void setRehashPasswordOnLogin(final boolean rehashPasswordOnLogin) {
+        this.rehashPasswordOnLogin = rehashPasswordOnLogin;
+    }
+
+    private synchronized PasswordRehasher getPasswordRehasher() {
+        if(passwordRehasher == null) {
+            passwordRehasher = new PasswordRehasher();
+        }
+        return passwordRehasher;
     }
 
-    private CheckPasswordResult checkPassword(final char[] candidate, final String actualEncryptedPassword) {
-        return execute(new TransactionalClosureWithReturnAbstract<CheckPasswordResult>() {
+    private void rehashPasswordIfRequired(
+            final PasswordEncryptionService passwordEncryptionService,
+            final String username,
+            final char[] password,
+            final String encryptedPassword) {
+        if(!rehashPasswordOnLogin ||
+           !(passwordEncryptionService instanceof PasswordRehashing) ||
+           !((PasswordRehashing) passwordEncryptionService).isRehashRequired(encryptedPassword)) {
+            return;
+        }
+        final char[] passwordCopy = password.clone();
+        getPasswordRehasher().rehash(username, new Runnable() {
             @Override
-            public CheckPasswordResult execute() {
-                if (passwordEncryptionService == null) {
-                    return CheckPasswordResult.NO_PASSWORD_ENCRYPTION_SERVICE_CONFIGURED;
+            public void run() {
+                try {
+                    final String rehashed = rehashPassword(username, passwordCopy, encryptedPassword);
+                    final VerifiedCredentialsCache verifiedCredentialsCache = getVerifiedCredentialsCache();
+                    if(rehashed != null && verifiedCredentialsCache != null) {
+                        verifiedCredentialsCache.verified(username, passwordCopy, rehashed);
+                    }
+                } finally {
+                    Arrays.fill(passwordCopy, '\0');
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the newly encrypted password, or <tt>null</tt> if the user's password was changed in the meantime.
+     */
+    private String rehashPassword(final String username, final char[] password, final String encryptedPassword) {
+        return execute(new TransactionalClosureWithReturnAbstract<String>() {
+            @Override
+            public String execute() {
+                final ApplicationUser applicationUser = applicationUserRepository.findByUsername(username);
+                if(applicationUser == null || !Objects.equal(applicationUser.getEncryptedPassword(), encryptedPassword)) {
+                    return null;
                 }
-                return passwordEncryptionService.matches(new String(candidate), actualEncryptedPassword)
-                        ? CheckPasswordResult.OK
-                        : CheckPasswordResult.BAD_PASSWORD;
+                final String rehashed = passwordEncryptionService.encrypt(new String(password));
+                applicationUser.setEncryptedPassword(rehashed);
+                return rehashed;
             }
 
+            @Inject
+            private ApplicationUserRepository applicationUserRepository;
             @Inject
             private PasswordEncryptionService passwordEncryptionService;
         });
@@ -190,6 +675,39 @@ public CheckPasswordResult execute() {
 
     //endregion
 
+    //region > metrics
+
+    private final SecurityMetrics metrics = SecurityMetrics.getInstance();
+
+    private final Timer sessionOpenTimer = metrics.getSessionOpen();
+    private final Timer lookupTimer = metrics.getUserLookup();
+    private final Timer passwordVerificationTimer = metrics.getPasswordVerification();
+
+    /**
+     * Time taken (as for the other timers, across all realms) to open an Isis session (and inject services) on behalf of the realm, on login or when refreshing a
+     * stale principal.
+     */
+    public Timer getSessionOpenTimer() {
+        return sessionOpenTimer;
+    }
+
+    /**
+     * Time taken, on login, to look up (or auto-create) the user along with its roles and permissions.
+     */
+    public Timer getLookupTimer() {
+        return lookupTimer;
+    }
+
+    /**
+     * Time taken, on login to a local account, to verify the password using the {@link PasswordEncryptionService}
+     * (including any time spent waiting for the {@link #getPasswordVerificationExecutor() executor}, if configured).
+     */
+    public Timer getPasswordVerificationTimer() {
+        return passwordVerificationTimer;
+    }
+
+    //endregion
+
     //region > delegateRealm
 
 
@@ -211,15 +729,29 @@ public boolean hasDelegateAuthenticationRealm() {
 
     <V> V execute(final TransactionalClosureWithReturn<V> closure) {
         try {
+            final long sessionOpenStart = System.nanoTime();
             IsisContext.openSession(new InitialisationSession());
             PersistenceSession persistenceSession = getPersistenceSession();
             persistenceSession.getServicesInjector().injectServicesInto(closure);
+            sessionOpenTimer.recordSince(sessionOpenStart);
             return doExecute(closure);
         } finally {
             IsisContext.closeSession();
         }
     }
 
+    /**
+     * As {@link #execute(TransactionalClosureWithReturn)}, but using the current session if there is one (as is the
+     * case when authorizing within an interaction).
+     */
+    <V> V executeInSession(final TransactionalClosureWithReturn<V> closure) {
+        if(!IsisContext.inSession()) {
+            return execute(closure);
+        }
+        getPersistenceSession().getServicesInjector().injectServicesInto(closure);
+        return doExecute(closure);
+    }
+
     <V> V doExecute(final TransactionalClosureWithReturn<V> closure) {
         final PersistenceSession persistenceSession = getPersistenceSession();
         final IsisTransactionManager transactionManager = getTransactionManager(persistenceSession);
@@ -0,0 +1,104 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.isisaddons.module.security.dom.metrics.SecurityMetrics;
+
+/**
+ * Re-encrypts users' passwords on a single background thread, so that a login is not slowed down by having to hash
+ * the password a second time.
+ *
+ * <p>
+ *     Rehashing is best-effort: at most one rehash per user is pending at any time, and if too many are pending then
+ *     further requests are simply dropped (the user's password will be rehashed on some later login instead).  A
+ *     rehash that fails is logged and {@link SecurityMetrics#getPasswordRehashFailures() counted}, but otherwise
+ *     likewise left for a later login.
+ * </p>
+ */
+class PasswordRehasher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PasswordRehasher.class);
+
+    static final int QUEUE_CAPACITY = 100;
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            1, 1,
+            0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "password-rehash");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+
+    private final Set<String> pendingUsernames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Schedules the rehash, unless one is already pending for the user.
+     *
+     * @return whether the rehash was scheduled.
+     */
+    boolean rehash(final String username, final Runnable rehash) {
+        if(!pendingUsernames.add(username)) {
+            return false;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        rehash.run();
+                    } catch (final RuntimeException ex) {
+                        // best-effort; will be attempted again on the user's next login
+                        LOG.warn("Failed to rehash password of user '{}'", username, ex);
+                        SecurityMetrics.getInstance().passwordRehashFailed();
+                    } finally {
+                        pendingUsernames.remove(username);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException ex) {
+            pendingUsernames.remove(username);
+            return false;
+        }
+        return true;
+    }
+
+    int getPendingCount() {
+        return pendingUsernames.size();
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
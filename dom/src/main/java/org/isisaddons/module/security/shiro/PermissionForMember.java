@@ -31,34 +31,63 @@ class PermissionForMember implements org.apache.shiro.authz.Permission {
 
     /**
      * Expects in format <code>package:className:methodName:r|w</code>
+     *
+     * <p>
+     *     Parsed by hand (rather than using a regex split) because this is called for every authorization check whose
+     *     permission string has not yet been cached by {@link PermissionResolverForIsisShiroAuthorizor}.
+     * </p>
      */
     public PermissionForMember(String permissionString) {
-        final String[] split = permissionString.split("\\:");
-        if(split.length == 4) {
-            String packageName = split[0];
-            String className = split[1];
-            String memberName = split[2];
-            this.featureId = ApplicationFeatureId.newMember(packageName + "." + className, memberName);
+        final int endOfPackage = permissionString.indexOf(':');
+        final int endOfClass = endOfPackage != -1 ? permissionString.indexOf(':', endOfPackage + 1) : -1;
+        final int endOfMember = endOfClass != -1 ? permissionString.indexOf(':', endOfClass + 1) : -1;
+        final ApplicationPermissionMode mode = endOfMember != -1 ? modeFrom(permissionString, endOfMember + 1) : null;
+        if(mode == null) {
+            throw new IllegalArgumentException("Invalid format for permission: " + permissionString + "; expected 'packageName:className:methodName:r|w");
+        }
+        final String classFqn = new StringBuilder(endOfClass + 1)
+                .append(permissionString, 0, endOfPackage)
+                .append('.')
+                .append(permissionString, endOfPackage + 1, endOfClass)
+                .toString();
+        final String memberName = permissionString.substring(endOfClass + 1, endOfMember);
+        this.featureId = ApplicationFeatureId.newMember(classFqn, memberName).intern();
+        this.mode = mode;
+    }
 
-            ApplicationPermissionMode mode = modeFrom(split[3]);
-            if(mode != null) {
-                this.mode = mode;
-                return;
-            }
+    PermissionForMember(final ApplicationFeatureId featureId, final ApplicationPermissionMode mode) {
+        this.featureId = featureId.intern();
+        this.mode = mode;
+    }
+
+    /**
+     * The mode is the single character following the last separator, and must end the string.
+     */
+    private static ApplicationPermissionMode modeFrom(final String permissionString, final int index) {
+        if(index != permissionString.length() - 1) {
+            return null;
         }
-        throw new IllegalArgumentException("Invalid format for permission: " + permissionString + "; expected 'packageName:className:methodName:r|w");
+        return modeFrom(permissionString.charAt(index));
     }
 
-    private static ApplicationPermissionMode modeFrom(String s) {
-        if("r".equals(s)) {
+    private static ApplicationPermissionMode modeFrom(final char c) {
+        if(c == 'r') {
             return ApplicationPermissionMode.VIEWING;
         }
-        if("w".equals(s)) {
+        if(c == 'w') {
             return ApplicationPermissionMode.CHANGING;
         }
         return null;
     }
 
+    /**
+     * Inverse of {@link #PermissionForMember(String)}.
+     */
+    static String asPermissionString(final ApplicationFeatureId memberId, final ApplicationPermissionMode mode) {
+        return memberId.getPackageName() + ":" + memberId.getClassName() + ":" + memberId.getMemberName() + ":" +
+                (mode == ApplicationPermissionMode.VIEWING ? "r" : "w");
+    }
+
     /**
      */
     @Override
@@ -16,16 +16,70 @@
  */
 package org.isisaddons.module.security.shiro;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.shiro.authz.Permission;
 import org.apache.shiro.authz.permission.PermissionResolver;
 
+import org.isisaddons.module.security.dom.feature.ApplicationFeature;
+import org.isisaddons.module.security.dom.metrics.SecurityMetrics;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+
+/**
+ * Resolves the permission strings provided by Isis' Shiro authorizor into (shared, immutable)
+ * {@link PermissionForMember}s.
+ *
+ * <p>
+ *     The set of such strings is bounded by the metamodel, so each one is parsed only once and thereafter served from
+ *     a cache.  The cache can also be {@link #prepopulate(Iterable) prepopulated} from the application's features.
+ * </p>
+ */
 class PermissionResolverForIsisShiroAuthorizor implements PermissionResolver {
 
+    /**
+     * Safety net in case permission strings do not come from the metamodel; once reached, further permissions are
+     * still resolved but no longer cached.
+     */
+    static final int MAXIMUM_SIZE = 100000;
+
+    private final ConcurrentMap<String, PermissionForMember> permissionByString = new ConcurrentHashMap<>();
+
     /**
      * Expects in format <code>package:className:methodName:r|w</code>
      */
     @Override
     public Permission resolvePermission(String permissionString) {
-        return new PermissionForMember(permissionString);
+        final PermissionForMember permission = permissionByString.get(permissionString);
+        if(permission != null) {
+            SecurityMetrics.getInstance().getPermissionResolverCache().hit();
+            return permission;
+        }
+        SecurityMetrics.getInstance().getPermissionResolverCache().miss();
+        return cache(permissionString, new PermissionForMember(permissionString));
+    }
+
+    /**
+     * Caches a permission for each mode of each of the provided member features.
+     */
+    void prepopulate(final Iterable<ApplicationFeature> memberFeatures) {
+        for (final ApplicationFeature memberFeature : memberFeatures) {
+            for (final ApplicationPermissionMode mode : ApplicationPermissionMode.values()) {
+                final String permissionString = PermissionForMember.asPermissionString(memberFeature.getFeatureId(), mode);
+                cache(permissionString, new PermissionForMember(memberFeature.getFeatureId(), mode));
+            }
+        }
+    }
+
+    private PermissionForMember cache(final String permissionString, final PermissionForMember permission) {
+        if(permissionByString.size() >= MAXIMUM_SIZE) {
+            return permission;
+        }
+        final PermissionForMember existing = permissionByString.putIfAbsent(permissionString, permission);
+        return existing != null ? existing : permission;
+    }
+
+    int size() {
+        return permissionByString.size();
     }
 }
@@ -19,7 +19,10 @@
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -27,6 +30,10 @@
 import org.apache.shiro.authz.AuthorizationInfo;
 import org.apache.shiro.authz.Permission;
 
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
+import org.isisaddons.module.security.dom.metrics.SecurityMetrics;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValue;
 import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSet;
 import org.isisaddons.module.security.dom.role.ApplicationRole;
 import org.isisaddons.module.security.dom.user.AccountType;
@@ -64,11 +71,16 @@ public static PrincipalForApplicationUser from(ApplicationUser applicationUser)
     }
 
     private final String username;
-    private final Set<String> roles;
+    private volatile Set<String> roles;
     private final String encryptedPassword;
     private final ApplicationUserStatus status;
     private final AccountType accountType;
-    private final ApplicationPermissionValueSet permissionSet;
+    private volatile ApplicationPermissionValueSet permissionSet;
+
+    /**
+     * Derived from the {@link #permissionSet}; not serialized, instead recreated (empty) on first use thereafter.
+     */
+    private transient volatile Decisions decisions;
 
     PrincipalForApplicationUser(
             final String username,
@@ -82,7 +94,7 @@ public static PrincipalForApplicationUser from(ApplicationUser applicationUser)
         this.accountType = accountType;
         this.roles = roles;
         this.status = status;
-        this.permissionSet = applicationPermissionValueSet;
+        setPermissionSet(applicationPermissionValueSet);
     }
 
     public boolean isDisabled() {
@@ -99,19 +111,33 @@ public Collection<String> getStringPermissions() {
         return Collections.emptyList();
     }
 
+    /**
+     * Shared by every call to {@link #getObjectPermissions()}; not serialized (Shiro's {@link Permission}s need not
+     * be), instead recreated on first use thereafter.
+     */
+    private transient volatile Collection<Permission> objectPermissions;
+
     @Override
     public Collection<Permission> getObjectPermissions() {
-        final Permission o = new Permission() {
-            @Override
-            public boolean implies(Permission p) {
-                if (!(p instanceof PermissionForMember)) {
-                    return false;
-                }
-                final PermissionForMember pfm = (PermissionForMember) p;
-                return getPermissionSet().grants(pfm.getFeatureId(), pfm.getMode());
+        Collection<Permission> objectPermissions = this.objectPermissions;
+        if(objectPermissions == null) {
+            this.objectPermissions = objectPermissions = Collections.<Permission>singleton(new GrantsPermission());
+        }
+        return objectPermissions;
+    }
+
+    /**
+     * Delegates to the memoized {@link #grants(ApplicationFeatureId, ApplicationPermissionMode)}.
+     */
+    private class GrantsPermission implements Permission {
+        @Override
+        public boolean implies(Permission p) {
+            if (!(p instanceof PermissionForMember)) {
+                return false;
             }
-        };
-        return Collections.singleton(o);
+            final PermissionForMember pfm = (PermissionForMember) p;
+            return grants(pfm.getFeatureId(), pfm.getMode());
+        }
     }
 
     ApplicationUserStatus getStatus() {
@@ -130,6 +156,143 @@ ApplicationPermissionValueSet getPermissionSet() {
         return permissionSet;
     }
 
+    /**
+     * Replaces the permissions held by this principal, discarding any decisions memoized from the previous set.
+     */
+    synchronized void setPermissionSet(final ApplicationPermissionValueSet permissionSet) {
+        this.permissionSet = permissionSet;
+        this.decisions = new Decisions(permissionSet);
+    }
+
+    /**
+     * Synchronized with {@link #setPermissionSet(ApplicationPermissionValueSet)} so that decisions recreated (after
+     * deserialization) cannot be derived from a permission set that has since been replaced.
+     */
+    private Decisions getDecisions() {
+        final Decisions decisions = this.decisions;
+        if(decisions != null) {
+            return decisions;
+        }
+        synchronized (this) {
+            if(this.decisions == null) {
+                this.decisions = new Decisions(permissionSet);
+            }
+            return this.decisions;
+        }
+    }
+
+    //region > invalidate, refresh
+
+    private final AtomicInteger invalidations = new AtomicInteger();
+    private volatile int refreshedAsOf;
+
+    /**
+     * Marks the roles and permissions held by this principal as stale, following a change to the user or
+     * to one of its roles.
+     */
+    void invalidate() {
+        invalidations.incrementAndGet();
+    }
+
+    boolean isStale() {
+        return invalidations.get() != refreshedAsOf;
+    }
+
+    /**
+     * To be passed to {@link #refresh(PrincipalForApplicationUser, int)}; obtained before looking up the user afresh, so
+     * that an invalidation occurring during the lookup is not lost.
+     */
+    int getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * Replaces the roles and permissions held by this principal with those of the (freshly looked-up) principal
+     * provided, or removes them all if the user no longer exists.
+     */
+    void refresh(final PrincipalForApplicationUser latest, final int asOfInvalidations) {
+        if(latest != null) {
+            this.roles = latest.getRoles();
+            setPermissionSet(latest.getPermissionSet());
+        } else {
+            this.roles = Collections.emptySet();
+            setPermissionSet(new ApplicationPermissionValueSet(Collections.<ApplicationPermissionValue>emptyList()));
+        }
+        this.refreshedAsOf = asOfInvalidations;
+    }
+
+    //endregion
+
+    //region > grants (memoized)
+
+    /**
+     * Upper bound on the number of (feature, mode) decisions memoized per principal.
+     */
+    static final int DECISIONS_MAXIMUM_SIZE = 10000;
+
+    /**
+     * Each check is counted (by mode) in the {@link SecurityMetrics}, along with whether it was answered from the
+     * memoized decisions or (timed) had to be evaluated against the permission set.
+     *
+     * <p>
+     *     If the permission set is {@link ApplicationPermissionValueSet#isCompiled() compiled} then it is consulted
+     *     directly, being cheaper than the memoized decisions; such checks are neither memoized nor counted as
+     *     decision cache hits or misses.
+     * </p>
+     */
+    boolean grants(final ApplicationFeatureId featureId, final ApplicationPermissionMode mode) {
+        final SecurityMetrics metrics = SecurityMetrics.getInstance();
+        metrics.permissionChecked(mode);
+
+        final Decisions decisions = getDecisions();
+        if(decisions.byMode == null) {
+            return decisions.permissionSet.grants(featureId, mode);
+        }
+        final Cache<ApplicationFeatureId, Boolean> cache = decisions.byMode[mode.ordinal()];
+        Boolean granted = cache.getIfPresent(featureId);
+        if(granted != null) {
+            metrics.getPermissionDecisionCache().hit();
+            return granted;
+        }
+        metrics.getPermissionDecisionCache().miss();
+        final long evaluationStart = System.nanoTime();
+        granted = decisions.permissionSet.grants(featureId, mode);
+        metrics.getPermissionEvaluation().recordSince(evaluationStart);
+        cache.put(featureId, granted);
+        return granted;
+    }
+
+    /**
+     * The permission set together with the decisions derived from it, so that both are replaced atomically.
+     *
+     * <p>
+     *     No decisions are memoized (nor caches allocated) for a {@link ApplicationPermissionValueSet#isCompiled()
+     *     compiled} permission set.
+     * </p>
+     */
+    private static class Decisions {
+        private final ApplicationPermissionValueSet permissionSet;
+        /**
+         * <tt>null</tt> if the {@link #permissionSet} is compiled.
+         */
+        private final Cache<ApplicationFeatureId, Boolean>[] byMode;
+
+        @SuppressWarnings("unchecked")
+        Decisions(final ApplicationPermissionValueSet permissionSet) {
+            this.permissionSet = permissionSet;
+            if(permissionSet.isCompiled()) {
+                this.byMode = null;
+                return;
+            }
+            this.byMode = new Cache[ApplicationPermissionMode.values().length];
+            for (int i = 0; i < byMode.length; i++) {
+                byMode[i] = CacheBuilder.newBuilder().maximumSize(DECISIONS_MAXIMUM_SIZE).build();
+            }
+        }
+    }
+
+    //endregion
+
     public AccountType getAccountType() {
         return accountType;
     }
@@ -0,0 +1,172 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Remembers, for a limited time, the passwords that have recently been successfully verified against a user's
+ * (expensive to check) encrypted password, so that clients that send their credentials with every request - such as
+ * the Restful Objects viewer using HTTP Basic authentication - need not pay for the hash on every call.
+ *
+ * <p>
+ *     Passwords are never held as such; entries are keyed by the username and a fast digest (HMAC-SHA256, using a
+ *     random key generated for each instance) of the password.  Each entry also records the encrypted password that
+ *     the password was verified against, so that an entry no longer applies once that has changed, for whatever
+ *     reason.  Entries for a user are also {@link #invalidate(String) invalidated} when its password or status is
+ *     changed.
+ * </p>
+ */
+class VerifiedCredentialsCache {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final SecretKeySpec digestKey;
+    private final Cache<Key, String> encryptedPasswordByKey;
+
+    VerifiedCredentialsCache(final long timeToLive, final TimeUnit timeUnit, final long maximumSize) {
+        this(timeToLive, timeUnit, maximumSize, Ticker.systemTicker());
+    }
+
+    VerifiedCredentialsCache(final long timeToLive, final TimeUnit timeUnit, final long maximumSize, final Ticker ticker) {
+        final byte[] keyBytes = new byte[32];
+        new SecureRandom().nextBytes(keyBytes);
+        this.digestKey = new SecretKeySpec(keyBytes, HMAC_ALGORITHM);
+        this.encryptedPasswordByKey = CacheBuilder.newBuilder()
+                .expireAfterWrite(timeToLive, timeUnit)
+                .maximumSize(maximumSize)
+                .ticker(ticker)
+                .build();
+    }
+
+    //region > isVerified, verified
+
+    /**
+     * Whether the specified password has recently been verified against the specified encrypted password (being the
+     * user's current one).
+     */
+    boolean isVerified(final String username, final char[] password, final String encryptedPassword) {
+        if(username == null || password == null || encryptedPassword == null) {
+            return false;
+        }
+        final String verifiedAgainst = encryptedPasswordByKey.getIfPresent(new Key(username, digest(password)));
+        return encryptedPassword.equals(verifiedAgainst);
+    }
+
+    /**
+     * Records that the specified password has been successfully verified against the specified encrypted password.
+     */
+    void verified(final String username, final char[] password, final String encryptedPassword) {
+        if(username == null || password == null || encryptedPassword == null) {
+            return;
+        }
+        encryptedPasswordByKey.put(new Key(username, digest(password)), encryptedPassword);
+    }
+
+    //endregion
+
+    //region > invalidate, invalidateAll, size
+
+    /**
+     * Evicts every entry for the specified user.
+     */
+    void invalidate(final String username) {
+        for (final Key key : encryptedPasswordByKey.asMap().keySet()) {
+            if(key.username.equals(username)) {
+                encryptedPasswordByKey.invalidate(key);
+            }
+        }
+    }
+
+    void invalidateAll() {
+        encryptedPasswordByKey.invalidateAll();
+    }
+
+    long size() {
+        encryptedPasswordByKey.cleanUp();
+        return encryptedPasswordByKey.size();
+    }
+
+    //endregion
+
+    //region > digest
+
+    private String digest(final char[] password) {
+        final ByteBuffer encoded = UTF_8.encode(CharBuffer.wrap(password));
+        final byte[] bytes = Arrays.copyOf(encoded.array(), encoded.limit());
+        try {
+            final Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(digestKey);
+            return BaseEncoding.base64().encode(mac.doFinal(bytes));
+        } catch (final GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            Arrays.fill(bytes, (byte) 0);
+            Arrays.fill(encoded.array(), (byte) 0);
+        }
+    }
+
+    //endregion
+
+    //region > Key
+
+    private static class Key {
+        private final String username;
+        private final String digest;
+
+        Key(final String username, final String digest) {
+            this.username = username;
+            this.digest = digest;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return username.equals(other.username) && digest.equals(other.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(username, digest);
+        }
+    }
+
+    //endregion
+
+}
@@ -1,8 +1,11 @@
 package org.isisaddons.module.security.app.user;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
+import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 
 import org.jmock.Expectations;
@@ -15,10 +18,12 @@
 import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2;
 
 import org.isisaddons.module.security.dom.feature.ApplicationFeature;
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
 import org.isisaddons.module.security.dom.feature.ApplicationFeatureRepository;
 import org.isisaddons.module.security.dom.user.ApplicationUser;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class UserPermissionViewModelContributionsTest {
@@ -73,4 +78,123 @@ public void happyCase() throws Exception {
             assertThat(asViewModelsArgFeatures, is((Iterable<ApplicationFeature>)result));
         }
     }
-}
\ No newline at end of file
+
+    public static class WithMemberIds extends UserPermissionViewModelContributionsTest {
+
+        List<ApplicationFeatureId> memberIds;
+        List<ApplicationFeatureId> asViewModelsOfArgFeatureIds;
+
+        @Before
+        public void setUp() throws Exception {
+            userPermissionViewModelContributions = new UserPermissionViewModelContributions() {
+                @Override
+                List<UserPermissionViewModel> asViewModelsOf(final ApplicationUser user, final List<ApplicationFeatureId> featureIds) {
+                    asViewModelsOfArgFeatureIds = featureIds;
+                    return Lists.newArrayList();
+                }
+            };
+            userPermissionViewModelContributions.applicationFeatureRepository = applicationFeatureRepository;
+
+            memberIds = Lists.newArrayList();
+            for (int i = 0; i < 120; i++) {
+                memberIds.add(ApplicationFeatureId.newMember("com.mycompany.Bar", "member" + i));
+            }
+        }
+
+        void expectMemberIdsWithin(final String packageFqn, final String className, final int offset, final int limit) {
+            final List<ApplicationFeatureId> page = offset < memberIds.size()
+                    ? memberIds.subList(offset, Math.min(offset + limit, memberIds.size()))
+                    : Collections.<ApplicationFeatureId>emptyList();
+            context.checking(new Expectations() {{
+                oneOf(applicationFeatureRepository).memberIdsWithin(packageFqn, className, offset, limit);
+                will(returnValue(page));
+            }});
+        }
+    }
+
+    public static class FilterPermissions extends WithMemberIds {
+
+        @Test
+        public void happyCase() throws Exception {
+            expectMemberIdsWithin("com.mycompany", "Bar", 0, UserPermissionViewModelContributions.MAX_PAGE_SIZE);
+
+            userPermissionViewModelContributions.filterPermissions(applicationUser, "com.mycompany", "Bar");
+
+            assertThat(asViewModelsOfArgFeatureIds, is(memberIds));
+        }
+    }
+
+    public static class PagePermissions extends WithMemberIds {
+
+        @Test
+        public void firstPage() throws Exception {
+            expectMemberIdsWithin(null, null, 0, 50);
+
+            userPermissionViewModelContributions.pagePermissions(applicationUser, null, null, 0, 50);
+
+            assertThat(asViewModelsOfArgFeatureIds, is(memberIds.subList(0, 50)));
+        }
+
+        @Test
+        public void lastPage() throws Exception {
+            expectMemberIdsWithin("com.mycompany", null, 100, 50);
+
+            userPermissionViewModelContributions.pagePermissions(applicationUser, "com.mycompany", null, 100, 50);
+
+            assertThat(asViewModelsOfArgFeatureIds, is(memberIds.subList(100, 120)));
+        }
+
+        @Test
+        public void beyondLastPage() throws Exception {
+            expectMemberIdsWithin("com.mycompany", "Bar", 120, 50);
+
+            final List<UserPermissionViewModel> page =
+                    userPermissionViewModelContributions.pagePermissions(applicationUser, "com.mycompany", "Bar", 120, 50);
+
+            assertThat(page.isEmpty(), is(true));
+            assertThat(asViewModelsOfArgFeatureIds, is(nullValue()));
+        }
+
+        @Test
+        public void validate() throws Exception {
+            assertThat(userPermissionViewModelContributions.validatePagePermissions(applicationUser, null, null, 0, 50), is(nullValue()));
+            assertThat(userPermissionViewModelContributions.validatePagePermissions(applicationUser, null, null, -1, 50), is("Offset cannot be negative"));
+            assertThat(userPermissionViewModelContributions.validatePagePermissions(applicationUser, null, null, 0, 0), is("Page size must be between 1 and 1000"));
+            assertThat(userPermissionViewModelContributions.validatePagePermissions(applicationUser, null, null, 0, 1001), is("Page size must be between 1 and 1000"));
+        }
+    }
+
+    public static class LazilyEvaluated extends UserPermissionViewModelContributionsTest {
+
+        @Test
+        public void eachElementEvaluatedOnceWhenAccessed() throws Exception {
+
+            // given
+            final List<String> evaluated = Lists.newArrayList();
+            final List<String> list = new UserPermissionViewModelContributions.LazyList<>(
+                    Arrays.asList("a", "b", "c"),
+                    new Function<String, String>() {
+                        @Override
+                        public String apply(final String input) {
+                            evaluated.add(input);
+                            return input.toUpperCase();
+                        }
+                    });
+
+            // when
+            assertThat(list.size(), is(3));
+            assertThat(list.get(1), is("B"));
+            assertThat(list.get(1), is("B"));
+
+            // then
+            assertThat(evaluated, is((List<String>) Arrays.asList("b")));
+
+            // and when
+            assertThat(list, is((List<String>) Arrays.asList("A", "B", "C")));
+            assertThat(Lists.newArrayList(list), is((List<String>) Arrays.asList("A", "B", "C")));
+
+            // then
+            assertThat(evaluated, is((List<String>) Arrays.asList("b", "a", "c")));
+        }
+    }
+}
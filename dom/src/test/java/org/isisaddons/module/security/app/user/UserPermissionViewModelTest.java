@@ -1,6 +1,9 @@
 package org.isisaddons.module.security.app.user;
 
+import java.nio.charset.Charset;
+
 import com.danhaywood.java.testsupport.coverage.PrivateConstructorTester;
+import com.google.common.io.BaseEncoding;
 
 import org.hamcrest.Description;
 import org.jmock.Expectations;
@@ -44,6 +47,90 @@ public void forFunctions() throws Exception {
     }
 
 
+    public static class Memento extends UserPermissionViewModelTest {
+
+        final ApplicationFeatureId targetFeatureId = ApplicationFeatureId.newMember("org.isisaddons.module.security.dom.user.ApplicationUser#updateName");
+        final ApplicationPermissionValueSet.Evaluation viewingEvaluation = new ApplicationPermissionValueSet.Evaluation(
+                new ApplicationPermissionValue(ApplicationFeatureId.newPackage("org.isisaddons.module.security.dom"), ApplicationPermissionRule.ALLOW, ApplicationPermissionMode.CHANGING), true);
+        final ApplicationPermissionValueSet.Evaluation changingEvaluation = new ApplicationPermissionValueSet.Evaluation(
+                new ApplicationPermissionValue(ApplicationFeatureId.newClass("org.isisaddons.module.security.dom.user.ApplicationUser"), ApplicationPermissionRule.VETO, ApplicationPermissionMode.CHANGING), false);
+
+        final String legacyMemento = BaseEncoding.base64Url().encode((
+                "sven:" +
+                "true:PACKAGE:org.isisaddons.module.security.dom:ALLOW:CHANGING:" +
+                "false:CLASS:org.isisaddons.module.security.dom.user.ApplicationUser:VETO:CHANGING:" +
+                "MEMBER:org.isisaddons.module.security.dom.user.ApplicationUser#updateName").getBytes(Charset.forName("UTF-8")));
+
+        @Test
+        public void roundtrip() throws Exception {
+            final String memento = UserPermissionViewModel.asEncodedString(targetFeatureId, "sven", viewingEvaluation, changingEvaluation);
+
+            final UserPermissionViewModel upvm = new UserPermissionViewModel();
+            upvm.viewModelInit(memento);
+
+            assertThat(upvm.getUsername(), is("sven"));
+            assertThat(upvm.getFeatureId(), is(targetFeatureId));
+            assertThat(upvm.getVerb(), is("Can view"));
+            assertThat(upvm.viewModelMemento(), is(memento));
+        }
+
+        @Test
+        public void roundtripWhenCauseNotOnPathAndNamesNotPackable() throws Exception {
+            final ApplicationFeatureId targetFeatureId = ApplicationFeatureId.newMember("com.mycompany.Bar$Baz#foo_bar");
+            final ApplicationPermissionValueSet.Evaluation viewingEvaluation = new ApplicationPermissionValueSet.Evaluation(
+                    new ApplicationPermissionValue(ApplicationFeatureId.newPackage("com.othercompany"), ApplicationPermissionRule.ALLOW, ApplicationPermissionMode.VIEWING), true);
+            final ApplicationPermissionValueSet.Evaluation changingEvaluation = new ApplicationPermissionValueSet.Evaluation(null, false);
+            final String memento = UserPermissionViewModel.asEncodedString(targetFeatureId, "fr\u00e9d@mycompany.com", viewingEvaluation, changingEvaluation);
+
+            final UserPermissionViewModel upvm = new UserPermissionViewModel();
+            upvm.viewModelInit(memento);
+
+            assertThat(upvm.getUsername(), is("fr\u00e9d@mycompany.com"));
+            assertThat(upvm.getFeatureId(), is(targetFeatureId));
+            assertThat(upvm.getVerb(), is("Can view"));
+            assertThat(upvm.viewModelMemento(), is(memento));
+        }
+
+        @Test
+        public void legacyStillAccepted() throws Exception {
+            final UserPermissionViewModel upvm = new UserPermissionViewModel();
+            upvm.viewModelInit(legacyMemento);
+
+            assertThat(upvm.getUsername(), is("sven"));
+            assertThat(upvm.getFeatureId(), is(targetFeatureId));
+            assertThat(upvm.viewModelMemento(), is(UserPermissionViewModel.asEncodedString(targetFeatureId, "sven", viewingEvaluation, changingEvaluation)));
+        }
+
+        @Test
+        public void atLeastThreeTimesSmallerThanLegacy() throws Exception {
+            final String memento = UserPermissionViewModel.asEncodedString(targetFeatureId, "sven", viewingEvaluation, changingEvaluation);
+
+            assertThat(memento.length() * 3 <= legacyMemento.length(), is(true));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void whenTruncated() throws Exception {
+            final String memento = UserPermissionViewModel.asEncodedString(targetFeatureId, "sven", viewingEvaluation, changingEvaluation);
+
+            new UserPermissionViewModel().viewModelInit(memento.substring(0, memento.length() - 4));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void whenInvalidOrdinal() throws Exception {
+            final byte[] bytes = BaseEncoding.base64Url().decode(
+                    UserPermissionViewModel.asEncodedString(targetFeatureId, "sven", viewingEvaluation, changingEvaluation));
+            // the type of the target feature follows the version and the (packed, 4 character) username
+            bytes[1 + 2 + 3] = (byte) 0xFF;
+
+            new UserPermissionViewModel().viewModelInit(BaseEncoding.base64Url().omitPadding().encode(bytes));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void whenNotBase64() throws Exception {
+            new UserPermissionViewModel().viewModelInit("not/base64+url");
+        }
+    }
+
     public static class ViewModelRoundtrip extends UserPermissionViewModelTest {
 
         @Mock
@@ -0,0 +1,228 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.cache;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.isis.applib.services.eventbus.AbstractDomainEvent;
+import org.apache.isis.applib.services.eventbus.ActionDomainEvent;
+
+import org.isisaddons.module.security.dom.permission.ApplicationPermission;
+import org.isisaddons.module.security.dom.role.ApplicationRole;
+import org.isisaddons.module.security.dom.tenancy.ApplicationTenancy;
+import org.isisaddons.module.security.dom.user.ApplicationUser;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertThat;
+
+public class SecurityCacheInvalidationServiceTest {
+
+    SecurityCacheInvalidationService service;
+    PendingSecurityCacheInvalidations pending;
+    List<SecurityCacheInvalidationService.Invalidation> invalidations;
+
+    ApplicationRole role;
+    ApplicationRole otherRole;
+    ApplicationUser user;
+    ApplicationTenancy tenancy;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new SecurityCacheInvalidationService();
+        pending = new PendingSecurityCacheInvalidations();
+        service.pendingSecurityCacheInvalidations = pending;
+        pending.securityCacheInvalidationService = service;
+
+        invalidations = Lists.newArrayList();
+        service.addListener(new SecurityCacheInvalidationService.Listener() {
+            @Override
+            public void invalidated(final SecurityCacheInvalidationService.Invalidation invalidation) {
+                invalidations.add(invalidation);
+            }
+        });
+
+        role = new ApplicationRole();
+        role.setName("role");
+        otherRole = new ApplicationRole();
+        otherRole.setName("otherRole");
+        user = new ApplicationUser();
+        user.setUsername("fred");
+        tenancy = new ApplicationTenancy();
+        tenancy.setPath("/uk");
+    }
+
+    static <S, E extends ActionDomainEvent<S>> E executing(final E ev, final S source, final Object... arguments) {
+        ev.setSource(source);
+        ev.setEventPhase(AbstractDomainEvent.Phase.EXECUTING);
+        ev.setArguments(Arrays.asList(arguments));
+        return ev;
+    }
+
+    public static class OnRoleEvent extends SecurityCacheInvalidationServiceTest {
+
+        @Test
+        public void permissionsOfRoleChanged() throws Exception {
+
+            // when
+            service.on(executing(new ApplicationRole.AddPackageDomainEvent(), role));
+            pending.onRequestEnd();
+
+            // then
+            assertThat(invalidations.size(), is(1));
+            assertThat(invalidations.get(0).getRoleNames(), contains("role"));
+            assertThat(invalidations.get(0).getUsernames(), is(empty()));
+        }
+
+        @Test
+        public void userAddedToRole() throws Exception {
+
+            // when
+            service.on(executing(new ApplicationRole.AddUserDomainEvent(), role, user));
+            pending.onRequestEnd();
+
+            // then
+            assertThat(invalidations.get(0).getRoleNames(), is(empty()));
+            assertThat(invalidations.get(0).getUsernames(), contains("fred"));
+        }
+
+        @Test
+        public void descriptionChangedIsIgnored() throws Exception {
+
+            // when
+            service.on(executing(new ApplicationRole.UpdateDescriptionDomainEvent(), role, "new description"));
+            pending.onRequestEnd();
+
+            // then
+            assertThat(invalidations, is(empty()));
+        }
+
+        @Test
+        public void otherPhasesAreIgnored() throws Exception {
+
+            // given
+            final ApplicationRole.AddPackageDomainEvent ev = executing(new ApplicationRole.AddPackageDomainEvent(), role);
+            ev.setEventPhase(AbstractDomainEvent.Phase.EXECUTED);
+
+            // when
+            service.on(ev);
+            pending.onRequestEnd();
+
+            // then
+            assertThat(invalidations, is(empty()));
+        }
+    }
+
+    public static class OnPermissionEvent extends SecurityCacheInvalidationServiceTest {
+
+        @Test
+        public void roleChanged() throws Exception {
+
+            // given
+            final ApplicationPermission permission = new ApplicationPermission();
+            permission.setRole(role);
+
+            // when
+            service.on(executing(new ApplicationPermission.UpdateRoleDomainEvent(), permission, otherRole));
+            pending.onRequestEnd();
+
+            // then
+            assertThat(invalidations.get(0).getRoleNames(), containsInAnyOrder("role", "otherRole"));
+        }
+    }
+
+    public static class OnUserEvent extends SecurityCacheInvalidationServiceTest {
+
+        @Test
+        public void roleAdded() throws Exception {
+
+            // when
+            service.on(executing(new ApplicationUser.AddRoleDomainEvent(), user, role));
+            pending.onRequestEnd();
+
+            // then
+            assertThat(invalidations.get(0).getUsernames(), contains("fred"));
+            assertThat(invalidations.get(0).getRoleNames(), is(empty()));
+        }
+
+        @Test
+        public void contactDetailsChangedIsIgnored() throws Exception {
+
+            // when
+            service.on(executing(new ApplicationUser.UpdateEmailAddressDomainEvent(), user, "fred@example.com"));
+            pending.onRequestEnd();
+
+            // then
+            assertThat(invalidations, is(empty()));
+        }
+    }
+
+    public static class OnTenancyEvent extends SecurityCacheInvalidationServiceTest {
+
+        @Test
+        public void userAdded() throws Exception {
+
+            // when
+            service.on(executing(new ApplicationTenancy.AddUserDomainEvent(), tenancy, user));
+            pending.onRequestEnd();
+
+            // then
+            assertThat(invalidations.get(0).getUsernames(), contains("fred"));
+        }
+
+        @Test
+        public void parentChangedIsIgnored() throws Exception {
+
+            // given
+            final ApplicationTenancy newParent = new ApplicationTenancy();
+            newParent.setPath("/eu");
+
+            // when
+            service.on(executing(new ApplicationTenancy.UpdateParentDomainEvent(), tenancy, newParent));
+            pending.onRequestEnd();
+
+            // then
+            assertThat(invalidations, is(empty()));
+        }
+    }
+
+    public static class OnCommit extends SecurityCacheInvalidationServiceTest {
+
+        @Test
+        public void pendingClearedOnceInvalidated() throws Exception {
+
+            // given
+            service.on(executing(new ApplicationRole.AddPackageDomainEvent(), role));
+            pending.onRequestEnd();
+
+            // when
+            pending.onRequestEnd();
+
+            // then
+            assertThat(invalidations.size(), is(1));
+        }
+    }
+
+}
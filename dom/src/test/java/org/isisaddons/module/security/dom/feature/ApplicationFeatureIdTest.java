@@ -18,6 +18,7 @@
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.TreeSet;
 
 import com.danhaywood.java.testsupport.coverage.PrivateConstructorTester;
@@ -30,12 +31,14 @@
 import org.junit.rules.ExpectedException;
 
 import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2;
+import org.apache.isis.applib.util.ObjectContracts;
 import org.apache.isis.core.unittestsupport.value.ValueTypeContractTestAbstract;
 
 import org.isisaddons.module.security.dom.SerializationContractTest;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.emptyCollectionOf;
 import static org.junit.Assert.assertThat;
@@ -615,8 +618,147 @@ public void whenClassAndFeatureNotFoundAndHasMembersOfType() throws Exception {
         }
     }
 
+    public static class CompareTo extends ApplicationFeatureIdTest {
+
+        private static final String[] PACKAGE_NAMES = {null, "", "com", "com.foo", "com.foo.bar", "com.fooz", "org"};
+        private static final String[] CLASS_NAMES = {null, "Bar", "Baz", "bar"};
+        private static final String[] MEMBER_NAMES = {null, "bip", "bop", "Bip"};
+
+        /**
+         * Arbitrary ids, including those with <tt>null</tt> properties (as can arise from the package-private setters).
+         */
+        static ApplicationFeatureId randomFeatureId(final Random random) {
+            final ApplicationFeatureType[] types = ApplicationFeatureType.values();
+            final int typeIndex = random.nextInt(types.length + 1);
+            final ApplicationFeatureId featureId = new ApplicationFeatureId(typeIndex < types.length ? types[typeIndex] : null);
+            featureId.setPackageName(PACKAGE_NAMES[random.nextInt(PACKAGE_NAMES.length)]);
+            featureId.setClassName(CLASS_NAMES[random.nextInt(CLASS_NAMES.length)]);
+            featureId.setMemberName(MEMBER_NAMES[random.nextInt(MEMBER_NAMES.length)]);
+            return featureId;
+        }
+
+        @Test
+        public void sameOrderingAsObjectContracts() throws Exception {
+            final Random random = new Random(20141118L);
+            for (int i = 0; i < 5000; i++) {
+                final ApplicationFeatureId left = randomFeatureId(random);
+                final ApplicationFeatureId right = random.nextInt(10) == 0 ? left : randomFeatureId(random);
+
+                final int expected = ObjectContracts.compare(left, right, "type, packageName, className, memberName");
+
+                final String reason = describe(left) + " vs " + describe(right);
+                assertThat(reason, Integer.signum(left.compareTo(right)), is(Integer.signum(expected)));
+                assertThat(reason, Integer.signum(right.compareTo(left)), is(-Integer.signum(expected)));
+            }
+        }
+
+        // toString() requires a type
+        private static String describe(final ApplicationFeatureId featureId) {
+            return featureId.getType() + ":" + featureId.getPackageName() + ":" + featureId.getClassName() + ":" + featureId.getMemberName();
+        }
+
+        @Test
+        public void typeThenPackageThenClassThenMember() throws Exception {
+            final TreeSet<ApplicationFeatureId> featureIds = new TreeSet<>(Arrays.asList(
+                    ApplicationFeatureId.newMember("com.foo.Bar", "bip"),
+                    ApplicationFeatureId.newClass("com.foo.Bar"),
+                    ApplicationFeatureId.newPackage("com.foo"),
+                    ApplicationFeatureId.newMember("com.foo.Bar", "bap"),
+                    ApplicationFeatureId.newClass("com.Bar"),
+                    ApplicationFeatureId.newPackage("com")));
+
+            assertThat(featureIds, contains(
+                    ApplicationFeatureId.newPackage("com"),
+                    ApplicationFeatureId.newPackage("com.foo"),
+                    ApplicationFeatureId.newClass("com.Bar"),
+                    ApplicationFeatureId.newClass("com.foo.Bar"),
+                    ApplicationFeatureId.newMember("com.foo.Bar", "bap"),
+                    ApplicationFeatureId.newMember("com.foo.Bar", "bip")));
+        }
+    }
+
+    public static class Intern extends ApplicationFeatureIdTest {
+
+        @Test
+        public void equalIdsShareCanonicalInstance() throws Exception {
+            final ApplicationFeatureId featureId = ApplicationFeatureId.newMember("com.mycompany.Bar#foo").intern();
+
+            assertThat(ApplicationFeatureId.newMember("com.mycompany.Bar", "foo").intern(), is(sameInstance(featureId)));
+            assertThat(featureId.intern(), is(sameInstance(featureId)));
+        }
+
+        @Test
+        public void parentsAreCanonical() throws Exception {
+            final ApplicationFeatureId featureId = ApplicationFeatureId.newMember("com.mycompany.Bar#foo").intern();
+
+            assertThat(featureId.getParentClassId(), is(sameInstance(ApplicationFeatureId.newClass("com.mycompany.Bar").intern())));
+            assertThat(featureId.getParentClassId().getParentPackageId(), is(sameInstance(ApplicationFeatureId.newPackage("com.mycompany").intern())));
+        }
+
+        @Test
+        public void pathAndParentIdsSameAsUninterned() throws Exception {
+            final ApplicationFeatureId featureId = ApplicationFeatureId.newMember("com.mycompany.Bar#foo");
+            final ApplicationFeatureId interned = ApplicationFeatureId.newMember("com.mycompany.Bar#foo").intern();
+
+            assertThat(interned.getPathIds(), is(featureId.getPathIds()));
+            assertThat(interned.getParentIds(), is(featureId.getParentIds()));
+            assertThat(interned.getFullyQualifiedName(), is(featureId.getFullyQualifiedName()));
+            assertThat(interned.hashCode(), is(featureId.hashCode()));
+            assertThat(interned.getPathIds().get(2), is(sameInstance(ApplicationFeatureId.newPackage("com.mycompany").intern())));
+        }
+
+        @Test
+        public void duplicateOfCanonicalNotItselfInterned() throws Exception {
+            final ApplicationFeatureId featureId = ApplicationFeatureId.newMember("com.mycompany.Bar#foo").intern();
+            final ApplicationFeatureId duplicate = ApplicationFeatureId.newMember("com.mycompany.Bar#foo");
+
+            duplicate.intern();
+
+            assertThat(duplicate.intern(), is(sameInstance(featureId)));
+            assertThat(duplicate.getPathIds().get(0), is(sameInstance(duplicate)));
+            assertThat(featureId.getPathIds().get(0), is(sameInstance(featureId)));
+        }
+
+        @Test
+        public void newMemberInternedSharesCanonicalInstance() throws Exception {
+            final ApplicationFeatureId featureId = ApplicationFeatureId.newMember("com.mycompany.Bar#foo").intern();
+
+            final ApplicationFeatureId memberId = ApplicationFeatureId.newMemberInterned(featureId.getParentClassId(), "foo");
+
+            assertThat(memberId, is(sameInstance(featureId)));
+        }
+
+        @Test(expected = IllegalStateException.class)
+        public void cannotBeModified() throws Exception {
+            final ApplicationFeatureId featureId = ApplicationFeatureId.newMember("com.mycompany.Bar#foo").intern();
+
+            featureId.setMemberName("bar");
+        }
+
+        @Test
+        public void topLevelPackageHasNoParent() throws Exception {
+            final ApplicationFeatureId featureId = ApplicationFeatureId.newPackage("com").intern();
+
+            assertThat(featureId.getParentPackageId(), is(nullValue()));
+            assertThat(featureId.getPathIds(), contains(featureId));
+            assertThat(featureId.getParentIds(), emptyCollectionOf(ApplicationFeatureId.class));
+        }
+    }
+
     public static class Serialization extends SerializationContractTest {
 
+        @Test
+        public void roundtripInterned() throws Exception {
+
+            final ApplicationFeatureId original = ApplicationFeatureId.newMember("com.foo.Bar#bip").intern();
+
+            final ApplicationFeatureId roundtripped = roundtripSerialization(original);
+
+            assertThat(roundtripped, is(original));
+            assertThat(roundtripped.getPathIds(), is(original.getPathIds()));
+            assertThat(roundtripped.intern(), is(sameInstance(original)));
+        }
+
         @Test
         public void roundtrip() throws Exception {
 
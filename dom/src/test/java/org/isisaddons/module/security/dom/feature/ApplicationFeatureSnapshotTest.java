@@ -0,0 +1,221 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.feature;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.apache.isis.applib.annotation.ActionSemantics;
+import org.apache.isis.core.metamodel.spec.ObjectSpecification;
+
+import org.isisaddons.module.security.dom.feature.ApplicationFeatures.ScannedClass;
+import org.isisaddons.module.security.dom.feature.ApplicationFeatures.ScannedMember;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ApplicationFeatureSnapshotTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    Path file;
+    byte[] key;
+    List<ScannedClass> scannedClasses;
+
+    @Before
+    public void setUp() throws Exception {
+        file = temporaryFolder.getRoot().toPath().resolve("features.snapshot");
+        key = ApplicationFeatureSnapshot.keyOf(
+                Collections.<Object>singletonList(this), Collections.<ObjectSpecification>emptyList(), Collections.<String, String>emptyMap());
+
+        final ApplicationFeatureId customer = ApplicationFeatureId.newClass("com.mycompany.Customer").intern();
+        final ApplicationFeatureId order = ApplicationFeatureId.newClass("com.mycompany.orders.Order").intern();
+        scannedClasses = Lists.newArrayList(
+                new ScannedClass(customer, Lists.newArrayList(
+                        new ScannedMember(member(customer, "name"), ApplicationMemberType.PROPERTY, "String", false, false, 30, 20, null),
+                        new ScannedMember(member(customer, "orders"), ApplicationMemberType.COLLECTION, null, true, true, null, null, null),
+                        new ScannedMember(member(customer, "placeOrder"), ApplicationMemberType.ACTION, "Order", false, null, null, null, ActionSemantics.Of.NON_IDEMPOTENT))),
+                new ScannedClass(order, Lists.newArrayList(
+                        new ScannedMember(member(order, "customer"), ApplicationMemberType.PROPERTY, "Customer", true, true, null, null, null),
+                        new ScannedMember(member(order, "cancel"), ApplicationMemberType.ACTION, "Order", false, null, null, null, ActionSemantics.Of.IDEMPOTENT))));
+    }
+
+    private static ApplicationFeatureId member(final ApplicationFeatureId classId, final String memberName) {
+        return ApplicationFeatureId.newMember(classId.getFullyQualifiedName(), memberName).intern();
+    }
+
+    private static List<String> describe(final List<ScannedClass> scannedClasses) {
+        final List<String> descriptions = Lists.newArrayList();
+        for (final ScannedClass scannedClass : scannedClasses) {
+            descriptions.add(scannedClass.classFeatureId.toString());
+            for (final ScannedMember member : scannedClass.members) {
+                descriptions.add(Arrays.asList(
+                        member.featureId, member.memberType, member.returnTypeName, member.contributed, member.derived,
+                        member.maxLength, member.typicalLength, member.actionSemantics).toString());
+            }
+        }
+        return descriptions;
+    }
+
+    public static class Read extends ApplicationFeatureSnapshotTest {
+
+        @Test
+        public void roundTrip() throws Exception {
+
+            // given
+            assertThat(new ApplicationFeatureSnapshot(file, key).write(scannedClasses), is(true));
+
+            // when
+            final List<ScannedClass> read = new ApplicationFeatureSnapshot(file, key).read();
+
+            // then
+            assertThat(read, is(notNullValue()));
+            assertThat(describe(read), is(describe(scannedClasses)));
+            assertThat(read.get(0).classFeatureId, is(ApplicationFeatureId.newClass("com.mycompany.Customer").intern()));
+        }
+
+        @Test
+        public void whenNoFile() throws Exception {
+            assertThat(new ApplicationFeatureSnapshot(file, key).read(), is(nullValue()));
+        }
+
+        @Test
+        public void whenDifferentKey() throws Exception {
+
+            // given
+            new ApplicationFeatureSnapshot(file, key).write(scannedClasses);
+            final byte[] otherKey = ApplicationFeatureSnapshot.keyOf(
+                    Collections.<Object>singletonList("some other service"), Collections.<ObjectSpecification>emptyList(), Collections.<String, String>emptyMap());
+
+            // when, then
+            assertThat(new ApplicationFeatureSnapshot(file, otherKey).read(), is(nullValue()));
+        }
+
+        @Test
+        public void whenTruncated() throws Exception {
+
+            // given
+            new ApplicationFeatureSnapshot(file, key).write(scannedClasses);
+            final byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+            // when, then
+            assertThat(new ApplicationFeatureSnapshot(file, key).read(), is(nullValue()));
+        }
+
+        @Test
+        public void whenNotASnapshot() throws Exception {
+
+            // given
+            Files.write(file, "not a snapshot".getBytes("UTF-8"));
+
+            // when, then
+            assertThat(new ApplicationFeatureSnapshot(file, key).read(), is(nullValue()));
+        }
+    }
+
+    public static class Write extends ApplicationFeatureSnapshotTest {
+
+        @Test
+        public void replacesExisting() throws Exception {
+
+            // given
+            new ApplicationFeatureSnapshot(file, key).write(scannedClasses);
+
+            // when
+            final List<ScannedClass> fewerClasses = scannedClasses.subList(0, 1);
+            new ApplicationFeatureSnapshot(file, key).write(fewerClasses);
+
+            // then
+            assertThat(describe(new ApplicationFeatureSnapshot(file, key).read()), is(describe(fewerClasses)));
+            assertThat(temporaryFolder.getRoot().list().length, is(1));
+        }
+
+        @Test
+        public void createsDirectory() throws Exception {
+
+            // given
+            final Path file = temporaryFolder.getRoot().toPath().resolve("subdir").resolve("features.snapshot");
+
+            // when
+            final boolean written = new ApplicationFeatureSnapshot(file, key).write(scannedClasses);
+
+            // then
+            assertThat(written, is(true));
+            assertThat(Files.isRegularFile(file), is(true));
+        }
+
+        @Test
+        public void whenCannotWrite() throws Exception {
+
+            // given a file where the directory should be
+            final Path notADirectory = temporaryFolder.newFile("not-a-directory").toPath();
+
+            // when
+            final boolean written = new ApplicationFeatureSnapshot(notADirectory.resolve("features.snapshot"), key).write(scannedClasses);
+
+            // then
+            assertThat(written, is(false));
+        }
+    }
+
+    public static class KeyOf extends ApplicationFeatureSnapshotTest {
+
+        @Test
+        public void independentOfServiceOrder() throws Exception {
+            assertThat(
+                    Arrays.equals(
+                            ApplicationFeatureSnapshot.keyOf(Arrays.<Object>asList("a", 1), Collections.<ObjectSpecification>emptyList(), Collections.<String, String>emptyMap()),
+                            ApplicationFeatureSnapshot.keyOf(Arrays.<Object>asList(1, "a"), Collections.<ObjectSpecification>emptyList(), Collections.<String, String>emptyMap())),
+                    is(true));
+        }
+
+        @Test
+        public void dependsOnIsisConfiguration() throws Exception {
+            final byte[] keyWithConfiguration = ApplicationFeatureSnapshot.keyOf(
+                    Collections.<Object>singletonList(this), Collections.<ObjectSpecification>emptyList(),
+                    Collections.singletonMap("isis.reflector.facet.cssClassFa.patterns", "new.*:fa-plus"));
+            assertThat(Arrays.equals(keyWithConfiguration, key), is(false));
+        }
+
+        @Test
+        public void independentOfOtherConfiguration() throws Exception {
+            final Map<String, String> configuration = Maps.newHashMap();
+            configuration.put("some.other.setting", "true");
+            configuration.put(ApplicationFeatures.SNAPSHOT_FILE_KEY, "/tmp/features.snapshot");
+            final byte[] keyWithConfiguration = ApplicationFeatureSnapshot.keyOf(
+                    Collections.<Object>singletonList(this), Collections.<ObjectSpecification>emptyList(), configuration);
+            assertThat(Arrays.equals(keyWithConfiguration, key), is(true));
+        }
+    }
+
+}
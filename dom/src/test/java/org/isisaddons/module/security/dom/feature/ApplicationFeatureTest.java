@@ -16,14 +16,21 @@
  */
 package org.isisaddons.module.security.dom.feature;
 
+import java.util.SortedSet;
+
 import com.danhaywood.java.testsupport.coverage.PojoTester;
 import com.danhaywood.java.testsupport.coverage.PrivateConstructorTester;
+import com.google.common.collect.ImmutableSortedSet;
 import org.isisaddons.module.security.dom.FixtureDatumFactories;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.junit.Assert.assertThat;
 
@@ -146,6 +153,146 @@ public void givenMember() throws Exception {
         }
     }
 
+    public static class Freeze extends ApplicationFeatureTest {
+
+        @Rule
+        public ExpectedException expectedException = ExpectedException.none();
+
+        @Test
+        public void givenPackage() throws Exception {
+
+            final ApplicationFeature applicationFeature = new ApplicationFeature(ApplicationFeatureId.newPackage("com.mycompany"));
+            final ApplicationFeatureId classFeatureId = ApplicationFeatureId.newClass("com.mycompany.Bar");
+            applicationFeature.addToContents(classFeatureId);
+
+            applicationFeature.freeze();
+
+            assertThat(applicationFeature.getContents(), contains(classFeatureId));
+            assertThat(applicationFeature.getContents(), is(instanceOf(ImmutableSortedSet.class)));
+        }
+
+        @Test
+        public void givenClass() throws Exception {
+
+            final ApplicationFeature applicationFeature = new ApplicationFeature(ApplicationFeatureId.newClass("com.mycompany.Bar"));
+            final ApplicationFeatureId memberFeatureId = ApplicationFeatureId.newMember("com.mycompany.Bar", "foo");
+            applicationFeature.addToMembers(memberFeatureId, ApplicationMemberType.PROPERTY);
+
+            applicationFeature.freeze();
+
+            assertThat(applicationFeature.getProperties(), contains(memberFeatureId));
+            assertThat(applicationFeature.getProperties(), is(instanceOf(ImmutableSortedSet.class)));
+        }
+
+        @Test
+        public void emptySetsAreShared() throws Exception {
+
+            final ApplicationFeature applicationFeature = new ApplicationFeature(ApplicationFeatureId.newClass("com.mycompany.Bar"));
+            final ApplicationFeature otherApplicationFeature = new ApplicationFeature(ApplicationFeatureId.newClass("com.mycompany.Bop"));
+            applicationFeature.addToMembers(ApplicationFeatureId.newMember("com.mycompany.Bar", "foo"), ApplicationMemberType.PROPERTY);
+
+            applicationFeature.freeze();
+            otherApplicationFeature.freeze();
+
+            assertThat(applicationFeature.getActions(), is(sameInstance(applicationFeature.getCollections())));
+            assertThat(applicationFeature.getActions(), is(sameInstance(otherApplicationFeature.getActions())));
+        }
+
+        @Test
+        public void whenAddToFrozen() throws Exception {
+
+            final ApplicationFeature applicationFeature = new ApplicationFeature(ApplicationFeatureId.newPackage("com.mycompany"));
+            final ApplicationFeatureId classFeatureId = ApplicationFeatureId.newClass("com.mycompany.Bar");
+            final ApplicationFeatureId otherClassFeatureId = ApplicationFeatureId.newClass("com.mycompany.Bop");
+            applicationFeature.addToContents(classFeatureId);
+            applicationFeature.freeze();
+            final SortedSet<ApplicationFeatureId> frozenContents = applicationFeature.getContents();
+
+            applicationFeature.addToContents(otherClassFeatureId);
+
+            assertThat(applicationFeature.getContents(), contains(classFeatureId, otherClassFeatureId));
+            assertThat(applicationFeature.getContents(), is(instanceOf(ImmutableSortedSet.class)));
+            assertThat(frozenContents, contains(classFeatureId));
+        }
+
+        @Test
+        public void whenAddToFrozenWhileIterated() throws Exception {
+
+            final ApplicationFeature applicationFeature = new ApplicationFeature(ApplicationFeatureId.newPackage("com.mycompany"));
+            applicationFeature.addToContents(ApplicationFeatureId.newClass("com.mycompany.Bar"));
+            applicationFeature.freeze();
+
+            final int numberToAdd = 500;
+            final Thread adder = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < numberToAdd; i++) {
+                        applicationFeature.addToContents(ApplicationFeatureId.newClass("com.mycompany.Bar" + i));
+                    }
+                }
+            });
+            adder.start();
+
+            // iterating (any of) the contents never fails, nor sees them out of order
+            while(adder.isAlive()) {
+                ApplicationFeatureId previous = null;
+                for (final ApplicationFeatureId contentId : applicationFeature.getContents()) {
+                    assertThat(previous == null || previous.compareTo(contentId) < 0, is(true));
+                    previous = contentId;
+                }
+            }
+            adder.join();
+
+            assertThat(applicationFeature.getContents().size(), is(numberToAdd + 1));
+        }
+
+        @Test
+        public void frozenContentsCannotBeModified() throws Exception {
+
+            expectedException.expect(UnsupportedOperationException.class);
+
+            final ApplicationFeature applicationFeature = new ApplicationFeature(ApplicationFeatureId.newPackage("com.mycompany"));
+            applicationFeature.addToContents(ApplicationFeatureId.newClass("com.mycompany.Bar"));
+            applicationFeature.freeze();
+
+            applicationFeature.getContents().add(ApplicationFeatureId.newClass("com.mycompany.Bop"));
+        }
+    }
+
+    public static class PropertyLengths extends ApplicationFeatureTest {
+
+        @Test
+        public void whenNotSpecified() throws Exception {
+            final ApplicationFeature applicationFeature = new ApplicationFeature(ApplicationFeatureId.newMember("com.mycompany.Bar", "foo"));
+
+            assertThat(applicationFeature.getPropertyMaxLength(), is(nullValue()));
+            assertThat(applicationFeature.getPropertyTypicalLength(), is(nullValue()));
+        }
+
+        @Test
+        public void whenSpecified() throws Exception {
+            final ApplicationFeature applicationFeature = new ApplicationFeature(ApplicationFeatureId.newMember("com.mycompany.Bar", "foo"));
+
+            applicationFeature.setPropertyMaxLength(0);
+            applicationFeature.setPropertyTypicalLength(1000);
+
+            assertThat(applicationFeature.getPropertyMaxLength(), is(0));
+            assertThat(applicationFeature.getPropertyTypicalLength(), is(1000));
+        }
+
+        @Test
+        public void whenCleared() throws Exception {
+            final ApplicationFeature applicationFeature = new ApplicationFeature(ApplicationFeatureId.newMember("com.mycompany.Bar", "foo"));
+            applicationFeature.setPropertyMaxLength(30);
+            applicationFeature.setPropertyTypicalLength(20);
+
+            applicationFeature.setPropertyMaxLength(null);
+
+            assertThat(applicationFeature.getPropertyMaxLength(), is(nullValue()));
+            assertThat(applicationFeature.getPropertyTypicalLength(), is(20));
+        }
+    }
+
     public static class BeanProperties extends ApplicationFeatureTest {
 
         @Test
@@ -16,17 +16,29 @@
  */
 package org.isisaddons.module.security.dom.feature;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.SortedSet;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import org.hamcrest.Matchers;
 import org.jmock.Expectations;
 import org.jmock.Sequence;
 import org.jmock.auto.Mock;
+import org.jmock.lib.concurrent.Synchroniser;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.apache.isis.applib.DomainObjectContainer;
 import org.apache.isis.applib.annotation.ActionSemantics;
 import org.apache.isis.applib.annotation.When;
@@ -40,6 +52,7 @@
 import org.apache.isis.core.metamodel.facets.properties.typicallen.annotation.TypicalLengthFacetOnPropertyAnnotation;
 import org.apache.isis.core.metamodel.runtimecontext.ServicesInjector;
 import org.apache.isis.core.metamodel.spec.ObjectSpecification;
+import org.apache.isis.core.metamodel.spec.SpecificationLoaderSpi;
 import org.apache.isis.core.metamodel.spec.feature.Contributed;
 import org.apache.isis.core.metamodel.spec.feature.ObjectAction;
 import org.apache.isis.core.metamodel.spec.feature.ObjectAssociation;
@@ -48,8 +61,11 @@
 import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
@@ -248,6 +264,630 @@ protected String hiddenReason(final ObjectAdapter target, final Where whereConte
 
     }
 
+    public static abstract class WithMetamodel extends ApplicationFeaturesTest {
+
+        {
+            // the metamodel is read concurrently when scanning in parallel
+            context.setThreadingPolicy(new Synchroniser());
+        }
+
+        @Mock
+        SpecificationLoaderSpi mockSpecificationLoader;
+        @Mock
+        ObjectSpecification mockStringSpec;
+
+        List<ObjectSpecification> specifications;
+
+        @Before
+        public void setUpMetamodel() throws Exception {
+            specifications = Lists.newArrayList();
+            for (int i = 0; i < 100; i++) {
+                specifications.add(newSpecification(i));
+            }
+
+            context.checking(new Expectations() {{
+                allowing(mockSpecificationLoader).allSpecifications();
+                will(returnValue(specifications));
+
+                allowing(mockServicesInjector).getRegisteredServices();
+                will(returnValue(Lists.newArrayList()));
+
+                allowing(mockStringSpec).getCorrespondingClass();
+                will(returnValue(String.class));
+            }});
+        }
+
+        private ObjectSpecification newSpecification(final int i) {
+            final String className = "com.mycompany.pkg" + (i % 7) + ".sub" + (i % 3) + ".Entity" + i;
+            final ObjectSpecification spec = context.mock(ObjectSpecification.class, className);
+            final OneToOneAssociation prop = context.mock(OneToOneAssociation.class, className + "#name");
+            final OneToManyAssociation coll = context.mock(OneToManyAssociation.class, className + "#items");
+            final ObjectAction act = context.mock(ObjectAction.class, className + "#update");
+            final ObjectAction hiddenAct = context.mock(ObjectAction.class, className + "#hidden");
+
+            // every 10th is abstract, and every 10th (offset by 5) has no visible members
+            final boolean isAbstract = i % 10 == 0;
+            final boolean hasVisibleMembers = i % 10 != 5;
+
+            context.checking(new Expectations() {{
+                allowing(spec).isAbstract();
+                will(returnValue(isAbstract));
+                allowing(spec).getFullIdentifier();
+                will(returnValue(className));
+                allowing(spec).getCorrespondingClass();
+                will(returnValue(Load.Bar.class));
+                allowing(spec).getFacet(HiddenFacet.class);
+                will(returnValue(null));
+                allowing(spec).getAssociations(with(Contributed.INCLUDED), with(ObjectAssociation.Filters.PROPERTIES));
+                will(returnValue(hasVisibleMembers ? Lists.<ObjectAssociation>newArrayList(prop) : Lists.<ObjectAssociation>newArrayList()));
+                allowing(spec).getAssociations(with(Contributed.INCLUDED), with(ObjectAssociation.Filters.COLLECTIONS));
+                will(returnValue(hasVisibleMembers ? Lists.<ObjectAssociation>newArrayList(coll) : Lists.<ObjectAssociation>newArrayList()));
+                allowing(spec).getObjectActions(with(Contributed.INCLUDED));
+                will(returnValue(hasVisibleMembers ? Lists.newArrayList(act, hiddenAct) : Lists.newArrayList(hiddenAct)));
+
+                allowing(prop).getId();
+                will(returnValue("name"));
+                allowing(prop).isAlwaysHidden();
+                will(returnValue(false));
+                allowing(prop).getSpecification();
+                will(returnValue(mockStringSpec));
+                allowing(prop).containsDoOpFacet(with(any(Class.class)));
+                will(returnValue(i % 2 == 0));
+                allowing(prop).getFacet(MaxLengthFacet.class);
+                will(returnValue(new MaxLengthFacetAbstract(i, prop) {}));
+                allowing(prop).getFacet(TypicalLengthFacet.class);
+                will(returnValue(null));
+
+                allowing(coll).getId();
+                will(returnValue("items"));
+                allowing(coll).isAlwaysHidden();
+                will(returnValue(false));
+                allowing(coll).getSpecification();
+                will(returnValue(null));
+                allowing(coll).containsDoOpFacet(with(any(Class.class)));
+                will(returnValue(false));
+
+                allowing(act).getId();
+                will(returnValue("update"));
+                allowing(act).isAlwaysHidden();
+                will(returnValue(false));
+                allowing(act).getReturnType();
+                will(returnValue(null));
+                allowing(act).getSemantics();
+                will(returnValue(i % 3 == 0 ? ActionSemantics.Of.SAFE : ActionSemantics.Of.NON_IDEMPOTENT));
+
+                allowing(hiddenAct).getId();
+                will(returnValue("hidden"));
+                allowing(hiddenAct).isAlwaysHidden();
+                will(returnValue(true));
+                allowing(hiddenAct).getReturnType();
+                will(returnValue(null));
+                allowing(hiddenAct).getSemantics();
+                will(returnValue(ActionSemantics.Of.SAFE));
+            }});
+            return spec;
+        }
+
+        ApplicationFeatureRepository newRepository() {
+            final ApplicationFeatureRepository repository = new ApplicationFeatureRepository();
+            repository.setSpecificationLoaderSpi(mockSpecificationLoader);
+            repository.setServicesInjector(mockServicesInjector);
+            repository.applicationFeatureFactory = new ApplicationFeatureFactory() {
+                @Override
+                public ApplicationFeature newApplicationFeature() {
+                    return new ApplicationFeature();
+                }
+            };
+            return repository;
+        }
+
+        static List<String> describe(final ApplicationFeatures applicationFeatures) {
+            final List<String> descriptions = Lists.newArrayList();
+            for (final ApplicationFeature feature : Iterables.concat(
+                    applicationFeatures.allPackages(), applicationFeatures.allClasses(), applicationFeatures.allMembers(),
+                    applicationFeatures.allProperties(), applicationFeatures.allCollections(), applicationFeatures.allActions())) {
+                descriptions.add(Joiner.on("|").useForNull("-").join(
+                        feature.getFeatureId(), feature.getMemberType(), feature.getReturnTypeName(),
+                        feature.isContributed(), feature.isDerived(),
+                        feature.getPropertyMaxLength(), feature.getPropertyTypicalLength(), feature.getActionSemantics(),
+                        contentsOf(feature)));
+            }
+            return descriptions;
+        }
+
+        private static Object contentsOf(final ApplicationFeature feature) {
+            switch (feature.getFeatureId().getType()) {
+                case PACKAGE:
+                    return feature.getContents();
+                case CLASS:
+                    return Arrays.asList(feature.getProperties(), feature.getCollections(), feature.getActions());
+                default:
+                    return null;
+            }
+        }
+    }
+
+    public static class Init extends WithMetamodel {
+
+        @Test
+        public void sequentialByDefault() throws Exception {
+
+            // when
+            final ApplicationFeatureRepository repository = newRepository();
+            repository.init(Collections.<String, String>emptyMap());
+
+            // then
+            assertThat(repository.getParallelism(), is(1));
+            assertThat(repository.allClasses().size(), is(80));
+            assertThat(repository.allMembers().size(), is(3 * 80));
+            assertThat(repository.findMember(ApplicationFeatureId.newMember("com.mycompany.pkg5.sub2.Entity5", "name")), is(nullValue()));
+            final ApplicationFeature name = repository.findMember(ApplicationFeatureId.newMember("com.mycompany.pkg1.sub1.Entity1", "name"));
+            assertThat(name.getReturnTypeName(), is("String"));
+            assertThat(name.getPropertyMaxLength(), is(1));
+            assertThat(name.isDerived(), is(true));
+        }
+
+        @Test
+        public void parallelSameAsSequential() throws Exception {
+
+            // given
+            final ApplicationFeatureRepository sequential = newRepository();
+            sequential.init(Collections.<String, String>emptyMap());
+
+            // when
+            final ApplicationFeatureRepository parallel = newRepository();
+            parallel.init(ImmutableMap.of(ApplicationFeatures.PARALLELISM_KEY, " 4 "));
+
+            // then
+            assertThat(parallel.getParallelism(), is(4));
+            assertThat(describe(parallel), is(describe(sequential)));
+        }
+
+        @Test
+        public void frozenOnceCreated() throws Exception {
+
+            // when
+            final ApplicationFeatureRepository repository = newRepository();
+            repository.init(Collections.<String, String>emptyMap());
+
+            // then
+            for (final ApplicationFeature pkg : repository.allPackages()) {
+                assertThat(pkg.getContents(), is(instanceOf(ImmutableSortedSet.class)));
+            }
+            for (final ApplicationFeature cls : repository.allClasses()) {
+                assertThat(cls.getProperties(), is(instanceOf(ImmutableSortedSet.class)));
+                assertThat(cls.getCollections(), is(instanceOf(ImmutableSortedSet.class)));
+                assertThat(cls.getActions(), is(instanceOf(ImmutableSortedSet.class)));
+            }
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void parallelismMustBePositive() throws Exception {
+            newRepository().setParallelism(0);
+        }
+    }
+
+    public static class Lazy extends WithMetamodel {
+
+        ApplicationFeatureRepository repository;
+
+        @Before
+        public void setUpRepository() throws Exception {
+            repository = newRepository();
+            repository.init(ImmutableMap.of(ApplicationFeatures.LAZY_KEY, "true"));
+        }
+
+        @Test
+        public void nothingCreatedOnInit() throws Exception {
+            assertThat(repository.isLazy(), is(true));
+            assertThat(repository.classFeatures.isEmpty(), is(true));
+            assertThat(repository.memberFeatures.isEmpty(), is(true));
+        }
+
+        @Test
+        public void findPackageCreatesJustThatSubtree() throws Exception {
+
+            // when
+            final ApplicationFeature pkg = repository.findPackage(ApplicationFeatureId.newPackage("com.mycompany.pkg1"));
+
+            // then
+            assertThat(pkg, is(notNullValue()));
+            assertThat(pkg.getContents(), contains(
+                    ApplicationFeatureId.newPackage("com.mycompany.pkg1.sub0"),
+                    ApplicationFeatureId.newPackage("com.mycompany.pkg1.sub1"),
+                    ApplicationFeatureId.newPackage("com.mycompany.pkg1.sub2")));
+            for (final ApplicationFeatureId classId : repository.classFeatures.keySet()) {
+                assertThat(classId.getPackageName().startsWith("com.mycompany.pkg1."), is(true));
+            }
+            assertThat(repository.classFeatures.size(), is(12));
+        }
+
+        @Test
+        public void packageRefrozenWhenSubpackageCreated() throws Exception {
+
+            // given
+            repository.findPackage(ApplicationFeatureId.newPackage("com.mycompany.pkg1"));
+            final ApplicationFeature pkg = repository.packageFeatures.get(ApplicationFeatureId.newPackage("com.mycompany"));
+            final SortedSet<ApplicationFeatureId> contents = pkg.getContents();
+
+            // when
+            repository.findPackage(ApplicationFeatureId.newPackage("com.mycompany.pkg2"));
+
+            // then
+            assertThat(pkg.getContents(), contains(
+                    ApplicationFeatureId.newPackage("com.mycompany.pkg1"),
+                    ApplicationFeatureId.newPackage("com.mycompany.pkg2")));
+            assertThat(pkg.getContents(), is(instanceOf(ImmutableSortedSet.class)));
+            assertThat(contents, contains(ApplicationFeatureId.newPackage("com.mycompany.pkg1")));
+        }
+
+        @Test
+        public void findMemberCreatesItsPackage() throws Exception {
+
+            // when
+            final ApplicationFeature member = repository.findMember(ApplicationFeatureId.newMember("com.mycompany.pkg1.sub1.Entity1", "name"));
+
+            // then
+            assertThat(member, is(notNullValue()));
+            assertThat(repository.classFeatures.size(), is(4));
+            assertThat(repository.findClass(ApplicationFeatureId.newClass("com.mycompany.pkg1.sub1.Entity1")).getProperties(), contains(member.getFeatureId()));
+        }
+
+        @Test
+        public void allSameAsEager() throws Exception {
+
+            // given
+            repository.findPackage(ApplicationFeatureId.newPackage("com.mycompany.pkg2.sub1"));
+            repository.findMember(ApplicationFeatureId.newMember("com.mycompany.pkg3.sub0.Entity3", "name"));
+            repository.findPackage(ApplicationFeatureId.newPackage("com.mycompany.pkg3"));
+
+            final ApplicationFeatureRepository eager = newRepository();
+            eager.init(Collections.<String, String>emptyMap());
+
+            // when
+            final List<String> lazily = describe(repository);
+
+            // then
+            assertThat(lazily, is(describe(eager)));
+        }
+
+        @Test
+        public void packagesOfOtherLibrariesNotConfusedWithSubpackages() throws Exception {
+
+            // when
+            repository.findPackage(ApplicationFeatureId.newPackage("com.mycompany.pkg"));
+
+            // then
+            assertThat(repository.classFeatures.isEmpty(), is(true));
+        }
+    }
+
+    public static class Snapshot extends WithMetamodel {
+
+        @Rule
+        public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+        Path snapshotFile;
+
+        @Before
+        public void setUpSnapshotFile() throws Exception {
+            snapshotFile = temporaryFolder.getRoot().toPath().resolve("features.snapshot");
+        }
+
+        private ApplicationFeatureRepository newRepositoryUsingSnapshot() {
+            final ApplicationFeatureRepository repository = newRepository();
+            repository.init(ImmutableMap.of(ApplicationFeatures.SNAPSHOT_FILE_KEY, snapshotFile.toString()));
+            return repository;
+        }
+
+        @Test
+        public void writtenWhenNone() throws Exception {
+
+            // when
+            final ApplicationFeatureRepository repository = newRepositoryUsingSnapshot();
+
+            // then
+            assertThat(Files.isRegularFile(snapshotFile), is(true));
+            assertThat(repository.allClasses().size(), is(80));
+        }
+
+        @Test
+        public void loadedSameAsScanned() throws Exception {
+
+            // given
+            newRepositoryUsingSnapshot();
+            final ApplicationFeatureRepository scanned = newRepository();
+            scanned.init(Collections.<String, String>emptyMap());
+
+            // when
+            final ApplicationFeatureRepository loaded = newRepositoryUsingSnapshot();
+
+            // then
+            assertThat(describe(loaded), is(describe(scanned)));
+        }
+
+        @Test
+        public void loadedRatherThanScanned() throws Exception {
+
+            // given a snapshot (for the same metamodel) of just one class
+            final ApplicationFeatureId classId = ApplicationFeatureId.newClass("com.mycompany.Customer").intern();
+            final ApplicationFeatures.ScannedClass customer = new ApplicationFeatures.ScannedClass(classId, Lists.newArrayList(
+                    new ApplicationFeatures.ScannedMember(
+                            ApplicationFeatureId.newMember(classId.getFullyQualifiedName(), "name").intern(),
+                            ApplicationMemberType.PROPERTY, "String", false, false, null, null, null)));
+            final byte[] key = ApplicationFeatureSnapshot.keyOf(Lists.newArrayList(), specifications, Collections.<String, String>emptyMap());
+            new ApplicationFeatureSnapshot(snapshotFile, key).write(Lists.newArrayList(customer));
+
+            // when
+            final ApplicationFeatureRepository repository = newRepositoryUsingSnapshot();
+
+            // then
+            assertThat(repository.allClasses().size(), is(1));
+            assertThat(repository.findMember(ApplicationFeatureId.newMember("com.mycompany.Customer", "name")), is(notNullValue()));
+            assertThat(repository.findPackage(ApplicationFeatureId.newPackage("com.mycompany")).getContents(), contains(classId));
+        }
+
+        @Test
+        public void rescannedWhenMetamodelChanged() throws Exception {
+
+            // given a snapshot for some other metamodel
+            new ApplicationFeatureSnapshot(snapshotFile, new byte[] { 1, 2, 3 }).write(
+                    Lists.<ApplicationFeatures.ScannedClass>newArrayList());
+
+            // when
+            final ApplicationFeatureRepository repository = newRepositoryUsingSnapshot();
+
+            // then
+            assertThat(repository.allClasses().size(), is(80));
+            assertThat(describe(newRepositoryUsingSnapshot()), is(describe(repository)));
+        }
+    }
+
+    public static class PackageAndClassNames extends WithMetamodel {
+
+        private static final ApplicationMemberType[] MEMBER_TYPES = {
+                null, ApplicationMemberType.PROPERTY, ApplicationMemberType.COLLECTION, ApplicationMemberType.ACTION
+        };
+
+        ApplicationFeatureRepository repository;
+
+        @Before
+        public void setUpRepository() throws Exception {
+            repository = newRepository();
+            repository.init(Collections.<String, String>emptyMap());
+        }
+
+        @Test
+        public void packageNamesContainingClasses() throws Exception {
+            for (final ApplicationMemberType memberType : MEMBER_TYPES) {
+                final List<String> expected = Lists.newArrayList(Iterables.transform(
+                        Iterables.filter(
+                                repository.allPackages(),
+                                ApplicationFeature.Predicates.packageContainingClasses(memberType, repository)),
+                        ApplicationFeature.Functions.GET_FQN));
+
+                assertThat(repository.packageNamesContainingClasses(memberType), is(expected));
+            }
+            assertThat(repository.packageNamesContainingClasses(null).size(), is(21));
+        }
+
+        @Test
+        public void classNamesContainedIn() throws Exception {
+            for (final String packageName : packageNamesIncludingUnknown()) {
+                final ApplicationFeature pkg = repository.findPackage(ApplicationFeatureId.newPackage(packageName));
+                for (final ApplicationMemberType memberType : MEMBER_TYPES) {
+                    final List<String> expected = pkg == null
+                            ? Collections.<String>emptyList()
+                            : Lists.newArrayList(Iterables.transform(
+                                    Iterables.filter(
+                                            pkg.getContents(),
+                                            ApplicationFeatureId.Predicates.isClassContaining(memberType, repository)),
+                                    ApplicationFeatureId.Functions.GET_CLASS_NAME));
+
+                    assertThat(repository.classNamesContainedIn(packageName, memberType), is(expected));
+                }
+            }
+            assertThat(repository.classNamesContainedIn("com.mycompany.pkg1.sub1", null).size(), is(4));
+        }
+
+        @Test
+        public void classNamesRecursivelyContainedIn() throws Exception {
+            for (final String packageName : packageNamesIncludingUnknown()) {
+                final ApplicationFeatureId packageId = ApplicationFeatureId.newPackage(packageName);
+                final List<String> expected = repository.findPackage(packageId) == null
+                        ? Collections.<String>emptyList()
+                        : Lists.newArrayList(Iterables.transform(
+                                Iterables.filter(
+                                        repository.classFeatures.keySet(),
+                                        ApplicationFeatureId.Predicates.isClassRecursivelyWithin(packageId)),
+                                ApplicationFeatureId.Functions.GET_CLASS_NAME));
+
+                assertThat(repository.classNamesRecursivelyContainedIn(packageName), is(expected));
+            }
+            assertThat(repository.classNamesRecursivelyContainedIn("com.mycompany").size(), is(80));
+            assertThat(repository.classNamesRecursivelyContainedIn("com.mycompany.pkg1").size(), is(12));
+        }
+
+        @Test
+        public void whenLazy() throws Exception {
+
+            // given
+            final ApplicationFeatureRepository lazy = newRepository();
+            lazy.init(ImmutableMap.of(ApplicationFeatures.LAZY_KEY, "true"));
+
+            // then
+            assertThat(lazy.classNamesRecursivelyContainedIn("com.mycompany.pkg1"),
+                    is(repository.classNamesRecursivelyContainedIn("com.mycompany.pkg1")));
+            assertThat(lazy.classNamesContainedIn("com.mycompany.pkg2.sub0", ApplicationMemberType.ACTION),
+                    is(repository.classNamesContainedIn("com.mycompany.pkg2.sub0", ApplicationMemberType.ACTION)));
+            assertThat(lazy.packageNamesContainingClasses(ApplicationMemberType.COLLECTION),
+                    is(repository.packageNamesContainingClasses(ApplicationMemberType.COLLECTION)));
+        }
+
+        @Test
+        public void memberIdsWithin() throws Exception {
+            for (final String packageName : packageNamesIncludingUnknown()) {
+                for (final String className : new String[] { null, "Entity1", "Entity2", "Unknown" }) {
+                    final ApplicationFeatureId packageId = ApplicationFeatureId.newPackage(packageName);
+                    final List<ApplicationFeatureId> expected = Lists.newArrayList();
+                    for (final ApplicationFeatureId memberId : repository.memberFeatures.keySet()) {
+                        if(memberId.getPathIds().contains(packageId) && (className == null || className.equals(memberId.getClassName()))) {
+                            expected.add(memberId);
+                        }
+                    }
+
+                    assertThat(repository.memberIdsWithin(packageName, className), is(expected));
+                }
+            }
+            assertThat(repository.memberIdsWithin(null, null), is((List<ApplicationFeatureId>) Lists.newArrayList(repository.memberFeatures.keySet())));
+            assertThat(repository.memberIdsWithin(null, "Entity1").size(), is(3));
+            assertThat(repository.memberIdsWithin("com.mycompany.pkg1", null).size(), is(3 * 12));
+        }
+
+        @Test
+        public void memberIdsWithinPage() throws Exception {
+            for (final String packageName : new String[] { null, "com.mycompany", "com.mycompany.pkg1" }) {
+                for (final String className : new String[] { null, "Entity1" }) {
+                    final List<ApplicationFeatureId> all = repository.memberIdsWithin(packageName, className);
+                    for (final int offset : new int[] { 0, 1, 5, all.size() - 1, all.size(), all.size() + 1 }) {
+                        final int from = Math.min(offset, all.size());
+                        final List<ApplicationFeatureId> expected = all.subList(from, Math.min(from + 5, all.size()));
+
+                        assertThat(repository.memberIdsWithin(packageName, className, offset, 5), is(expected));
+                    }
+                }
+            }
+        }
+
+        private List<String> packageNamesIncludingUnknown() {
+            final List<String> packageNames = repository.packageNames();
+            packageNames.add("com.mycompany.pkg");
+            packageNames.add("com.other");
+            return packageNames;
+        }
+    }
+
+    public static class MemberOrdinals extends WithMetamodel {
+
+        @Test
+        public void everyMemberInOrder() throws Exception {
+
+            // given
+            final ApplicationFeatureRepository repository = newRepository();
+            repository.init(Collections.<String, String>emptyMap());
+
+            // when
+            final ApplicationMemberOrdinals memberOrdinals = repository.getMemberOrdinals();
+
+            // then
+            assertThat(memberOrdinals.size(), is(3 * 80));
+            int ordinal = 0;
+            for (final ApplicationFeatureId memberId : repository.memberFeatures.keySet()) {
+                assertThat(memberOrdinals.memberIdOf(ordinal), is(memberId));
+                assertThat(memberOrdinals.ordinalOf(memberId), is(ordinal));
+                ordinal++;
+            }
+            assertThat(memberOrdinals.ordinalOf(ApplicationFeatureId.newMember("com.mycompany.pkg5.sub2.Entity5", "name")), is(-1));
+            assertThat(repository.getMemberOrdinals(), is(sameInstance(memberOrdinals)));
+        }
+
+        @Test
+        public void ordinalsBeneath() throws Exception {
+
+            // given
+            final ApplicationFeatureRepository repository = newRepository();
+            repository.init(Collections.<String, String>emptyMap());
+            final ApplicationMemberOrdinals memberOrdinals = repository.getMemberOrdinals();
+
+            final List<ApplicationFeatureId> featureIds = Lists.newArrayList();
+            featureIds.addAll(repository.packageFeatures.keySet());
+            featureIds.addAll(repository.classFeatures.keySet());
+            featureIds.addAll(repository.memberFeatures.keySet());
+            featureIds.add(ApplicationFeatureId.newPackage("com.mycompany.pkg"));
+            featureIds.add(ApplicationFeatureId.newClass("com.mycompany.pkg1.sub1.Entity"));
+
+            for (final ApplicationFeatureId featureId : featureIds) {
+                // when
+                final BitSet ordinals = memberOrdinals.ordinalsBeneath(featureId);
+
+                // then
+                for (int ordinal = 0; ordinal < memberOrdinals.size(); ordinal++) {
+                    assertThat(featureId + " " + ordinal, ordinals.get(ordinal),
+                            is(memberOrdinals.memberIdOf(ordinal).getPathIds().contains(featureId)));
+                }
+            }
+            assertThat(memberOrdinals.ordinalsBeneath(ApplicationFeatureId.newPackage("com.mycompany.pkg1")).cardinality(), is(3 * 12));
+        }
+
+        @Test
+        public void whenLazyThenOnlyOnceAllCreated() throws Exception {
+
+            // given
+            final ApplicationFeatureRepository lazy = newRepository();
+            lazy.init(ImmutableMap.of(ApplicationFeatures.LAZY_KEY, "true"));
+            lazy.findPackage(ApplicationFeatureId.newPackage("com.mycompany.pkg1"));
+
+            // then
+            assertThat(lazy.getMemberOrdinals(), is(nullValue()));
+
+            // when
+            lazy.allMembers();
+
+            // then
+            assertThat(lazy.getMemberOrdinals().size(), is(3 * 80));
+        }
+    }
+
+    public static class IsSuperClassOfService extends ApplicationFeaturesTest {
+
+        public interface Recognizer {}
+        public static abstract class RecognizerAbstract implements Recognizer {}
+        public static class RecognizerComposite extends RecognizerAbstract {}
+        public static class RecognizerCompositeForJdo extends RecognizerComposite {}
+        public static class RecognizerCompositeForJdoExtended extends RecognizerCompositeForJdo {}
+        public static class Unrelated {}
+
+        private ApplicationFeatures.ServiceClassHierarchy hierarchy;
+
+        @Before
+        public void setUpHierarchy() throws Exception {
+            hierarchy = new ApplicationFeatures.ServiceClassHierarchy(
+                    Lists.<Object>newArrayList(new RecognizerCompositeForJdoExtended(), new RecognizerComposite()));
+        }
+
+        @Test
+        public void whenSuperclassOfService() throws Exception {
+            assertThat(hierarchy.isSuperClassOfService(RecognizerAbstract.class), is(true));
+        }
+
+        @Test
+        public void whenInterfaceOfService() throws Exception {
+            assertThat(hierarchy.isSuperClassOfService(Recognizer.class), is(true));
+        }
+
+        @Test
+        public void whenService() throws Exception {
+            assertThat(hierarchy.isSuperClassOfService(RecognizerComposite.class), is(false));
+            assertThat(hierarchy.isSuperClassOfService(RecognizerCompositeForJdoExtended.class), is(false));
+        }
+
+        @Test
+        public void whenSubclassOfAnotherService() throws Exception {
+            assertThat(hierarchy.isSuperClassOfService(RecognizerCompositeForJdo.class), is(false));
+        }
+
+        @Test
+        public void whenUnrelated() throws Exception {
+            assertThat(hierarchy.isSuperClassOfService(Unrelated.class), is(false));
+        }
+
+        @Test
+        public void whenNoServices() throws Exception {
+            hierarchy = new ApplicationFeatures.ServiceClassHierarchy(Collections.emptyList());
+            assertThat(hierarchy.isSuperClassOfService(RecognizerAbstract.class), is(false));
+        }
+    }
+
     public static class AddClassParent extends ApplicationFeaturesTest {
 
         @Test
@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.metrics;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CounterTest {
+
+    Counter counter;
+
+    @Before
+    public void setUp() throws Exception {
+        counter = new Counter();
+    }
+
+    public static class Add extends CounterTest {
+
+        @Test
+        public void accumulates() throws Exception {
+
+            // when
+            counter.increment();
+            counter.add(5);
+
+            // then
+            assertThat(counter.get(), is(6L));
+        }
+
+        @Test
+        public void concurrently() throws Exception {
+
+            // given
+            final int threads = 8;
+            final int increments = 10000;
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                final List<Future<Void>> futures = Lists.newArrayList();
+                for (int i = 0; i < threads; i++) {
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            for (int j = 0; j < increments; j++) {
+                                counter.increment();
+                            }
+                            return null;
+                        }
+                    }));
+                }
+
+                // when
+                for (final Future<Void> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            // then
+            assertThat(counter.get(), is((long) threads * increments));
+        }
+    }
+
+    public static class Reset extends CounterTest {
+
+        @Test
+        public void happyCase() throws Exception {
+
+            // given
+            counter.add(3);
+
+            // when
+            counter.reset();
+
+            // then
+            assertThat(counter.get(), is(0L));
+        }
+    }
+
+    public static class StripesCount extends CounterTest {
+
+        @Test
+        public void isPowerOfTwoAtLeastTwicePerProcessor() throws Exception {
+            assertThat(Stripes.count(1), is(2));
+            assertThat(Stripes.count(3), is(8));
+            assertThat(Stripes.count(4), is(8));
+            assertThat(Stripes.count(1000), is(64));
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class HistogramTest {
+
+    Histogram histogram;
+
+    @Before
+    public void setUp() throws Exception {
+        histogram = new Histogram();
+    }
+
+    public static class BucketFor extends HistogramTest {
+
+        @Test
+        public void boundsOfEachBucketAreConsistent() throws Exception {
+            for (int bucket = 1; bucket < Histogram.BUCKETS; bucket++) {
+                final long lowerBound = Histogram.lowerBoundOf(bucket);
+                assertThat(Histogram.bucketFor(lowerBound), is(bucket));
+                assertThat(Histogram.bucketFor(lowerBound - 1), is(bucket - 1));
+            }
+        }
+
+        @Test
+        public void tooShort() throws Exception {
+            assertThat(Histogram.bucketFor(0), is(0));
+            assertThat(Histogram.bucketFor(1023), is(0));
+        }
+
+        @Test
+        public void tooLong() throws Exception {
+            assertThat(Histogram.bucketFor(Long.MAX_VALUE), is(Histogram.BUCKETS - 1));
+        }
+    }
+
+    public static class GetPercentileNanos extends HistogramTest {
+
+        @Test
+        public void whenNone() throws Exception {
+            assertThat(histogram.getPercentileNanos(99), is(0L));
+        }
+
+        @Test
+        public void withinBucketResolution() throws Exception {
+
+            // given
+            for (int i = 1; i <= 100; i++) {
+                histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+            }
+
+            // then
+            assertThat(histogram.getPercentileNanos(50), isWithinEighthOf(TimeUnit.MILLISECONDS.toNanos(50)));
+            assertThat(histogram.getPercentileNanos(99), isWithinEighthOf(TimeUnit.MILLISECONDS.toNanos(99)));
+            assertThat(histogram.getPercentileNanos(100), isWithinEighthOf(TimeUnit.MILLISECONDS.toNanos(100)));
+        }
+
+        private static org.hamcrest.Matcher<Long> isWithinEighthOf(final long nanos) {
+            return allOf(greaterThanOrEqualTo(nanos - nanos / 8), lessThanOrEqualTo(nanos + nanos / 8));
+        }
+    }
+
+    public static class GetCounts extends HistogramTest {
+
+        @Test
+        public void happyCase() throws Exception {
+
+            // given
+            histogram.record(2000);
+            histogram.record(2001);
+            histogram.record(5000000);
+
+            // when
+            final long[] counts = histogram.getCounts();
+
+            // then
+            assertThat(counts[Histogram.bucketFor(2000)], is(2L));
+            assertThat(counts[Histogram.bucketFor(5000000)], is(1L));
+            long total = 0;
+            for (final long count : counts) {
+                total += count;
+            }
+            assertThat(total, is(3L));
+        }
+    }
+
+    public static class Reset extends HistogramTest {
+
+        @Test
+        public void happyCase() throws Exception {
+
+            // given
+            histogram.record(2000);
+
+            // when
+            histogram.reset();
+
+            // then
+            assertThat(histogram.getCounts()[Histogram.bucketFor(2000)], is(0L));
+            assertThat(histogram.getPercentileNanos(50), is(0L));
+        }
+    }
+
+}
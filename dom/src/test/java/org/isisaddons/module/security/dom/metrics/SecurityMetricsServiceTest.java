@@ -0,0 +1,174 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.isisaddons.module.security.dom.metrics.SecurityMetrics.AuthenticationOutcome;
+import org.isisaddons.module.security.dom.password.PasswordVerificationExecutor;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SecurityMetricsServiceTest {
+
+    SecurityMetricsService service;
+    MBeanServer mBeanServer;
+    ObjectName objectName;
+
+    @Before
+    public void setUp() throws Exception {
+        mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        objectName = new ObjectName(SecurityMetricsService.OBJECT_NAME);
+        service = new SecurityMetricsService();
+        service.getMetrics().reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        service.shutdown();
+        service.getMetrics().reset();
+    }
+
+    public static class Init extends SecurityMetricsServiceTest {
+
+        @Test
+        public void publishesMetrics() throws Exception {
+
+            // given
+            final SecurityMetrics metrics = service.getMetrics();
+            metrics.authenticated(AuthenticationOutcome.OK);
+            metrics.authenticated(AuthenticationOutcome.BAD_PASSWORD);
+            metrics.authenticated(AuthenticationOutcome.OK);
+            metrics.permissionChecked(ApplicationPermissionMode.CHANGING);
+            metrics.getPermissionDecisionCache().hit();
+            metrics.getPermissionDecisionCache().hit();
+            metrics.getPermissionDecisionCache().miss();
+            metrics.getPermissionDecisionCache().hit();
+            metrics.getPasswordVerification().record(2000000);
+
+            // when
+            service.init();
+
+            // then
+            assertThat(service.isRegistered(), is(true));
+            assertThat((Long) mBeanServer.getAttribute(objectName, "AuthenticationsOk"), is(2L));
+            assertThat((Long) mBeanServer.getAttribute(objectName, "AuthenticationsBadPassword"), is(1L));
+            assertThat((Long) mBeanServer.getAttribute(objectName, "PermissionChecksChanging"), is(1L));
+            assertThat((Long) mBeanServer.getAttribute(objectName, "PermissionChecksViewing"), is(0L));
+
+            final CompositeData decisionCache = (CompositeData) mBeanServer.getAttribute(objectName, "PermissionDecisionCache");
+            assertThat((Double) decisionCache.get("hitRatio"), is(0.75));
+
+            final CompositeData passwordVerification = (CompositeData) mBeanServer.getAttribute(objectName, "PasswordVerification");
+            assertThat((Long) passwordVerification.get("count"), is(1L));
+            assertThat((Long) passwordVerification.get("maxNanos"), is(2000000L));
+        }
+
+        @Test
+        public void publishesPasswordVerificationExecutor() throws Exception {
+
+            // given
+            final SecurityMetrics metrics = service.getMetrics();
+            final PasswordVerificationExecutor executor = new PasswordVerificationExecutor(1, 1, 0);
+            executor.getWaitTimer().record(3000000);
+            metrics.setPasswordVerificationExecutor(executor);
+            try {
+
+                // when
+                service.init();
+
+                // then
+                assertThat((Integer) mBeanServer.getAttribute(objectName, "PasswordVerificationQueueDepth"), is(0));
+                assertThat((Long) mBeanServer.getAttribute(objectName, "PasswordVerificationRejections"), is(0L));
+                final CompositeData waitBefore = (CompositeData) mBeanServer.getAttribute(objectName, "PasswordVerificationWait");
+                assertThat((Long) waitBefore.get("count"), is(1L));
+
+                // and when
+                metrics.removePasswordVerificationExecutor(executor);
+
+                // then
+                final CompositeData waitAfter = (CompositeData) mBeanServer.getAttribute(objectName, "PasswordVerificationWait");
+                assertThat((Long) waitAfter.get("count"), is(0L));
+            } finally {
+                metrics.removePasswordVerificationExecutor(executor);
+                executor.shutdown();
+            }
+        }
+
+        @Test
+        public void whenAlreadyPublished() throws Exception {
+
+            // given
+            service.init();
+            final SecurityMetricsService other = new SecurityMetricsService();
+
+            // when
+            other.init();
+
+            // then
+            assertThat(other.isRegistered(), is(false));
+            other.shutdown();
+            assertThat(mBeanServer.isRegistered(objectName), is(true));
+        }
+    }
+
+    public static class Shutdown extends SecurityMetricsServiceTest {
+
+        @Test
+        public void unpublishesMetrics() throws Exception {
+
+            // given
+            service.init();
+
+            // when
+            service.shutdown();
+
+            // then
+            assertThat(service.isRegistered(), is(false));
+            assertThat(mBeanServer.isRegistered(objectName), is(false));
+        }
+    }
+
+    public static class Reset extends SecurityMetricsServiceTest {
+
+        @Test
+        public void viaJmx() throws Exception {
+
+            // given
+            service.getMetrics().tenancyHides(true, System.nanoTime());
+            service.init();
+
+            // when
+            mBeanServer.invoke(objectName, "reset", new Object[0], new String[0]);
+
+            // then
+            assertThat(service.getMetrics().getTenancyHidden(), is(0L));
+            assertThat(service.getMetrics().getTenancyHides().getCount(), is(0L));
+        }
+    }
+
+}
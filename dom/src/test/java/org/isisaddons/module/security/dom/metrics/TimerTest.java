@@ -0,0 +1,94 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+
+public class TimerTest {
+
+    Timer timer;
+
+    @Before
+    public void setUp() throws Exception {
+        timer = new Timer("test");
+    }
+
+    public static class Record extends TimerTest {
+
+        @Test
+        public void accumulates() throws Exception {
+
+            // when
+            timer.record(100);
+            timer.record(300);
+            timer.record(200);
+
+            // then
+            assertThat(timer.getCount(), is(3L));
+            assertThat(timer.getTotalNanos(), is(600L));
+            assertThat(timer.getMaxNanos(), is(300L));
+            assertThat(timer.getMeanNanos(), is(200L));
+        }
+
+        @Test
+        public void whenNone() throws Exception {
+            assertThat(timer.getMeanNanos(), is(0L));
+            assertThat(timer.getP99Millis(), is(0.0));
+        }
+
+        @Test
+        public void percentiles() throws Exception {
+
+            // given
+            for (int i = 1; i <= 100; i++) {
+                timer.record(TimeUnit.MILLISECONDS.toNanos(i));
+            }
+
+            // then
+            assertThat(timer.getP50Millis(), is(closeTo(50.0, 50.0 / 8)));
+            assertThat(timer.getP99Millis(), is(closeTo(99.0, 99.0 / 8)));
+            assertThat(timer.getMaxMillis(), is(100.0));
+        }
+    }
+
+    public static class Reset extends TimerTest {
+
+        @Test
+        public void happyCase() throws Exception {
+
+            // given
+            timer.record(100);
+
+            // when
+            timer.reset();
+
+            // then
+            assertThat(timer.getCount(), is(0L));
+            assertThat(timer.getTotalNanos(), is(0L));
+            assertThat(timer.getMaxNanos(), is(0L));
+            assertThat(timer.getP50Millis(), is(0.0));
+        }
+    }
+
+}
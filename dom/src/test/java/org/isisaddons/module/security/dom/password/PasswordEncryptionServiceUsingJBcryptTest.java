@@ -16,20 +16,80 @@
  */
 package org.isisaddons.module.security.dom.password;
 
+import java.util.Collections;
+
+import org.junit.Test;
 import org.mindrot.jbcrypt.BCrypt;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
 public class PasswordEncryptionServiceUsingJBcryptTest extends PasswordEncryptionServiceContractTest {
 
     @Override
     protected PasswordEncryptionService newPasswordEncryptionService() {
         final PasswordEncryptionServiceUsingJBcrypt service = new PasswordEncryptionServiceUsingJBcrypt();
+        service.setLogRounds(5);
         return service;
     }
 
     @Override
     protected PasswordEncryptionService newPasswordEncryptionServiceDifferentSalt() {
         final PasswordEncryptionServiceUsingJBcrypt service = new PasswordEncryptionServiceUsingJBcrypt();
-        service.salt = BCrypt.gensalt(12); // a different salt
+        service.setLogRounds(4); // a different work factor
         return service;
     }
-}
\ No newline at end of file
+
+    @Test
+    public void encrypt_usesFreshSaltEachTime() throws Exception {
+
+        // given
+        final PasswordEncryptionService service = newPasswordEncryptionService();
+
+        // when, then
+        assertThat(service.encrypt(PASSWORD), is(not(service.encrypt(PASSWORD))));
+    }
+
+    @Test
+    public void encrypt_usesConfiguredLogRounds() throws Exception {
+
+        // given
+        final PasswordEncryptionServiceUsingJBcrypt service = new PasswordEncryptionServiceUsingJBcrypt();
+        service.init(Collections.singletonMap(PasswordEncryptionServiceUsingJBcrypt.LOG_ROUNDS_KEY, "6"));
+
+        // when
+        final String encrypted = service.encrypt(PASSWORD);
+
+        // then
+        assertThat(service.getLogRounds(), is(6));
+        assertThat(PasswordEncryptionServiceUsingJBcrypt.logRoundsOf(encrypted), is(6));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setLogRounds_whenTooLow() throws Exception {
+        new PasswordEncryptionServiceUsingJBcrypt().setLogRounds(3);
+    }
+
+    @Test
+    public void isRehashRequired() throws Exception {
+
+        // given
+        final PasswordEncryptionServiceUsingJBcrypt service = new PasswordEncryptionServiceUsingJBcrypt();
+        service.setLogRounds(5);
+
+        // when, then
+        assertThat(service.isRehashRequired(service.encrypt(PASSWORD)), is(false));
+        assertThat(service.isRehashRequired(BCrypt.hashpw(PASSWORD, BCrypt.gensalt(4))), is(true));
+        assertThat(service.isRehashRequired("not-a-bcrypt-hash"), is(true));
+        assertThat(service.isRehashRequired(null), is(false));
+    }
+
+    @Test
+    public void logRoundsOf() throws Exception {
+        assertThat(PasswordEncryptionServiceUsingJBcrypt.logRoundsOf("$2a$12$abcdefghijklmnopqrstuv"), is(12));
+        assertThat(PasswordEncryptionServiceUsingJBcrypt.logRoundsOf("$2$08$abcdefghijklmnopqrstuv"), is(8));
+        assertThat(PasswordEncryptionServiceUsingJBcrypt.logRoundsOf("$2a$1x$abcdefghijklmnopqrstuv"), is(-1));
+        assertThat(PasswordEncryptionServiceUsingJBcrypt.logRoundsOf("plain"), is(-1));
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.password;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class PasswordVerificationExecutorTest {
+
+    /**
+     * Blocks every verification until {@link #release() released}, even if interrupted (as it is when it times out),
+     * so that the executor's thread remains busy.
+     */
+    static class BlockingPasswordEncryptionService extends PasswordEncryptionServiceNone {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public boolean matches(final String candidate, final String encrypted) {
+            started.countDown();
+            boolean interrupted = false;
+            while(true) {
+                try {
+                    released.await(10, TimeUnit.SECONDS);
+                    break;
+                } catch (final InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return super.matches(candidate, encrypted);
+        }
+
+        void release() {
+            released.countDown();
+        }
+    }
+
+    PasswordVerificationExecutor executor;
+    BlockingPasswordEncryptionService blockingService;
+
+    @Before
+    public void setUp() throws Exception {
+        blockingService = new BlockingPasswordEncryptionService();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        blockingService.release();
+        executor.shutdown();
+    }
+
+    /**
+     * Starts a verification (that will block) on a separate thread, waiting until it has started.
+     */
+    Thread startBlockingVerification() throws InterruptedException {
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    executor.matches(blockingService, "pass", "pass");
+                } catch (final PasswordVerificationRejectedException ignored) {
+                }
+            }
+        });
+        thread.start();
+        blockingService.started.await(10, TimeUnit.SECONDS);
+        return thread;
+    }
+
+    public static class Matches extends PasswordVerificationExecutorTest {
+
+        @Test
+        public void delegates() throws Exception {
+
+            // given
+            executor = new PasswordVerificationExecutor(2, 10, 0);
+
+            // then
+            assertThat(executor.matches(new PasswordEncryptionServiceNone(), "pass", "pass"), is(true));
+            assertThat(executor.matches(new PasswordEncryptionServiceNone(), "pass", "other"), is(false));
+            assertThat(executor.getWaitTimer().getCount(), is(2L));
+        }
+
+        @Test
+        public void rejectedWhenQueueFull() throws Exception {
+
+            // given
+            executor = new PasswordVerificationExecutor(1, 1, 0);
+            startBlockingVerification();
+            final Thread queued = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        executor.matches(new PasswordEncryptionServiceNone(), "pass", "pass");
+                    } catch (final PasswordVerificationRejectedException ignored) {
+                    }
+                }
+            });
+            queued.start();
+            while(executor.getQueueDepth() == 0) {
+                Thread.sleep(1);
+            }
+
+            // when
+            try {
+                executor.matches(new PasswordEncryptionServiceNone(), "pass", "pass");
+                fail();
+            } catch (final PasswordVerificationRejectedException ex) {
+                // expected
+            }
+
+            // then
+            assertThat(executor.getRejections(), is(1L));
+            assertThat(executor.getQueueDepth(), is(1));
+
+            blockingService.release();
+            queued.join(10000);
+            assertThat(executor.getQueueDepth(), is(0));
+        }
+
+        @Test
+        public void rejectedWhenTimedOut() throws Exception {
+
+            // given
+            executor = new PasswordVerificationExecutor(1, 10, 50);
+            startBlockingVerification();
+
+            // when
+            try {
+                executor.matches(new PasswordEncryptionServiceNone(), "pass", "pass");
+                fail();
+            } catch (final PasswordVerificationRejectedException ex) {
+                // expected
+            }
+
+            // then (the blocked verification may also have timed out)
+            assertThat(executor.getRejections(), is(greaterThanOrEqualTo(1L)));
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.permission;
+
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+import org.isisaddons.module.security.dom.SerializationContractTest;
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureType;
+import org.isisaddons.module.security.dom.feature.ApplicationMemberOrdinals;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ApplicationPermissionPolicyTest {
+
+    /**
+     * Every other member of the {@link ApplicationPermissionValueTrieTest#universe() universe}, so that the remainder
+     * are not members of the "metamodel" and must fall back to being evaluated.
+     */
+    static ApplicationMemberOrdinals memberOrdinals(final List<ApplicationFeatureId> universe) {
+        final List<ApplicationFeatureId> memberIds = Lists.newArrayList();
+        boolean include = true;
+        for (final ApplicationFeatureId featureId : universe) {
+            if(featureId.getType() == ApplicationFeatureType.MEMBER) {
+                if(include) {
+                    memberIds.add(featureId);
+                }
+                include = !include;
+            }
+        }
+        return new ApplicationMemberOrdinals(memberIds);
+    }
+
+    public static class Grants extends ApplicationPermissionPolicyTest {
+
+        @Test
+        public void allowBeatsVeto() throws Exception {
+            assertSameAsEvaluated(new PermissionsEvaluationServiceAllowBeatsVeto());
+        }
+
+        @Test
+        public void vetoBeatsAllow() throws Exception {
+            assertSameAsEvaluated(new PermissionsEvaluationServiceVetoBeatsAllow());
+        }
+
+        @Test
+        public void whenEmpty() throws Exception {
+            final List<ApplicationFeatureId> universe = ApplicationPermissionValueTrieTest.universe();
+            final ApplicationPermissionValueSet valueSet = new ApplicationPermissionValueSet(
+                    Lists.<ApplicationPermissionValue>newArrayList(), PermissionsEvaluationService.DEFAULT,
+                    memberOrdinals(universe));
+
+            for (final ApplicationFeatureId featureId : universe) {
+                assertThat(valueSet.grants(featureId, ApplicationPermissionMode.VIEWING), is(false));
+            }
+        }
+
+        @Test
+        public void isCompiled() throws Exception {
+            final List<ApplicationPermissionValue> values = Lists.newArrayList();
+
+            assertThat(new ApplicationPermissionValueSet(values, PermissionsEvaluationService.DEFAULT).isCompiled(), is(false));
+            assertThat(new ApplicationPermissionValueSet(values, PermissionsEvaluationService.DEFAULT, null).isCompiled(), is(false));
+            assertThat(new ApplicationPermissionValueSet(values, PermissionsEvaluationService.DEFAULT,
+                    memberOrdinals(ApplicationPermissionValueTrieTest.universe())).isCompiled(), is(true));
+        }
+
+        private static void assertSameAsEvaluated(final PermissionsEvaluationService evaluationService) {
+            final List<ApplicationFeatureId> universe = ApplicationPermissionValueTrieTest.universe();
+            final ApplicationMemberOrdinals memberOrdinals = memberOrdinals(universe);
+            final Random random = new Random(20141118L);
+
+            for (int run = 0; run < 50; run++) {
+                final List<ApplicationPermissionValue> values = Lists.newArrayList();
+                final int numValues = 1 + random.nextInt(12);
+                for (int i = 0; i < numValues; i++) {
+                    values.add(new ApplicationPermissionValue(
+                            universe.get(random.nextInt(universe.size())),
+                            ApplicationPermissionRule.values()[random.nextInt(2)],
+                            ApplicationPermissionMode.values()[random.nextInt(2)]));
+                }
+
+                final ApplicationPermissionValueSet compiled = new ApplicationPermissionValueSet(values, evaluationService, memberOrdinals);
+
+                for (final ApplicationFeatureId featureId : universe) {
+                    for (final ApplicationPermissionMode mode : ApplicationPermissionMode.values()) {
+                        final ApplicationPermissionValueSet.Evaluation expected = compiled.evaluate(featureId, mode);
+
+                        final String reason = values + " for " + featureId + ", " + mode;
+                        assertThat(reason, compiled.grants(featureId, mode), is(expected.isGranted()));
+                    }
+                }
+            }
+        }
+    }
+
+    public static class Serialization extends SerializationContractTest {
+
+        @Test
+        public void notCompiledAfterRoundtrip() throws Exception {
+
+            final ApplicationFeatureId bipMember = ApplicationFeatureId.newMember("com.foo.Bar#bip");
+            final ApplicationPermissionValueSet original = new ApplicationPermissionValueSet(
+                    Lists.newArrayList(
+                        new ApplicationPermissionValue(ApplicationFeatureId.newPackage("com"), ApplicationPermissionRule.ALLOW, ApplicationPermissionMode.CHANGING),
+                        new ApplicationPermissionValue(bipMember, ApplicationPermissionRule.VETO, ApplicationPermissionMode.CHANGING)),
+                    PermissionsEvaluationService.DEFAULT,
+                    new ApplicationMemberOrdinals(Lists.newArrayList(bipMember)));
+            assertThat(original.isCompiled(), is(true));
+
+            final ApplicationPermissionValueSet roundtripped = roundtripSerialization(original);
+
+            assertThat(roundtripped.isCompiled(), is(false));
+            assertThat(roundtripped.grants(bipMember, ApplicationPermissionMode.VIEWING), is(true));
+            assertThat(roundtripped.grants(bipMember, ApplicationPermissionMode.CHANGING), is(false));
+        }
+    }
+
+}
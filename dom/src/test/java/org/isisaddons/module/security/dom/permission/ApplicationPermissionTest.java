@@ -33,6 +33,7 @@
 import org.apache.isis.applib.DomainObjectContainer;
 import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2;
 
+import org.isisaddons.module.security.dom.cache.PendingSecurityCacheInvalidations;
 import org.isisaddons.module.security.dom.feature.ApplicationFeature;
 import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
 import org.isisaddons.module.security.dom.feature.ApplicationFeatureRepository;
@@ -108,6 +109,27 @@ public void whenNull() throws Exception {
         }
     }
 
+    public static class AsValue extends ApplicationPermissionTest {
+
+        @Test
+        public void followsFeatureOnceChanged() throws Exception {
+            // given
+            applicationPermission.setFeatureType(ApplicationFeatureType.PACKAGE);
+            applicationPermission.setFeatureFqn("com.mycompany");
+            applicationPermission.setRule(ApplicationPermissionRule.ALLOW);
+            applicationPermission.setMode(ApplicationPermissionMode.VIEWING);
+            final ApplicationPermissionValue before = ApplicationPermission.Functions.AS_VALUE.apply(applicationPermission);
+
+            // when
+            applicationPermission.setFeatureType(ApplicationFeatureType.CLASS);
+            applicationPermission.setFeatureFqn("com.mycompany.Bar");
+
+            // then
+            assertThat(before.getFeatureId(), is(ApplicationFeatureId.newPackage("com.mycompany")));
+            assertThat(ApplicationPermission.Functions.AS_VALUE.apply(applicationPermission).getFeatureId(), is(ApplicationFeatureId.newClass("com.mycompany.Bar")));
+        }
+    }
+
     public static class PrivateConstructors extends ApplicationPermissionTest {
 
         @Test
@@ -171,6 +193,39 @@ private static ApplicationPermission perm(ApplicationRole role, ApplicationFeatu
 
     }
 
+    public static class InvalidateCachedPermissionSets extends ApplicationPermissionTest {
+
+        @Mock
+        ApplicationPermissionValueSetCache mockApplicationPermissionValueSetCache;
+
+        @Mock
+        PendingSecurityCacheInvalidations mockPendingSecurityCacheInvalidations;
+
+        ApplicationRole role;
+
+        @Before
+        public void setUpCaches() throws Exception {
+            role = new ApplicationRole();
+            role.setName("Admin");
+            applicationPermission.setRole(role);
+            applicationPermission.applicationPermissionValueSetCache = mockApplicationPermissionValueSetCache;
+            applicationPermission.pendingSecurityCacheInvalidations = mockPendingSecurityCacheInvalidations;
+        }
+
+        @Test
+        public void nowAndOnceTransactionEnded() throws Exception {
+
+            // expecting
+            context.checking(new Expectations() {{
+                oneOf(mockApplicationPermissionValueSetCache).invalidate(role);
+                oneOf(mockPendingSecurityCacheInvalidations).addRoleName("Admin");
+            }});
+
+            // when
+            applicationPermission.veto();
+        }
+    }
+
     public static class Viewing extends ApplicationPermissionTest {
 
         public static class ActionImpl extends Viewing {
@@ -0,0 +1,387 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.permission;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.jmock.Expectations;
+import org.jmock.api.Action;
+import org.jmock.api.Invocation;
+import org.jmock.auto.Mock;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.apache.isis.applib.services.bookmark.Bookmark;
+import org.apache.isis.applib.services.bookmark.BookmarkService;
+import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2;
+
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureRepository;
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureType;
+import org.isisaddons.module.security.dom.feature.ApplicationMemberOrdinals;
+import org.isisaddons.module.security.dom.role.ApplicationRole;
+import org.isisaddons.module.security.dom.user.ApplicationUser;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ApplicationPermissionValueSetCacheTest {
+
+    @Rule
+    public JUnitRuleMockery2 context = JUnitRuleMockery2.createFor(JUnitRuleMockery2.Mode.INTERFACES_AND_CLASSES);
+
+    @Mock
+    ApplicationPermissionRepository mockApplicationPermissionRepository;
+
+    ApplicationPermissionValueSetCache cache;
+
+    ApplicationRole role1;
+    ApplicationRole role2;
+
+    ApplicationPermission role1Permission;
+    ApplicationPermission role2Permission;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new ApplicationPermissionValueSetCache();
+        cache.applicationPermissionRepository = mockApplicationPermissionRepository;
+
+        role1 = newRole("role1");
+        role2 = newRole("role2");
+        role1Permission = newPermission(role1, ApplicationPermissionRule.ALLOW, "com.mycompany");
+        role2Permission = newPermission(role2, ApplicationPermissionRule.VETO, "com.mycompany.Bar");
+    }
+
+    private static ApplicationRole newRole(final String name) {
+        final ApplicationRole role = new ApplicationRole();
+        role.setName(name);
+        return role;
+    }
+
+    private static ApplicationPermission newPermission(final ApplicationRole role, final ApplicationPermissionRule rule, final String featureFqn) {
+        final ApplicationPermission permission = new ApplicationPermission();
+        permission.setRole(role);
+        permission.setRule(rule);
+        permission.setMode(ApplicationPermissionMode.CHANGING);
+        permission.setFeatureType(featureFqn.contains("Bar") ? ApplicationFeatureType.CLASS : ApplicationFeatureType.PACKAGE);
+        permission.setFeatureFqn(featureFqn);
+        return permission;
+    }
+
+    private static ApplicationUser newUser(final String username, final ApplicationRole... roles) {
+        final ApplicationUser user = new ApplicationUser();
+        user.setUsername(username);
+        for (final ApplicationRole role : roles) {
+            user.getRoles().add(role);
+        }
+        return user;
+    }
+
+    void expectFindByRole(final ApplicationRole role, final ApplicationPermission permission, final int times) {
+        context.checking(new Expectations() {{
+            exactly(times).of(mockApplicationPermissionRepository).findByRole(role);
+            will(returnValue(Collections.singletonList(permission)));
+        }});
+    }
+
+    /**
+     * Invalidates the role while its permissions are being found, as if changed concurrently by another request.
+     */
+    Action invalidatingWhileFinding(final ApplicationRole role) {
+        return new CustomAction("invalidate " + role.getName()) {
+            @Override
+            public Object invoke(final Invocation invocation) throws Throwable {
+                cache.invalidate(role);
+                return null;
+            }
+        };
+    }
+
+    public static class GetPermissionSet extends ApplicationPermissionValueSetCacheTest {
+
+        @Test
+        public void sharedByUsersWithSameRoles() throws Exception {
+
+            // expecting
+            expectFindByRole(role1, role1Permission, 1);
+            expectFindByRole(role2, role2Permission, 1);
+
+            // when
+            final ApplicationPermissionValueSet permissionSet = cache.getPermissionSet(newUser("fred", role1, role2));
+
+            // then
+            assertThat(cache.getPermissionSet(newUser("mary", role2, role1)), is(sameInstance(permissionSet)));
+            assertThat(cache.size(), is(1));
+
+            assertThat(permissionSet.grants(ApplicationFeatureId.newClass("com.mycompany.Bar"), ApplicationPermissionMode.CHANGING), is(false));
+            assertThat(permissionSet.grants(ApplicationFeatureId.newClass("com.mycompany.Baz"), ApplicationPermissionMode.CHANGING), is(true));
+        }
+
+        @Test
+        public void differentRoles() throws Exception {
+
+            // expecting
+            expectFindByRole(role1, role1Permission, 2);
+            expectFindByRole(role2, role2Permission, 1);
+
+            // when
+            final ApplicationPermissionValueSet permissionSet = cache.getPermissionSet(newUser("fred", role1, role2));
+
+            // then
+            assertThat(cache.getPermissionSet(newUser("mary", role1)), is(not(sameInstance(permissionSet))));
+            assertThat(cache.size(), is(2));
+        }
+    }
+
+    public static class Invalidate extends ApplicationPermissionValueSetCacheTest {
+
+        @Test
+        public void evictsOnlyCombinationsContainingRole() throws Exception {
+
+            // given
+            expectFindByRole(role1, role1Permission, 2);
+            expectFindByRole(role2, role2Permission, 1);
+            final ApplicationPermissionValueSet bothRoles = cache.getPermissionSet(newUser("fred", role1, role2));
+            final ApplicationPermissionValueSet role1Only = cache.getPermissionSet(newUser("mary", role1));
+
+            // when
+            cache.invalidate(role2);
+
+            // then
+            assertThat(cache.size(), is(1));
+            assertThat(cache.getPermissionSet(newUser("mary", role1)), is(sameInstance(role1Only)));
+
+            // expecting
+            expectFindByRole(role1, role1Permission, 1);
+            expectFindByRole(role2, role2Permission, 1);
+
+            // then
+            assertThat(cache.getPermissionSet(newUser("fred", role1, role2)), is(not(sameInstance(bothRoles))));
+        }
+
+        @Test
+        public void all() throws Exception {
+
+            // given
+            expectFindByRole(role1, role1Permission, 1);
+            cache.getPermissionSet(newUser("mary", role1));
+
+            // when
+            cache.invalidateAll();
+
+            // then
+            assertThat(cache.size(), is(0));
+        }
+    }
+
+    public static class FindPermissionOid extends ApplicationPermissionValueSetCacheTest {
+
+        @Mock
+        BookmarkService mockBookmarkService;
+
+        final Bookmark role1PermissionOid = new Bookmark("isissecurity.ApplicationPermission", "1");
+        final Bookmark role2PermissionOid = new Bookmark("isissecurity.ApplicationPermission", "2");
+
+        @Before
+        public void setUpBookmarkService() throws Exception {
+            context.checking(new Expectations() {{
+                allowing(mockBookmarkService).bookmarkFor(role1Permission);
+                will(returnValue(role1PermissionOid));
+                allowing(mockBookmarkService).bookmarkFor(role2Permission);
+                will(returnValue(role2PermissionOid));
+            }});
+            cache.bookmarkService = mockBookmarkService;
+        }
+
+        @Test
+        public void eachRoleIndexedOnce() throws Exception {
+
+            // expecting
+            expectFindByRole(role1, role1Permission, 1);
+            expectFindByRole(role2, role2Permission, 1);
+
+            // when
+            final ApplicationUser fred = newUser("fred", role1, role2);
+
+            // then
+            assertThat(cache.findPermissionOid(fred.getRoles(), ApplicationPermission.Functions.AS_VALUE.apply(role1Permission)), is(role1PermissionOid));
+            assertThat(cache.findPermissionOid(fred.getRoles(), ApplicationPermission.Functions.AS_VALUE.apply(role2Permission)), is(role2PermissionOid));
+            assertThat(cache.findPermissionOid(newUser("mary", role2).getRoles(), ApplicationPermission.Functions.AS_VALUE.apply(role2Permission)), is(role2PermissionOid));
+        }
+
+        @Test
+        public void whenNotHeldByRoles() throws Exception {
+
+            // expecting
+            expectFindByRole(role1, role1Permission, 1);
+
+            // then
+            assertThat(cache.findPermissionOid(newUser("mary", role1).getRoles(), ApplicationPermission.Functions.AS_VALUE.apply(role2Permission)), is(nullValue()));
+        }
+
+        @Test
+        public void reindexedOnceInvalidated() throws Exception {
+
+            // given
+            expectFindByRole(role1, role1Permission, 1);
+            expectFindByRole(role2, role2Permission, 1);
+            final ApplicationUser fred = newUser("fred", role1, role2);
+            cache.findPermissionOid(fred.getRoles(), ApplicationPermission.Functions.AS_VALUE.apply(role2Permission));
+
+            // when
+            cache.invalidate(role2);
+
+            // expecting
+            context.checking(new Expectations() {{
+                oneOf(mockApplicationPermissionRepository).findByRole(role2);
+                will(returnValue(Collections.emptyList()));
+            }});
+
+            // then
+            assertThat(cache.findPermissionOid(fred.getRoles(), ApplicationPermission.Functions.AS_VALUE.apply(role2Permission)), is(nullValue()));
+        }
+
+        @Test
+        public void notKeptWhenInvalidatedWhileIndexing() throws Exception {
+
+            // expecting
+            context.checking(new Expectations() {{
+                exactly(2).of(mockApplicationPermissionRepository).findByRole(role2);
+                will(onConsecutiveCalls(
+                        doAll(invalidatingWhileFinding(role2), returnValue(Collections.singletonList(role2Permission))),
+                        returnValue(Collections.emptyList())));
+            }});
+
+            // when
+            final ApplicationUser mary = newUser("mary", role2);
+            final Bookmark whileInvalidated = cache.findPermissionOid(mary.getRoles(), ApplicationPermission.Functions.AS_VALUE.apply(role2Permission));
+
+            // then
+            assertThat(whileInvalidated, is(role2PermissionOid));
+            assertThat(cache.findPermissionOid(mary.getRoles(), ApplicationPermission.Functions.AS_VALUE.apply(role2Permission)), is(nullValue()));
+        }
+    }
+
+    public static class ComposedFromRoles extends ApplicationPermissionValueSetCacheTest {
+
+        @Mock
+        ApplicationFeatureRepository mockApplicationFeatureRepository;
+
+        final ApplicationFeatureId barMember = ApplicationFeatureId.newMember("com.mycompany.Bar#bip");
+        final ApplicationFeatureId bazMember = ApplicationFeatureId.newMember("com.mycompany.Baz#bop");
+
+        @Before
+        public void setUpMemberOrdinals() throws Exception {
+            final ApplicationMemberOrdinals memberOrdinals = new ApplicationMemberOrdinals(Arrays.asList(barMember, bazMember));
+            context.checking(new Expectations() {{
+                allowing(mockApplicationFeatureRepository).getMemberOrdinals();
+                will(returnValue(memberOrdinals));
+            }});
+            cache.applicationFeatureRepository = mockApplicationFeatureRepository;
+        }
+
+        @Test
+        public void eachRoleMappedOnce() throws Exception {
+
+            // expecting
+            expectFindByRole(role1, role1Permission, 1);
+            expectFindByRole(role2, role2Permission, 1);
+
+            // when
+            final ApplicationPermissionValueSet bothRoles = cache.getPermissionSet(newUser("fred", role1, role2));
+            final ApplicationPermissionValueSet role1Only = cache.getPermissionSet(newUser("mary", role1));
+
+            // then
+            assertThat(cache.size(), is(2));
+            assertThat(bothRoles.isCompiled(), is(true));
+            assertThat(bothRoles.grants(barMember, ApplicationPermissionMode.CHANGING), is(false));
+            assertThat(bothRoles.grants(bazMember, ApplicationPermissionMode.CHANGING), is(true));
+            assertThat(role1Only.grants(barMember, ApplicationPermissionMode.CHANGING), is(true));
+        }
+
+        @Test
+        public void onlyInvalidatedRoleRemapped() throws Exception {
+
+            // given
+            expectFindByRole(role1, role1Permission, 1);
+            expectFindByRole(role2, role2Permission, 1);
+            cache.getPermissionSet(newUser("fred", role1, role2));
+
+            // when
+            cache.invalidate(role2);
+
+            // expecting
+            final ApplicationPermission role2Allow = newPermission(role2, ApplicationPermissionRule.ALLOW, "com.mycompany.Bar");
+            context.checking(new Expectations() {{
+                oneOf(mockApplicationPermissionRepository).findByRole(role2);
+                will(returnValue(Arrays.asList(role2Allow)));
+            }});
+
+            // then
+            final ApplicationPermissionValueSet bothRoles = cache.getPermissionSet(newUser("fred", role1, role2));
+            assertThat(bothRoles.grants(barMember, ApplicationPermissionMode.CHANGING), is(true));
+        }
+
+        @Test
+        public void notKeptWhenInvalidatedWhileMapping() throws Exception {
+
+            // expecting
+            final ApplicationPermission role2Allow = newPermission(role2, ApplicationPermissionRule.ALLOW, "com.mycompany.Bar");
+            context.checking(new Expectations() {{
+                exactly(2).of(mockApplicationPermissionRepository).findByRole(role2);
+                will(onConsecutiveCalls(
+                        doAll(invalidatingWhileFinding(role2), returnValue(Collections.singletonList(role2Permission))),
+                        returnValue(Arrays.asList(role2Allow))));
+            }});
+
+            // when
+            final ApplicationPermissionValueSet whileInvalidated = cache.getPermissionSet(newUser("mary", role2));
+
+            // then
+            assertThat(whileInvalidated.grants(barMember, ApplicationPermissionMode.CHANGING), is(false));
+            assertThat(cache.size(), is(0));
+            final ApplicationPermissionValueSet role2Only = cache.getPermissionSet(newUser("mary", role2));
+            assertThat(role2Only.grants(barMember, ApplicationPermissionMode.CHANGING), is(true));
+        }
+
+        @Test
+        public void notComposedForOtherEvaluationServices() throws Exception {
+
+            // given
+            cache.permissionsEvaluationService = new PermissionsEvaluationServiceAllowBeatsVeto() {};
+
+            // expecting
+            expectFindByRole(role1, role1Permission, 2);
+
+            // when
+            cache.getPermissionSet(newUser("mary", role1));
+            cache.invalidate(role1);
+            final ApplicationPermissionValueSet role1Only = cache.getPermissionSet(newUser("mary", role1));
+
+            // then
+            assertThat(role1Only.isCompiled(), is(true));
+            assertThat(role1Only.grants(barMember, ApplicationPermissionMode.CHANGING), is(true));
+        }
+    }
+
+}
@@ -18,10 +18,13 @@
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+
 import com.danhaywood.java.testsupport.coverage.PrivateConstructorTester;
 import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
 import org.junit.Test;
 
+import org.apache.isis.applib.util.ObjectContracts;
 import org.apache.isis.core.unittestsupport.value.ValueTypeContractTestAbstract;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -325,6 +328,32 @@ static ApplicationPermissionMode viewing() {
 
     }
 
+    public static class CompareTo extends ApplicationPermissionValueTest {
+
+        private static final ApplicationFeatureId[] FEATURE_IDS = {null, pCom, pComFoo, cComFooBar, mComFooBar_bop, mComFooBar_bip, mComFooBar_bup};
+
+        private static <T> T randomOf(final Random random, final T[] values) {
+            final int index = random.nextInt(values.length + 1);
+            return index < values.length ? values[index] : null;
+        }
+
+        @Test
+        public void sameOrderingAsObjectContracts() throws Exception {
+            final Random random = new Random(20141118L);
+            for (int i = 0; i < 5000; i++) {
+                final ApplicationPermissionValue left = new ApplicationPermissionValue(
+                        randomOf(random, FEATURE_IDS), randomOf(random, ApplicationPermissionRule.values()), randomOf(random, ApplicationPermissionMode.values()));
+                final ApplicationPermissionValue right = new ApplicationPermissionValue(
+                        randomOf(random, FEATURE_IDS), randomOf(random, ApplicationPermissionRule.values()), randomOf(random, ApplicationPermissionMode.values()));
+
+                final int expected = ObjectContracts.compare(left, right, "rule, mode, featureId");
+
+                assertThat(left + " vs " + right, Integer.signum(left.compareTo(right)), is(Integer.signum(expected)));
+                assertThat(left + " vs " + right, Integer.signum(right.compareTo(left)), is(-Integer.signum(expected)));
+            }
+        }
+    }
+
     public static class PrivateConstructors extends ApplicationPermissionValueTest {
 
         @Test
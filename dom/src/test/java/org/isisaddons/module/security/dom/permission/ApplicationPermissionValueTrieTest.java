@@ -0,0 +1,139 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.permission;
+
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.TreeMultimap;
+
+import org.junit.Test;
+
+import org.isisaddons.module.security.dom.SerializationContractTest;
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ApplicationPermissionValueTrieTest {
+
+    /**
+     * Packages, classes and members (including a class in the default package) from which random permission sets are
+     * drawn and against which they are evaluated.
+     */
+    static List<ApplicationFeatureId> universe() {
+        final List<ApplicationFeatureId> featureIds = Lists.newArrayList();
+        for (final String packageName : new String[] {"", "com", "com.foo", "com.foo.bar", "com.foz", "org", "org.foo"}) {
+            if(!packageName.isEmpty()) {
+                featureIds.add(ApplicationFeatureId.newPackage(packageName));
+            }
+            for (final String className : new String[] {"Bar", "Baz", "foo"}) {
+                final String classFqn = packageName.isEmpty() ? className : packageName + "." + className;
+                featureIds.add(ApplicationFeatureId.newClass(classFqn));
+                for (final String memberName : new String[] {"bip", "bop", "bar"}) {
+                    featureIds.add(ApplicationFeatureId.newMember(classFqn, memberName));
+                }
+            }
+        }
+        featureIds.add(ApplicationFeatureId.newPackage(""));
+        return featureIds;
+    }
+
+    public static class Evaluate extends ApplicationPermissionValueTrieTest {
+
+        @Test
+        public void allowBeatsVeto() throws Exception {
+            assertSameAsValueSet(new PermissionsEvaluationServiceAllowBeatsVeto());
+        }
+
+        @Test
+        public void vetoBeatsAllow() throws Exception {
+            assertSameAsValueSet(new PermissionsEvaluationServiceVetoBeatsAllow());
+        }
+
+        @Test
+        public void whenEmpty() throws Exception {
+            final ApplicationPermissionValueTrie trie = new ApplicationPermissionValueTrie(
+                    newMultimap(), PermissionsEvaluationService.DEFAULT);
+
+            assertThat(trie.evaluate(ApplicationFeatureId.newMember("com.foo.Bar#bip"), ApplicationPermissionMode.VIEWING), is(nullValue()));
+            assertThat(trie.grants(ApplicationFeatureId.newPackage("com"), ApplicationPermissionMode.CHANGING), is(false));
+        }
+
+        private static void assertSameAsValueSet(final PermissionsEvaluationService evaluationService) {
+            final List<ApplicationFeatureId> universe = universe();
+            final Random random = new Random(20141118L);
+
+            for (int run = 0; run < 50; run++) {
+                final List<ApplicationPermissionValue> values = Lists.newArrayList();
+                final int numValues = 1 + random.nextInt(12);
+                for (int i = 0; i < numValues; i++) {
+                    values.add(new ApplicationPermissionValue(
+                            universe.get(random.nextInt(universe.size())),
+                            ApplicationPermissionRule.values()[random.nextInt(2)],
+                            ApplicationPermissionMode.values()[random.nextInt(2)]));
+                }
+
+                final ApplicationPermissionValueSet valueSet = new ApplicationPermissionValueSet(values, evaluationService);
+                final Multimap<ApplicationFeatureId, ApplicationPermissionValue> permissionsByFeature = newMultimap();
+                for (final ApplicationPermissionValue value : values) {
+                    permissionsByFeature.put(value.getFeatureId(), value);
+                }
+                final ApplicationPermissionValueTrie trie = new ApplicationPermissionValueTrie(permissionsByFeature, evaluationService);
+
+                for (final ApplicationFeatureId featureId : universe) {
+                    for (final ApplicationPermissionMode mode : ApplicationPermissionMode.values()) {
+                        final ApplicationPermissionValueSet.Evaluation expected = valueSet.evaluate(featureId, mode);
+                        final ApplicationPermissionValueSet.Evaluation actual = trie.evaluate(featureId, mode);
+
+                        final String reason = values + " for " + featureId + ", " + mode;
+                        assertThat(reason, actual != null ? actual.getCause() : null, is(expected.getCause()));
+                        assertThat(reason, trie.grants(featureId, mode), is(expected.isGranted()));
+                        assertThat(reason, valueSet.grants(featureId, mode), is(expected.isGranted()));
+                    }
+                }
+            }
+        }
+    }
+
+    public static class Serialization extends SerializationContractTest {
+
+        @Test
+        public void recompiledAfterRoundtrip() throws Exception {
+
+            final ApplicationFeatureId bipMember = ApplicationFeatureId.newMember("com.foo.Bar#bip");
+            final ApplicationPermissionValueSet original = new ApplicationPermissionValueSet(
+                    new ApplicationPermissionValue(ApplicationFeatureId.newPackage("com"), ApplicationPermissionRule.ALLOW, ApplicationPermissionMode.CHANGING),
+                    new ApplicationPermissionValue(bipMember, ApplicationPermissionRule.VETO, ApplicationPermissionMode.CHANGING));
+
+            final ApplicationPermissionValueSet roundtripped = roundtripSerialization(original);
+
+            assertThat(roundtripped.grants(bipMember, ApplicationPermissionMode.VIEWING), is(true));
+            assertThat(roundtripped.grants(bipMember, ApplicationPermissionMode.CHANGING), is(false));
+        }
+    }
+
+    static Multimap<ApplicationFeatureId, ApplicationPermissionValue> newMultimap() {
+        return TreeMultimap.create(
+                ApplicationFeatureId.Comparators.natural(),
+                ApplicationPermissionValue.Comparators.natural());
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.permission;
+
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import org.junit.Test;
+
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureType;
+import org.isisaddons.module.security.dom.feature.ApplicationMemberOrdinals;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ApplicationRolePermissionMapTest {
+
+    static ApplicationMemberOrdinals memberOrdinals(final List<ApplicationFeatureId> universe) {
+        final List<ApplicationFeatureId> memberIds = Lists.newArrayList();
+        for (final ApplicationFeatureId featureId : universe) {
+            if(featureId.getType() == ApplicationFeatureType.MEMBER) {
+                memberIds.add(featureId);
+            }
+        }
+        return new ApplicationMemberOrdinals(memberIds);
+    }
+
+    static List<ApplicationPermissionValue> randomPermissionValues(
+            final List<ApplicationFeatureId> universe, final Random random) {
+        final List<ApplicationPermissionValue> values = Lists.newArrayList();
+        final int numValues = random.nextInt(7);
+        for (int i = 0; i < numValues; i++) {
+            values.add(new ApplicationPermissionValue(
+                    universe.get(random.nextInt(universe.size())),
+                    ApplicationPermissionRule.values()[random.nextInt(2)],
+                    ApplicationPermissionMode.values()[random.nextInt(2)]));
+        }
+        return values;
+    }
+
+    public static class Compose extends ApplicationRolePermissionMapTest {
+
+        @Test
+        public void allowBeatsVeto() throws Exception {
+            assertSameAsUnion(new PermissionsEvaluationServiceAllowBeatsVeto());
+        }
+
+        @Test
+        public void vetoBeatsAllow() throws Exception {
+            assertSameAsUnion(new PermissionsEvaluationServiceVetoBeatsAllow());
+        }
+
+        @Test
+        public void whenNoRoles() throws Exception {
+            final List<ApplicationFeatureId> universe = ApplicationPermissionValueTrieTest.universe();
+            final ApplicationMemberOrdinals memberOrdinals = memberOrdinals(universe);
+
+            final ApplicationPermissionPolicy policy = ApplicationRolePermissionMap.compose(
+                    Lists.<ApplicationRolePermissionMap>newArrayList(), memberOrdinals,
+                    ApplicationRolePermissionMap.Precedence.ALLOW_BEATS_VETO);
+
+            for (int ordinal = 0; ordinal < memberOrdinals.size(); ordinal++) {
+                assertThat(policy.grants(ordinal, ApplicationPermissionMode.VIEWING), is(false));
+            }
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void whenMappedOverDifferentOrdinals() throws Exception {
+            final List<ApplicationFeatureId> universe = ApplicationPermissionValueTrieTest.universe();
+
+            ApplicationRolePermissionMap.compose(
+                    Lists.newArrayList(ApplicationRolePermissionMap.empty(memberOrdinals(universe))),
+                    memberOrdinals(universe),
+                    ApplicationRolePermissionMap.Precedence.ALLOW_BEATS_VETO);
+        }
+
+        private static void assertSameAsUnion(final PermissionsEvaluationService evaluationService) {
+            final List<ApplicationFeatureId> universe = ApplicationPermissionValueTrieTest.universe();
+            final ApplicationMemberOrdinals memberOrdinals = memberOrdinals(universe);
+            final ApplicationRolePermissionMap empty = ApplicationRolePermissionMap.empty(memberOrdinals);
+            final ApplicationRolePermissionMap.Precedence precedence = ApplicationRolePermissionMap.Precedence.of(evaluationService);
+            final Random random = new Random(20141118L);
+
+            for (int run = 0; run < 50; run++) {
+                final List<ApplicationRolePermissionMap> roleMaps = Lists.newArrayList();
+                final List<ApplicationPermissionValue> union = Lists.newArrayList();
+                final int numRoles = 1 + random.nextInt(4);
+                for (int i = 0; i < numRoles; i++) {
+                    final List<ApplicationPermissionValue> values = randomPermissionValues(universe, random);
+                    roleMaps.add(empty.update(values));
+                    union.addAll(values);
+                }
+
+                final ApplicationPermissionPolicy policy = ApplicationRolePermissionMap.compose(roleMaps, memberOrdinals, precedence);
+
+                assertSameAsEvaluated(policy, new ApplicationPermissionValueSet(union, evaluationService), memberOrdinals);
+            }
+        }
+    }
+
+    public static class Update extends ApplicationRolePermissionMapTest {
+
+        @Test
+        public void sameAsMappedFromScratch() throws Exception {
+            final List<ApplicationFeatureId> universe = ApplicationPermissionValueTrieTest.universe();
+            final ApplicationMemberOrdinals memberOrdinals = memberOrdinals(universe);
+            final Random random = new Random(20141118L);
+
+            ApplicationRolePermissionMap roleMap = ApplicationRolePermissionMap.empty(memberOrdinals);
+            for (int run = 0; run < 50; run++) {
+                // add some permissions and remove others, as when a role is edited
+                final List<ApplicationPermissionValue> values = Lists.newArrayList(roleMap.getPermissionValues());
+                if(!values.isEmpty() && random.nextBoolean()) {
+                    values.remove(random.nextInt(values.size()));
+                }
+                final List<ApplicationPermissionValue> added = randomPermissionValues(universe, random);
+                values.addAll(added.subList(0, Math.min(added.size(), 2)));
+
+                roleMap = roleMap.update(values);
+
+                final ApplicationPermissionPolicy policy = ApplicationRolePermissionMap.compose(
+                        Lists.newArrayList(roleMap), memberOrdinals, ApplicationRolePermissionMap.Precedence.ALLOW_BEATS_VETO);
+                assertSameAsEvaluated(policy, new ApplicationPermissionValueSet(values), memberOrdinals);
+                assertThat(roleMap.getPermissionValues().size(), is(Sets.newHashSet(values).size()));
+            }
+        }
+    }
+
+    public static class PrecedenceOf extends ApplicationRolePermissionMapTest {
+
+        @Test
+        public void builtIn() throws Exception {
+            assertThat(ApplicationRolePermissionMap.Precedence.of(null), is(ApplicationRolePermissionMap.Precedence.ALLOW_BEATS_VETO));
+            assertThat(ApplicationRolePermissionMap.Precedence.of(new PermissionsEvaluationServiceAllowBeatsVeto()), is(ApplicationRolePermissionMap.Precedence.ALLOW_BEATS_VETO));
+            assertThat(ApplicationRolePermissionMap.Precedence.of(new PermissionsEvaluationServiceVetoBeatsAllow()), is(ApplicationRolePermissionMap.Precedence.VETO_BEATS_ALLOW));
+        }
+
+        @Test
+        public void otherwise() throws Exception {
+            assertThat(ApplicationRolePermissionMap.Precedence.of(new PermissionsEvaluationServiceAllowBeatsVeto() {}), is(nullValue()));
+        }
+    }
+
+    static void assertSameAsEvaluated(
+            final ApplicationPermissionPolicy policy,
+            final ApplicationPermissionValueSet valueSet,
+            final ApplicationMemberOrdinals memberOrdinals) {
+        for (int ordinal = 0; ordinal < memberOrdinals.size(); ordinal++) {
+            final ApplicationFeatureId memberId = memberOrdinals.memberIdOf(ordinal);
+            for (final ApplicationPermissionMode mode : ApplicationPermissionMode.values()) {
+                final String reason = valueSet + " for " + memberId + ", " + mode;
+                assertThat(reason, policy.grants(ordinal, mode), is(valueSet.evaluate(memberId, mode).isGranted()));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.isisaddons.module.security.dom.feature.ApplicationFeature;
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureRepository;
+import org.isisaddons.module.security.dom.password.PasswordVerificationExecutor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class IsisModuleSecurityRealmTest {
+
+    IsisModuleSecurityRealm realm;
+
+    @Before
+    public void setUp() throws Exception {
+        realm = new IsisModuleSecurityRealm();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        realm.destroy();
+    }
+
+    public static class PasswordVerificationTimeoutMillis extends IsisModuleSecurityRealmTest {
+
+        @Test
+        public void boundedByDefault() throws Exception {
+            assertThat(realm.getPasswordVerificationTimeoutMillis(), is(10000L));
+        }
+    }
+
+    public static class PrepopulatePermissionResolver extends IsisModuleSecurityRealmTest {
+
+        int allMembersCalls;
+
+        ApplicationFeatureRepository applicationFeatureRepository;
+
+        @Before
+        public void setUpRepository() throws Exception {
+            applicationFeatureRepository = new ApplicationFeatureRepository() {
+                @Override
+                public Collection<ApplicationFeature> allMembers() {
+                    allMembersCalls++;
+                    return Collections.emptyList();
+                }
+            };
+            realm.setPrepopulatePermissionResolver(true);
+        }
+
+        @Test
+        public void onceOnly() throws Exception {
+
+            // when
+            realm.prepopulatePermissionResolverIfRequired(applicationFeatureRepository);
+            realm.prepopulatePermissionResolverIfRequired(applicationFeatureRepository);
+
+            // then
+            assertThat(allMembersCalls, is(1));
+        }
+
+        @Test
+        public void skippedWhenCatalogIsLazy() throws Exception {
+
+            // given
+            applicationFeatureRepository.setLazy(true);
+
+            // when
+            realm.prepopulatePermissionResolverIfRequired(applicationFeatureRepository);
+
+            // then
+            assertThat(allMembersCalls, is(0));
+        }
+    }
+
+    public static class Destroy extends IsisModuleSecurityRealmTest {
+
+        @Test
+        public void discardsPasswordVerificationExecutor() throws Exception {
+
+            // given
+            realm.setPasswordVerificationParallelism(1);
+            final PasswordVerificationExecutor executor = realm.getPasswordVerificationExecutor();
+
+            // when
+            realm.destroy();
+
+            // then
+            assertThat(realm.getPasswordVerificationExecutor(), is(not(sameInstance(executor))));
+        }
+
+        @Test
+        public void whenNothingToShutDown() throws Exception {
+            realm.destroy();
+        }
+    }
+
+}
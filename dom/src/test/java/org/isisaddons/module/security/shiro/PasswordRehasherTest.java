@@ -0,0 +1,112 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.isisaddons.module.security.dom.metrics.SecurityMetrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PasswordRehasherTest {
+
+    PasswordRehasher rehasher;
+
+    @Before
+    public void setUp() throws Exception {
+        rehasher = new PasswordRehasher();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        rehasher.shutdown();
+    }
+
+    public static class Rehash extends PasswordRehasherTest {
+
+        @Test
+        public void atMostOnePendingPerUser() throws Exception {
+
+            // given
+            final CountDownLatch released = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(1);
+            final Runnable blocking = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        released.await(10, TimeUnit.SECONDS);
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.countDown();
+                }
+            };
+
+            // when
+            assertThat(rehasher.rehash("fred", blocking), is(true));
+
+            // then
+            assertThat(rehasher.rehash("fred", blocking), is(false));
+            assertThat(rehasher.getPendingCount(), is(1));
+
+            // and when
+            released.countDown();
+            done.await(10, TimeUnit.SECONDS);
+            while(rehasher.getPendingCount() > 0) {
+                Thread.sleep(1);
+            }
+
+            // then
+            assertThat(rehasher.rehash("fred", blocking), is(true));
+        }
+
+        @Test
+        public void failureIsNotPropagated() throws Exception {
+
+            // given
+            final long failuresBefore = SecurityMetrics.getInstance().getPasswordRehashFailures();
+            rehasher.rehash("fred", new Runnable() {
+                @Override
+                public void run() {
+                    throw new IllegalStateException();
+                }
+            });
+
+            // when
+            while(rehasher.getPendingCount() > 0) {
+                Thread.sleep(1);
+            }
+
+            // then counted
+            assertThat(SecurityMetrics.getInstance().getPasswordRehashFailures(), is(failuresBefore + 1));
+
+            // and can be attempted again
+            assertThat(rehasher.rehash("fred", new Runnable() {
+                @Override
+                public void run() {
+                }
+            }), is(true));
+        }
+    }
+
+}
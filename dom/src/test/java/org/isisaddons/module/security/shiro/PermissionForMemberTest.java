@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import org.isisaddons.module.security.dom.feature.ApplicationFeature;
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class PermissionForMemberTest {
+
+    public static class Constructor extends PermissionForMemberTest {
+
+        @Test
+        public void viewing() throws Exception {
+            final PermissionForMember permission = new PermissionForMember("com.foo:Bar:bip:r");
+
+            assertThat(permission.getFeatureId(), is(ApplicationFeatureId.newMember("com.foo.Bar", "bip")));
+            assertThat(permission.getMode(), is(ApplicationPermissionMode.VIEWING));
+        }
+
+        @Test
+        public void changing() throws Exception {
+            final PermissionForMember permission = new PermissionForMember("com.foo:Bar:bip:w");
+
+            assertThat(permission.getFeatureId(), is(ApplicationFeatureId.newMember("com.foo.Bar", "bip")));
+            assertThat(permission.getMode(), is(ApplicationPermissionMode.CHANGING));
+        }
+
+        @Test
+        public void defaultPackage() throws Exception {
+            final PermissionForMember permission = new PermissionForMember(":Bar:bip:r");
+
+            assertThat(permission.getFeatureId(), is(ApplicationFeatureId.newMember("Bar", "bip")));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void tooFewParts() throws Exception {
+            new PermissionForMember("com.foo:Bar:r");
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void tooManyParts() throws Exception {
+            new PermissionForMember("com.foo:Bar:bip:bop:r");
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void invalidMode() throws Exception {
+            new PermissionForMember("com.foo:Bar:bip:x");
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void modeNotSingleCharacter() throws Exception {
+            new PermissionForMember("com.foo:Bar:bip:rw");
+        }
+    }
+
+    public static class AsPermissionString extends PermissionForMemberTest {
+
+        @Test
+        public void roundtrip() throws Exception {
+            final ApplicationFeatureId memberId = ApplicationFeatureId.newMember("com.foo.Bar", "bip");
+
+            final String permissionString = PermissionForMember.asPermissionString(memberId, ApplicationPermissionMode.CHANGING);
+
+            assertThat(permissionString, is("com.foo:Bar:bip:w"));
+            assertThat(new PermissionForMember(permissionString).getFeatureId(), is(memberId));
+        }
+    }
+
+    public static class Resolver extends PermissionForMemberTest {
+
+        @Test
+        public void sharesResolvedInstances() throws Exception {
+            final PermissionResolverForIsisShiroAuthorizor resolver = new PermissionResolverForIsisShiroAuthorizor();
+
+            assertThat(resolver.resolvePermission("com.foo:Bar:bip:r"), is(sameInstance(resolver.resolvePermission("com.foo:Bar:bip:r"))));
+            assertThat(resolver.size(), is(1));
+        }
+
+        @Test
+        public void prepopulate() throws Exception {
+            final PermissionResolverForIsisShiroAuthorizor resolver = new PermissionResolverForIsisShiroAuthorizor();
+            final ApplicationFeature memberFeature = new ApplicationFeature(ApplicationFeatureId.newMember("com.foo.Bar", "bip"));
+
+            resolver.prepopulate(Collections.singletonList(memberFeature));
+
+            assertThat(resolver.size(), is(2));
+            final PermissionForMember permission = (PermissionForMember) resolver.resolvePermission("com.foo:Bar:bip:w");
+            assertThat(permission.getFeatureId(), is(memberFeature.getFeatureId()));
+            assertThat(permission.getMode(), is(ApplicationPermissionMode.CHANGING));
+            assertThat(resolver.size(), is(2));
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+
+import com.google.common.collect.Sets;
+
+import org.apache.shiro.authz.Permission;
+import org.junit.Test;
+
+import org.isisaddons.module.security.dom.feature.ApplicationFeatureId;
+import org.isisaddons.module.security.dom.metrics.CacheStatistics;
+import org.isisaddons.module.security.dom.metrics.SecurityMetrics;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionRule;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValue;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSet;
+import org.isisaddons.module.security.dom.user.AccountType;
+import org.isisaddons.module.security.dom.user.ApplicationUserStatus;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class PrincipalForApplicationUserTest {
+
+    final ApplicationFeatureId barMember = ApplicationFeatureId.newMember("com.mycompany.Bar#bip");
+    final ApplicationFeatureId bazMember = ApplicationFeatureId.newMember("com.mycompany.Baz#bop");
+
+    /**
+     * Allows changing everything in <tt>com.mycompany</tt>, except for <tt>com.mycompany.Bar</tt>; counts the
+     * evaluations made against it.
+     */
+    static class CountingPermissionSet extends ApplicationPermissionValueSet {
+
+        private final boolean compiled;
+        int evaluations;
+
+        CountingPermissionSet(final boolean compiled) {
+            super(Collections.<ApplicationPermissionValue>emptyList());
+            this.compiled = compiled;
+        }
+
+        @Override
+        public boolean isCompiled() {
+            return compiled;
+        }
+
+        @Override
+        public boolean grants(final ApplicationFeatureId featureId, final ApplicationPermissionMode mode) {
+            evaluations++;
+            return !featureId.getClassName().equals("Bar");
+        }
+    }
+
+    static PrincipalForApplicationUser newPrincipal(final ApplicationPermissionValueSet permissionSet) {
+        return new PrincipalForApplicationUser(
+                "fred", "encrypted", AccountType.LOCAL, ApplicationUserStatus.ENABLED,
+                Sets.newTreeSet(Collections.singleton("role1")), permissionSet);
+    }
+
+    public static class Grants extends PrincipalForApplicationUserTest {
+
+        @Test
+        public void memoized() throws Exception {
+
+            // given
+            final CountingPermissionSet permissionSet = new CountingPermissionSet(false);
+            final PrincipalForApplicationUser principal = newPrincipal(permissionSet);
+
+            // when (miss)
+            assertThat(principal.grants(barMember, ApplicationPermissionMode.VIEWING), is(false));
+            assertThat(principal.grants(bazMember, ApplicationPermissionMode.VIEWING), is(true));
+
+            // then
+            assertThat(permissionSet.evaluations, is(2));
+
+            // when (hit)
+            assertThat(principal.grants(barMember, ApplicationPermissionMode.VIEWING), is(false));
+            assertThat(principal.grants(bazMember, ApplicationPermissionMode.VIEWING), is(true));
+
+            // then
+            assertThat(permissionSet.evaluations, is(2));
+        }
+
+        @Test
+        public void memoizedPerMode() throws Exception {
+
+            // given
+            final CountingPermissionSet permissionSet = new CountingPermissionSet(false);
+            final PrincipalForApplicationUser principal = newPrincipal(permissionSet);
+            principal.grants(bazMember, ApplicationPermissionMode.VIEWING);
+
+            // when
+            principal.grants(bazMember, ApplicationPermissionMode.CHANGING);
+
+            // then
+            assertThat(permissionSet.evaluations, is(2));
+        }
+
+        @Test
+        public void discardedWhenPermissionSetReplaced() throws Exception {
+
+            // given
+            final PrincipalForApplicationUser principal = newPrincipal(new CountingPermissionSet(false));
+            principal.grants(barMember, ApplicationPermissionMode.VIEWING);
+
+            // when
+            final CountingPermissionSet replacement = new CountingPermissionSet(false);
+            principal.setPermissionSet(replacement);
+            principal.grants(barMember, ApplicationPermissionMode.VIEWING);
+
+            // then
+            assertThat(principal.getPermissionSet(), is(sameInstance((ApplicationPermissionValueSet) replacement)));
+            assertThat(replacement.evaluations, is(1));
+        }
+
+        @Test
+        public void notMemoizedWhenCompiled() throws Exception {
+
+            // given
+            final CountingPermissionSet permissionSet = new CountingPermissionSet(true);
+            final PrincipalForApplicationUser principal = newPrincipal(permissionSet);
+            final CacheStatistics decisionCache = SecurityMetrics.getInstance().getPermissionDecisionCache();
+            final long hitsBefore = decisionCache.getHits();
+            final long missesBefore = decisionCache.getMisses();
+
+            // when
+            principal.grants(bazMember, ApplicationPermissionMode.VIEWING);
+            principal.grants(bazMember, ApplicationPermissionMode.VIEWING);
+
+            // then
+            assertThat(permissionSet.evaluations, is(2));
+            assertThat(decisionCache.getHits(), is(hitsBefore));
+            assertThat(decisionCache.getMisses(), is(missesBefore));
+        }
+
+        @Test
+        public void viaObjectPermissions() throws Exception {
+
+            // given
+            final PrincipalForApplicationUser principal = newPrincipal(new CountingPermissionSet(false));
+
+            // when
+            final Permission permission = principal.getObjectPermissions().iterator().next();
+
+            // then
+            assertThat(permission.implies(new PermissionForMember("com.mycompany:Bar:bip:r")), is(false));
+            assertThat(permission.implies(new PermissionForMember("com.mycompany:Baz:bop:r")), is(true));
+            assertThat(principal.getObjectPermissions(), is(sameInstance(principal.getObjectPermissions())));
+        }
+    }
+
+    public static class Serialization extends PrincipalForApplicationUserTest {
+
+        @Test
+        public void roundtrip() throws Exception {
+
+            // given
+            final ApplicationPermissionValueSet permissionSet = new ApplicationPermissionValueSet(Collections.singletonList(
+                    new ApplicationPermissionValue(ApplicationFeatureId.newClass("com.mycompany.Baz"), ApplicationPermissionRule.ALLOW, ApplicationPermissionMode.CHANGING)));
+            final PrincipalForApplicationUser principal = newPrincipal(permissionSet);
+            principal.grants(bazMember, ApplicationPermissionMode.VIEWING);
+            principal.getObjectPermissions();
+
+            // when
+            final PrincipalForApplicationUser deserialized = roundtrip(principal);
+
+            // then
+            assertThat(deserialized.getUsername(), is("fred"));
+            assertThat(deserialized.getRoles(), is(principal.getRoles()));
+            assertThat(deserialized.grants(bazMember, ApplicationPermissionMode.CHANGING), is(true));
+            assertThat(deserialized.grants(barMember, ApplicationPermissionMode.VIEWING), is(false));
+            final Permission permission = deserialized.getObjectPermissions().iterator().next();
+            assertThat(permission.implies(new PermissionForMember("com.mycompany:Baz:bop:w")), is(true));
+        }
+
+        private static PrincipalForApplicationUser roundtrip(final PrincipalForApplicationUser principal) throws Exception {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(principal);
+            out.close();
+            final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            return (PrincipalForApplicationUser) in.readObject();
+        }
+    }
+
+}
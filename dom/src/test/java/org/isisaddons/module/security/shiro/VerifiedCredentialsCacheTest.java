@@ -0,0 +1,130 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Ticker;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class VerifiedCredentialsCacheTest {
+
+    static class ManualTicker extends Ticker {
+        long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+    }
+
+    ManualTicker ticker;
+    VerifiedCredentialsCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        ticker = new ManualTicker();
+        cache = new VerifiedCredentialsCache(60, TimeUnit.SECONDS, 100, ticker);
+    }
+
+    public static class IsVerified extends VerifiedCredentialsCacheTest {
+
+        @Test
+        public void whenVerified() throws Exception {
+
+            // given
+            cache.verified("fred", "pass".toCharArray(), "$2a$10$encrypted");
+
+            // then
+            assertThat(cache.isVerified("fred", "pass".toCharArray(), "$2a$10$encrypted"), is(true));
+        }
+
+        @Test
+        public void whenDifferentPassword() throws Exception {
+
+            // given
+            cache.verified("fred", "pass".toCharArray(), "$2a$10$encrypted");
+
+            // then
+            assertThat(cache.isVerified("fred", "Pass".toCharArray(), "$2a$10$encrypted"), is(false));
+        }
+
+        @Test
+        public void whenDifferentUser() throws Exception {
+
+            // given
+            cache.verified("fred", "pass".toCharArray(), "$2a$10$encrypted");
+
+            // then
+            assertThat(cache.isVerified("mary", "pass".toCharArray(), "$2a$10$encrypted"), is(false));
+        }
+
+        @Test
+        public void whenEncryptedPasswordChanged() throws Exception {
+
+            // given
+            cache.verified("fred", "pass".toCharArray(), "$2a$10$encrypted");
+
+            // then
+            assertThat(cache.isVerified("fred", "pass".toCharArray(), "$2a$10$reencrypted"), is(false));
+        }
+
+        @Test
+        public void whenExpired() throws Exception {
+
+            // given
+            cache.verified("fred", "pass".toCharArray(), "$2a$10$encrypted");
+
+            // when
+            ticker.nanos += TimeUnit.SECONDS.toNanos(61);
+
+            // then
+            assertThat(cache.isVerified("fred", "pass".toCharArray(), "$2a$10$encrypted"), is(false));
+        }
+
+        @Test
+        public void whenNoEncryptedPassword() throws Exception {
+            assertThat(cache.isVerified("fred", "pass".toCharArray(), null), is(false));
+        }
+    }
+
+    public static class Invalidate extends VerifiedCredentialsCacheTest {
+
+        @Test
+        public void evictsOnlyThatUser() throws Exception {
+
+            // given
+            cache.verified("fred", "pass".toCharArray(), "$2a$10$encrypted");
+            cache.verified("fred", "other".toCharArray(), "$2a$10$encrypted");
+            cache.verified("mary", "pass".toCharArray(), "$2a$10$encrypted");
+
+            // when
+            cache.invalidate("fred");
+
+            // then
+            assertThat(cache.size(), is(1L));
+            assertThat(cache.isVerified("fred", "pass".toCharArray(), "$2a$10$encrypted"), is(false));
+            assertThat(cache.isVerified("mary", "pass".toCharArray(), "$2a$10$encrypted"), is(true));
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.integtests.load;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latencies, allocations and errors of one operation, as performed concurrently by a number of threads.
+ *
+ * <p>
+ *     Each thread records into its own {@link Recorder}, which are then {@link #merge(Recorder) merged} once the
+ *     threads have finished.  Allocations are measured (per thread) only if the JVM supports it; if not, then they are
+ *     reported as zero.
+ * </p>
+ */
+class OperationStatistics {
+
+    private final String name;
+
+    private long[] latencies = new long[0];
+    private long allocatedBytes;
+    private long errors;
+    private long elapsedNanos;
+
+    OperationStatistics(final String name) {
+        this.name = name;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    //region > merge, elapsed
+
+    synchronized void merge(final Recorder recorder) {
+        final long[] merged = Arrays.copyOf(latencies, latencies.length + recorder.count);
+        System.arraycopy(recorder.latencies, 0, merged, latencies.length, recorder.count);
+        latencies = merged;
+        allocatedBytes += recorder.allocatedBytes;
+        errors += recorder.errors;
+    }
+
+    /**
+     * The wall-clock time taken for all threads to complete.
+     */
+    synchronized void elapsed(final long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    //endregion
+
+    //region > results
+
+    synchronized long getCount() {
+        return latencies.length;
+    }
+
+    synchronized long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Operations per second, across all threads.
+     */
+    synchronized double getThroughput() {
+        return elapsedNanos > 0 ? latencies.length * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0.0;
+    }
+
+    /**
+     * @param percentile - between 0 and 100.
+     */
+    synchronized double getPercentileMillis(final double percentile) {
+        if(latencies.length == 0) {
+            return 0.0;
+        }
+        final long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        final int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    synchronized long getBytesPerOperation() {
+        return latencies.length > 0 ? allocatedBytes / latencies.length : 0;
+    }
+
+    /**
+     * Megabytes allocated per second, across all threads.
+     */
+    synchronized double getAllocationRateMegabytes() {
+        return elapsedNanos > 0
+                ? allocatedBytes / (1024.0 * 1024.0) * TimeUnit.SECONDS.toNanos(1) / elapsedNanos
+                : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%-20s %8d ops %10.1f ops/s   p50 %8.3f ms   p99 %8.3f ms %10d B/op %8.1f MB/s %5d errors",
+                name, getCount(), getThroughput(), getPercentileMillis(50), getPercentileMillis(99),
+                getBytesPerOperation(), getAllocationRateMegabytes(), getErrors());
+    }
+
+    //endregion
+
+    //region > Recorder
+
+    /**
+     * Records the operations performed by a single thread; not thread-safe.
+     */
+    static class Recorder {
+
+        private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private long allocatedBytes;
+        private long errors;
+
+        private long startNanos;
+        private long startAllocatedBytes;
+
+        void start() {
+            startAllocatedBytes = currentThreadAllocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        void stop() {
+            final long latency = System.nanoTime() - startNanos;
+            allocatedBytes += currentThreadAllocatedBytes() - startAllocatedBytes;
+            if(count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, 2 * count);
+            }
+            latencies[count++] = latency;
+        }
+
+        void error() {
+            errors++;
+        }
+
+        private static long currentThreadAllocatedBytes() {
+            if(THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+                final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+                if(threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled()) {
+                    return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+                }
+            }
+            return 0L;
+        }
+    }
+
+    //endregion
+
+}
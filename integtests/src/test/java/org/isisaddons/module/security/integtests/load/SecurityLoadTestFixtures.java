@@ -0,0 +1,267 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.integtests.load;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import org.apache.isis.applib.fixturescripts.FixtureScript;
+
+import org.isisaddons.module.security.dom.permission.ApplicationPermission;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionRule;
+import org.isisaddons.module.security.dom.role.ApplicationRole;
+import org.isisaddons.module.security.dom.tenancy.ApplicationTenancy;
+import org.isisaddons.module.security.dom.user.AccountType;
+import org.isisaddons.module.security.dom.user.ApplicationUser;
+import org.isisaddons.module.security.dom.user.ApplicationUserStatus;
+import org.isisaddons.module.security.fixture.dom.example.nontenanted.NonTenantedEntity;
+import org.isisaddons.module.security.fixture.dom.example.tenanted.TenantedEntity;
+import org.isisaddons.module.security.fixture.scripts.example.tenanted.AbstractTenantedEntityFixtureScript;
+import org.isisaddons.module.security.fixture.scripts.tenancy.AbstractTenancyFixtureScript;
+import org.isisaddons.module.security.fixture.scripts.userrole.AbstractUserRoleFixtureScript;
+import org.isisaddons.module.security.fixture.scripts.users.AbstractUserFixtureScript;
+import org.isisaddons.module.security.seed.scripts.AbstractRoleAndPermissionsFixtureScript;
+import org.isisaddons.module.security.seed.scripts.GlobalTenancy;
+
+/**
+ * Seeds a configurable number of users, roles, permissions and tenanted entities, for
+ * {@link SecurityRealmLoadTest}, using the module's fixture scripts.
+ *
+ * <p>
+ *     Each script is intended to be installed separately (rather than as children of some parent script), because
+ *     fixture scripts are by default only executed once per class.
+ * </p>
+ */
+public class SecurityLoadTestFixtures {
+
+    public static final String PASSWORD = "load-test-password";
+
+    /**
+     * The classes whose (made-up) members are permissioned, spread over several packages.
+     */
+    private static final Class<?>[] PERMISSIONED_CLASSES = {
+            ApplicationUser.class,
+            ApplicationRole.class,
+            ApplicationPermission.class,
+            ApplicationTenancy.class,
+            TenantedEntity.class,
+            NonTenantedEntity.class
+    };
+
+    private static final int NUM_TENANCIES = 4;
+
+    private final int numUsers;
+    private final int numRoles;
+    private final int numPermissions;
+    private final int numTenantedEntities;
+
+    public SecurityLoadTestFixtures(
+            final int numUsers,
+            final int numRoles,
+            final int numPermissions,
+            final int numTenantedEntities) {
+        if(numUsers < 1 || numRoles < 1) {
+            throw new IllegalArgumentException("Require at least one user and one role");
+        }
+        this.numUsers = numUsers;
+        this.numRoles = numRoles;
+        this.numPermissions = numPermissions;
+        this.numTenantedEntities = numTenantedEntities;
+    }
+
+    //region > scripts
+
+    public FixtureScript[] scripts() {
+        final List<FixtureScript> scripts = Lists.newArrayList();
+        scripts.add(new Tenancies());
+        for (int role = 0; role < numRoles; role++) {
+            scripts.add(new RoleAndPermissions(role));
+        }
+        scripts.add(new Users());
+        for (int user = 0; user < numUsers; user++) {
+            scripts.add(new UserRoles(user));
+        }
+        scripts.add(new TenantedEntities());
+        return scripts.toArray(new FixtureScript[scripts.size()]);
+    }
+
+    //endregion
+
+    //region > naming conventions
+
+    public int getNumUsers() {
+        return numUsers;
+    }
+
+    public static String userName(final int user) {
+        return "load-user-" + user;
+    }
+
+    static String roleName(final int role) {
+        return "load-role-" + role;
+    }
+
+    /**
+     * Users are spread over the tenancies; every tenth is global.
+     */
+    static String userTenancyPath(final int user) {
+        return user % 10 == 0 ? GlobalTenancy.TENANCY_PATH : tenancyPath(user % NUM_TENANCIES);
+    }
+
+    /**
+     * Entities are spread over the tenancies and their sub-tenancies.
+     */
+    static String entityTenancyPath(final int entity) {
+        final String tenancyPath = tenancyPath(entity % NUM_TENANCIES);
+        return entity % 2 == 0 ? tenancyPath : subTenancyPath(tenancyPath);
+    }
+
+    private static String tenancyPath(final int tenancy) {
+        return "/load-" + tenancy;
+    }
+
+    private static String subTenancyPath(final String tenancyPath) {
+        return tenancyPath + "/sub";
+    }
+
+    /**
+     * Each role is granted every permission whose number is congruent to its own (modulo the number of roles).
+     */
+    private boolean isGrantedTo(final int permission, final int role) {
+        return permission % numRoles == role;
+    }
+
+    private static Class<?> permissionedClass(final int permission) {
+        return PERMISSIONED_CLASSES[permission % PERMISSIONED_CLASSES.length];
+    }
+
+    private static String permissionedMember(final int permission) {
+        return "member" + permission;
+    }
+
+    //endregion
+
+    //region > permissionStrings
+
+    /**
+     * The Shiro permission strings to check, one for each member permissioned (for both viewing and changing),
+     * along with as many again for members that are not permissioned at all.
+     */
+    public List<String> permissionStrings() {
+        final List<String> permissionStrings = Lists.newArrayList();
+        for (int permission = 0; permission < 2 * numPermissions; permission++) {
+            final Class<?> cls = permissionedClass(permission);
+            final String prefix =
+                    cls.getPackage().getName() + ":" + cls.getSimpleName() + ":" + permissionedMember(permission);
+            permissionStrings.add(prefix + ":r");
+            permissionStrings.add(prefix + ":w");
+        }
+        return permissionStrings;
+    }
+
+    //endregion
+
+    //region > Tenancies
+
+    class Tenancies extends AbstractTenancyFixtureScript {
+        @Override
+        protected void execute(final ExecutionContext executionContext) {
+            for (int tenancy = 0; tenancy < NUM_TENANCIES; tenancy++) {
+                final String path = tenancyPath(tenancy);
+                create("Load " + tenancy, path, GlobalTenancy.TENANCY_PATH, executionContext);
+                create("Load " + tenancy + " sub", subTenancyPath(path), path, executionContext);
+            }
+        }
+    }
+
+    //endregion
+
+    //region > RoleAndPermissions
+
+    class RoleAndPermissions extends AbstractRoleAndPermissionsFixtureScript {
+        private final int role;
+
+        RoleAndPermissions(final int role) {
+            super(roleName(role), null);
+            this.role = role;
+        }
+
+        @Override
+        protected void execute(final ExecutionContext executionContext) {
+            for (int permission = 0; permission < numPermissions; permission++) {
+                if(!isGrantedTo(permission, role)) {
+                    continue;
+                }
+                newMemberPermissions(
+                        permission % 10 == 0 ? ApplicationPermissionRule.VETO : ApplicationPermissionRule.ALLOW,
+                        permission % 2 == 0 ? ApplicationPermissionMode.VIEWING : ApplicationPermissionMode.CHANGING,
+                        permissionedClass(permission),
+                        permissionedMember(permission));
+            }
+        }
+    }
+
+    //endregion
+
+    //region > Users
+
+    class Users extends AbstractUserFixtureScript {
+        Users() {
+            setPassword(PASSWORD);
+        }
+
+        @Override
+        protected void execute(final ExecutionContext executionContext) {
+            for (int user = 0; user < numUsers; user++) {
+                final ApplicationUser applicationUser =
+                        create(userName(user), AccountType.LOCAL, userTenancyPath(user), executionContext);
+                applicationUser.setStatus(ApplicationUserStatus.ENABLED);
+            }
+        }
+    }
+
+    //endregion
+
+    //region > UserRoles
+
+    /**
+     * Each user has two roles (or just the one, if only one role is seeded).
+     */
+    class UserRoles extends AbstractUserRoleFixtureScript {
+        UserRoles(final int user) {
+            super(userName(user), roleName(user % numRoles), roleName((user + 1) % numRoles));
+        }
+    }
+
+    //endregion
+
+    //region > TenantedEntities
+
+    class TenantedEntities extends AbstractTenantedEntityFixtureScript {
+        @Override
+        protected void execute(final ExecutionContext executionContext) {
+            for (int entity = 0; entity < numTenantedEntities; entity++) {
+                create("Load entity " + entity, entityTenancyPath(entity), executionContext);
+            }
+        }
+    }
+
+    //endregion
+
+}
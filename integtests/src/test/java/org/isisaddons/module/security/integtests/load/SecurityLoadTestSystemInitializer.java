@@ -0,0 +1,69 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.integtests.load;
+
+import org.apache.isis.core.commons.config.IsisConfiguration;
+import org.apache.isis.core.integtestsupport.IsisSystemForTest;
+import org.apache.isis.objectstore.jdo.datanucleus.DataNucleusPersistenceMechanismInstaller;
+import org.apache.isis.objectstore.jdo.datanucleus.IsisConfigurationForJdoIntegTests;
+
+import org.isisaddons.module.security.dom.password.PasswordEncryptionServiceUsingJBcrypt;
+import org.isisaddons.module.security.facets.TenantedAuthorizationFacetFactory;
+
+/**
+ * As {@link org.isisaddons.module.security.integtests.SecurityModuleAppSystemInitializer}, but configured as a
+ * real application would be: with passwords encrypted using jBCrypt, and with the tenanted authorization facet
+ * installed.
+ */
+public class SecurityLoadTestSystemInitializer {
+
+    private SecurityLoadTestSystemInitializer(){}
+
+    public static IsisSystemForTest initIsft(final int bcryptLogRounds) {
+        IsisSystemForTest isft = IsisSystemForTest.getElseNull();
+        if(isft == null) {
+            isft = new SecurityLoadTestSystemBuilder(bcryptLogRounds).build().setUpSystem();
+            IsisSystemForTest.set(isft);
+        }
+        return isft;
+    }
+
+    private static class SecurityLoadTestSystemBuilder extends IsisSystemForTest.Builder {
+
+        public SecurityLoadTestSystemBuilder(final int bcryptLogRounds) {
+            withLoggingAt(org.apache.log4j.Level.WARN);
+            with(testConfiguration(bcryptLogRounds));
+            with(new DataNucleusPersistenceMechanismInstaller());
+
+            // services annotated with @DomainService
+            withServicesIn( "org.isisaddons.module.security" );
+
+            withServices(new PasswordEncryptionServiceUsingJBcrypt());
+        }
+
+        private static IsisConfiguration testConfiguration(final int bcryptLogRounds) {
+            final IsisConfigurationForJdoIntegTests testConfiguration = new IsisConfigurationForJdoIntegTests();
+            testConfiguration.addRegisterEntitiesPackagePrefix("org.isisaddons.module.security");
+            testConfiguration.add(
+                    "isis.reflector.facets.include", TenantedAuthorizationFacetFactory.class.getName());
+            testConfiguration.add(
+                    PasswordEncryptionServiceUsingJBcrypt.LOG_ROUNDS_KEY, Integer.toString(bcryptLogRounds));
+            return testConfiguration;
+        }
+    }
+
+}
@@ -0,0 +1,340 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.integtests.load;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.common.collect.Lists;
+
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.mgt.DefaultSecurityManager;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.isis.applib.annotation.Where;
+import org.apache.isis.core.integtestsupport.IsisSystemForTest;
+import org.apache.isis.core.metamodel.adapter.ObjectAdapter;
+import org.apache.isis.core.metamodel.consent.InteractionInitiatedBy;
+import org.apache.isis.core.metamodel.spec.feature.ObjectAssociation;
+import org.apache.isis.core.runtime.authentication.standard.SimpleSession;
+import org.apache.isis.core.runtime.system.context.IsisContext;
+import org.apache.isis.core.runtime.system.context.IsisContextThreadLocal;
+import org.apache.isis.core.runtime.system.persistence.PersistenceSession;
+import org.apache.isis.core.runtime.system.transaction.TransactionalClosureAbstract;
+
+import org.isisaddons.module.security.fixture.dom.example.tenanted.TenantedEntities;
+import org.isisaddons.module.security.fixture.dom.example.tenanted.TenantedEntity;
+import org.isisaddons.module.security.shiro.IsisModuleSecurityRealm;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Drives a Shiro {@link DefaultSecurityManager} configured with the {@link IsisModuleSecurityRealm} from many threads
+ * concurrently, reporting the throughput, latency and allocations of logging in, checking permissions and checking
+ * tenancy visibility.
+ *
+ * <p>
+ *     Not run as part of the regular build; use <tt>mvn test -Dloadtest</tt> (in the integtests module).  The size
+ *     of the data set, the load and the thresholds (which default to unchecked) are all set using system properties
+ *     prefixed <tt>loadtest.</tt>, eg <tt>-Dloadtest.users=500 -Dloadtest.login.maxP99Millis=200</tt>; see the
+ *     <tt>loadtest</tt> profile in this module's pom for the full list.
+ * </p>
+ *
+ * <p>
+ *     Unlike the other integration tests, each thread runs in its own Isis session, just as in a deployed
+ *     application.  The system is therefore set up once for the class, and (because it cannot afterwards be switched
+ *     back again) in a JVM of its own.
+ * </p>
+ */
+public class SecurityRealmLoadTest {
+
+    private static final String PROPERTY_PREFIX = "loadtest.";
+
+    private static IsisSystemForTest isft;
+    private static SecurityLoadTestFixtures fixtures;
+
+    private static IsisModuleSecurityRealm realm;
+    private static DefaultSecurityManager securityManager;
+
+    private static List<PrincipalCollection> principalsByUser;
+    private static List<String> permissionStrings;
+
+    private static TenantedEntities tenantedEntities;
+    private static ObjectAssociation tenantedProperty;
+
+    private static int threads;
+    private static int warmupIterations;
+    private static int iterations;
+
+    @BeforeClass
+    public static void initClass() throws Exception {
+        org.apache.log4j.PropertyConfigurator.configure("logging.properties");
+        // otherwise Shiro logs (at INFO) that there is no authorization cache, for every permission checked
+        org.apache.log4j.Logger.getLogger("org.apache.shiro").setLevel(org.apache.log4j.Level.WARN);
+
+        isft = SecurityLoadTestSystemInitializer.initIsft(intProperty("bcryptLogRounds", 4));
+
+        fixtures = new SecurityLoadTestFixtures(
+                intProperty("users", 100),
+                intProperty("roles", 10),
+                intProperty("permissions", 1000),
+                intProperty("tenantedEntities", 20));
+        isft.installFixtures(fixtures.scripts());
+
+        tenantedEntities = isft.getService(TenantedEntities.class);
+        tenantedProperty = isft.loadSpecification(TenantedEntity.class).getAssociation("name");
+
+        // from now on, each thread has its own session, and the one opened by IsisSystemForTest is left behind.
+        IsisContextThreadLocal.createInstance(IsisContext.getSessionFactory());
+
+        realm = new IsisModuleSecurityRealm();
+        realm.setVerifiedCredentialsCacheTimeToLiveSeconds(longProperty("verifiedCredentialsCacheTimeToLiveSeconds", 0));
+        realm.setPasswordVerificationParallelism(intProperty("passwordVerificationParallelism", 0));
+        securityManager = new DefaultSecurityManager(realm);
+
+        principalsByUser = Lists.newArrayList();
+        for (int user = 0; user < fixtures.getNumUsers(); user++) {
+            principalsByUser.add(securityManager.authenticate(token(user)).getPrincipals());
+        }
+        permissionStrings = fixtures.permissionStrings();
+
+        threads = intProperty("threads", 8);
+        warmupIterations = intProperty("warmupIterations", 20);
+        iterations = intProperty("iterations", 200);
+
+        System.out.println(String.format(
+                "%d threads, %d (+%d warmup) iterations each, %d users, %d permission strings",
+                threads, iterations, warmupIterations, fixtures.getNumUsers(), permissionStrings.size()));
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if(securityManager != null) {
+            securityManager.destroy();
+        }
+        IsisContext.closeAllSessions();
+    }
+
+    //region > login
+
+    @Test
+    public void login() throws Exception {
+
+        final OperationStatistics statistics = run("login", new Operation() {
+            @Override
+            public void perform(final int user) {
+                securityManager.authenticate(token(user));
+            }
+        });
+
+        System.out.println(String.format("  (realm: %s; %s; %s)",
+                realm.getSessionOpenTimer(), realm.getLookupTimer(), realm.getPasswordVerificationTimer()));
+        assertThresholds(statistics);
+    }
+
+    //endregion
+
+    //region > isPermitted
+
+    @Test
+    public void isPermitted() throws Exception {
+
+        final OperationStatistics statistics = run("isPermitted", new Operation() {
+            @Override
+            public void perform(final int user) {
+                final String permissionString =
+                        permissionStrings.get(ThreadLocalRandom.current().nextInt(permissionStrings.size()));
+                securityManager.isPermitted(principalsByUser.get(user), permissionString);
+            }
+        });
+
+        assertThresholds(statistics);
+    }
+
+    //endregion
+
+    //region > tenancyVisibility
+
+    /**
+     * Each operation is a request (Isis session and transaction) by the user, in which the visibility of a property of
+     * every tenanted entity is checked.
+     */
+    @Test
+    public void tenancyVisibility() throws Exception {
+
+        final OperationStatistics statistics = run("tenancyVisibility", new Operation() {
+            @Override
+            public void perform(final int user) {
+                IsisContext.openSession(new SimpleSession(
+                        SecurityLoadTestFixtures.userName(user), Collections.<String>emptyList()));
+                try {
+                    final PersistenceSession persistenceSession = IsisContext.getPersistenceSession();
+                    persistenceSession.getTransactionManager().executeWithinTransaction(
+                            new TransactionalClosureAbstract() {
+                                @Override
+                                public void execute() {
+                                    for (final TenantedEntity entity : tenantedEntities.listAll()) {
+                                        final ObjectAdapter adapter = persistenceSession.adapterFor(entity);
+                                        tenantedProperty.isVisible(adapter, InteractionInitiatedBy.USER, Where.OBJECT_FORMS);
+                                    }
+                                }
+                            });
+                } finally {
+                    IsisContext.closeSession();
+                }
+            }
+        });
+
+        assertThresholds(statistics);
+    }
+
+    //endregion
+
+    //region > run
+
+    interface Operation {
+        void perform(int user) throws Exception;
+    }
+
+    /**
+     * Performs the operation on each of the threads, first for the warmup iterations and then (once every thread has
+     * warmed up) for the measured iterations, each time on behalf of a different user.
+     */
+    private static OperationStatistics run(final String name, final Operation operation) throws Exception {
+        final OperationStatistics statistics = new OperationStatistics(name);
+        final CyclicBarrier warmedUp = new CyclicBarrier(threads + 1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Void>> futures = Lists.newArrayList();
+            for (int thread = 0; thread < threads; thread++) {
+                final int firstUser = thread;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        final OperationStatistics.Recorder recorder = new OperationStatistics.Recorder();
+                        for (int i = 0; i < warmupIterations; i++) {
+                            perform(operation, user(firstUser, i), new OperationStatistics.Recorder());
+                        }
+                        warmedUp.await();
+                        for (int i = 0; i < iterations; i++) {
+                            perform(operation, user(firstUser, warmupIterations + i), recorder);
+                        }
+                        statistics.merge(recorder);
+                        return null;
+                    }
+                }));
+            }
+            warmedUp.await();
+            final long start = System.nanoTime();
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+            statistics.elapsed(System.nanoTime() - start);
+        } finally {
+            executor.shutdownNow();
+        }
+        System.out.println(statistics);
+        return statistics;
+    }
+
+    private static void perform(
+            final Operation operation,
+            final int user,
+            final OperationStatistics.Recorder recorder) {
+        recorder.start();
+        try {
+            operation.perform(user);
+        } catch (final Exception ex) {
+            recorder.error();
+        } finally {
+            recorder.stop();
+        }
+    }
+
+    /**
+     * The threads take turns through the users.
+     */
+    private static int user(final int firstUser, final int iteration) {
+        return (firstUser + iteration * threads) % fixtures.getNumUsers();
+    }
+
+    private static UsernamePasswordToken token(final int user) {
+        return new UsernamePasswordToken(SecurityLoadTestFixtures.userName(user), SecurityLoadTestFixtures.PASSWORD);
+    }
+
+    //endregion
+
+    //region > thresholds
+
+    /**
+     * Checks the operation's statistics against the (optional) thresholds <tt>loadtest.[operation].maxP50Millis</tt>,
+     * <tt>.maxP99Millis</tt>, <tt>.minThroughput</tt> (operations per second) and <tt>.maxBytesPerOp</tt>; there
+     * should never be any errors.
+     */
+    private static void assertThresholds(final OperationStatistics statistics) {
+        final String prefix = statistics.getName() + ".";
+
+        assertThat(statistics.getName() + " errors", statistics.getErrors(), is(0L));
+        assertThat(statistics.getName() + " p50 (ms)",
+                statistics.getPercentileMillis(50), lessThanOrEqualTo(doubleProperty(prefix + "maxP50Millis", Double.MAX_VALUE)));
+        assertThat(statistics.getName() + " p99 (ms)",
+                statistics.getPercentileMillis(99), lessThanOrEqualTo(doubleProperty(prefix + "maxP99Millis", Double.MAX_VALUE)));
+        assertThat(statistics.getName() + " throughput (ops/s)",
+                statistics.getThroughput(), greaterThanOrEqualTo(doubleProperty(prefix + "minThroughput", 0.0)));
+        assertThat(statistics.getName() + " allocated (bytes/op)",
+                statistics.getBytesPerOperation(), lessThanOrEqualTo(longProperty(prefix + "maxBytesPerOp", Long.MAX_VALUE)));
+    }
+
+    //endregion
+
+    //region > helpers
+
+    private static String property(final String name) {
+        final String value = System.getProperty(PROPERTY_PREFIX + name);
+        return value != null && !value.trim().isEmpty() ? value.trim() : null;
+    }
+
+    private static int intProperty(final String name, final int defaultValue) {
+        final String value = property(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private static long longProperty(final String name, final long defaultValue) {
+        final String value = property(name);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    private static double doubleProperty(final String name, final double defaultValue) {
+        final String value = property(name);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    //endregion
+
+}